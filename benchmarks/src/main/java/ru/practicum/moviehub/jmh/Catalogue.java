@@ -0,0 +1,29 @@
+package ru.practicum.moviehub.jmh;
+
+import ru.practicum.moviehub.model.Movie;
+import ru.practicum.moviehub.store.MovieRepository;
+
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+// Общий для бенчмарков каталог: названия из словаря в несколько десятков тысяч слов, годы 1900–2024.
+final class Catalogue {
+    static final int FIRST_YEAR = 1900;
+    static final int YEARS = 125;
+
+    private Catalogue() {
+    }
+
+    static <T extends MovieRepository> T fill(T store, int size) {
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < size; i++) {
+            store.add(randomMovie(random));
+        }
+        return store;
+    }
+
+    static Movie randomMovie(RandomGenerator random) {
+        return new Movie(0, "слово" + random.nextInt(50_000) + " фильм" + random.nextInt(3_000),
+                FIRST_YEAR + random.nextInt(YEARS));
+    }
+}
@@ -0,0 +1,82 @@
+package ru.practicum.moviehub.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.moviehub.http.MoviesServer;
+import ru.practicum.moviehub.http.ServerConfig;
+import ru.practicum.moviehub.store.MoviesStore;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Полный круг по loopback: HttpClient -> MoviesServer -> MoviesStore -> JSON -> клиент.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class HttpBenchmark {
+
+    @Param("10000")
+    int size;
+
+    // 0 — кэш ответов выключен, каждый запрос сериализуется заново
+    @Param({"0", "1024"})
+    int cacheEntries;
+
+    private MoviesServer server;
+    private HttpClient client;
+    private String base;
+
+    @Setup(Level.Trial)
+    public void start() {
+        MoviesStore store = Catalogue.fill(new MoviesStore(), size);
+        server = new MoviesServer(store, ServerConfig.builder().port(0).cacheEntries(cacheEntries).build());
+        server.start();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        base = "http://localhost:" + server.getPort();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        server.stop();
+    }
+
+    @Benchmark
+    public int getById() throws IOException, InterruptedException {
+        return get("/movies/" + (1 + ThreadLocalRandom.current().nextInt(size)));
+    }
+
+    @Benchmark
+    public int getByYear() throws IOException, InterruptedException {
+        return get("/movies?year=" + (Catalogue.FIRST_YEAR + ThreadLocalRandom.current().nextInt(Catalogue.YEARS)));
+    }
+
+    private int get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(base + path)).GET().build();
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Ответ " + response.statusCode() + " на " + path);
+        }
+        return response.body().length;
+    }
+}
@@ -0,0 +1,102 @@
+package ru.practicum.moviehub.jmh;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.moviehub.JsonUtil;
+import ru.practicum.moviehub.json.JsonBuffer;
+import ru.practicum.moviehub.json.JsonCodec;
+import ru.practicum.moviehub.model.Movie;
+import ru.practicum.moviehub.store.MoviesStore;
+
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Сериализация одного фильма и большого списка: голый Gson (to/fromJson*) и кодеки обработчиков
+// (codec*) — от объекта до байт UTF-8 ответа и от байт тела запроса до Movie.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+    private static final Type MOVIE_LIST = new TypeToken<List<Movie>>() { }.getType();
+
+    @Param("10000")
+    int listSize;
+
+    @Param({"GSON", "FAST"})
+    JsonCodec codec;
+
+    private final Gson gson = new Gson();
+    private Movie movie;
+    private String movieJson;
+    private List<Movie> movies;
+    private String moviesJson;
+    private byte[] movieBody;
+
+    @Setup
+    public void prepare() {
+        MoviesStore store = Catalogue.fill(new MoviesStore(), listSize);
+        movies = store.getAll();
+        movie = movies.get(0);
+        movieJson = JsonUtil.toJson(movie);
+        moviesJson = JsonUtil.toJson(movies);
+        movieBody = movieJson.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String toJsonSingle() {
+        return JsonUtil.toJson(movie);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String toJsonList() {
+        return JsonUtil.toJson(movies);
+    }
+
+    @Benchmark
+    public Movie fromJsonSingle() {
+        return gson.fromJson(movieJson, Movie.class);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Movie> fromJsonList() {
+        return gson.fromJson(moviesJson, MOVIE_LIST);
+    }
+
+    @Benchmark
+    public int codecWriteMovie() {
+        JsonBuffer out = JsonBuffer.acquire();
+        codec.writeMovie(out, movie);
+        return out.length();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int codecWriteMovies() {
+        JsonBuffer out = JsonBuffer.acquire();
+        codec.writeMovies(out, movies);
+        return out.length();
+    }
+
+    @Benchmark
+    public Movie codecParseMovie() {
+        return codec.parseMovie(movieBody);
+    }
+}
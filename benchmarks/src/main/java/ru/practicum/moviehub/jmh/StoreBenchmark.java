@@ -0,0 +1,105 @@
+package ru.practicum.moviehub.jmh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.moviehub.model.Movie;
+import ru.practicum.moviehub.store.MovieRepositories;
+import ru.practicum.moviehub.store.MovieRepository;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Операции каталога под конкуренцией: чтения в 4 потока, запись отдельно и вперемешку с чтением.
+// engine — имя из MovieRepositories, другие задаются через -p engine=...
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StoreBenchmark {
+
+    @Param("100000")
+    int size;
+
+    @Param({"heap", "compact"})
+    String engine;
+
+    private MovieRepository store;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        store = Catalogue.fill(MovieRepositories.create(engine), size);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Movie findById() {
+        return store.findById(1 + ThreadLocalRandom.current().nextInt(size));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public List<Movie> findByYear() {
+        return store.findByYear(Catalogue.FIRST_YEAR + ThreadLocalRandom.current().nextInt(Catalogue.YEARS));
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public List<Movie> getAll() {
+        return store.getAll();
+    }
+
+    // Запись растит каталог, поэтому у неё свой, пересоздаваемый на каждую итерацию.
+    @State(Scope.Group)
+    public static class Writable {
+        @Param("100000")
+        int size;
+
+        @Param({"heap", "compact"})
+        String engine;
+
+        MovieRepository store;
+
+        @Setup(Level.Iteration)
+        public void fill() {
+            store = Catalogue.fill(MovieRepositories.create(engine), size);
+        }
+    }
+
+    @Benchmark
+    @Group("add")
+    @GroupThreads(4)
+    public Movie add(Writable writable) {
+        return writable.store.add(Catalogue.randomMovie(ThreadLocalRandom.current()));
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public Movie mixedAdd(Writable writable) {
+        return writable.store.add(Catalogue.randomMovie(ThreadLocalRandom.current()));
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public Movie mixedFindById(Writable writable) {
+        return writable.store.findById(1 + ThreadLocalRandom.current().nextInt(writable.size));
+    }
+}
@@ -0,0 +1,84 @@
+package ru.practicum.moviehub.bench;
+
+import ru.practicum.moviehub.http.MoviesServer;
+import ru.practicum.moviehub.http.ServerConfig;
+import ru.practicum.moviehub.store.MoviesStore;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+/**
+ * Скорость загрузки каталога через POST /movies/batch (NDJSON) против поштучных POST /movies.
+ * Запуск: java -Xmx3g -cp out:lib/* ru.practicum.moviehub.bench.BatchImportBenchmark [movies] [batchSize]
+ */
+public class BatchImportBenchmark {
+    private static final int SINGLE_POSTS = 5_000;
+
+    public static void main(String[] args) throws Exception {
+        int movies = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+
+        MoviesStore store = new MoviesStore();
+        MoviesServer server = new MoviesServer(store, ServerConfig.defaults(0));
+        server.start();
+        HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        URI batchUri = URI.create("http://localhost:" + server.getPort() + "/movies/batch");
+        URI singleUri = URI.create("http://localhost:" + server.getPort() + "/movies");
+        try {
+            SplittableRandom random = new SplittableRandom(7);
+            byte[][] bodies = new byte[(movies + batchSize - 1) / batchSize][];
+            for (int i = 0; i < bodies.length; i++) {
+                bodies[i] = ndjson(random, Math.min(batchSize, movies - i * batchSize));
+            }
+
+            // прогрев на первом пакете, в результат не идёт
+            post(http, batchUri, "application/x-ndjson", bodies[0]);
+            long start = System.nanoTime();
+            for (byte[] body : bodies) {
+                post(http, batchUri, "application/x-ndjson", body);
+            }
+            long batchNanos = System.nanoTime() - start;
+            System.out.printf("пакеты по %d: %d фильмов за %d мс (%.0f фильмов/с)%n", batchSize, movies,
+                    batchNanos / 1_000_000, movies * 1e9 / batchNanos);
+
+            start = System.nanoTime();
+            for (int i = 0; i < SINGLE_POSTS; i++) {
+                post(http, singleUri, "application/json",
+                        ("{\"title\":\"" + randomTitle(random) + "\",\"year\":1999}").getBytes(StandardCharsets.UTF_8));
+            }
+            long singleNanos = System.nanoTime() - start;
+            System.out.printf("поштучно: %d фильмов за %d мс (%.0f фильмов/с)%n", SINGLE_POSTS,
+                    singleNanos / 1_000_000, SINGLE_POSTS * 1e9 / singleNanos);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static void post(HttpClient http, URI uri, String contentType, byte[] body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() / 100 != 2) {
+            throw new IllegalStateException("Ответ " + response.statusCode() + ": " + response.body());
+        }
+    }
+
+    private static byte[] ndjson(SplittableRandom random, int count) {
+        StringBuilder body = new StringBuilder(count * 64);
+        for (int i = 0; i < count; i++) {
+            body.append("{\"title\":\"").append(randomTitle(random))
+                    .append("\",\"year\":").append(1900 + random.nextInt(125)).append("}\n");
+        }
+        return body.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String randomTitle(SplittableRandom random) {
+        return "слово" + random.nextInt(50_000) + " фильм" + random.nextInt(3_000) + " ночь" + random.nextInt(100);
+    }
+}
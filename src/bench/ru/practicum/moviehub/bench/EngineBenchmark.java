@@ -0,0 +1,140 @@
+package ru.practicum.moviehub.bench;
+
+import ru.practicum.moviehub.model.Movie;
+import ru.practicum.moviehub.store.MovieRepositories;
+import ru.practicum.moviehub.store.MovieQuery;
+import ru.practicum.moviehub.store.MovieRepository;
+import ru.practicum.moviehub.store.MovieSort;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.random.RandomGenerator;
+
+/**
+ * Одни и те же нагрузки на каждое хранилище из MovieRepositories: загрузка пакетами, чтение по id,
+ * по году, поиск, запрос (десять лет, 20 первых по названию), полный список и смесь чтения с записью в несколько потоков.
+ * Запуск: java -Xmx4g -cp out:lib/* ru.practicum.moviehub.bench.EngineBenchmark [rows] [threads] [engine...]
+ */
+public class EngineBenchmark {
+    private static final int BATCH = 10_000;
+    private static final int FIRST_YEAR = 1900;
+    private static final int YEARS = 125;
+    private static final long MEASURE_NANOS = 2_000_000_000L;
+
+    private static volatile long blackhole;
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        List<String> engines = new ArrayList<>();
+        for (int i = 2; i < args.length; i++) {
+            engines.add(args[i]);
+        }
+        if (engines.isEmpty()) {
+            engines = MovieRepositories.engines();
+        }
+
+        System.out.printf("%16s %12s %12s %12s %12s %12s %12s %14s%n", "engine", "load, k/s", "byId, k/s",
+                "year, op/s", "search, k/s", "query, op/s", "getAll, ms", "mixed, k/s");
+        for (String engine : engines) {
+            run(engine, rows, threads);
+        }
+    }
+
+    private static void run(String engine, int rows, int threads) throws Exception {
+        MovieRepository store = MovieRepositories.create(engine);
+
+        SplittableRandom random = new SplittableRandom(42);
+        long start = System.nanoTime();
+        List<Movie> batch = new ArrayList<>(BATCH);
+        for (int i = 0; i < rows; i++) {
+            batch.add(randomMovie(random));
+            if (batch.size() == BATCH || i == rows - 1) {
+                store.addAll(batch);
+                batch = new ArrayList<>(BATCH);
+            }
+        }
+        double load = rows / ((System.nanoTime() - start) / 1e9) / 1_000;
+
+        // первый проход каждой нагрузки — прогрев, в таблицу идёт второй
+        double byId = 0;
+        double year = 0;
+        double search = 0;
+        double query = 0;
+        double getAll = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            byId = opsPerSecond(() -> {
+                Movie movie = store.findById(1 + ThreadLocalRandom.current().nextInt(rows));
+                return movie == null ? 0 : movie.getYear();
+            }) / 1_000;
+            year = opsPerSecond(() -> store.findByYear(FIRST_YEAR + ThreadLocalRandom.current().nextInt(YEARS)).size());
+            search = opsPerSecond(() -> store.search("слово" + ThreadLocalRandom.current().nextInt(50_000), 20).size())
+                    / 1_000;
+            query = opsPerSecond(() -> {
+                int from = FIRST_YEAR + ThreadLocalRandom.current().nextInt(YEARS - 10);
+                return store.query(new MovieQuery(from, from + 9, null, MovieSort.TITLE, false, 20, 0)).size();
+            });
+            getAll = 1_000 / opsPerSecond(() -> store.getAll().size());
+        }
+        double mixed = mixed(store, rows, threads) / 1_000;
+
+        System.out.printf("%16s %12.0f %12.0f %12.0f %12.0f %12.0f %12.1f %14.0f%n", engine, load, byId, year,
+                search, query, getAll, mixed);
+    }
+
+    // 9 чтений по id на одну запись (add или delete поровну), во всех потоках сразу.
+    private static double mixed(MovieRepository store, int rows, int threads) throws InterruptedException {
+        LongAdder operations = new LongAdder();
+        CountDownLatch done = new CountDownLatch(threads);
+        long deadline = System.nanoTime() + MEASURE_NANOS;
+        for (int t = 0; t < threads; t++) {
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long local = 0;
+                while (System.nanoTime() < deadline) {
+                    int roll = random.nextInt(20);
+                    if (roll == 0) {
+                        store.add(randomMovie(random));
+                    } else if (roll == 1) {
+                        store.delete(1 + random.nextInt(rows));
+                    } else {
+                        Movie movie = store.findById(1 + random.nextInt(rows));
+                        blackhole += movie == null ? 0 : movie.getYear();
+                    }
+                    local++;
+                }
+                operations.add(local);
+                done.countDown();
+            });
+            thread.start();
+        }
+        done.await();
+        return operations.sum() / (MEASURE_NANOS / 1e9);
+    }
+
+    private static double opsPerSecond(Workload workload) {
+        long start = System.nanoTime();
+        long deadline = start + MEASURE_NANOS / 4;
+        long count = 0;
+        long now;
+        do {
+            blackhole += workload.run();
+            count++;
+            now = System.nanoTime();
+        } while (now < deadline);
+        return count / ((now - start) / 1e9);
+    }
+
+    private static Movie randomMovie(RandomGenerator random) {
+        return new Movie(0, "слово" + random.nextInt(50_000) + " фильм" + random.nextInt(3_000),
+                FIRST_YEAR + random.nextInt(YEARS));
+    }
+
+    private interface Workload {
+        long run();
+    }
+}
@@ -0,0 +1,176 @@
+package ru.practicum.moviehub.bench;
+
+import ru.practicum.moviehub.http.MovieResponseCache;
+import ru.practicum.moviehub.http.MoviesServer;
+import ru.practicum.moviehub.http.ServerConfig;
+import ru.practicum.moviehub.model.Movie;
+import ru.practicum.moviehub.store.MoviesStore;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * GET /movies/{id} с id по закону Ципфа (ранг k запрашивается с вероятностью ~ 1/k^s) при разном размере
+ * кэша фильмов. Ранги разбросаны по каталогу случайной перестановкой, чтобы горячие id не шли подряд.
+ * Параметр scanPercent — доля запросов, которые вместо Ципфа идут обходом каталога по порядку id:
+ * по ним видно, вытесняет ли обход горячие фильмы. movieCacheEntries=0 — без кэша, для сравнения.
+ * Запуск: java -cp out:lib/* ru.practicum.moviehub.bench.MovieCacheBenchmark [movies=100000]
+ *         [movieCacheEntries=0,1000,10000] [scanPercent=0,20] [zipf=0.99] [clients=16] [seconds=5] [transport=jdk]
+ */
+public class MovieCacheBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int movies = Integer.parseInt(arg(args, "movies", "100000"));
+        String[] cacheSizes = arg(args, "movieCacheEntries", "0,1000,10000").split(",");
+        String[] scanPercents = arg(args, "scanPercent", "0,20").split(",");
+        double exponent = Double.parseDouble(arg(args, "zipf", "0.99"));
+        int clients = Integer.parseInt(arg(args, "clients", "16"));
+        int seconds = Integer.parseInt(arg(args, "seconds", "5"));
+        ServerConfig.Transport transport = ServerConfig.Transport.parse(arg(args, "transport", "jdk"));
+
+        MoviesStore store = new MoviesStore();
+        List<Movie> batch = new ArrayList<>(movies);
+        for (int i = 0; i < movies; i++) {
+            batch.add(new Movie(0, "Фильм " + i, 1900 + i % 125));
+        }
+        store.addAll(batch);
+        double[] cdf = zipfCdf(movies, exponent);
+        long[] idByRank = shuffledIds(movies);
+
+        System.out.printf("фильмов: %d, zipf s=%.2f, клиентов: %d, транспорт: %s%n", movies, exponent, clients,
+                transport);
+        System.out.printf("%8s %6s %12s %10s %12s %12s%n", "cache", "scan%", "req/s", "hitRatio", "evictions",
+                "rejections");
+        for (String scanPercent : scanPercents) {
+            for (String cacheSize : cacheSizes) {
+                MoviesServer server = new MoviesServer(store, config(transport, Integer.parseInt(cacheSize)));
+                server.start();
+                try {
+                    double rate = run(server.getPort(), cdf, idByRank, Integer.parseInt(scanPercent), clients,
+                            seconds);
+                    MovieResponseCache cache = server.getMovieCache();
+                    System.out.printf("%8s %6s %12.0f %10s %12s %12s%n", cacheSize, scanPercent, rate,
+                            cache == null ? "-" : String.format("%.3f", cache.hitRatio()),
+                            cache == null ? "-" : cache.getEvictions(),
+                            cache == null ? "-" : cache.getRejections());
+                } finally {
+                    server.stop();
+                }
+            }
+        }
+    }
+
+    // Кэш готовых ответов по URI выключен, чтобы все попадания приходились на кэш фильмов.
+    private static ServerConfig config(ServerConfig.Transport transport, int movieCacheEntries) {
+        return ServerConfig.builder()
+                .port(0)
+                .backlog(1024)
+                .executorMode(ServerConfig.ExecutorMode.POOL)
+                .cacheEntries(0)
+                .movieCacheEntries(movieCacheEntries)
+                .readinessDelay(Duration.ZERO)
+                .transport(transport)
+                .build();
+    }
+
+    // Запросов в секунду без первой секунды прогрева; ответ не 200 считается ошибкой и прерывает замер.
+    private static double run(int port, double[] cdf, long[] idByRank, int scanPercent, int clients, int seconds)
+            throws Exception {
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong scanCursor = new AtomicLong();
+        LongAdder completed = new LongAdder();
+        LongAdder errors = new LongAdder();
+        long warmupEnd = System.nanoTime() + Duration.ofSeconds(1).toNanos();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            threads.add(Thread.ofVirtual().start(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (running.get()) {
+                    long id = random.nextInt(100) < scanPercent
+                            ? 1 + scanCursor.getAndIncrement() % idByRank.length
+                            : idByRank[rank(cdf, random.nextDouble())];
+                    HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/movies/" + id))
+                            .timeout(Duration.ofSeconds(10))
+                            .GET()
+                            .build();
+                    try {
+                        HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                        if (System.nanoTime() > warmupEnd) {
+                            (response.statusCode() == 200 ? completed : errors).increment();
+                        }
+                    } catch (Exception e) {
+                        errors.increment();
+                    }
+                }
+            }));
+        }
+
+        Thread.sleep(Duration.ofSeconds(1 + seconds).toMillis());
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join(Duration.ofSeconds(15).toMillis());
+        }
+        if (errors.sum() > 0) {
+            System.out.printf("ошибок: %d%n", errors.sum());
+        }
+        return completed.sum() / (double) seconds;
+    }
+
+    // cdf[k] — вероятность того, что ранг запроса не больше k.
+    private static double[] zipfCdf(int n, double exponent) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1 / Math.pow(k + 1, exponent);
+            cdf[k] = sum;
+        }
+        for (int k = 0; k < n; k++) {
+            cdf[k] /= sum;
+        }
+        return cdf;
+    }
+
+    private static int rank(double[] cdf, double uniform) {
+        int index = Arrays.binarySearch(cdf, uniform);
+        return Math.min(cdf.length - 1, index >= 0 ? index : -index - 1);
+    }
+
+    private static long[] shuffledIds(int n) {
+        long[] ids = new long[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = i + 1;
+        }
+        SplittableRandom random = new SplittableRandom(25);
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long swap = ids[i];
+            ids[i] = ids[j];
+            ids[j] = swap;
+        }
+        return ids;
+    }
+
+    private static String arg(String[] args, String name, String defaultValue) {
+        for (String arg : args) {
+            if (arg.startsWith(name + "=")) {
+                return arg.substring(name.length() + 1);
+            }
+        }
+        return defaultValue;
+    }
+}
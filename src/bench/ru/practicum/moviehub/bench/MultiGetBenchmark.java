@@ -0,0 +1,92 @@
+package ru.practicum.moviehub.bench;
+
+import ru.practicum.moviehub.http.MoviesServer;
+import ru.practicum.moviehub.http.ServerConfig;
+import ru.practicum.moviehub.model.Movie;
+import ru.practicum.moviehub.store.MoviesStore;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * «Список просмотра» из N фильмов через loopback: один GET /movies?ids=... против N запросов GET /movies/{id}.
+ * Запуск: java -cp out:lib/* ru.practicum.moviehub.bench.MultiGetBenchmark [movies] [idsPerPage] [pages]
+ */
+public class MultiGetBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int movies = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int perPage = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int pages = args.length > 2 ? Integer.parseInt(args[2]) : 2_000;
+
+        MoviesStore store = new MoviesStore();
+        List<Movie> batch = new ArrayList<>(movies);
+        for (int i = 0; i < movies; i++) {
+            batch.add(new Movie(0, "Фильм " + i, 1900 + i % 125));
+        }
+        store.addAll(batch);
+        // без кэшей ответов: иначе поштучные GET измеряли бы попадания в кэш, а не выборку
+        ServerConfig config = ServerConfig.builder()
+                .port(0)
+                .executorMode(ServerConfig.ExecutorMode.POOL)
+                .poolSize(16)
+                .cacheEntries(0)
+                .movieCacheEntries(0)
+                .build();
+        MoviesServer server = new MoviesServer(store, config);
+        server.start();
+        HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        String base = "http://localhost:" + server.getPort();
+        try {
+            SplittableRandom random = new SplittableRandom(11);
+            long[][] watchlists = new long[pages][perPage];
+            for (long[] ids : watchlists) {
+                for (int i = 0; i < perPage; i++) {
+                    ids[i] = 1 + random.nextInt(movies);
+                }
+            }
+
+            for (int round = 0; round < 2; round++) {
+                // первый круг — прогрев
+                long start = System.nanoTime();
+                for (long[] ids : watchlists) {
+                    StringBuilder query = new StringBuilder(base).append("/movies?ids=");
+                    for (int i = 0; i < ids.length; i++) {
+                        query.append(i > 0 ? "," : "").append(ids[i]);
+                    }
+                    get(http, query.toString());
+                }
+                long multiNanos = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                for (long[] ids : watchlists) {
+                    for (long id : ids) {
+                        get(http, base + "/movies/" + id);
+                    }
+                }
+                long singleNanos = System.nanoTime() - start;
+                if (round == 1) {
+                    System.out.printf("GET /movies?ids= (%d id): %.3f мс на страницу%n", perPage,
+                            multiNanos / 1e6 / pages);
+                    System.out.printf("%d x GET /movies/{id}: %.3f мс на страницу (в %.1f раза дольше)%n", perPage,
+                            singleNanos / 1e6 / pages, (double) singleNanos / multiNanos);
+                }
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static void get(HttpClient http, String uri) throws Exception {
+        HttpResponse<byte[]> response = http.send(HttpRequest.newBuilder(URI.create(uri)).GET().build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Ответ " + response.statusCode() + " на " + uri);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package ru.practicum.moviehub.bench;
+
+import ru.practicum.moviehub.model.Movie;
+import ru.practicum.moviehub.persistence.MoviesPersistence;
+import ru.practicum.moviehub.persistence.PersistenceConfig;
+import ru.practicum.moviehub.store.MoviesStore;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Снимок, групповая фиксация журнала под параллельными POST и время восстановления.
+ * Запуск: java -Xmx12g -cp out:lib/* ru.practicum.moviehub.bench.PersistenceBenchmark [rows] [writers] [flushMs]
+ */
+public class PersistenceBenchmark {
+    private static final int TAIL_WRITES = 200_000;
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        int writers = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        long flushMs = args.length > 2 ? Long.parseLong(args[2]) : 2;
+
+        Path dir = Files.createTempDirectory("moviehub-bench");
+        PersistenceConfig config = new PersistenceConfig(dir, Duration.ofMillis(flushMs), Duration.ZERO);
+        try {
+            MoviesStore store = new MoviesStore();
+            SplittableRandom random = new SplittableRandom(7);
+            for (int i = 0; i < rows; i++) {
+                store.add(new Movie(0, randomTitle(random), 1900 + random.nextInt(125)));
+            }
+
+            MoviesPersistence persistence = MoviesPersistence.open(store, config);
+            long start = System.nanoTime();
+            persistence.snapshot();
+            System.out.printf("снимок %d фильмов: %d мс, %d МБ%n", rows, millisSince(start),
+                    Files.size(dir.resolve("snapshot.bin")) >> 20);
+
+            start = System.nanoTime();
+            writeConcurrently(store, writers);
+            long tailMs = Math.max(1, millisSince(start));
+            System.out.printf("журнал: %d фиксированных POST из %d потоков за %d мс (%d оп/с, сброс раз в %d мс)%n",
+                    TAIL_WRITES, writers, tailMs, TAIL_WRITES * 1000L / tailMs, flushMs);
+            persistence.flush();
+
+            // восстановление: снимок через mmap + хвост журнала
+            start = System.nanoTime();
+            MoviesStore restored = new MoviesStore();
+            MoviesPersistence reopened = MoviesPersistence.open(restored, config);
+            System.out.printf("восстановление %d фильмов: %d мс%n", restored.getAll().size(), millisSince(start));
+            reopened.close();
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    private static void writeConcurrently(MoviesStore store, int writers) throws InterruptedException {
+        AtomicLong remaining = new AtomicLong(TAIL_WRITES);
+        CountDownLatch done = new CountDownLatch(writers);
+        for (int t = 0; t < writers; t++) {
+            Thread thread = new Thread(() -> {
+                while (remaining.getAndDecrement() > 0) {
+                    store.add(new Movie(0, "Новинка", 2024));
+                }
+                done.countDown();
+            });
+            thread.start();
+        }
+        done.await();
+    }
+
+    // словарь в несколько десятков тысяч слов, как у реального каталога
+    private static String randomTitle(SplittableRandom random) {
+        return "слово" + random.nextInt(50_000) + " фильм" + random.nextInt(3_000) + " ночь" + random.nextInt(100);
+    }
+
+    private static long millisSince(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
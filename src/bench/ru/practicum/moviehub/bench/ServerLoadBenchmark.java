@@ -0,0 +1,254 @@
+package ru.practicum.moviehub.bench;
+
+import ru.practicum.moviehub.http.MoviesServer;
+import ru.practicum.moviehub.http.ServerConfig;
+import ru.practicum.moviehub.model.Movie;
+import ru.practicum.moviehub.store.MoviesStore;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Пропускная способность MoviesServer в режимах inline/virtual/pool при разном числе клиентов,
+ * на транспорте jdk (com.sun.net.httpserver) и nio (NioHttpServer).
+ * Масштабирование по ядрам — запуском с -XX:ActiveProcessorCount=N (пул по умолчанию max(16, 4N) потоков).
+ * Параметр slowClients держит соединения, которые шлют заголовки по байту в 100 мс, как медленные клиенты.
+ * С pipeline=N клиенты — простые сокеты, которые шлют по N запросов подряд, не дожидаясь ответов, и затем
+ * читают N ответов; 0 — HttpClient, запрос за запросом по соединениям из его пула.
+ * Запуск: java -XX:ActiveProcessorCount=4 -cp out:lib/* ru.practicum.moviehub.bench.ServerLoadBenchmark
+ *         [transports=jdk,nio] [modes=inline,virtual,pool] [clients=1,16,64,256] [seconds=5] [slowClients=0]
+ *         [cacheEntries=1024] [movieCacheEntries=10000] [pipeline=0]
+ */
+public class ServerLoadBenchmark {
+    private static final int MOVIES = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        String[] transports = arg(args, "transports", "jdk,nio").split(",");
+        String[] modes = arg(args, "modes", "inline,virtual,pool").split(",");
+        String[] clientCounts = arg(args, "clients", "1,16,64,256").split(",");
+        int seconds = Integer.parseInt(arg(args, "seconds", "5"));
+        int slowClients = Integer.parseInt(arg(args, "slowClients", "0"));
+        int cacheEntries = Integer.parseInt(arg(args, "cacheEntries", String.valueOf(ServerConfig.DEFAULT_CACHE_ENTRIES)));
+        int pipeline = Integer.parseInt(arg(args, "pipeline", "0"));
+        int movieCacheEntries = Integer.parseInt(arg(args, "movieCacheEntries",
+                String.valueOf(ServerConfig.DEFAULT_MOVIE_CACHE_ENTRIES)));
+
+        MoviesStore store = new MoviesStore();
+        for (int i = 0; i < MOVIES; i++) {
+            store.add(new Movie(0, "Фильм " + i, 1900 + i % 125));
+        }
+
+        System.out.printf("ядер: %d, медленных клиентов: %d, pipeline: %d%n",
+                Runtime.getRuntime().availableProcessors(), slowClients, pipeline);
+        System.out.printf("%-6s %-8s %8s %12s %12s%n", "http", "mode", "clients", "req/s", "errors");
+        for (String transport : transports) {
+            for (String mode : modes) {
+                MoviesServer server = new MoviesServer(store, config(ServerConfig.Transport.parse(transport),
+                        ServerConfig.ExecutorMode.parse(mode), cacheEntries, movieCacheEntries));
+                server.start();
+                try {
+                    for (String clients : clientCounts) {
+                        run(server.getPort(), transport + " " + mode, Integer.parseInt(clients), seconds,
+                                slowClients, pipeline);
+                    }
+                } finally {
+                    if (server.getResponseCache() != null) {
+                        System.out.println(server.getResponseCache());
+                    }
+                    if (server.getMovieCache() != null) {
+                        System.out.println(server.getMovieCache());
+                    }
+                    server.stop();
+                }
+            }
+        }
+    }
+
+    private static ServerConfig config(ServerConfig.Transport transport, ServerConfig.ExecutorMode mode,
+                                       int cacheEntries, int movieCacheEntries) {
+        return ServerConfig.builder()
+                .port(0)
+                .backlog(1024)
+                .executorMode(mode)
+                .cacheEntries(cacheEntries)
+                .movieCacheEntries(movieCacheEntries)
+                .readinessDelay(Duration.ZERO)
+                .transport(transport)
+                .build();
+    }
+
+    private static void run(int port, String label, int clients, int seconds, int slowClients, int pipeline)
+            throws Exception {
+        HttpClient http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder completed = new LongAdder();
+        LongAdder errors = new LongAdder();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < slowClients; i++) {
+            threads.add(Thread.ofVirtual().start(() -> dribble(port, running)));
+        }
+        // первая секунда — прогрев, в результат не идёт
+        long warmupEnd = System.nanoTime() + Duration.ofSeconds(1).toNanos();
+        for (int i = 0; i < clients; i++) {
+            if (pipeline > 0) {
+                threads.add(Thread.ofVirtual().start(
+                        () -> pipelined(port, pipeline, running, warmupEnd, completed, errors)));
+                continue;
+            }
+            threads.add(Thread.ofVirtual().start(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (running.get()) {
+                    String path = randomPath(random);
+                    HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                            .timeout(Duration.ofSeconds(10))
+                            .GET()
+                            .build();
+                    try {
+                        HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                        if (System.nanoTime() > warmupEnd) {
+                            (response.statusCode() == 200 ? completed : errors).increment();
+                        }
+                    } catch (Exception e) {
+                        errors.increment();
+                    }
+                }
+            }));
+        }
+
+        Thread.sleep(Duration.ofSeconds(1 + seconds).toMillis());
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join(Duration.ofSeconds(15).toMillis());
+        }
+        System.out.printf("%-15s %8d %12.0f %12d%n", label, clients, completed.sum() / (double) seconds,
+                errors.sum());
+    }
+
+    // Каждый четвёртый запрос — выборка по году, остальные — фильм по id.
+    private static String randomPath(ThreadLocalRandom random) {
+        return random.nextInt(4) == 0
+                ? "/movies?year=" + (1900 + random.nextInt(125))
+                : "/movies/" + (1 + random.nextInt(MOVIES));
+    }
+
+    // Одно соединение: пачка из depth запросов одной записью, затем depth ответов по порядку.
+    private static void pipelined(int port, int depth, AtomicBoolean running, long warmupEnd,
+                                  LongAdder completed, LongAdder errors) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (running.get()) {
+            try (Socket socket = new Socket("localhost", port)) {
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(10_000);
+                OutputStream out = socket.getOutputStream();
+                InputStream in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+                StringBuilder requests = new StringBuilder();
+                while (running.get()) {
+                    requests.setLength(0);
+                    for (int i = 0; i < depth; i++) {
+                        requests.append("GET ").append(randomPath(random)).append(" HTTP/1.1\r\nHost: localhost\r\n\r\n");
+                    }
+                    out.write(requests.toString().getBytes(StandardCharsets.US_ASCII));
+                    out.flush();
+                    for (int i = 0; i < depth; i++) {
+                        int status = readResponse(in);
+                        if (System.nanoTime() > warmupEnd) {
+                            (status == 200 ? completed : errors).increment();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                errors.increment();
+            }
+        }
+    }
+
+    // Читает один ответ целиком (Content-Length или chunked) и возвращает его код.
+    private static int readResponse(InputStream in) throws IOException {
+        String statusLine = readLine(in);
+        int status = Integer.parseInt(statusLine.substring(9, 12));
+        long length = 0;
+        boolean chunked = false;
+        String line;
+        while (!(line = readLine(in)).isEmpty()) {
+            int colon = line.indexOf(':');
+            String name = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+            if (name.equalsIgnoreCase("Content-Length")) {
+                length = Long.parseLong(value);
+            } else if (name.equalsIgnoreCase("Transfer-Encoding")) {
+                chunked = value.equalsIgnoreCase("chunked");
+            }
+        }
+        if (!chunked) {
+            in.skipNBytes(length);
+            return status;
+        }
+        while (true) {
+            String size = readLine(in);
+            int semicolon = size.indexOf(';');
+            long chunk = Long.parseLong(semicolon < 0 ? size.trim() : size.substring(0, semicolon).trim(), 16);
+            if (chunk == 0) {
+                while (!readLine(in).isEmpty()) {
+                    // заголовки после тела не нужны
+                }
+                return status;
+            }
+            in.skipNBytes(chunk + 2);
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                throw new IOException("Соединение закрыто посреди ответа");
+            }
+            if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+        return line.toString();
+    }
+
+    private static void dribble(int port, AtomicBoolean running) {
+        byte[] request = "GET /movies/1 HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+        try (Socket socket = new Socket("localhost", port)) {
+            OutputStream out = socket.getOutputStream();
+            for (int i = 0; i < request.length - 2 && running.get(); i++) {
+                out.write(request[i]);
+                out.flush();
+                Thread.sleep(100);
+            }
+        } catch (Exception ignored) {
+            // медленному клиенту неважно, чем закончится соединение
+        }
+    }
+
+    private static String arg(String[] args, String name, String defaultValue) {
+        for (String arg : args) {
+            if (arg.startsWith(name + "=")) {
+                return arg.substring(name.length() + 1);
+            }
+        }
+        return defaultValue;
+    }
+}
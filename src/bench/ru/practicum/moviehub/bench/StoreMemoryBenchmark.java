@@ -0,0 +1,79 @@
+package ru.practicum.moviehub.bench;
+
+import ru.practicum.moviehub.model.Movie;
+import ru.practicum.moviehub.store.MoviesStore;
+import ru.practicum.moviehub.store.StoreEngine;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Байт на фильм в каждом варианте хранилища, вместе с индексами по году и названию: занятая куча
+ * и direct-буферы после полной сборки мусора, до и после заполнения.
+ * Запуск: java -Xmx4g -cp out:lib/* ru.practicum.moviehub.bench.StoreMemoryBenchmark [rows] [engine...]
+ */
+public class StoreMemoryBenchmark {
+    private static final int BATCH = 10_000;
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        List<StoreEngine> engines = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            engines.add(StoreEngine.parse(args[i]));
+        }
+        if (engines.isEmpty()) {
+            engines.addAll(List.of(StoreEngine.values()));
+        }
+
+        System.out.printf("%16s %12s %12s %12s %10s%n", "engine", "rows", "heap, MB", "direct, MB", "B/movie");
+        for (StoreEngine engine : engines) {
+            run(engine, rows);
+        }
+    }
+
+    private static void run(StoreEngine engine, int rows) {
+        long heapBefore = usedHeap();
+        long directBefore = usedDirect();
+
+        MoviesStore store = new MoviesStore(engine);
+        SplittableRandom random = new SplittableRandom(7);
+        List<Movie> batch = new ArrayList<>(BATCH);
+        for (int i = 0; i < rows; i++) {
+            batch.add(new Movie(0, randomTitle(random), 1888 + random.nextInt(138)));
+            if (batch.size() == BATCH || i == rows - 1) {
+                store.addAll(batch);
+                batch = new ArrayList<>(BATCH);
+            }
+        }
+
+        long heap = usedHeap() - heapBefore;
+        long direct = usedDirect() - directBefore;
+        System.out.printf("%16s %12d %12d %12d %10.1f%n", engine.name().toLowerCase(), store.size(),
+                heap >> 20, direct >> 20, (heap + direct) / (double) store.size());
+    }
+
+    // те же названия, что в BatchImportBenchmark: кириллица и числа, около 40 байт в UTF-8
+    private static String randomTitle(SplittableRandom random) {
+        return "слово" + random.nextInt(50_000) + " фильм" + random.nextInt(3_000) + " ночь" + random.nextInt(100);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long usedDirect() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) {
+                return pool.getMemoryUsed();
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,75 @@
+package ru.practicum.moviehub.bench;
+
+import ru.practicum.moviehub.model.Movie;
+import ru.practicum.moviehub.store.MoviesStore;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Задержка полнотекстового поиска по названиям (p50/p99) на синтетическом каталоге.
+ * Запуск: java -Xmx12g -cp out:lib/* ru.practicum.moviehub.bench.TitleSearchBenchmark [rows]
+ */
+public class TitleSearchBenchmark {
+    private static final String[] STEMS = {
+            "ночь", "город", "звезд", "любов", "война", "мир", "брат", "сестр", "дорог", "небо",
+            "море", "зима", "лето", "тайн", "тень", "свет", "сон", "время", "память", "остров",
+            "поезд", "улиц", "дом", "сад", "лес", "гор", "рек", "песн", "солнц", "ветер"
+    };
+    private static final String[] SUFFIXES = {"", "а", "ы", "ой", "ом", "ами", "ах", "ей", "ь", "ью"};
+    private static final int QUERIES = 20_000;
+    private static final int LIMIT = 20;
+
+    private static volatile int blackhole;
+
+    public static void main(String[] args) {
+        int rows = args.length == 0 ? 5_000_000 : Integer.parseInt(args[0]);
+        SplittableRandom random = new SplittableRandom(42);
+        MoviesStore store = new MoviesStore();
+
+        long loadStart = System.nanoTime();
+        for (int i = 0; i < rows; i++) {
+            store.add(new Movie(0, randomTitle(random, i), 1900 + random.nextInt(125)));
+        }
+        System.out.printf("загружено %d названий за %d мс%n", rows, (System.nanoTime() - loadStart) / 1_000_000);
+
+        for (int i = 0; i < QUERIES; i++) {
+            blackhole += store.search(randomQuery(random), LIMIT).size();
+        }
+
+        long[] latencies = new long[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            String query = randomQuery(random);
+            long start = System.nanoTime();
+            blackhole += store.search(query, LIMIT).size();
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+
+        System.out.printf("p50 = %.1f us, p99 = %.1f us, max = %.1f us%n",
+                latencies[QUERIES / 2] / 1_000.0,
+                latencies[QUERIES * 99 / 100] / 1_000.0,
+                latencies[QUERIES - 1] / 1_000.0);
+    }
+
+    // Третье слово уникально для фильма, поэтому в словаре есть и частые, и редкие термы.
+    private static String randomTitle(SplittableRandom random, int i) {
+        return word(random) + " " + word(random) + " " + Integer.toString(i, 36);
+    }
+
+    private static String randomQuery(SplittableRandom random) {
+        String word = word(random);
+        switch (random.nextInt(3)) {
+            case 0:
+                return word;
+            case 1:
+                return word.substring(0, Math.min(3, word.length())).toUpperCase();
+            default:
+                return word + " " + word(random);
+        }
+    }
+
+    private static String word(SplittableRandom random) {
+        return STEMS[random.nextInt(STEMS.length)] + SUFFIXES[random.nextInt(SUFFIXES.length)];
+    }
+}
@@ -0,0 +1,86 @@
+package ru.practicum.moviehub.bench;
+
+import ru.practicum.moviehub.model.Movie;
+import ru.practicum.moviehub.store.MoviesStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Сравнение полного прохода по карте (как было в findByYear) с индексом по году.
+ * Запуск: java -Xmx8g -cp out:lib/* ru.practicum.moviehub.bench.YearIndexBenchmark [rows...]
+ */
+public class YearIndexBenchmark {
+    private static final int MIN_YEAR = 1888;
+    private static final int MAX_YEAR = 2025;
+    private static final int WARMUP_QUERIES = 200;
+    private static final int MEASURED_QUERIES = 500;
+
+    private static volatile int blackhole;
+
+    public static void main(String[] args) {
+        int[] sizes = args.length == 0 ? new int[]{10_000, 1_000_000, 5_000_000} : parseSizes(args);
+
+        System.out.printf("%10s %14s %14s %14s %10s%n", "rows", "scan, us/op", "year, us/op", "range, us/op", "speedup");
+        for (int rows : sizes) {
+            run(rows);
+        }
+    }
+
+    private static void run(int rows) {
+        MoviesStore store = new MoviesStore();
+        Map<Long, Movie> scanMap = new ConcurrentHashMap<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        for (int i = 0; i < rows; i++) {
+            Movie movie = store.add(new Movie(0, "Фильм " + i, random.nextInt(MIN_YEAR, MAX_YEAR + 1)));
+            scanMap.put(movie.getId(), movie);
+        }
+
+        double scan = measure(rows, year -> scan(scanMap, year).size());
+        double indexed = measure(rows, year -> store.findByYear(year).size());
+        double range = measure(rows, year -> store.findByYearRange(year, year + 4).size());
+
+        System.out.printf("%10d %14.1f %14.1f %14.1f %9.0fx%n", rows, scan, indexed, range, scan / indexed);
+    }
+
+    private static double measure(int rows, Query query) {
+        int iterations = rows >= 1_000_000 ? MEASURED_QUERIES / 10 : MEASURED_QUERIES;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        for (int i = 0; i < WARMUP_QUERIES; i++) {
+            blackhole += query.run(random.nextInt(MIN_YEAR, MAX_YEAR + 1));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            blackhole += query.run(random.nextInt(MIN_YEAR, MAX_YEAR + 1));
+        }
+        return (System.nanoTime() - start) / 1_000.0 / iterations;
+    }
+
+    private static List<Movie> scan(Map<Long, Movie> movies, int year) {
+        List<Movie> result = new ArrayList<>();
+        for (Movie movie : movies.values()) {
+            if (movie.getYear() == year) {
+                result.add(movie);
+            }
+        }
+        return result;
+    }
+
+    private static int[] parseSizes(String[] args) {
+        int[] sizes = new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            sizes[i] = Integer.parseInt(args[i]);
+        }
+        return sizes;
+    }
+
+    private interface Query {
+        int run(int year);
+    }
+}
@@ -0,0 +1,56 @@
+package ru.practicum.moviehub;
+
+import java.time.Duration;
+import java.util.Properties;
+
+// Настройки приложения из системных свойств (-Dmoviehub.*), у каждой есть значение по умолчанию.
+public class AppConfig {
+    private final Properties properties;
+
+    public AppConfig(Properties properties) {
+        this.properties = properties;
+    }
+
+    public static AppConfig fromSystemProperties() {
+        return new AppConfig(System.getProperties());
+    }
+
+    public String getString(String name, String defaultValue) {
+        String value = properties.getProperty(name);
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    public int getInt(String name, int defaultValue) {
+        String value = getString(name, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Некорректное значение настройки " + name + ": " + value, e);
+        }
+    }
+
+    public long getLong(String name, long defaultValue) {
+        String value = getString(name, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Некорректное значение настройки " + name + ": " + value, e);
+        }
+    }
+
+    public boolean getBoolean(String name, boolean defaultValue) {
+        String value = getString(name, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    public Duration getMillis(String name, Duration defaultValue) {
+        String value = getString(name, null);
+        return value == null ? defaultValue : Duration.ofMillis(getLong(name, 0));
+    }
+}
@@ -2,6 +2,10 @@ package ru.practicum.moviehub;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
 
 public class JsonUtil {
     private static final Gson GSON = new GsonBuilder()
@@ -10,4 +14,18 @@ public class JsonUtil {
     public static String toJson(Object obj) {
         return GSON.toJson(obj);
     }
+
+    public static <T> T fromJson(String json, Class<T> type) {
+        return GSON.fromJson(json, type);
+    }
+
+    public static <T> void writeArray(Iterable<T> items, Class<T> type, Writer out) throws IOException {
+        JsonWriter writer = GSON.newJsonWriter(out);
+        writer.beginArray();
+        for (T item : items) {
+            GSON.toJson(item, type, writer);
+        }
+        writer.endArray();
+        writer.flush();
+    }
 }
\ No newline at end of file
@@ -1,12 +1,42 @@
 package ru.practicum.moviehub;
 
 import ru.practicum.moviehub.http.MoviesServer;
-import ru.practicum.moviehub.store.MoviesStore;
+import ru.practicum.moviehub.http.ServerConfig;
+import ru.practicum.moviehub.persistence.MoviesPersistence;
+import ru.practicum.moviehub.persistence.PersistenceConfig;
+import ru.practicum.moviehub.store.MovieRepositories;
+import ru.practicum.moviehub.store.MovieRepository;
+
+import java.io.IOException;
 
 public class MovieHubApp {
-    public static void main(String[] args) {
-        final MoviesServer server = new MoviesServer(new MoviesStore(), 8080);
-        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+    public static void main(String[] args) throws IOException {
+        final AppConfig config = AppConfig.fromSystemProperties();
+        // heap, compact или compact-offheap, см. MovieRepositories: компактные хранят фильмы столбцами, вдвое плотнее
+        final MovieRepository store = MovieRepositories.create(
+                config.getString("moviehub.store.engine", MovieRepositories.DEFAULT_ENGINE));
+
+        final ServerConfig serverConfig = ServerConfig.fromAppConfig(config);
+        // ведомый узел (moviehub.replication.leader) при каждом старте загружает снимок с ведущего,
+        // а свой журнал без add из ленты ведущего только разошёлся бы с ним
+        final PersistenceConfig persistenceConfig =
+                serverConfig.getLeader() == null ? PersistenceConfig.fromAppConfig(config) : null;
+        final MoviesPersistence persistence =
+                persistenceConfig == null ? null : MoviesPersistence.open(store, persistenceConfig);
+
+        final MoviesServer server = new MoviesServer(store, serverConfig);
+        // сначала дождаться выполняющихся запросов, и только потом снимок и закрытие журнала:
+        // иначе POST, завершившийся во время остановки, не попадёт на диск
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            if (persistence != null) {
+                try {
+                    persistence.close();
+                } catch (IOException e) {
+                    System.err.println("Не удалось сохранить каталог: " + e.getMessage());
+                }
+            }
+        }));
         server.start();
     }
-}
\ No newline at end of file
+}
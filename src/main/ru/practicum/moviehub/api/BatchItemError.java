@@ -0,0 +1,34 @@
+package ru.practicum.moviehub.api;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchItemError {
+
+    private int index;
+    private List<String> details = new ArrayList<>();
+
+    public BatchItemError() {
+    }
+
+    public BatchItemError(int index, List<String> details) {
+        this.index = index;
+        this.details = details;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public List<String> getDetails() {
+        return details;
+    }
+
+    public void setDetails(List<String> details) {
+        this.details = details;
+    }
+}
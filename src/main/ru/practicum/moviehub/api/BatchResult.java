@@ -0,0 +1,38 @@
+package ru.practicum.moviehub.api;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchResult {
+
+    private int created;
+    private int failed;
+    private List<BatchItemError> errors = new ArrayList<>();
+
+    public BatchResult() {
+    }
+
+    public int getCreated() {
+        return created;
+    }
+
+    public void setCreated(int created) {
+        this.created = created;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public List<BatchItemError> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<BatchItemError> errors) {
+        this.errors = errors;
+    }
+}
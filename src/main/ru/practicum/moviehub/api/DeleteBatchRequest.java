@@ -0,0 +1,19 @@
+package ru.practicum.moviehub.api;
+
+import java.util.List;
+
+public class DeleteBatchRequest {
+
+    private List<Long> ids;
+
+    public DeleteBatchRequest() {
+    }
+
+    public List<Long> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<Long> ids) {
+        this.ids = ids;
+    }
+}
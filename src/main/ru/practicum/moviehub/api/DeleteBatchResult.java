@@ -0,0 +1,29 @@
+package ru.practicum.moviehub.api;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class DeleteBatchResult {
+
+    private List<Long> deleted = new ArrayList<>();
+    private List<Long> missing = new ArrayList<>();
+
+    public DeleteBatchResult() {
+    }
+
+    public List<Long> getDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(List<Long> deleted) {
+        this.deleted = deleted;
+    }
+
+    public List<Long> getMissing() {
+        return missing;
+    }
+
+    public void setMissing(List<Long> missing) {
+        this.missing = missing;
+    }
+}
@@ -0,0 +1,108 @@
+package ru.practicum.moviehub.http;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+import ru.practicum.moviehub.JsonUtil;
+import ru.practicum.moviehub.api.ErrorResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+// Допуск запросов к обработчикам: частота запросов каждого клиента (RateLimiter) и общее число одновременно
+// выполняемых дорогих запросов. Отказ — 429 с Retry-After, обработчик не вызывается. Клиент — значение
+// X-Api-Key, если это один из настроенных ключей, иначе адрес подключения: свой ключ на каждый запрос
+// не обходит ограничение и не забивает таблицу корзин. Фильтры ставятся на контексты в MoviesServer.
+final class AdmissionControl {
+    static final String API_KEY_HEADER = "X-Api-Key";
+
+    // null — частота не ограничена
+    private final RateLimiter limiter;
+    // null — число дорогих запросов не ограничено
+    private final Semaphore expensiveSlots;
+    private final Set<String> apiKeys;
+
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder overloaded = new LongAdder();
+
+    AdmissionControl(RateLimiter limiter, int maxExpensiveInFlight, Set<String> apiKeys) {
+        this.limiter = limiter;
+        this.expensiveSlots = maxExpensiveInFlight > 0 ? new Semaphore(maxExpensiveInFlight) : null;
+        this.apiKeys = apiKeys;
+    }
+
+    // expensive отбирает запросы контекста, для которых действует общий предел одновременных.
+    Filter filter(Predicate<HttpExchange> expensive) {
+        return new Filter() {
+            @Override
+            public void doFilter(HttpExchange ex, Chain chain) throws IOException {
+                if (limiter != null) {
+                    long waitNanos = limiter.tryAcquire(clientOf(ex), System.nanoTime());
+                    if (waitNanos > 0) {
+                        rateLimited.increment();
+                        reject(ex, waitNanos, "Слишком много запросов, повторите позже");
+                        return;
+                    }
+                }
+                if (expensiveSlots == null || !expensive.test(ex)) {
+                    chain.doFilter(ex);
+                    return;
+                }
+                if (!expensiveSlots.tryAcquire()) {
+                    overloaded.increment();
+                    reject(ex, TimeUnit.SECONDS.toNanos(1), "Сервер занят тяжёлыми запросами, повторите позже");
+                    return;
+                }
+                try {
+                    chain.doFilter(ex);
+                } finally {
+                    expensiveSlots.release();
+                }
+            }
+
+            @Override
+            public String description() {
+                return "Ограничение частоты запросов клиента и числа одновременных тяжёлых запросов";
+            }
+        };
+    }
+
+    long getRateLimited() {
+        return rateLimited.sum();
+    }
+
+    long getOverloaded() {
+        return overloaded.sum();
+    }
+
+    int clients() {
+        return limiter == null ? 0 : limiter.clients();
+    }
+
+    private String clientOf(HttpExchange ex) {
+        String apiKey = ex.getRequestHeaders().getFirst(API_KEY_HEADER);
+        if (apiKey != null && apiKeys.contains(apiKey)) {
+            return "key:" + apiKey;
+        }
+        InetSocketAddress remote = ex.getRemoteAddress();
+        return remote.getAddress() != null ? remote.getAddress().getHostAddress() : remote.getHostString();
+    }
+
+    // Retry-After — целые секунды с округлением вверх, не меньше одной.
+    private static void reject(HttpExchange ex, long waitNanos, String message) throws IOException {
+        byte[] body = JsonUtil.toJson(new ErrorResponse(message)).getBytes(StandardCharsets.UTF_8);
+        long seconds = Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L);
+        ex.getResponseHeaders().set("Retry-After", Long.toString(seconds));
+        ex.getResponseHeaders().set("Content-Type", BaseHttpHandler.CT_JSON);
+        ex.sendResponseHeaders(429, body.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(body);
+        }
+    }
+}
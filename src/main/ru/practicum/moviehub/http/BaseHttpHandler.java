@@ -1,26 +1,207 @@
 package ru.practicum.moviehub.http;
 
-import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpExchange;
+import ru.practicum.moviehub.api.ErrorResponse;
+import ru.practicum.moviehub.json.JsonBuffer;
+import ru.practicum.moviehub.json.JsonCodec;
+import ru.practicum.moviehub.json.MovieField;
+import ru.practicum.moviehub.model.Movie;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
-public abstract class BaseHttpHandler implements HttpHandler {
+// Общие ответы обработчиков. Метод и путь уже выбрал Router: обработчик получает только свои запросы.
+public abstract class BaseHttpHandler {
 
     protected static final String CT_JSON = "application/json; charset=UTF-8";
+    // ответы короче порога уходят без сжатия: заголовки gzip и chunked съели бы выигрыш
+    public static final int DEFAULT_COMPRESSION_MIN_BYTES = 1024;
+    public static final JsonCodec DEFAULT_JSON_CODEC = JsonCodec.FAST;
+
+    // < 0 — сжатие выключено
+    private int compressionMinBytes = DEFAULT_COMPRESSION_MIN_BYTES;
+    private JsonCodec codec = DEFAULT_JSON_CODEC;
+
+    void setCompressionMinBytes(int compressionMinBytes) {
+        this.compressionMinBytes = compressionMinBytes;
+    }
+
+    void setJsonCodec(JsonCodec codec) {
+        this.codec = codec;
+    }
+
+    protected JsonCodec codec() {
+        return codec;
+    }
+
+    protected void sendMovie(HttpExchange ex, int status, Movie movie) throws IOException {
+        JsonBuffer out = JsonBuffer.acquire();
+        codec.writeMovie(out, movie);
+        sendBuffer(ex, status, out);
+    }
+
+    protected void sendMovies(HttpExchange ex, int status, List<Movie> movies) throws IOException {
+        JsonBuffer out = JsonBuffer.acquire();
+        codec.writeMovies(out, movies);
+        sendBuffer(ex, status, out);
+    }
+
+    protected void sendMovies(HttpExchange ex, int status, List<Movie> movies, Set<MovieField> fields)
+            throws IOException {
+        JsonBuffer out = JsonBuffer.acquire();
+        codec.writeMovies(out, movies, fields);
+        sendBuffer(ex, status, out);
+    }
+
+    protected void sendError(HttpExchange ex, int status, ErrorResponse error) throws IOException {
+        JsonBuffer out = JsonBuffer.acquire();
+        codec.writeError(out, error);
+        sendBuffer(ex, status, out);
+    }
+
+    // Байты уходят прямо из буфера потока, без копии в отдельный массив.
+    protected void sendBuffer(HttpExchange ex, int status, JsonBuffer out) throws IOException {
+        String encoding = negotiateEncoding(ex, out.length());
+        if (encoding == null) {
+            sendBytes(ex, status, CT_JSON, out.array(), out.length(), null);
+        } else {
+            sendCompressed(ex, status, CT_JSON, out.array(), out.length(), encoding);
+        }
+    }
 
     protected void sendJson(HttpExchange ex, int status, String json) throws IOException {
-        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
-        ex.getResponseHeaders().set("Content-Type", CT_JSON);
-        ex.sendResponseHeaders(status, bytes.length);
+        sendText(ex, status, CT_JSON, json);
+    }
+
+    // Готовое тело в UTF-8, например сохранённый ответ; массив не изменяется.
+    protected void sendJson(HttpExchange ex, int status, byte[] json) throws IOException {
+        String encoding = negotiateEncoding(ex, json.length);
+        if (encoding == null) {
+            sendBytes(ex, status, CT_JSON, json, json.length, null);
+        } else {
+            sendCompressed(ex, status, CT_JSON, json, json.length, encoding);
+        }
+    }
+
+    protected void sendText(HttpExchange ex, int status, String contentType, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        String encoding = negotiateEncoding(ex, bytes.length);
+        if (encoding == null) {
+            sendBytes(ex, status, contentType, bytes, bytes.length, null);
+        } else {
+            sendCompressed(ex, status, contentType, bytes, bytes.length, encoding);
+        }
+    }
+
+    private void sendBytes(HttpExchange ex, int status, String contentType, byte[] bytes, int length,
+                           String encoding) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", contentType);
+        if (encoding != null) {
+            ex.getResponseHeaders().set("Content-Encoding", encoding);
+        }
+        ex.sendResponseHeaders(status, length);
 
         try (OutputStream os = ex.getResponseBody()) {
-            os.write(bytes);
+            os.write(bytes, 0, length);
+        }
+    }
+
+    // Сжимает на лету прямо в тело ответа (chunked), без второй полной копии в памяти.
+    private void sendCompressed(HttpExchange ex, int status, String contentType, byte[] bytes, int length,
+                                String encoding) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", contentType);
+        ex.getResponseHeaders().set("Content-Encoding", encoding);
+        ex.sendResponseHeaders(status, 0);
+
+        try (OutputStream os = Compression.wrap(ex.getResponseBody(), encoding)) {
+            os.write(bytes, 0, length);
         }
     }
 
+    // 200 с ETag из кэша, пока version не изменилась; иначе json пишется заново и кладётся в кэш.
+    // Совпадение с If-None-Match даёт 304 без тела. cache == null — кэш выключен, ETag всё равно ставится.
+    // Сжатые варианты тоже кэшируются, так что горячий ответ сжимается один раз.
+    protected void sendCachedJson(HttpExchange ex, ResponseCache cache, long version, Consumer<JsonBuffer> json)
+            throws IOException {
+        String key = ex.getRequestURI().getRawPath() + "?" + ex.getRequestURI().getRawQuery();
+        ResponseCache.Entry entry = cache == null ? null : cache.get(key, version);
+        if (entry == null) {
+            JsonBuffer out = JsonBuffer.acquire();
+            json.accept(out);
+            entry = new ResponseCache.Entry(version, out.toByteArray());
+            if (cache != null) {
+                cache.put(key, entry);
+            }
+        }
+        sendEntry(ex, entry, cache, key);
+    }
+
+    // 200 с ETag записи или 304, если он совпал с If-None-Match. Сжатый вариант берётся из cache под ключом key;
+    // cache == null — сжимается на каждый запрос.
+    protected void sendEntry(HttpExchange ex, ResponseCache.Entry entry, ResponseCache cache, String key)
+            throws IOException {
+        String encoding = negotiateEncoding(ex, entry.body.length);
+        String etag = entry.etag(encoding);
+        ex.getResponseHeaders().set("ETag", etag);
+        if (matchesEtag(ex.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+            ex.sendResponseHeaders(304, -1);
+            ex.close();
+            return;
+        }
+
+        if (encoding == null) {
+            sendBytes(ex, 200, CT_JSON, entry.body, entry.body.length, null);
+        } else if (cache != null) {
+            byte[] compressed = cache.compressed(key, entry, encoding);
+            sendBytes(ex, 200, CT_JSON, compressed, compressed.length, encoding);
+        } else {
+            sendCompressed(ex, 200, CT_JSON, entry.body, entry.body.length, encoding);
+        }
+    }
+
+    // Длина ответа заранее неизвестна (0 -> chunked), массив пишется в тело по мере обхода.
+    protected void sendMovieStream(HttpExchange ex, int status, Iterable<Movie> movies) throws IOException {
+        sendMovieStream(ex, status, movies, null);
+    }
+
+    // fields == null — фильм целиком.
+    protected void sendMovieStream(HttpExchange ex, int status, Iterable<Movie> movies, Set<MovieField> fields)
+            throws IOException {
+        String encoding = negotiateEncoding(ex, -1);
+        ex.getResponseHeaders().set("Content-Type", CT_JSON);
+        if (encoding != null) {
+            ex.getResponseHeaders().set("Content-Encoding", encoding);
+        }
+        ex.sendResponseHeaders(status, 0);
+
+        try (OutputStream body = encoding == null
+                ? ex.getResponseBody() : Compression.wrap(ex.getResponseBody(), encoding)) {
+            if (fields == null) {
+                codec.streamMovies(movies, body);
+            } else {
+                codec.streamMovies(movies, body, fields);
+            }
+        }
+    }
+
+    // length < 0 — длина неизвестна (потоковый ответ), такой ответ сжимается всегда.
+    private String negotiateEncoding(HttpExchange ex, int length) {
+        if (compressionMinBytes < 0) {
+            return null;
+        }
+        // ответ зависит от Accept-Encoding, промежуточные кэши должны это учитывать
+        ex.getResponseHeaders().set("Vary", "Accept-Encoding");
+        if (length >= 0 && length < compressionMinBytes) {
+            return null;
+        }
+        return Compression.negotiate(ex.getRequestHeaders().getFirst("Accept-Encoding"));
+    }
+
     protected void sendNoContent(HttpExchange ex) throws java.io.IOException {
         ex.getResponseHeaders().set("Content-Type", CT_JSON);
         ex.sendResponseHeaders(204, -1);
@@ -28,6 +209,47 @@ public abstract class BaseHttpHandler implements HttpHandler {
     }
 
     protected String readBody(HttpExchange ex) throws IOException {
-        return new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        return new String(readBodyBytes(ex), StandardCharsets.UTF_8);
+    }
+
+    protected byte[] readBodyBytes(HttpExchange ex) throws IOException {
+        return ex.getRequestBody().readAllBytes();
+    }
+
+    protected List<String> validateMovie(Movie movie) {
+        return validateMovie(movie, java.time.Year.now().getValue());
+    }
+
+    protected List<String> validateMovie(Movie movie, int currentYear) {
+        List<String> errors = new ArrayList<>();
+
+        if (movie.getTitle() == null || movie.getTitle().isBlank()) {
+            errors.add("название не должно быть пустым");
+        } else if (movie.getTitle().length() > 100) {
+            errors.add("название не должно превышать 100 символов");
+        }
+
+        if (movie.getYear() < 1888 || movie.getYear() > currentYear + 1) {
+            errors.add("год должен быть между 1888 и " + (currentYear + 1));
+        }
+
+        return errors;
+    }
+
+    // If-None-Match сравнивается слабо (RFC 9110): W/ перед тегом не мешает совпадению.
+    private static boolean matchesEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
     }
 }
\ No newline at end of file
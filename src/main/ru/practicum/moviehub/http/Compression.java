@@ -0,0 +1,114 @@
+package ru.practicum.moviehub.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Сжатие ответов по Accept-Encoding: gzip или deflate (zlib, как требует HTTP).
+final class Compression {
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private Compression() {
+    }
+
+    // Выбирает кодировку с наибольшим q; при равенстве gzip. null — клиент не принимает ни одну.
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+            return null;
+        }
+        // -1 — кодировка не упомянута, тогда действует q от "*"
+        double gzip = -1;
+        double deflate = -1;
+        double any = 0;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String coding = params[0].trim().toLowerCase(Locale.ROOT);
+            double q = quality(params);
+            switch (coding) {
+                case GZIP:
+                case "x-gzip":
+                    gzip = Math.max(gzip, q);
+                    break;
+                case DEFLATE:
+                    deflate = Math.max(deflate, q);
+                    break;
+                case "*":
+                    any = q;
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (gzip < 0) {
+            gzip = any;
+        }
+        if (deflate < 0) {
+            deflate = any;
+        }
+        if (gzip > 0 && gzip >= deflate) {
+            return GZIP;
+        }
+        return deflate > 0 ? DEFLATE : null;
+    }
+
+    // Поток, сжимающий всё записанное; close() дописывает хвост формата и закрывает out.
+    static OutputStream wrap(OutputStream out, String encoding) throws IOException {
+        return wrap(out, encoding, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    // Для кэша ответов: сжимается один раз, поэтому с максимальной степенью.
+    static byte[] compress(byte[] body, String encoding) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, body.length / 4));
+        try (OutputStream compressed = wrap(out, encoding, Deflater.BEST_COMPRESSION)) {
+            compressed.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static OutputStream wrap(OutputStream out, String encoding, int level) throws IOException {
+        if (GZIP.equals(encoding)) {
+            return new GZIPOutputStream(out, BUFFER_SIZE) {
+                {
+                    def.setLevel(level);
+                }
+            };
+        }
+        if (DEFLATE.equals(encoding)) {
+            return new DeflaterOutputStream(out, new Deflater(level), BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        def.end();
+                    }
+                }
+            };
+        }
+        throw new IllegalArgumentException("Неподдерживаемая кодировка ответа: " + encoding);
+    }
+
+    private static double quality(String[] params) {
+        for (int i = 1; i < params.length; i++) {
+            String param = params[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
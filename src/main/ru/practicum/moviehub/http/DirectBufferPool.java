@@ -0,0 +1,42 @@
+package ru.practicum.moviehub.http;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Прямые буферы одного размера для ответов NioHttpServer: поток обработчика пишет в буфер ответ, цикл событий
+// отправляет его в сокет и возвращает в пул. Из прямого буфера JDK пишет в сокет без промежуточной копии,
+// которую делает для массива в куче, а выделять прямой буфер на каждый ответ дорого. Сверх maxPooled
+// свободные буферы не хранятся, их соберёт GC.
+final class DirectBufferPool {
+    private final int bufferSize;
+    private final int maxPooled;
+    private final ConcurrentLinkedQueue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    DirectBufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    int bufferSize() {
+        return bufferSize;
+    }
+
+    ByteBuffer acquire() {
+        ByteBuffer buffer = free.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        pooled.decrementAndGet();
+        return buffer.clear();
+    }
+
+    void release(ByteBuffer buffer) {
+        if (pooled.incrementAndGet() <= maxPooled) {
+            free.offer(buffer);
+        } else {
+            pooled.decrementAndGet();
+        }
+    }
+}
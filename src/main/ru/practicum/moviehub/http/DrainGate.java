@@ -0,0 +1,116 @@
+package ru.practicum.moviehub.http;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+import ru.practicum.moviehub.JsonUtil;
+import ru.practicum.moviehub.api.ErrorResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Плавная остановка сервера. Сначала markNotReady: /ready отвечает 503, и балансировщик перестаёт слать
+// сюда запросы, а пришедшие ещё обслуживаются. Затем close: новые запросы получают 503 с Connection: close,
+// а awaitIdle ждёт, пока выполняющиеся допишут ответ. На контексте /movies фильтр стоит после LoadShedder
+// и перед AdmissionControl (порядок объяснён в MoviesServer), а /ready и /metrics отвечают без него.
+final class DrainGate {
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Object idle = new Object();
+    private final LongAdder rejected = new LongAdder();
+    private volatile boolean ready = true;
+    private volatile boolean closed;
+    // балансировщик, который ни разу не спросил /ready, и не заметит смены — ждать его незачем
+    private volatile boolean probed;
+
+    Filter filter() {
+        return new Filter() {
+            @Override
+            public void doFilter(HttpExchange ex, Chain chain) throws IOException {
+                if (closed) {
+                    reject(ex);
+                    return;
+                }
+                inFlight.incrementAndGet();
+                try {
+                    // close мог пройти между проверкой и учётом: тогда awaitIdle уже мог не увидеть этот запрос
+                    if (closed) {
+                        reject(ex);
+                        return;
+                    }
+                    chain.doFilter(ex);
+                } finally {
+                    if (inFlight.decrementAndGet() == 0 && closed) {
+                        synchronized (idle) {
+                            idle.notifyAll();
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public String description() {
+                return "Отказ 503 новым запросам во время остановки и учёт выполняющихся";
+            }
+        };
+    }
+
+    // Спрашивает ReadinessHandler.
+    boolean probeReady() {
+        probed = true;
+        return ready;
+    }
+
+    void markNotReady() {
+        ready = false;
+    }
+
+    boolean wasProbed() {
+        return probed;
+    }
+
+    void close() {
+        ready = false;
+        closed = true;
+    }
+
+    // true — все запросы завершились до timeout.
+    boolean awaitIdle(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (idle) {
+            while (inFlight.get() > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(idle, remaining);
+            }
+            return true;
+        }
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    long getRejected() {
+        return rejected.sum();
+    }
+
+    private void reject(HttpExchange ex) throws IOException {
+        rejected.increment();
+        byte[] body = JsonUtil.toJson(new ErrorResponse("Сервер останавливается, повторите запрос"))
+                .getBytes(StandardCharsets.UTF_8);
+        // клиент переподключится, и балансировщик отправит его на другой узел
+        ex.getResponseHeaders().set("Connection", "close");
+        ex.getResponseHeaders().set("Retry-After", "1");
+        ex.getResponseHeaders().set("Content-Type", BaseHttpHandler.CT_JSON);
+        ex.sendResponseHeaders(503, body.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(body);
+        }
+    }
+}
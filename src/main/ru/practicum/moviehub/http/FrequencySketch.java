@@ -0,0 +1,72 @@
+package ru.practicum.moviehub.http;
+
+// Приблизительная частота обращений к id за недавнее время (count-min sketch из 4-битных счётчиков) — для
+// допуска в MovieResponseCache. На каждый id — четыре счётчика в разных местах таблицы, частота — наименьший
+// из них: коллизии только завышают оценку. Счётчик не растёт выше 15, а после sampleSize увеличений все
+// счётчики делятся пополам: когда-то популярный id постепенно забывается. Не потокобезопасен, вызывается
+// под блокировкой кэша.
+final class FrequencySketch {
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long HALF_MASK = 0x7777777777777777L;
+
+    // по 16 счётчиков в long
+    private final long[] table;
+    private final int counterMask;
+    private final int sampleSize;
+    private int additions;
+
+    // capacity — сколько id кэш держит одновременно; счётчиков — в 16 раз больше, с округлением до степени двойки
+    FrequencySketch(int capacity) {
+        int longs = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        table = new long[Math.min(longs, 1 << 26)];
+        counterMask = table.length * 16 - 1;
+        sampleSize = (int) Math.min(Integer.MAX_VALUE, 10L * Math.max(1, capacity));
+    }
+
+    int frequency(long id) {
+        long hash = spread(id);
+        int frequency = 15;
+        for (int i = 0; i < SEEDS.length; i++) {
+            frequency = Math.min(frequency, counter(index(hash, i)));
+        }
+        return frequency;
+    }
+
+    void increment(long id) {
+        long hash = spread(id);
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int index = index(hash, i);
+            if (counter(index) < 15) {
+                table[index >>> 4] += 1L << ((index & 15) << 2);
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & HALF_MASK;
+        }
+        additions /= 2;
+    }
+
+    private int counter(int index) {
+        return (int) (table[index >>> 4] >>> ((index & 15) << 2)) & 15;
+    }
+
+    private int index(long hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return (int) h & counterMask;
+    }
+
+    private static long spread(long id) {
+        long h = id * 0x9e3779b97f4a7c15L;
+        return h ^ (h >>> 29);
+    }
+}
@@ -0,0 +1,23 @@
+package ru.practicum.moviehub.http;
+
+// Методы, на которые есть маршруты. Метод из запроса сравнивается один раз, в Router; обработчики
+// получают уже выбранный метод и сами его не проверяют.
+enum HttpMethod {
+    GET,
+    POST,
+    DELETE;
+
+    // null — метод, на который маршрутов нет: Router ответит 405. Регистр важен, как в HTTP.
+    static HttpMethod of(String method) {
+        switch (method) {
+            case "GET":
+                return GET;
+            case "POST":
+                return POST;
+            case "DELETE":
+                return DELETE;
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package ru.practicum.moviehub.http;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Ответы на POST с заголовком Idempotency-Key: повтор с тем же ключом получает сохранённый ответ вместо
+// второй вставки, а параллельный повтор ждёт первый запрос, пока тот выполняется. Поиск — один get
+// в ConcurrentHashMap, без общей блокировки. Записи живут ttl; при переполнении по числу или байтам
+// вытесняются самые старые — с одинаковым ttl это те, что истекают первыми, поэтому хватает очереди FIFO.
+public class IdempotencyCache {
+    // столько повтор ждёт первый запрос с тем же ключом, потом получает 409
+    static final Duration IN_FLIGHT_WAIT = Duration.ofSeconds(10);
+    // грубая оценка памяти записи сверх ключа и тела ответа
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final long ttlNanos;
+    private final ConcurrentHashMap<String, Slot> slots = new ConcurrentHashMap<>();
+    // завершённые записи в порядке завершения; удалённые из slots раньше времени пропускаются при вытеснении
+    private final ConcurrentLinkedQueue<Slot> completed = new ConcurrentLinkedQueue<>();
+    private final AtomicLong totalBytes = new AtomicLong();
+
+    private final LongAdder replays = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public IdempotencyCache(int maxEntries, long maxBytes, Duration ttl) {
+        if (maxEntries < 1 || maxBytes < 1 || ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("Размер и время жизни кэша Idempotency-Key должны быть положительными");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    // Выполняет action не больше одного раза на ключ за ttl. fingerprint — хеш тела запроса: тот же ключ
+    // с другим телом — KeyReusedException. Если первый запрос упал, ответ не сохраняется и ждавший повтор
+    // выполняет action сам.
+    Response execute(String key, long fingerprint, Action action) throws IOException {
+        while (true) {
+            long now = System.nanoTime();
+            Slot slot = slots.get(key);
+            if (slot == null) {
+                Slot fresh = new Slot(key, fingerprint);
+                slot = slots.putIfAbsent(key, fresh);
+                if (slot == null) {
+                    return runOwned(fresh, action);
+                }
+            }
+            if (slot.isExpired(now, ttlNanos)) {
+                remove(slot);
+                continue;
+            }
+            if (slot.fingerprint != fingerprint) {
+                throw new KeyReusedException();
+            }
+            Response response = slot.await();
+            if (response != null) {
+                replays.increment();
+                return response.replayed();
+            }
+        }
+    }
+
+    private Response runOwned(Slot slot, Action action) throws IOException {
+        Response response;
+        try {
+            response = action.run();
+        } catch (IOException | RuntimeException | Error e) {
+            slots.remove(slot.key, slot);
+            slot.result.complete(null);
+            throw e;
+        }
+        slot.completedAt = System.nanoTime();
+        slot.result.complete(response);
+        totalBytes.addAndGet(slot.size());
+        completed.add(slot);
+        evictOverflow(slot.completedAt);
+        return response;
+    }
+
+    // Вытесняет истёкшие и лишние записи с головы очереди; выполняется записавшим потоком, а не отдельным.
+    private void evictOverflow(long now) {
+        Slot eldest;
+        while ((eldest = completed.peek()) != null
+                && (slots.size() > maxEntries || totalBytes.get() > maxBytes || eldest.isExpired(now, ttlNanos))) {
+            if (completed.remove(eldest) && remove(eldest) && !eldest.isExpired(now, ttlNanos)) {
+                evictions.increment();
+            }
+        }
+    }
+
+    private boolean remove(Slot slot) {
+        if (slots.remove(slot.key, slot)) {
+            totalBytes.addAndGet(-slot.size());
+            return true;
+        }
+        return false;
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+    public long getReplays() {
+        return replays.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @FunctionalInterface
+    interface Action {
+        Response run() throws IOException;
+    }
+
+    // Готовый ответ: статус и JSON-тело в UTF-8. replayed — ответ взят из кэша, а не получен заново.
+    static final class Response {
+        final int status;
+        final byte[] body;
+        final boolean replayed;
+
+        Response(int status, byte[] body) {
+            this(status, body, false);
+        }
+
+        private Response(int status, byte[] body, boolean replayed) {
+            this.status = status;
+            this.body = body;
+            this.replayed = replayed;
+        }
+
+        private Response replayed() {
+            return replayed ? this : new Response(status, body, true);
+        }
+    }
+
+    static final class KeyReusedException extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        KeyReusedException() {
+            super("Idempotency-Key уже использован с другим телом запроса");
+        }
+    }
+
+    static final class InFlightException extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        InFlightException() {
+            super("Запрос с этим Idempotency-Key ещё выполняется");
+        }
+    }
+
+    private static final class Slot {
+        final String key;
+        final long fingerprint;
+        // null — первый запрос не завершился успешно, ответа нет
+        final CompletableFuture<Response> result = new CompletableFuture<>();
+        // пишется до complete, читается после: видимость даёт сам CompletableFuture
+        long completedAt;
+
+        Slot(String key, long fingerprint) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+        }
+
+        // Пока запрос выполняется, запись не истекает: ttl отсчитывается от готового ответа.
+        boolean isExpired(long now, long ttlNanos) {
+            return result.isDone() && now - completedAt > ttlNanos;
+        }
+
+        Response await() {
+            try {
+                return result.get(IN_FLIGHT_WAIT.toNanos(), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                throw new InFlightException();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InFlightException();
+            } catch (ExecutionException e) {
+                return null;
+            }
+        }
+
+        long size() {
+            Response response = result.getNow(null);
+            return ENTRY_OVERHEAD + 2L * key.length() + (response == null ? 0 : response.body.length);
+        }
+    }
+}
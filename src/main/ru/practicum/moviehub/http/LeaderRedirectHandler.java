@@ -0,0 +1,26 @@
+package ru.practicum.moviehub.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import ru.practicum.moviehub.api.ErrorResponse;
+
+import java.io.IOException;
+import java.net.URI;
+
+// Запись на ведомом узле: 307 на тот же путь ведущего. В отличие от 301 и 302, клиент повторяет запрос
+// тем же методом и с тем же телом.
+class LeaderRedirectHandler extends BaseHttpHandler {
+
+    private final URI leader;
+
+    LeaderRedirectHandler(URI leader) {
+        this.leader = leader;
+    }
+
+    public void handle(HttpExchange ex) throws IOException {
+        URI uri = ex.getRequestURI();
+        String query = uri.getRawQuery();
+        String location = leader.resolve(uri.getRawPath() + (query == null ? "" : "?" + query)).toString();
+        ex.getResponseHeaders().set("Location", location);
+        sendError(ex, 307, new ErrorResponse("Узел только читает каталог, запись — на ведущем узле: " + location));
+    }
+}
@@ -0,0 +1,102 @@
+package ru.practicum.moviehub.http;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+import ru.practicum.moviehub.JsonUtil;
+import ru.practicum.moviehub.api.ErrorResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Переполнение пула POOL. Выполнять задачу в вызывающем потоке нельзя: у HttpServer это поток-диспетчер,
+// и один медленный запрос снова остановил бы приём и чтение всех соединений. Поэтому лишний обмен уходит
+// в отдельный маленький пул, где фильтр отвечает 503 с Retry-After, не вызывая обработчик; заголовки запроса
+// HttpServer читает там же, и медленный клиент держит только этот пул. Когда переполнен и он, задача
+// отклоняется, и HttpServer закрывает соединение. /ready и /metrics фильтр не трогает: они дешёвые и под
+// нагрузкой нужнее всего.
+final class LoadShedder implements RejectedExecutionHandler {
+    private static final int SHED_THREADS = 1;
+    private static final int SHED_QUEUE_CAPACITY = 256;
+
+    // true в потоках пула отказов
+    private final ThreadLocal<Boolean> shedding = ThreadLocal.withInitial(() -> false);
+    private final ThreadPoolExecutor shedPool;
+    private final LongAdder shed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    LoadShedder() {
+        shedPool = new ThreadPoolExecutor(SHED_THREADS, SHED_THREADS, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(SHED_QUEUE_CAPACITY),
+                r -> {
+                    Thread thread = new Thread(() -> {
+                        shedding.set(true);
+                        r.run();
+                    }, "http-shed");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Override
+    public void rejectedExecution(Runnable task, ThreadPoolExecutor pool) {
+        if (pool.isShutdown()) {
+            throw new RejectedExecutionException("Пул обработчиков остановлен");
+        }
+        try {
+            shedPool.execute(task);
+        } catch (RejectedExecutionException e) {
+            dropped.increment();
+            throw e;
+        }
+    }
+
+    Filter filter() {
+        return new Filter() {
+            @Override
+            public void doFilter(HttpExchange ex, Chain chain) throws IOException {
+                if (shedding.get()) {
+                    reject(ex);
+                    return;
+                }
+                chain.doFilter(ex);
+            }
+
+            @Override
+            public String description() {
+                return "Отказ 503 запросам, не поместившимся в пул обработчиков";
+            }
+        };
+    }
+
+    long getShed() {
+        return shed.sum();
+    }
+
+    long getDropped() {
+        return dropped.sum();
+    }
+
+    void shutdown() {
+        shedPool.shutdown();
+    }
+
+    private void reject(HttpExchange ex) throws IOException {
+        shed.increment();
+        byte[] body = JsonUtil.toJson(new ErrorResponse("Сервер перегружен, повторите запрос"))
+                .getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Retry-After", "1");
+        ex.getResponseHeaders().set("Content-Type", BaseHttpHandler.CT_JSON);
+        ex.sendResponseHeaders(503, body.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(body);
+        }
+    }
+}
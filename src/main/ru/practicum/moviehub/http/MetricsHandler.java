@@ -0,0 +1,21 @@
+package ru.practicum.moviehub.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import ru.practicum.moviehub.metrics.Metrics;
+
+import java.io.IOException;
+
+public class MetricsHandler extends BaseHttpHandler {
+
+    static final String CT_PROMETHEUS = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final Metrics metrics;
+
+    public MetricsHandler(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void handle(HttpExchange ex) throws IOException {
+        sendText(ex, 200, CT_PROMETHEUS, metrics.toPrometheus());
+    }
+}
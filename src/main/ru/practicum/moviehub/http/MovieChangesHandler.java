@@ -0,0 +1,191 @@
+package ru.practicum.moviehub.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import ru.practicum.moviehub.api.ErrorResponse;
+import ru.practicum.moviehub.json.JsonBuffer;
+import ru.practicum.moviehub.store.ChangeFeed;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// GET /movies/changes?since=N: события ленты после N для зеркал каталога. Ответ — {"changes":[...],"next":M},
+// следующий запрос — since=M. С wait=мс запрос ждёт первого события (long-poll), с Accept: text/event-stream
+// события идут потоком Server-Sent Events (id: — номер события, переподключение продолжает с Last-Event-ID).
+// Если нужные события уже вытеснены из ленты, — 410 (в потоке — событие resync): клиент заново загружает
+// каталог и продолжает с номера из X-Changes-Head. Ждущие запросы держат поток обработчика, поэтому их
+// число ограничено: сверх предела long-poll отвечает сразу, а поток событий получает 503.
+public class MovieChangesHandler extends BaseHttpHandler {
+
+    static final String HEAD_HEADER = "X-Changes-Head";
+    static final int MAX_LIMIT = 1000;
+    static final long MAX_WAIT_MS = 30_000;
+    // комментарий в потоке событий, чтобы прокси не закрыли молчащее соединение
+    static final long HEARTBEAT_MS = 15_000;
+    // ожидание дробится, чтобы остановка сервера не ждала тишины в ленте
+    private static final long WAIT_SLICE_MS = 1_000;
+    private static final String[] PARAMS = {"since", "limit", "wait"};
+    private static final byte[] HEARTBEAT = ": ping\n\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final ChangeFeed feed;
+    private final Semaphore waiters;
+    private volatile boolean stopped;
+
+    public MovieChangesHandler(ChangeFeed feed, int maxWaiters) {
+        this.feed = feed;
+        this.waiters = new Semaphore(maxWaiters);
+    }
+
+    public void handle(HttpExchange ex) throws IOException {
+        boolean stream = acceptsEventStream(ex);
+        long since;
+        int limit;
+        long waitMs;
+        try {
+            QueryString params = QueryString.parse(ex.getRequestURI().getRawQuery(), PARAMS);
+            String lastEventId = ex.getRequestHeaders().getFirst("Last-Event-ID");
+            since = stream && !params.has("since") && lastEventId != null
+                    ? Long.parseLong(lastEventId.trim())
+                    : params.getLong("since", 0);
+            limit = params.getInt("limit", MAX_LIMIT);
+            waitMs = params.getLong("wait", 0);
+            if (since < 0) {
+                throw new IllegalArgumentException("Параметр запроса 'since' не может быть отрицательным");
+            }
+            if (limit < 1 || limit > MAX_LIMIT) {
+                throw new IllegalArgumentException("Параметр запроса 'limit' должен быть от 1 до " + MAX_LIMIT);
+            }
+            if (waitMs < 0 || waitMs > MAX_WAIT_MS) {
+                throw new IllegalArgumentException("Параметр запроса 'wait' должен быть от 0 до " + MAX_WAIT_MS + " мс");
+            }
+        } catch (NumberFormatException e) {
+            sendError(ex, 400, new ErrorResponse("Некорректный заголовок Last-Event-ID"));
+            return;
+        } catch (IllegalArgumentException e) {
+            sendError(ex, 400, new ErrorResponse(e.getMessage()));
+            return;
+        }
+
+        if (stream) {
+            streamEvents(ex, since, limit);
+        } else {
+            poll(ex, since, limit, waitMs);
+        }
+    }
+
+    // Останавливает потоки событий и ожидания: они завершатся в пределах WAIT_SLICE_MS.
+    void stop() {
+        stopped = true;
+    }
+
+    private void poll(HttpExchange ex, long since, int limit, long waitMs) throws IOException {
+        ChangeFeed.Batch batch = feed.read(since, limit);
+        if (batch.getChanges().isEmpty() && !batch.isResync() && waitMs > 0 && waiters.tryAcquire()) {
+            try {
+                if (awaitChange(since, waitMs)) {
+                    batch = feed.read(since, limit);
+                }
+            } finally {
+                waiters.release();
+            }
+        }
+
+        ex.getResponseHeaders().set(HEAD_HEADER, Long.toString(batch.getHead()));
+        if (batch.isResync()) {
+            sendError(ex, 410, resyncError(since));
+            return;
+        }
+        long next = batch.getChanges().isEmpty()
+                ? since : batch.getChanges().get(batch.getChanges().size() - 1).getSeq();
+        JsonBuffer out = JsonBuffer.acquire();
+        codec().writeChanges(out, batch.getChanges(), next);
+        sendBuffer(ex, 200, out);
+    }
+
+    private void streamEvents(HttpExchange ex, long since, int limit) throws IOException {
+        if (!waiters.tryAcquire()) {
+            ex.getResponseHeaders().set("Retry-After", "1");
+            sendError(ex, 503, new ErrorResponse("Слишком много подписчиков ленты изменений, повторите позже"));
+            return;
+        }
+        try {
+            ex.getResponseHeaders().set("Content-Type", "text/event-stream; charset=UTF-8");
+            ex.getResponseHeaders().set("Cache-Control", "no-cache");
+            ex.sendResponseHeaders(200, 0);
+            try (OutputStream body = new BufferedOutputStream(ex.getResponseBody())) {
+                long lastWrite = System.nanoTime();
+                while (!stopped) {
+                    ChangeFeed.Batch batch = feed.read(since, limit);
+                    if (batch.isResync()) {
+                        String data = "{\"head\":" + batch.getHead() + "}";
+                        body.write(("event: resync\ndata: " + data + "\n\n").getBytes(StandardCharsets.US_ASCII));
+                        break;
+                    }
+                    if (!batch.getChanges().isEmpty()) {
+                        for (ChangeFeed.Change change : batch.getChanges()) {
+                            writeEvent(body, change);
+                            since = change.getSeq();
+                        }
+                        body.flush();
+                        lastWrite = System.nanoTime();
+                        continue;
+                    }
+                    if (!awaitChange(since, WAIT_SLICE_MS)
+                            && System.nanoTime() - lastWrite >= TimeUnit.MILLISECONDS.toNanos(HEARTBEAT_MS)) {
+                        // клиент, который ушёл, обнаруживается здесь: запись в закрытое соединение падает
+                        body.write(HEARTBEAT);
+                        body.flush();
+                        lastWrite = System.nanoTime();
+                    }
+                }
+            }
+        } finally {
+            waiters.release();
+        }
+    }
+
+    private void writeEvent(OutputStream body, ChangeFeed.Change change) throws IOException {
+        String header = "id: " + change.getSeq() + "\nevent: "
+                + change.getType().name().toLowerCase(Locale.ROOT) + "\ndata: ";
+        body.write(header.getBytes(StandardCharsets.US_ASCII));
+        JsonBuffer out = JsonBuffer.acquire();
+        codec().writeChange(out, change);
+        out.writeTo(body);
+        body.write('\n');
+        body.write('\n');
+    }
+
+    // true — после since есть событие; false — истекло время или сервер останавливается.
+    private boolean awaitChange(long since, long waitMs) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMs);
+        try {
+            while (!stopped) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                long slice = Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(WAIT_SLICE_MS));
+                if (feed.await(since, slice, TimeUnit.NANOSECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private static ErrorResponse resyncError(long since) {
+        return new ErrorResponse("Требуется полная синхронизация: событий после " + since
+                + " в ленте уже нет. Загрузите каталог заново и продолжите с номера из " + HEAD_HEADER);
+    }
+
+    private static boolean acceptsEventStream(HttpExchange ex) {
+        String accept = ex.getRequestHeaders().getFirst("Accept");
+        return accept != null && accept.toLowerCase(Locale.ROOT).contains("text/event-stream");
+    }
+}
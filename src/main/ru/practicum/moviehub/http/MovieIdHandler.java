@@ -3,64 +3,54 @@ package ru.practicum.moviehub.http;
 
 import com.sun.net.httpserver.HttpExchange;
 import ru.practicum.moviehub.api.ErrorResponse;
-import ru.practicum.moviehub.JsonUtil;
+import ru.practicum.moviehub.json.JsonBuffer;
 import ru.practicum.moviehub.model.Movie;
-import ru.practicum.moviehub.store.MoviesStore;
+import ru.practicum.moviehub.store.MovieRepository;
 
 import java.io.IOException;
 
 public class MovieIdHandler extends BaseHttpHandler {
 
-    private final MoviesStore store;
+    private final MovieRepository store;
+    // null — кэш ответов по id выключен
+    private final MovieResponseCache cache;
 
-    public MovieIdHandler(MoviesStore store) {
-        this.store = store;
+    public MovieIdHandler(MovieRepository store) {
+        this(store, null);
     }
 
-    @Override
-    public void handle(HttpExchange ex) throws IOException {
-        String method = ex.getRequestMethod();
-        String path = ex.getRequestURI().getPath();
-
-        if (!method.equalsIgnoreCase("GET") && !method.equalsIgnoreCase("DELETE")) {
-            ex.sendResponseHeaders(405, -1);
-            ex.close();
-            return;
-        }
-
-        String idStr = path.substring("/movies/".length());
-        long id;
-
-        try {
-            id = Long.parseLong(idStr);
-        } catch (NumberFormatException e) {
-            sendJson(ex, 400, JsonUtil.toJson(new ErrorResponse("Некорректный ID")));
-            return;
-        }
-
-        if (method.equalsIgnoreCase("GET")) {
-            handleGet(ex, id);
-        } else if (method.equalsIgnoreCase("DELETE")) {
-            handleDelete(ex, id);
-        }
+    public MovieIdHandler(MovieRepository store, MovieResponseCache cache) {
+        this.store = store;
+        this.cache = cache;
     }
 
-    private void handleGet(HttpExchange ex, long id) throws IOException {
-        Movie movie = store.findById(id);
-
-        if (movie == null) {
-            sendJson(ex, 404, JsonUtil.toJson(new ErrorResponse("Фильм не найден")));
-            return;
+    // Попадание в кэш отдаёт готовые байты, не заходя в каталог: удаление и замена фильма сами убирают его
+    // из кэша (MovieInvalidation).
+    void handleGet(HttpExchange ex, long id) throws IOException {
+        ResponseCache.Entry entry = cache == null ? null : cache.get(id);
+        if (entry == null) {
+            // штамп берём до чтения фильма: invalidate между ними не даст положить в кэш старый ответ
+            long stamp = cache == null ? 0 : cache.stamp();
+            Movie movie = store.findById(id);
+            if (movie == null) {
+                sendError(ex, 404, new ErrorResponse("Фильм не найден"));
+                return;
+            }
+            JsonBuffer out = JsonBuffer.acquire();
+            codec().writeMovie(out, movie);
+            entry = new ResponseCache.Entry(stamp, out.toByteArray());
+            if (cache != null) {
+                cache.put(id, entry, stamp);
+            }
         }
-
-        sendJson(ex, 200, JsonUtil.toJson(movie));
+        sendEntry(ex, entry, null, null);
     }
 
-    private void handleDelete(HttpExchange ex, long id) throws IOException {
+    void handleDelete(HttpExchange ex, long id) throws IOException {
         boolean deleted = store.delete(id);
 
         if (!deleted) {
-            sendJson(ex, 404, JsonUtil.toJson(new ErrorResponse("Фильм не найден")));
+            sendError(ex, 404, new ErrorResponse("Фильм не найден"));
             return;
         }
 
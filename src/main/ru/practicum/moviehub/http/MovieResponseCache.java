@@ -0,0 +1,283 @@
+package ru.practicum.moviehub.http;
+
+import ru.practicum.moviehub.store.MovieInvalidation;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Готовые ответы GET /movies/{id} по id фильма, вытеснение и допуск как у W-TinyLFU. Новый id попадает в окно —
+// небольшой LRU (WINDOW_PERCENT ёмкости); вытесненный из окна кандидат допускается в основную часть, только
+// если FrequencySketch видел его чаще, чем жертву — самую давнюю запись испытательного сегмента. Так обход
+// каталога или разовые запросы не вымывают горячие фильмы, а окно даёт новому фильму набрать частоту.
+// Основная часть — сегментированный LRU: повторное попадание из испытательного сегмента переводит запись
+// в защищённый (PROTECTED_PERCENT основной части).
+// Запись не проверяется по каталогу: каталог сам сообщает об удалённых и заменённых фильмах через
+// MovieInvalidation. Чтобы ответ, собранный до изменения, не лёг в кэш после invalidate, читатель берёт
+// stamp() до чтения каталога, а put с устаревшим штампом отбрасывается.
+// Поиск — ConcurrentHashMap без блокировок; порядок LRU и частоты обновляются под блокировкой, а попадание,
+// заставшее её занятой, порядок не трогает: под нагрузкой кэш теряет немного точности, но не ждёт.
+public class MovieResponseCache implements MovieInvalidation {
+    static final int WINDOW_PERCENT = 1;
+    static final int PROTECTED_PERCENT = 80;
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final int maxEntries;
+    private final int windowMax;
+    private final int protectedMax;
+    private final ConcurrentHashMap<Long, Node> nodes;
+    private final FrequencySketch sketch;
+    private final ReentrantLock lock = new ReentrantLock();
+    // головы списков: head.next — самая давняя запись, head.prev — самая свежая
+    private final Node window = Node.head();
+    private final Node probation = Node.head();
+    private final Node protectedSegment = Node.head();
+    private int windowSize;
+    private int protectedSize;
+    // растёт при каждом invalidate, меняется только под lock
+    private volatile long stamp;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public MovieResponseCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Размер кэша фильмов должен быть положительным: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.windowMax = Math.max(1, maxEntries * WINDOW_PERCENT / 100);
+        this.protectedMax = (maxEntries - windowMax) * PROTECTED_PERCENT / 100;
+        this.nodes = new ConcurrentHashMap<>(Math.min(maxEntries, 1 << 16));
+        this.sketch = new FrequencySketch(maxEntries);
+    }
+
+    // Берётся до чтения фильма из каталога и передаётся в put.
+    long stamp() {
+        return stamp;
+    }
+
+    ResponseCache.Entry get(long id) {
+        Node node = nodes.get(id);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        if (lock.tryLock()) {
+            try {
+                sketch.increment(id);
+                if (node.segment >= 0) {
+                    onHit(node);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return node.entry;
+    }
+
+    void put(long id, ResponseCache.Entry entry, long stamp) {
+        lock.lock();
+        try {
+            if (stamp != this.stamp) {
+                return;
+            }
+            sketch.increment(id);
+            Node node = nodes.get(id);
+            if (node != null) {
+                node.entry = entry;
+                onHit(node);
+                return;
+            }
+            node = new Node(id, entry);
+            nodes.put(id, node);
+            node.linkLast(window, WINDOW);
+            windowSize++;
+            if (windowSize > windowMax) {
+                Node candidate = window.next;
+                candidate.unlink();
+                windowSize--;
+                candidate.linkLast(probation, PROBATION);
+                if (nodes.size() > maxEntries) {
+                    evictFromMain(candidate);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void invalidate(long id) {
+        lock.lock();
+        try {
+            stamp++;
+            Node node = nodes.remove(id);
+            if (node != null) {
+                remove(node);
+                invalidations.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            stamp++;
+            invalidations.add(nodes.size());
+            nodes.clear();
+            window.next = window.prev = window;
+            probation.next = probation.prev = probation;
+            protectedSegment.next = protectedSegment.prev = protectedSegment;
+            windowSize = 0;
+            protectedSize = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    public int capacity() {
+        return maxEntries;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    // Доля попаданий с запуска; 0, пока обращений не было.
+    public double hitRatio() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    // Кандидаты из окна, которых фильтр частот не пустил в основную часть.
+    public long getRejections() {
+        return rejections.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MovieResponseCache{size=%d/%d, hitRatio=%.3f, hits=%d, misses=%d, evictions=%d, "
+                        + "rejections=%d, invalidations=%d}", size(), maxEntries, hitRatio(), getHits(), getMisses(),
+                getEvictions(), getRejections(), getInvalidations());
+    }
+
+    private void onHit(Node node) {
+        switch (node.segment) {
+            case WINDOW:
+                node.unlink();
+                node.linkLast(window, WINDOW);
+                break;
+            case PROBATION:
+                node.unlink();
+                node.linkLast(protectedSegment, PROTECTED);
+                protectedSize++;
+                if (protectedSize > protectedMax) {
+                    // самая давняя защищённая запись не вытесняется, а получает ещё один шанс в испытательном
+                    Node demoted = protectedSegment.next;
+                    demoted.unlink();
+                    protectedSize--;
+                    demoted.linkLast(probation, PROBATION);
+                }
+                break;
+            case PROTECTED:
+                node.unlink();
+                node.linkLast(protectedSegment, PROTECTED);
+                break;
+            default:
+                // запись уже удалена, а get нашёл её до удаления
+        }
+    }
+
+    // Основная часть переполнена на одну запись: уходит кандидат из окна или жертва, кого sketch видел реже.
+    // При равенстве уходит кандидат: у жертвы преимущество уже доказанной популярности.
+    private void evictFromMain(Node candidate) {
+        Node victim = probation.next;
+        if (victim == candidate) {
+            // испытательный сегмент пуст, кроме самого кандидата: жертва — самая давняя защищённая запись
+            victim = protectedSegment.next;
+        }
+        // victim == protectedSegment: основная часть пуста (ёмкость из одного окна), уходит сам кандидат
+        if (victim != protectedSegment && sketch.frequency(candidate.id) > sketch.frequency(victim.id)) {
+            nodes.remove(victim.id);
+            remove(victim);
+            evictions.increment();
+        } else {
+            nodes.remove(candidate.id);
+            remove(candidate);
+            rejections.increment();
+        }
+    }
+
+    private void remove(Node node) {
+        if (node.segment == WINDOW) {
+            windowSize--;
+        } else if (node.segment == PROTECTED) {
+            protectedSize--;
+        }
+        node.unlink();
+        node.segment = -1;
+    }
+
+    private static final class Node {
+        final long id;
+        volatile ResponseCache.Entry entry;
+        // меняются только под lock; -1 — запись удалена
+        int segment = -1;
+        Node prev;
+        Node next;
+
+        Node(long id, ResponseCache.Entry entry) {
+            this.id = id;
+            this.entry = entry;
+        }
+
+        static Node head() {
+            Node head = new Node(0, null);
+            head.prev = head;
+            head.next = head;
+            return head;
+        }
+
+        void linkLast(Node head, int segment) {
+            this.segment = segment;
+            prev = head.prev;
+            next = head;
+            head.prev.next = this;
+            head.prev = this;
+        }
+
+        void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            prev = null;
+            next = null;
+        }
+    }
+}
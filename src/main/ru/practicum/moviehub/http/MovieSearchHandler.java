@@ -0,0 +1,49 @@
+package ru.practicum.moviehub.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import ru.practicum.moviehub.api.ErrorResponse;
+import ru.practicum.moviehub.store.MovieRepository;
+
+import java.io.IOException;
+
+public class MovieSearchHandler extends BaseHttpHandler {
+
+    static final int DEFAULT_LIMIT = 20;
+    static final int MAX_LIMIT = 100;
+    private static final String[] PARAMS = {"q", "limit"};
+
+    private final MovieRepository store;
+
+    public MovieSearchHandler(MovieRepository store) {
+        this.store = store;
+    }
+
+    public void handle(HttpExchange ex) throws IOException {
+        QueryString params;
+        try {
+            params = QueryString.parse(ex.getRequestURI().getRawQuery(), PARAMS);
+        } catch (IllegalArgumentException e) {
+            sendError(ex, 400, new ErrorResponse(e.getMessage()));
+            return;
+        }
+        String query = params.get("q");
+
+        if (query == null || query.isBlank()) {
+            sendError(ex, 400, new ErrorResponse("Параметр запроса 'q' не должен быть пустым"));
+            return;
+        }
+
+        int limit;
+        try {
+            limit = params.has("limit") ? params.requireInt("limit") : DEFAULT_LIMIT;
+        } catch (IllegalArgumentException e) {
+            limit = -1;
+        }
+        if (limit < 1 || limit > MAX_LIMIT) {
+            sendError(ex, 400, new ErrorResponse("Параметр 'limit' должен быть между 1 и " + MAX_LIMIT));
+            return;
+        }
+
+        sendMovies(ex, 200, store.search(query, limit));
+    }
+}
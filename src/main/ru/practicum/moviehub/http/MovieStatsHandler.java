@@ -0,0 +1,27 @@
+package ru.practicum.moviehub.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import ru.practicum.moviehub.store.MovieRepository;
+
+import java.io.IOException;
+
+// GET /movies/stats: сводка по годам и десятилетиям. Сводка ведётся в хранилище на каждой записи,
+// здесь она только сериализуется; ответ кэшируется до следующего изменения каталога.
+public class MovieStatsHandler extends BaseHttpHandler {
+
+    private final MovieRepository store;
+    private final ResponseCache cache;
+
+    public MovieStatsHandler(MovieRepository store) {
+        this(store, null);
+    }
+
+    public MovieStatsHandler(MovieRepository store, ResponseCache cache) {
+        this.store = store;
+        this.cache = cache;
+    }
+
+    public void handle(HttpExchange ex) throws IOException {
+        sendCachedJson(ex, cache, store.version(), out -> codec().writeStats(out, store.stats()));
+    }
+}
@@ -0,0 +1,155 @@
+package ru.practicum.moviehub.http;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.sun.net.httpserver.HttpExchange;
+import ru.practicum.moviehub.JsonUtil;
+import ru.practicum.moviehub.api.BatchItemError;
+import ru.practicum.moviehub.api.BatchResult;
+import ru.practicum.moviehub.api.ErrorResponse;
+import ru.practicum.moviehub.model.Movie;
+import ru.practicum.moviehub.store.MovieRepository;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
+
+// POST /movies/batch: JSON-массив или NDJSON читается потоком, без загрузки тела в строку.
+// Корректные фильмы сохраняются пачками через MovieRepository.addAll, по остальным возвращаются ошибки с номером.
+public class MoviesBatchHandler extends BaseHttpHandler {
+
+    static final int CHUNK_SIZE = 8192;
+    static final int MAX_REPORTED_ERRORS = 100;
+
+    private final MovieRepository store;
+
+    public MoviesBatchHandler(MovieRepository store) {
+        this.store = store;
+    }
+
+    public void handle(HttpExchange ex) throws IOException {
+        String contentType = ex.getRequestHeaders().getFirst("Content-Type");
+
+        if (contentType == null || !(contentType.toLowerCase().contains("application/json")
+                || contentType.toLowerCase().contains("application/x-ndjson"))) {
+            sendError(ex, 415, new ErrorResponse("Неподдерживаемый тип медиа"));
+            return;
+        }
+
+        Import batch = new Import(Year.now().getValue());
+        // lenient: NDJSON — это несколько значений верхнего уровня подряд
+        JsonReader reader = new JsonReader(new InputStreamReader(ex.getRequestBody(), StandardCharsets.UTF_8));
+        reader.setLenient(true);
+
+        boolean complete;
+        try {
+            readDocument(reader, batch);
+            complete = true;
+        } catch (IOException | IllegalStateException e) {
+            batch.fail(List.of("Некорректный JSON: " + e.getMessage()));
+            complete = false;
+        }
+        batch.flush();
+
+        sendJson(ex, complete ? 200 : 422, JsonUtil.toJson(batch.result));
+    }
+
+    private void readDocument(JsonReader reader, Import batch) throws IOException {
+        if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                readItem(reader, batch);
+            }
+            reader.endArray();
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new IllegalStateException("лишние данные после массива");
+            }
+            return;
+        }
+        while (reader.peek() != JsonToken.END_DOCUMENT) {
+            readItem(reader, batch);
+        }
+    }
+
+    // Ошибка в значениях полей относится к одному элементу; поток при этом остаётся на границе элементов.
+    private void readItem(JsonReader reader, Import batch) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            batch.fail(List.of("элемент должен быть объектом"));
+            return;
+        }
+
+        Movie movie = new Movie();
+        List<String> errors = new ArrayList<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            JsonToken token = reader.peek();
+            if (name.equals("title") && token == JsonToken.STRING) {
+                movie.setTitle(reader.nextString());
+            } else if (name.equals("year") && (token == JsonToken.NUMBER || token == JsonToken.STRING)) {
+                String year = reader.nextString();
+                try {
+                    movie.setYear(Integer.parseInt(year));
+                } catch (NumberFormatException e) {
+                    errors.add("год должен быть целым числом");
+                }
+            } else {
+                if ((name.equals("title") || name.equals("year")) && token != JsonToken.NULL) {
+                    errors.add("некорректный тип поля '" + name + "'");
+                }
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (errors.isEmpty()) {
+            errors = validateMovie(movie, batch.currentYear);
+        }
+        if (errors.isEmpty()) {
+            batch.accept(movie);
+        } else {
+            batch.fail(errors);
+        }
+    }
+
+    private final class Import {
+        final int currentYear;
+        final BatchResult result = new BatchResult();
+        private final List<Movie> pending = new ArrayList<>(CHUNK_SIZE);
+        private int index;
+
+        Import(int currentYear) {
+            this.currentYear = currentYear;
+        }
+
+        void accept(Movie movie) {
+            index++;
+            pending.add(movie);
+            if (pending.size() == CHUNK_SIZE) {
+                flush();
+            }
+        }
+
+        void fail(List<String> details) {
+            result.setFailed(result.getFailed() + 1);
+            if (result.getErrors().size() < MAX_REPORTED_ERRORS) {
+                result.getErrors().add(new BatchItemError(index, details));
+            }
+            index++;
+        }
+
+        void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            store.addAll(pending);
+            result.setCreated(result.getCreated() + pending.size());
+            pending.clear();
+        }
+    }
+}
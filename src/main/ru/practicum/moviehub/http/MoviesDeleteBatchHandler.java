@@ -0,0 +1,61 @@
+package ru.practicum.moviehub.http;
+
+import com.google.gson.JsonParseException;
+import com.sun.net.httpserver.HttpExchange;
+import ru.practicum.moviehub.JsonUtil;
+import ru.practicum.moviehub.api.DeleteBatchRequest;
+import ru.practicum.moviehub.api.DeleteBatchResult;
+import ru.practicum.moviehub.api.ErrorResponse;
+import ru.practicum.moviehub.store.MovieRepository;
+
+import java.io.IOException;
+import java.util.List;
+
+// POST /movies/delete-batch с телом {"ids":[1,2,3]}: удаление пакетом через MovieRepository.deleteAll,
+// в ответе — какие id удалены, а каких в каталоге не было. Не больше MoviesHandler.MAX_BATCH_IDS id.
+public class MoviesDeleteBatchHandler extends BaseHttpHandler {
+
+    private final MovieRepository store;
+
+    public MoviesDeleteBatchHandler(MovieRepository store) {
+        this.store = store;
+    }
+
+    public void handle(HttpExchange ex) throws IOException {
+        String contentType = ex.getRequestHeaders().getFirst("Content-Type");
+        if (contentType == null || !contentType.toLowerCase().contains("application/json")) {
+            sendError(ex, 415, new ErrorResponse("Неподдерживаемый тип медиа"));
+            return;
+        }
+
+        long[] ids;
+        try {
+            DeleteBatchRequest request = JsonUtil.fromJson(readBody(ex), DeleteBatchRequest.class);
+            if (request == null || request.getIds() == null || request.getIds().contains(null)) {
+                throw new IllegalArgumentException("Ожидается объект вида {\"ids\":[1,2,3]}");
+            }
+            ids = MoviesHandler.distinctIds(toArray(request.getIds()));
+        } catch (JsonParseException e) {
+            sendError(ex, 400, new ErrorResponse("Некорректный JSON"));
+            return;
+        } catch (IllegalArgumentException e) {
+            sendError(ex, 400, new ErrorResponse(e.getMessage()));
+            return;
+        }
+
+        boolean[] deleted = store.deleteAll(ids);
+        DeleteBatchResult result = new DeleteBatchResult();
+        for (int i = 0; i < ids.length; i++) {
+            (deleted[i] ? result.getDeleted() : result.getMissing()).add(ids[i]);
+        }
+        sendJson(ex, 200, JsonUtil.toJson(result));
+    }
+
+    private static long[] toArray(List<Long> ids) {
+        long[] array = new long[ids.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = ids.get(i);
+        }
+        return array;
+    }
+}
@@ -1,97 +1,317 @@
 package ru.practicum.moviehub.http;
 
-import com.google.gson.Gson;
 import com.sun.net.httpserver.HttpExchange;
-import ru.practicum.moviehub.JsonUtil;
 import ru.practicum.moviehub.api.ErrorResponse;
+import ru.practicum.moviehub.json.JsonBuffer;
+import ru.practicum.moviehub.json.MovieField;
 import ru.practicum.moviehub.model.Movie;
-import ru.practicum.moviehub.store.MoviesStore;
+import ru.practicum.moviehub.store.MovieQuery;
+import ru.practicum.moviehub.store.MovieRepository;
+import ru.practicum.moviehub.store.MovieSort;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 public class MoviesHandler extends BaseHttpHandler {
 
-    private final MoviesStore store;
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final int DEFAULT_PAGE_SIZE = 100;
+    static final int MAX_PAGE_SIZE = 1000;
+    // каталог больше этого отдаётся потоком, без сборки ответа целиком и без кэша
+    static final int MAX_CACHED_LIST_SIZE = 10_000;
+    static final String[] LIST_PARAMS = {"year", "yearFrom", "yearTo", "titlePrefix", "sort", "order",
+            "fields", "limit", "cursor", "ids"};
+    // не больше стольких id в ?ids= и в POST /movies/delete-batch
+    static final int MAX_BATCH_IDS = 1000;
+
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+    static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
+    private final MovieRepository store;
+    private final ResponseCache cache;
+    private final IdempotencyCache idempotency;
+
+    public MoviesHandler(MovieRepository store) {
+        this(store, null);
+    }
+
+    public MoviesHandler(MovieRepository store, ResponseCache cache) {
+        this(store, cache, null);
+    }
 
-    public MoviesHandler(MoviesStore store) {
+    // idempotency == null — заголовок Idempotency-Key игнорируется
+    public MoviesHandler(MovieRepository store, ResponseCache cache, IdempotencyCache idempotency) {
         this.store = store;
+        this.cache = cache;
+        this.idempotency = idempotency;
     }
 
-    @Override
-    public void handle(HttpExchange ex) throws IOException {
-        String method = ex.getRequestMethod();
+    // Тяжёлый запрос для допуска (AdmissionControl): GET без limit, cursor и ids отдаёт всё, что подошло, и может
+    // сериализовать весь каталог. Параметры проверяются по имени, а не подстрокой: значение вроде
+    // titlePrefix=limit= не должно выводить запрос из-под ограничения. Неразборчивый запрос дёшев — ответ 400.
+    static boolean isUnboundedList(HttpExchange ex) {
+        return isUnboundedList(ex.getRequestURI().getRawQuery());
+    }
 
-        if (method.equalsIgnoreCase("GET")) {
-            String query = ex.getRequestURI().getQuery();
+    static boolean isUnboundedList(String rawQuery) {
+        QueryString params;
+        try {
+            params = QueryString.parse(rawQuery, LIST_PARAMS);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return !params.has("limit") && !params.has("cursor") && !params.has("ids");
+    }
 
-            if (query != null && query.startsWith("year=")) {
-                handleGetByYear(ex, query.substring(5));
+    void handleGet(HttpExchange ex) throws IOException {
+        QueryString params;
+        Set<MovieField> fields;
+        long[] ids;
+        MovieQuery query;
+        try {
+            params = QueryString.parse(ex.getRequestURI().getRawQuery(), LIST_PARAMS);
+            fields = params.has("fields") ? MovieField.parseList(params.get("fields")) : MovieField.ALL;
+            if (params.has("ids") && !params.hasOnly("ids", "fields")) {
+                throw new IllegalArgumentException("С 'ids' можно указать только 'fields'");
+            }
+            ids = params.has("ids") ? parseIds(params.get("ids")) : null;
+            query = ids == null ? toQuery(params) : null;
+        } catch (IllegalArgumentException e) {
+            sendError(ex, 400, new ErrorResponse(e.getMessage()));
+            return;
+        }
+
+        if (ids != null) {
+            handleGetByIds(ex, ids, fields);
+        } else if (query == null) {
+            handleGetAll(ex, fields);
+        } else if (query.getLimit() != MovieQuery.NO_LIMIT) {
+            List<Movie> page = store.query(query);
+            if (query.getSort() == MovieSort.ID && page.size() == query.getLimit()) {
+                ex.getResponseHeaders().set(NEXT_CURSOR_HEADER, Long.toString(page.get(page.size() - 1).getId()));
+            }
+            sendMovies(ex, 200, page, fields);
+        } else if (!query.isFiltered() && store.size() > MAX_CACHED_LIST_SIZE) {
+            // весь большой каталог в другом порядке: сортировка неизбежна, но ответ не собирается и не кэшируется
+            sendMovieStream(ex, 200, store.query(query), fields);
+        } else {
+            // один год меняется реже каталога: ответ живёт в кэше, пока не тронут фильмы этого года
+            long version = query.getYearFrom() == query.getYearTo()
+                    ? store.yearVersion(query.getYearFrom()) : store.version();
+            sendCachedJson(ex, cache, version, out -> codec().writeMovies(out, store.query(query), fields));
+        }
+    }
+
+    // Вместо десятков GET /movies/{id}: один проход по хранилищу и один буфер ответа, отсутствующие id —
+    // в "missing". Ответ не кэшируется: наборы id у клиентов разные.
+    private void handleGetByIds(HttpExchange ex, long[] ids, Set<MovieField> fields) throws IOException {
+        List<Movie> found = store.findByIds(ids);
+        long[] missing = new long[ids.length - found.size()];
+        // found идёт в порядке ids без отсутствующих, а id в ids не повторяются
+        int next = 0;
+        int absent = 0;
+        for (long id : ids) {
+            if (next < found.size() && found.get(next).getId() == id) {
+                next++;
             } else {
-                handleGetAll(ex);
+                missing[absent++] = id;
             }
-        } else if (method.equalsIgnoreCase("POST")) {
-            handlePost(ex);
+        }
+        JsonBuffer out = JsonBuffer.acquire();
+        codec().writeLookup(out, found, missing, fields);
+        sendBuffer(ex, 200, out);
+    }
+
+    private void handleGetAll(HttpExchange ex, Set<MovieField> fields) throws IOException {
+        if (store.size() > MAX_CACHED_LIST_SIZE) {
+            sendMovieStream(ex, 200, store.values(), fields);
+            return;
+        }
+        sendCachedJson(ex, cache, store.version(), out -> codec().writeMovies(out, store.getAll(), fields));
+    }
+
+    // null — ни фильтров, ни порядка, ни страниц: весь каталог в порядке хранилища.
+    // С фильтром по годам порядок по умолчанию — по году (как раньше у диапазона), иначе по id.
+    // Страница (limit) — не больше MAX_PAGE_SIZE, курсор продолжает только выдачу по id.
+    private static MovieQuery toQuery(QueryString params) {
+        if (params.hasOnly("fields")) {
+            return null;
+        }
+
+        int yearFrom;
+        int yearTo;
+        if (params.has("year")) {
+            if (params.has("yearFrom") || params.has("yearTo")) {
+                throw new IllegalArgumentException("'year' нельзя указывать вместе с 'yearFrom'/'yearTo'");
+            }
+            yearFrom = params.requireInt("year");
+            yearTo = yearFrom;
         } else {
-            ex.sendResponseHeaders(405, -1);
-            ex.close();
+            yearFrom = params.getInt("yearFrom", Integer.MIN_VALUE);
+            yearTo = params.getInt("yearTo", Integer.MAX_VALUE);
+            if (yearFrom > yearTo) {
+                throw new IllegalArgumentException("'yearFrom' не может быть больше 'yearTo'");
+            }
         }
+
+        String titlePrefix = params.get("titlePrefix");
+        if (titlePrefix != null && titlePrefix.isEmpty()) {
+            throw new IllegalArgumentException("Параметр запроса 'titlePrefix' не должен быть пустым");
+        }
+
+        boolean yearFiltered = params.has("year") || params.has("yearFrom") || params.has("yearTo");
+        MovieSort sort = params.has("sort") ? MovieSort.parse(params.get("sort"))
+                : yearFiltered ? MovieSort.YEAR : MovieSort.ID;
+        boolean descending = params.has("order") && parseDescending(params.get("order"));
+
+        boolean paged = params.has("limit") || params.has("cursor");
+        int limit = params.getInt("limit", paged ? DEFAULT_PAGE_SIZE : MovieQuery.NO_LIMIT);
+        long cursor = params.getLong("cursor", 0);
+        if (paged && (limit < 1 || limit > MAX_PAGE_SIZE || cursor < 0)) {
+            throw new IllegalArgumentException(
+                    "'limit' должен быть между 1 и " + MAX_PAGE_SIZE + ", 'cursor' — неотрицательным");
+        }
+        if (cursor > 0 && sort != MovieSort.ID) {
+            throw new IllegalArgumentException("'cursor' работает только с sort=id");
+        }
+        return new MovieQuery(yearFrom, yearTo, titlePrefix, sort, descending, limit, cursor);
     }
 
-    private void handleGetAll(HttpExchange ex) throws IOException {
-        sendJson(ex, 200, JsonUtil.toJson(store.getAll()));
+    // "1,2,3" -> [1, 2, 3] без повторов, в исходном порядке.
+    static long[] parseIds(String value) {
+        String[] parts = value.split(",", -1);
+        long[] ids = new long[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            try {
+                ids[i] = Long.parseLong(parts[i].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Некорректный id в 'ids' — '" + parts[i] + "'");
+            }
+        }
+        return distinctIds(ids);
     }
 
-    private void handleGetByYear(HttpExchange ex, String yearParam) throws IOException {
-        try {
-            int year = Integer.parseInt(yearParam);
-            sendJson(ex, 200, JsonUtil.toJson(store.findByYear(year)));
-        } catch (NumberFormatException e) {
-            sendJson(ex, 400, JsonUtil.toJson(new ErrorResponse("Некорректный параметр запроса — 'year'")));
+    // Проверяет размер пакета id и убирает повторы, сохраняя порядок.
+    static long[] distinctIds(long[] ids) {
+        if (ids.length == 0 || ids.length > MAX_BATCH_IDS) {
+            throw new IllegalArgumentException("Нужно от 1 до " + MAX_BATCH_IDS + " id");
+        }
+        Set<Long> seen = new LinkedHashSet<>();
+        for (long id : ids) {
+            if (id <= 0) {
+                throw new IllegalArgumentException("id должен быть положительным: " + id);
+            }
+            seen.add(id);
+        }
+        if (seen.size() == ids.length) {
+            return ids;
+        }
+        return seen.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static boolean parseDescending(String order) {
+        if (order.equalsIgnoreCase("asc")) {
+            return false;
         }
+        if (order.equalsIgnoreCase("desc")) {
+            return true;
+        }
+        throw new IllegalArgumentException("Параметр запроса 'order' должен быть asc или desc");
     }
 
-    private static final Gson gson = new Gson();
+    // С Idempotency-Key ответ сохраняется: повтор с тем же ключом и телом получает его же (с заголовком
+    // Idempotent-Replayed), а не создаёт второй фильм; параллельный повтор ждёт первый запрос.
+    void handlePost(HttpExchange ex) throws IOException {
+        String key = ex.getRequestHeaders().getFirst(IDEMPOTENCY_KEY_HEADER);
+        if (idempotency == null || key == null) {
+            sendResponse(ex, createMovie(ex.getRequestHeaders().getFirst("Content-Type"), readBodyBytes(ex)));
+            return;
+        }
+        if (key.isBlank() || key.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            sendError(ex, 400, new ErrorResponse("Заголовок " + IDEMPOTENCY_KEY_HEADER
+                    + " должен быть непустым и не длиннее " + MAX_IDEMPOTENCY_KEY_LENGTH + " символов"));
+            return;
+        }
 
-    private void handlePost(HttpExchange ex) throws IOException {
         String contentType = ex.getRequestHeaders().getFirst("Content-Type");
+        byte[] body = readBodyBytes(ex);
+        IdempotencyCache.Response response;
+        try {
+            response = idempotency.execute(key, fingerprint(contentType, body), () -> createMovie(contentType, body));
+        } catch (IdempotencyCache.KeyReusedException e) {
+            sendError(ex, 422, new ErrorResponse(e.getMessage()));
+            return;
+        } catch (IdempotencyCache.InFlightException e) {
+            sendError(ex, 409, new ErrorResponse(e.getMessage()));
+            return;
+        }
+        if (response.replayed) {
+            ex.getResponseHeaders().set(IDEMPOTENT_REPLAYED_HEADER, "true");
+        }
+        sendResponse(ex, response);
+    }
 
+    private IdempotencyCache.Response createMovie(String contentType, byte[] body) {
         if (contentType == null || !contentType.toLowerCase().contains("application/json")) {
-            sendJson(ex, 415, JsonUtil.toJson(new ErrorResponse("Неподдерживаемый тип медиа")));
-            return;
+            return errorResponse(415, new ErrorResponse("Неподдерживаемый тип медиа"));
         }
 
-        String body = readBody(ex);
         Movie movie;
 
         try {
-            movie = gson.fromJson(body, Movie.class);
+            movie = codec().parseMovie(body);
         } catch (com.google.gson.JsonSyntaxException e) {
-            sendJson(ex, 422, JsonUtil.toJson(new ErrorResponse("Ошибка валидации",
-                    List.of("Некорректный JSON"))));
-            return;
+            return errorResponse(422, new ErrorResponse("Ошибка валидации",
+                    List.of("Некорректный JSON")));
         } catch (Exception e) {
-            sendJson(ex, 422, JsonUtil.toJson(new ErrorResponse("Ошибка валидации",
-                    List.of("Не удалось распарсить запрос"))));
-            return;
+            return errorResponse(422, new ErrorResponse("Ошибка валидации",
+                    List.of("Не удалось распарсить запрос")));
         }
 
         if (movie == null) {
-            sendJson(ex, 422, JsonUtil.toJson(new ErrorResponse("Ошибка валидации",
-                    List.of("Пустое тело запроса"))));
-            return;
+            return errorResponse(422, new ErrorResponse("Ошибка валидации",
+                    List.of("Пустое тело запроса")));
         }
 
         List<String> errors = validateMovie(movie);
 
         if (!errors.isEmpty()) {
-            sendJson(ex, 422, JsonUtil.toJson(new ErrorResponse("Ошибка валидации", errors)));
-            return;
+            return errorResponse(422, new ErrorResponse("Ошибка валидации", errors));
         }
 
         Movie saved = store.add(movie);
-        sendJson(ex, 201, JsonUtil.toJson(saved));
+        JsonBuffer out = JsonBuffer.acquire();
+        codec().writeMovie(out, saved);
+        return new IdempotencyCache.Response(201, out.toByteArray());
+    }
+
+    private IdempotencyCache.Response errorResponse(int status, ErrorResponse error) {
+        JsonBuffer out = JsonBuffer.acquire();
+        codec().writeError(out, error);
+        return new IdempotencyCache.Response(status, out.toByteArray());
+    }
+
+    private void sendResponse(HttpExchange ex, IdempotencyCache.Response response) throws IOException {
+        sendJson(ex, response.status, response.body);
+    }
+
+    // FNV-1a по типу и телу запроса: тот же ключ с другим запросом не должен получить чужой ответ.
+    private static long fingerprint(String contentType, byte[] body) {
+        long hash = 0xcbf29ce484222325L;
+        if (contentType != null) {
+            for (int i = 0; i < contentType.length(); i++) {
+                hash ^= contentType.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+        }
+        for (byte b : body) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
     }
 
     private Movie parseMovieFromBody(String json) {
@@ -149,21 +369,4 @@ public class MoviesHandler extends BaseHttpHandler {
             return json.substring(start, end).trim();
         }
     }
-
-    private List<String> validateMovie(Movie movie) {
-        List<String> errors = new ArrayList<>();
-        int currentYear = java.time.Year.now().getValue();
-
-        if (movie.getTitle() == null || movie.getTitle().isBlank()) {
-            errors.add("название не должно быть пустым");
-        } else if (movie.getTitle().length() > 100) {
-            errors.add("название не должно превышать 100 символов");
-        }
-
-        if (movie.getYear() < 1888 || movie.getYear() > currentYear + 1) {
-            errors.add("год должен быть между 1888 и " + (currentYear + 1));
-        }
-
-        return errors;
-    }
 }
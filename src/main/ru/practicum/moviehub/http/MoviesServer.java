@@ -1,33 +1,249 @@
 package ru.practicum.moviehub.http;
 
+import com.sun.net.httpserver.HttpContext;
 import com.sun.net.httpserver.HttpServer;
-import ru.practicum.moviehub.store.MoviesStore;
+import ru.practicum.moviehub.metrics.Metrics;
+import ru.practicum.moviehub.replication.MovieReplica;
+import ru.practicum.moviehub.store.ChangeFeed;
+import ru.practicum.moviehub.store.MovieRepository;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 
 
 public class MoviesServer {
     private final HttpServer server;
+    private final ExecutorService executor;
+    private final ServerConfig config;
+    private final ResponseCache cache;
+    private final MovieResponseCache movieCache;
+    private final IdempotencyCache idempotency;
+    private final AdmissionControl admission;
+    private final DrainGate gate = new DrainGate();
+    private final LoadShedder shedder = new LoadShedder();
+    // null, если лента изменений выключена или узел ведомый
+    private final ChangeFeed changes;
+    private final MovieChangesHandler changesHandler;
+    // null, если узел ведущий или единственный
+    private final MovieReplica replica;
+    private final Metrics metrics = new Metrics();
 
-    public MoviesServer(MoviesStore store, int port) {
+    public MoviesServer(MovieRepository store, int port) {
+        this(store, ServerConfig.defaults(port));
+    }
+
+    public MoviesServer(MovieRepository store, ServerConfig config) {
+        this.config = config;
+        if (config.isTcpNoDelay()) {
+            // Без TCP_NODELAY заголовки и тело уходят разными сегментами и ответ ждёт delayed ACK (~40 мс).
+            // Свойство читается один раз при первом создании HttpServer в JVM.
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        cache = config.getCacheEntries() > 0
+                ? new ResponseCache(config.getCacheEntries(), config.getCacheBytes())
+                : null;
+        movieCache = config.getMovieCacheEntries() > 0 ? new MovieResponseCache(config.getMovieCacheEntries()) : null;
+        replica = config.getLeader() != null ? new MovieReplica(store, config.getLeader()) : null;
+        // ведомый узел сам не пишет: POST уходит на ведущий
+        idempotency = replica == null && config.getIdempotencyEntries() > 0
+                ? new IdempotencyCache(config.getIdempotencyEntries(), config.getIdempotencyBytes(),
+                config.getIdempotencyTtl())
+                : null;
+        admission = new AdmissionControl(config.getRateLimitPerSecond() > 0
+                ? new RateLimiter(config.getRateLimitPerSecond(), config.getRateLimitBurst(), config.getRateLimitClients())
+                : null, config.getMaxExpensiveInFlight(), config.getApiKeys());
+        // ведомый узел применяет ленту ведущего через restore, а restore в ленту не попадает: своя была бы неполной
+        changes = replica == null && config.getChangeFeedCapacity() > 0
+                ? new ChangeFeed(config.getChangeFeedCapacity())
+                : null;
+        // INLINE обрабатывает всё в потоке-диспетчере: ожидание событий остановило бы весь сервер
+        changesHandler = changes != null
+                ? new MovieChangesHandler(changes, config.getExecutorMode() == ServerConfig.ExecutorMode.INLINE
+                ? 0 : config.getMaxChangeWaiters())
+                : null;
         try {
-            server = HttpServer.create(new InetSocketAddress(port), 0);
-            server.createContext("/movies", new MoviesHandler(store));
-            server.createContext("/movies/", new MovieIdHandler(store));
+            InetSocketAddress address = new InetSocketAddress(config.getPort());
+            server = config.getTransport() == ServerConfig.Transport.NIO
+                    ? NioHttpServer.create(address, config.getBacklog(), Runtime.getRuntime().availableProcessors(),
+                    config.isTcpNoDelay())
+                    : HttpServer.create(address, config.getBacklog());
+            // один контекст и одна таблица маршрутов на все /movies…: фильтры проходят один раз, а путь и метод
+            // сопоставляет Router без разбора URI на строки
+            MoviesHandler movies = configure(new MoviesHandler(store, cache, idempotency));
+            MovieIdHandler movie = configure(new MovieIdHandler(store, movieCache));
+            Router router = new Router(metrics)
+                    .add(HttpMethod.GET, "/movies", movies::handleGet, MoviesHandler::isUnboundedList)
+                    .add(HttpMethod.GET, "/movies/{id}", movie::handleGet)
+                    .add(HttpMethod.GET, "/movies/search", configure(new MovieSearchHandler(store))::handle)
+                    .add(HttpMethod.GET, "/movies/stats", configure(new MovieStatsHandler(store, cache))::handle);
+            if (replica == null) {
+                router.add(HttpMethod.POST, "/movies", movies::handlePost)
+                        .add(HttpMethod.DELETE, "/movies/{id}", movie::handleDelete)
+                        .add(HttpMethod.POST, "/movies/batch", configure(new MoviesBatchHandler(store))::handle,
+                                ex -> true)
+                        .add(HttpMethod.POST, "/movies/delete-batch",
+                                configure(new MoviesDeleteBatchHandler(store))::handle);
+            } else {
+                LeaderRedirectHandler redirect = configure(new LeaderRedirectHandler(replica.getLeader()));
+                router.add(HttpMethod.POST, "/movies", redirect::handle)
+                        .add(HttpMethod.DELETE, "/movies/{id}", (ex, id) -> redirect.handle(ex))
+                        .add(HttpMethod.POST, "/movies/batch", redirect::handle)
+                        .add(HttpMethod.POST, "/movies/delete-batch", redirect::handle);
+            }
+            if (changesHandler != null) {
+                router.add(HttpMethod.GET, "/movies/changes", configure(changesHandler)::handle)
+                        .add(HttpMethod.GET, "/movies/snapshot",
+                                configure(new MovieSnapshotHandler(store, changes))::handle, ex -> true);
+            }
+            HttpContext context = server.createContext("/movies", router);
+            // LoadShedder первым: запрос сверх пула отклоняется, ни с чем не считаясь; DrainGate раньше
+            // AdmissionControl: во время остановки запрос не должен занимать его место
+            context.getFilters().add(shedder.filter());
+            context.getFilters().add(gate.filter());
+            context.getFilters().add(admission.filter(router::isExpensive));
+            // готовность и метрики отвечают без ограничений: под нагрузкой и при остановке они нужнее всего
+            ReadinessHandler readiness = new ReadinessHandler(gate, replica == null ? () -> true : replica::isSynced);
+            server.createContext("/", new Router(metrics)
+                    .add(HttpMethod.GET, "/ready", configure(readiness)::handle)
+                    .add(HttpMethod.GET, "/metrics", configure(new MetricsHandler(metrics))::handle));
         } catch (IOException e) {
-            throw new RuntimeException("Не удалось создать HTTP-сервер на порту " + port, e);
+            throw new RuntimeException("Не удалось создать HTTP-сервер на порту " + config.getPort(), e);
+        }
+        registerGauges(store);
+        executor = config.getExecutorMode().createExecutor(config, shedder);
+        server.setExecutor(executor);
+        if (executor instanceof ThreadPoolExecutor pool) {
+            metrics.gauge("moviehub_http_queued", "Запросов в очереди пула обработчиков", () -> pool.getQueue().size());
+            metrics.counter("moviehub_http_shed_total", "Запросы, отклонённые 503: пул обработчиков и очередь заняты",
+                    shedder::getShed);
+            metrics.counter("moviehub_http_shed_dropped_total",
+                    "Соединения, закрытые без ответа: переполнен и пул отказов", shedder::getDropped);
+        }
+    }
+
+    private <T extends BaseHttpHandler> T configure(T handler) {
+        handler.setCompressionMinBytes(config.getCompressionMinBytes());
+        handler.setJsonCodec(config.getJsonCodec());
+        return handler;
+    }
+
+    private void registerGauges(MovieRepository store) {
+        store.attachObserver(metrics);
+        store.attachInvalidation(movieCache);
+        if (changes != null) {
+            store.attachChangeFeed(changes);
+            metrics.gauge("moviehub_changes_head", "Номер последнего события ленты изменений", changes::head);
+        }
+        if (replica != null) {
+            metrics.gauge("moviehub_replication_applied_seq", "Номер последнего применённого события ведущего",
+                    replica::getApplied);
+            metrics.gauge("moviehub_replication_lag_events", "Событий ведущего, ещё не применённых на этом узле",
+                    replica::getLagEvents);
+            metrics.gauge("moviehub_replication_leader_contact_age_ms",
+                    "Мс с последнего ответа ведущего; -1 — ещё не отвечал", replica::getLeaderContactAgeMillis);
+            metrics.counter("moviehub_replication_resyncs_total", "Повторные загрузки снимка после 410 от ведущего",
+                    replica::getResyncs);
+            metrics.counter("moviehub_replication_errors_total", "Ошибки связи с ведущим", replica::getErrors);
+        }
+        metrics.gauge("moviehub_store_movies", "Число фильмов в каталоге", store::size);
+        metrics.gauge("moviehub_store_version", "Версия каталога, растёт с каждым изменением", store::version);
+        if (cache != null) {
+            metrics.gauge("moviehub_response_cache_entries", "Записей в кэше ответов", cache::size);
+            metrics.counter("moviehub_response_cache_hits_total", "Попадания в кэш ответов", cache::getHits);
+            metrics.counter("moviehub_response_cache_misses_total", "Промахи кэша ответов", cache::getMisses);
+            metrics.counter("moviehub_response_cache_evictions_total", "Вытеснения из кэша ответов",
+                    cache::getEvictions);
+        }
+        if (movieCache != null) {
+            metrics.gauge("moviehub_movie_cache_entries", "Записей в кэше ответов GET /movies/{id}", movieCache::size);
+            metrics.counter("moviehub_movie_cache_hits_total",
+                    "Попадания в кэш фильмов; доля попаданий — hits / (hits + misses)", movieCache::getHits);
+            metrics.counter("moviehub_movie_cache_misses_total", "Промахи кэша фильмов", movieCache::getMisses);
+            metrics.counter("moviehub_movie_cache_evictions_total", "Вытеснения из кэша фильмов",
+                    movieCache::getEvictions);
+            metrics.counter("moviehub_movie_cache_rejections_total",
+                    "Новые фильмы, не допущенные в кэш: их запрашивали реже вытесняемых", movieCache::getRejections);
+            metrics.counter("moviehub_movie_cache_invalidations_total",
+                    "Записи, убранные из кэша фильмов удалением или заменой фильма", movieCache::getInvalidations);
+        }
+        metrics.counter("moviehub_http_rate_limited_total", "Запросы, отклонённые 429 по частоте запросов клиента",
+                admission::getRateLimited);
+        metrics.counter("moviehub_http_overloaded_total", "Тяжёлые запросы, отклонённые 429 сверх общего предела",
+                admission::getOverloaded);
+        metrics.gauge("moviehub_http_in_flight", "Выполняющихся запросов", gate::inFlight);
+        metrics.counter("moviehub_http_drain_rejected_total", "Запросы, отклонённые 503 во время остановки",
+                gate::getRejected);
+        metrics.gauge("moviehub_http_rate_limit_clients", "Клиентов с неполной корзиной запросов", admission::clients);
+        if (idempotency != null) {
+            metrics.gauge("moviehub_idempotency_entries", "Сохранённых ответов по Idempotency-Key", idempotency::size);
+            metrics.counter("moviehub_idempotency_replays_total", "Повторы POST, получившие сохранённый ответ",
+                    idempotency::getReplays);
+            metrics.counter("moviehub_idempotency_evictions_total", "Вытеснения из кэша Idempotency-Key до истечения",
+                    idempotency::getEvictions);
         }
     }
 
     public void start() {
         server.start();
-        System.out.println("Сервер запущен на порту " + server.getAddress().getPort());
+        if (replica != null) {
+            replica.start();
+        }
+        System.out.println("Сервер запущен на порту " + getPort() + " (транспорт: "
+                + config.getTransport().name().toLowerCase() + ", исполнитель: "
+                + config.getExecutorMode().name().toLowerCase()
+                + (replica != null ? ", ведомый узел " + replica.getLeader() : "") + ")");
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
     }
 
+    // null, если кэш ответов выключен
+    public ResponseCache getResponseCache() {
+        return cache;
+    }
+
+    // null, если кэш ответов по id выключен
+    public MovieResponseCache getMovieCache() {
+        return movieCache;
+    }
 
+    // Плавная остановка: /ready сразу отвечает 503, и, если его опрашивает балансировщик, ему даётся
+    // readinessDelay вывести узел; затем новые запросы получают 503, а выполняющиеся (в том числе POST
+    // посреди store.add) завершаются, но не дольше drainTimeout. Сохранение на диск — после stop, см. MovieHubApp.
     public void stop() {
+        gate.markNotReady();
+        boolean drained;
+        try {
+            if (gate.wasProbed()) {
+                Thread.sleep(config.getReadinessDelay().toMillis());
+            }
+            gate.close();
+            if (changesHandler != null) {
+                changesHandler.stop();
+            }
+            if (replica != null) {
+                replica.stop();
+            }
+            drained = gate.awaitIdle(config.getDrainTimeout());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            gate.close();
+            drained = false;
+        }
+        int abandoned = gate.inFlight();
         server.stop(0);
-        System.out.println("Сервер остановлен");
+        if (executor != null) {
+            executor.shutdown();
+        }
+        shedder.shutdown();
+        System.out.println(drained ? "Сервер остановлен"
+                : "Сервер остановлен, не дождавшись запросов: " + abandoned);
     }
-}
\ No newline at end of file
+}
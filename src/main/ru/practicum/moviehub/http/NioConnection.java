@@ -0,0 +1,477 @@
+package ru.practicum.moviehub.http;
+
+import com.sun.net.httpserver.Headers;
+import ru.practicum.moviehub.JsonUtil;
+import ru.practicum.moviehub.api.ErrorResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Соединение NioHttpServer. Всё, кроме send и closeAsync, выполняется в потоке его цикла событий.
+// Пока запрос обрабатывается, чтение из сокета приостановлено: следующий запрос, присланный заранее
+// (pipelining), дожидается в сокете и в буфере in, а ответы не перемешиваются. Поток обработчика отдаёт
+// буферы ответа через send и ждёт, если неотправленного больше MAX_PENDING_BYTES, — медленный клиент
+// притормаживает свой обработчик, а не раздувает память.
+final class NioConnection {
+    static final int MAX_HEAD_BYTES = 64 * 1024;
+    static final int MAX_BODY_BYTES = 64 * 1024 * 1024;
+    static final long MAX_PENDING_BYTES = 4L * NioHttpServer.BUFFER_SIZE;
+    private static final byte[] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final NioHttpServer.EventLoop loop;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final InetSocketAddress remote;
+    private final InetSocketAddress local;
+
+    // прочитанное, но ещё не разобранное: [inStart, inEnd)
+    private byte[] in = new byte[4096];
+    private int inStart;
+    private int inEnd;
+    // разобранный заголовок запроса, тело которого ещё не дочитано
+    private Head head;
+    private boolean inputClosed;
+
+    private final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+    private final AtomicLong pending = new AtomicLong();
+    private boolean busy;
+    private boolean responseDone;
+    private boolean closeAfterResponse;
+    private volatile boolean closed;
+    private long lastActive = System.nanoTime();
+
+    NioConnection(NioHttpServer.EventLoop loop, SocketChannel channel, SelectionKey key) throws IOException {
+        this.loop = loop;
+        this.channel = channel;
+        this.key = key;
+        this.remote = (InetSocketAddress) channel.getRemoteAddress();
+        this.local = (InetSocketAddress) channel.getLocalAddress();
+    }
+
+    InetSocketAddress remoteAddress() {
+        return remote;
+    }
+
+    InetSocketAddress localAddress() {
+        return local;
+    }
+
+    DirectBufferPool buffers() {
+        return loop.server().buffers();
+    }
+
+    boolean isIdleSince(long threshold) {
+        return !busy && lastActive - threshold < 0;
+    }
+
+    void onReadable() {
+        ByteBuffer buffer = loop.readBuffer;
+        buffer.clear();
+        int read;
+        try {
+            read = channel.read(buffer);
+        } catch (IOException e) {
+            close();
+            return;
+        }
+        if (read < 0) {
+            inputClosed = true;
+            if (!busy) {
+                close();
+            }
+            return;
+        }
+        buffer.flip();
+        if (in.length - inEnd < read) {
+            compact(read);
+        }
+        buffer.get(in, inEnd, read);
+        inEnd += read;
+        lastActive = System.nanoTime();
+        processInput();
+    }
+
+    void onWritable() {
+        flushOut();
+    }
+
+    // Поток обработчика: буфер ответа (уже после flip) в очередь сокета; last — ответ закончен.
+    void send(ByteBuffer buffer, boolean last, boolean closeAfter) throws IOException {
+        if (closed) {
+            if (buffer != null) {
+                buffers().release(buffer);
+            }
+            throw new IOException("Соединение с клиентом закрыто");
+        }
+        if (buffer != null) {
+            pending.addAndGet(buffer.remaining());
+        }
+        loop.execute(this, () -> enqueue(buffer, last, closeAfter));
+        // в самом цикле (исполнитель INLINE) ждать нельзя: отправляет этот же поток
+        if (!loop.inLoop() && pending.get() > MAX_PENDING_BYTES) {
+            synchronized (this) {
+                while (!closed && pending.get() > MAX_PENDING_BYTES) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Ожидание отправки ответа прервано");
+                    }
+                }
+            }
+            if (closed) {
+                throw new IOException("Соединение с клиентом закрыто");
+            }
+        }
+    }
+
+    // Из любого потока: ответ не может быть доведён до конца, соединение закрывается.
+    void closeAsync() {
+        loop.execute(this, this::close);
+    }
+
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        key.cancel();
+        NioHttpServer.closeQuietly(channel);
+        ByteBuffer buffer;
+        while ((buffer = out.poll()) != null) {
+            buffers().release(buffer);
+        }
+        loop.closed(this);
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    private void enqueue(ByteBuffer buffer, boolean last, boolean closeAfter) {
+        if (closed) {
+            if (buffer != null) {
+                buffers().release(buffer);
+            }
+            return;
+        }
+        if (buffer != null) {
+            out.add(buffer);
+        }
+        if (last) {
+            responseDone = true;
+            closeAfterResponse |= closeAfter;
+        }
+        flushOut();
+    }
+
+    private void flushOut() {
+        ByteBuffer buffer;
+        while ((buffer = out.peek()) != null) {
+            int written;
+            try {
+                written = channel.write(buffer);
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            if (written > 0 && pending.addAndGet(-written) <= MAX_PENDING_BYTES) {
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+            if (buffer.hasRemaining()) {
+                key.interestOps(SelectionKey.OP_WRITE);
+                return;
+            }
+            out.poll();
+            buffers().release(buffer);
+        }
+        if (responseDone) {
+            responseDone = false;
+            finishResponse();
+        } else {
+            key.interestOps(busy ? 0 : SelectionKey.OP_READ);
+        }
+    }
+
+    private void finishResponse() {
+        busy = false;
+        lastActive = System.nanoTime();
+        if (closeAfterResponse || inputClosed && inStart == inEnd) {
+            close();
+            return;
+        }
+        key.interestOps(SelectionKey.OP_READ);
+        processInput();
+    }
+
+    private void processInput() {
+        if (busy || closed) {
+            return;
+        }
+        NioExchange exchange;
+        try {
+            exchange = parseRequest();
+        } catch (BadRequestException e) {
+            reject(e.status, e.getMessage());
+            return;
+        }
+        if (exchange == null) {
+            if (inputClosed) {
+                close();
+            }
+            return;
+        }
+        busy = true;
+        key.interestOps(out.isEmpty() ? 0 : SelectionKey.OP_WRITE);
+        loop.server().dispatch(exchange);
+    }
+
+    // null — запрос ещё не дочитан.
+    private NioExchange parseRequest() throws BadRequestException {
+        if (head == null) {
+            int end = indexOfHeadEnd();
+            if (end < 0) {
+                if (inEnd - inStart > MAX_HEAD_BYTES) {
+                    throw new BadRequestException(431, "Слишком длинные заголовки запроса");
+                }
+                return null;
+            }
+            head = parseHead(inStart, end);
+            inStart = end + 4;
+            if (head.expectContinue && head.contentLength > inEnd - inStart) {
+                sendRaw(CONTINUE);
+            }
+        }
+        byte[] body;
+        if (head.chunked) {
+            body = decodeChunked();
+            if (body == null) {
+                return null;
+            }
+        } else {
+            if (inEnd - inStart < head.contentLength) {
+                return null;
+            }
+            body = Arrays.copyOfRange(in, inStart, inStart + (int) head.contentLength);
+            inStart += (int) head.contentLength;
+        }
+        if (inStart == inEnd) {
+            inStart = 0;
+            inEnd = 0;
+        }
+        Head request = head;
+        head = null;
+        closeAfterResponse = !request.keepAlive;
+        return new NioExchange(this, request.method, request.uri, request.protocol, request.headers, body,
+                request.keepAlive);
+    }
+
+    private int indexOfHeadEnd() {
+        for (int i = inStart; i + 3 < inEnd; i++) {
+            if (in[i] == '\r' && in[i + 1] == '\n' && in[i + 2] == '\r' && in[i + 3] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Head parseHead(int from, int to) throws BadRequestException {
+        String text = new String(in, from, to - from, StandardCharsets.ISO_8859_1);
+        int lineEnd = text.indexOf("\r\n");
+        String requestLine = lineEnd < 0 ? text : text.substring(0, lineEnd);
+        int sp1 = requestLine.indexOf(' ');
+        int sp2 = requestLine.lastIndexOf(' ');
+        if (sp1 <= 0 || sp2 <= sp1) {
+            throw new BadRequestException(400, "Некорректная строка запроса");
+        }
+        Head head = new Head();
+        head.method = requestLine.substring(0, sp1);
+        head.protocol = requestLine.substring(sp2 + 1);
+        if (!head.protocol.equals("HTTP/1.1") && !head.protocol.equals("HTTP/1.0")) {
+            throw new BadRequestException(505, "Поддерживается только HTTP/1.1 и HTTP/1.0");
+        }
+        try {
+            head.uri = new URI(requestLine.substring(sp1 + 1, sp2));
+        } catch (URISyntaxException e) {
+            throw new BadRequestException(400, "Некорректный адрес запроса");
+        }
+
+        Headers headers = new Headers();
+        int pos = lineEnd < 0 ? text.length() : lineEnd + 2;
+        while (pos < text.length()) {
+            int next = text.indexOf("\r\n", pos);
+            if (next < 0) {
+                next = text.length();
+            }
+            int colon = text.indexOf(':', pos);
+            if (colon <= pos || colon > next) {
+                throw new BadRequestException(400, "Некорректный заголовок запроса");
+            }
+            headers.add(text.substring(pos, colon).trim(), text.substring(colon + 1, next).trim());
+            pos = next + 2;
+        }
+        head.headers = headers;
+
+        String connection = headers.getFirst("Connection");
+        head.keepAlive = head.protocol.equals("HTTP/1.1")
+                ? !"close".equalsIgnoreCase(connection)
+                : "keep-alive".equalsIgnoreCase(connection);
+        head.expectContinue = "100-continue".equalsIgnoreCase(headers.getFirst("Expect"));
+        String encoding = headers.getFirst("Transfer-Encoding");
+        if (encoding != null) {
+            if (!"chunked".equalsIgnoreCase(encoding)) {
+                throw new BadRequestException(501, "Поддерживается только Transfer-Encoding: chunked");
+            }
+            head.chunked = true;
+            head.contentLength = 0;
+        } else {
+            String length = headers.getFirst("Content-Length");
+            try {
+                head.contentLength = length == null ? 0 : Long.parseLong(length);
+            } catch (NumberFormatException e) {
+                throw new BadRequestException(400, "Некорректный Content-Length");
+            }
+            if (head.contentLength < 0) {
+                throw new BadRequestException(400, "Некорректный Content-Length");
+            }
+        }
+        if (head.contentLength > MAX_BODY_BYTES) {
+            throw new BadRequestException(413, "Тело запроса больше " + MAX_BODY_BYTES + " байт");
+        }
+        return head;
+    }
+
+    // Тело chunked целиком, если уже дочитано (вместе с завершающим нулевым блоком), иначе null.
+    private byte[] decodeChunked() throws BadRequestException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        int pos = inStart;
+        while (true) {
+            int lineEnd = indexOfCrlf(pos);
+            if (lineEnd < 0) {
+                return chunkedIncomplete();
+            }
+            long size = 0;
+            int i = pos;
+            for (; i < lineEnd && in[i] != ';'; i++) {
+                int digit = Character.digit(in[i], 16);
+                if (digit < 0 || size > MAX_BODY_BYTES) {
+                    throw new BadRequestException(400, "Некорректный размер блока chunked");
+                }
+                size = size * 16 + digit;
+            }
+            if (i == pos) {
+                throw new BadRequestException(400, "Некорректный размер блока chunked");
+            }
+            pos = lineEnd + 2;
+            if (size == 0) {
+                // заголовки после тела не нужны: пропускаем до пустой строки
+                while (true) {
+                    int end = indexOfCrlf(pos);
+                    if (end < 0) {
+                        return chunkedIncomplete();
+                    }
+                    boolean empty = end == pos;
+                    pos = end + 2;
+                    if (empty) {
+                        break;
+                    }
+                }
+                inStart = pos;
+                return body.toByteArray();
+            }
+            if (body.size() + size > MAX_BODY_BYTES) {
+                throw new BadRequestException(413, "Тело запроса больше " + MAX_BODY_BYTES + " байт");
+            }
+            if (inEnd - pos < size + 2) {
+                return chunkedIncomplete();
+            }
+            body.write(in, pos, (int) size);
+            pos += (int) size + 2;
+        }
+    }
+
+    private byte[] chunkedIncomplete() throws BadRequestException {
+        if (inEnd - inStart > MAX_BODY_BYTES + MAX_HEAD_BYTES) {
+            throw new BadRequestException(413, "Тело запроса больше " + MAX_BODY_BYTES + " байт");
+        }
+        return null;
+    }
+
+    private int indexOfCrlf(int from) {
+        for (int i = from; i + 1 < inEnd; i++) {
+            if (in[i] == '\r' && in[i + 1] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Освобождает место для ещё need байт: сдвигает непрочитанное в начало и, если мало, растит массив.
+    private void compact(int need) {
+        int unread = inEnd - inStart;
+        byte[] target = unread + need <= in.length ? in : new byte[Math.max(in.length * 2, unread + need)];
+        System.arraycopy(in, inStart, target, 0, unread);
+        in = target;
+        inStart = 0;
+        inEnd = unread;
+    }
+
+    private void sendRaw(byte[] bytes) {
+        ByteBuffer buffer = buffers().acquire();
+        buffer.put(bytes).flip();
+        pending.addAndGet(buffer.remaining());
+        out.add(buffer);
+        flushOut();
+    }
+
+    // Ошибка разбора: ответ и закрытие, дальше в этом соединении читать нечего. Сообщения — только свои,
+    // без значений из запроса: ответ должен поместиться в один буфер пула.
+    private void reject(int status, String message) {
+        byte[] body = JsonUtil.toJson(new ErrorResponse(message)).getBytes(StandardCharsets.UTF_8);
+        byte[] head = ("HTTP/1.1 " + status + " " + NioExchange.reason(status) + "\r\n"
+                + "Content-Type: " + BaseHttpHandler.CT_JSON + "\r\nContent-Length: " + body.length
+                + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = buffers().acquire();
+        buffer.put(head).put(body).flip();
+        pending.addAndGet(buffer.remaining());
+        out.add(buffer);
+        busy = true;
+        responseDone = true;
+        closeAfterResponse = true;
+        flushOut();
+    }
+
+    private static final class Head {
+        String method;
+        URI uri;
+        String protocol;
+        Headers headers;
+        long contentLength;
+        boolean chunked;
+        boolean keepAlive;
+        boolean expectContinue;
+    }
+
+    private static final class BadRequestException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        BadRequestException(int status, String message) {
+            super(message, null, false, false);
+            this.status = status;
+        }
+    }
+}
@@ -0,0 +1,433 @@
+package ru.practicum.moviehub.http;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// HttpExchange поверх NioConnection: обработчики и фильтры работают с ним так же, как с обменом HttpServer.
+// Тело запроса к этому моменту прочитано целиком. Ответ пишется в прямые буферы пула: заголовки и начало тела
+// делят первый буфер, и короткий ответ уходит в сокет одной записью при закрытии обмена. Длина тела — как
+// у HttpServer: -1 — тела нет, 0 — chunked, иначе Content-Length.
+final class NioExchange extends HttpExchange {
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    // размер блока chunked — 8 hex-цифр с ведущими нулями и CRLF, место под него занимается заранее
+    private static final int CHUNK_HEAD = 10;
+    private static volatile DateHeader date = new DateHeader(0, "");
+
+    private final NioConnection connection;
+    private final String method;
+    private final URI uri;
+    private final String protocol;
+    private final Headers requestHeaders;
+    private final Headers responseHeaders = new Headers();
+    private final boolean keepAlive;
+    private final Map<String, Object> attributes = new HashMap<>();
+    private InputStream requestBody;
+    private OutputStream responseBody;
+    private final ResponseStream stream = new ResponseStream();
+    private HttpContext context;
+    private int status = -1;
+    private boolean closed;
+
+    NioExchange(NioConnection connection, String method, URI uri, String protocol, Headers requestHeaders,
+                byte[] body, boolean keepAlive) {
+        this.connection = connection;
+        this.method = method;
+        this.uri = uri;
+        this.protocol = protocol;
+        this.requestHeaders = requestHeaders;
+        this.keepAlive = keepAlive;
+        this.requestBody = new ByteArrayInputStream(body);
+        this.responseBody = stream;
+    }
+
+    void setContext(HttpContext context) {
+        this.context = context;
+    }
+
+    @Override
+    public Headers getRequestHeaders() {
+        return requestHeaders;
+    }
+
+    @Override
+    public Headers getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    @Override
+    public URI getRequestURI() {
+        return uri;
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return method;
+    }
+
+    @Override
+    public HttpContext getHttpContext() {
+        return context;
+    }
+
+    @Override
+    public InputStream getRequestBody() {
+        return requestBody;
+    }
+
+    @Override
+    public OutputStream getResponseBody() {
+        return responseBody;
+    }
+
+    @Override
+    public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+        if (status >= 0) {
+            throw new IOException("Заголовки ответа уже отправлены");
+        }
+        status = rCode;
+        boolean noBody = responseLength < 0 || rCode == 204 || rCode == 304 || method.equals("HEAD");
+        boolean close = !keepAlive || "close".equalsIgnoreCase(responseHeaders.getFirst("Connection"));
+        if (noBody) {
+            if (rCode != 204 && rCode != 304) {
+                responseHeaders.set("Content-Length", "0");
+            }
+        } else if (responseLength > 0) {
+            responseHeaders.set("Content-Length", Long.toString(responseLength));
+        } else if (protocol.equals("HTTP/1.1")) {
+            responseHeaders.set("Transfer-Encoding", "chunked");
+        } else {
+            // у HTTP/1.0 нет chunked: конец тела — закрытие соединения
+            close = true;
+        }
+        if (close) {
+            responseHeaders.set("Connection", "close");
+        } else if (protocol.equals("HTTP/1.0")) {
+            responseHeaders.set("Connection", "keep-alive");
+        }
+        responseHeaders.set("Date", currentDate());
+
+        ByteBuffer buffer = connection.buffers().acquire();
+        putAscii(buffer, "HTTP/1.1 " + rCode + " " + reason(rCode) + "\r\n");
+        for (Map.Entry<String, List<String>> header : responseHeaders.entrySet()) {
+            for (String value : header.getValue()) {
+                if (buffer.remaining() < header.getKey().length() + value.length() + 4 + CRLF.length) {
+                    connection.buffers().release(buffer);
+                    throw new IOException("Заголовки ответа не помещаются в " + buffer.capacity() + " байт");
+                }
+                putAscii(buffer, header.getKey());
+                putAscii(buffer, ": ");
+                putAscii(buffer, value);
+                buffer.put(CRLF);
+            }
+        }
+        buffer.put(CRLF);
+        stream.start(buffer, noBody ? -1 : responseLength, protocol.equals("HTTP/1.1") && responseLength == 0,
+                close);
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return connection.remoteAddress();
+    }
+
+    @Override
+    public int getResponseCode() {
+        return status;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return connection.localAddress();
+    }
+
+    @Override
+    public String getProtocol() {
+        return protocol;
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        if (value == null) {
+            attributes.remove(name);
+        } else {
+            attributes.put(name, value);
+        }
+    }
+
+    @Override
+    public void setStreams(InputStream i, OutputStream o) {
+        if (i != null) {
+            requestBody = i;
+        }
+        if (o != null) {
+            responseBody = o;
+        }
+    }
+
+    @Override
+    public HttpPrincipal getPrincipal() {
+        return null;
+    }
+
+    // Как у HttpServer: обмен без отправленных заголовков или с недописанным телом обрывает соединение.
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (status < 0) {
+            connection.closeAsync();
+            return;
+        }
+        try {
+            // закрываем и обёртки из setStreams: gzip дописывает хвост при закрытии
+            responseBody.close();
+        } catch (IOException e) {
+            stream.abort();
+        }
+    }
+
+    // Обработчик бросил исключение. До заголовков клиент ещё получит 500, после — только обрыв соединения.
+    void fail(Throwable error) {
+        System.err.println("NIO: ошибка обработки " + method + " " + uri + ": " + error);
+        if (stream.finished || closed && status < 0) {
+            // ответ уже ушёл целиком или соединение уже закрывается
+            return;
+        }
+        if (status >= 0) {
+            closed = true;
+            stream.abort();
+            return;
+        }
+        try {
+            responseHeaders.clear();
+            responseHeaders.set("Connection", "close");
+            sendResponseHeaders(500, -1);
+        } catch (IOException e) {
+            connection.closeAsync();
+            closed = true;
+        }
+    }
+
+    static String reason(int status) {
+        switch (status) {
+            case 200: return "OK";
+            case 201: return "Created";
+            case 202: return "Accepted";
+            case 204: return "No Content";
+            case 206: return "Partial Content";
+            case 304: return "Not Modified";
+            case 307: return "Temporary Redirect";
+            case 400: return "Bad Request";
+            case 404: return "Not Found";
+            case 405: return "Method Not Allowed";
+            case 409: return "Conflict";
+            case 410: return "Gone";
+            case 412: return "Precondition Failed";
+            case 413: return "Content Too Large";
+            case 415: return "Unsupported Media Type";
+            case 422: return "Unprocessable Content";
+            case 429: return "Too Many Requests";
+            case 431: return "Request Header Fields Too Large";
+            case 500: return "Internal Server Error";
+            case 501: return "Not Implemented";
+            case 503: return "Service Unavailable";
+            case 505: return "HTTP Version Not Supported";
+            default: return "Status " + status;
+        }
+    }
+
+    // Date меняется раз в секунду — форматируется тоже раз в секунду, а не на каждый ответ.
+    private static String currentDate() {
+        long second = System.currentTimeMillis() / 1000;
+        DateHeader cached = date;
+        if (cached.second != second) {
+            cached = new DateHeader(second, DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                    ZonedDateTime.ofInstant(java.time.Instant.ofEpochSecond(second), ZoneOffset.UTC)));
+            date = cached;
+        }
+        return cached.value;
+    }
+
+    private static void putAscii(ByteBuffer buffer, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            buffer.put((byte) text.charAt(i));
+        }
+    }
+
+    private record DateHeader(long second, String value) {
+    }
+
+    // Тело ответа. Заполненный буфер отдаётся соединению и заменяется новым из пула; в режиме chunked
+    // каждый отданный буфер — один блок, flush закрывает блок досрочно.
+    private final class ResponseStream extends OutputStream {
+        private ByteBuffer buffer;
+        // длина задана Content-Length, remaining — сколько байт ещё должно быть записано
+        private boolean fixed;
+        private long remaining;
+        private boolean chunked;
+        private boolean closeAfter;
+        // начало незакрытого блока chunked в buffer, -1 — блока нет
+        private int chunkStart = -1;
+        private boolean finished;
+
+        void start(ByteBuffer head, long length, boolean chunked, boolean closeAfter) throws IOException {
+            this.buffer = head;
+            this.fixed = length > 0;
+            this.remaining = length;
+            this.chunked = chunked;
+            this.closeAfter = closeAfter;
+            if (length < 0) {
+                // тела нет: ответ готов целиком
+                finished = true;
+                handOff(true);
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (status < 0) {
+                throw new IOException("Тело пишется до sendResponseHeaders");
+            }
+            if (finished) {
+                throw new IOException("Тело ответа уже закрыто");
+            }
+            if (fixed) {
+                if (len > remaining) {
+                    throw new IOException("Тело длиннее Content-Length: лишних " + (len - remaining) + " байт");
+                }
+                remaining -= len;
+            }
+            while (len > 0) {
+                int room = room();
+                if (room <= 0) {
+                    handOff(false);
+                    continue;
+                }
+                int n = Math.min(room, len);
+                buffer.put(b, off, n);
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (!finished && buffer != null && buffer.position() > 0) {
+                handOff(false);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            if (fixed && remaining > 0) {
+                abort();
+                throw new IOException("Тело короче Content-Length: не хватает " + remaining + " байт");
+            }
+            if (chunked) {
+                sealChunk();
+                if (buffer == null || buffer.remaining() < LAST_CHUNK.length) {
+                    handOff(false);
+                    buffer = connection.buffers().acquire();
+                }
+                buffer.put(LAST_CHUNK);
+            }
+            handOff(true);
+        }
+
+        void abort() {
+            finished = true;
+            if (buffer != null) {
+                connection.buffers().release(buffer);
+                buffer = null;
+            }
+            connection.closeAsync();
+        }
+
+        // Сколько байт тела ещё поместится в текущий буфер; при необходимости открывает буфер и блок.
+        private int room() {
+            if (buffer == null) {
+                buffer = connection.buffers().acquire();
+            }
+            if (!chunked) {
+                return buffer.remaining();
+            }
+            if (chunkStart < 0) {
+                if (buffer.remaining() <= CHUNK_HEAD + CRLF.length) {
+                    return 0;
+                }
+                chunkStart = buffer.position();
+                buffer.position(chunkStart + CHUNK_HEAD);
+            }
+            return buffer.remaining() - CRLF.length;
+        }
+
+        private void sealChunk() {
+            if (chunkStart < 0) {
+                return;
+            }
+            int size = buffer.position() - chunkStart - CHUNK_HEAD;
+            if (size == 0) {
+                buffer.position(chunkStart);
+            } else {
+                for (int i = 7; i >= 0; i--) {
+                    buffer.put(chunkStart + 7 - i, (byte) Character.forDigit((size >>> (i * 4)) & 0xF, 16));
+                }
+                buffer.put(chunkStart + 8, (byte) '\r').put(chunkStart + 9, (byte) '\n');
+                buffer.put(CRLF);
+            }
+            chunkStart = -1;
+        }
+
+        private void handOff(boolean last) throws IOException {
+            if (chunked) {
+                sealChunk();
+            }
+            ByteBuffer full = buffer;
+            buffer = null;
+            if (full != null && full.position() == 0) {
+                connection.buffers().release(full);
+                full = null;
+            }
+            if (full != null) {
+                full.flip();
+            }
+            if (full != null || last) {
+                connection.send(full, last, closeAfter);
+            }
+        }
+    }
+}
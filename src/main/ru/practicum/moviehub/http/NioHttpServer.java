@@ -0,0 +1,472 @@
+package ru.practicum.moviehub.http;
+
+import com.sun.net.httpserver.Authenticator;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+// HTTP/1.1 на NIO-селекторах вместо com.sun.net.httpserver. Для MoviesServer это тот же HttpServer: контексты,
+// фильтры и обработчики не меняются, обмен — NioExchange. Один поток принимает соединения и раздаёт их
+// по кругу циклам событий, по одному на ядро. Цикл читает свои соединения в один прямой буфер и разбирает
+// запросы (NioConnection), а обработчик выполняется в исполнителе сервера — без исполнителя прямо в цикле,
+// как у HttpServer. Ответ пишется в прямые буферы из общего пула и уходит в сокет из цикла.
+// Соединение живёт между запросами (keep-alive); запросы, присланные подряд без ожидания ответа
+// (pipelining), выполняются по очереди, и ответы идут в том же порядке.
+final class NioHttpServer extends HttpServer {
+    static final int BUFFER_SIZE = 64 * 1024;
+    // соединение без запросов закрывается через столько, как keep-alive у HttpServer
+    static final long IDLE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final long ACCEPT_BACKOFF_MAX_MILLIS = 1000;
+
+    private final int loopCount;
+    private final boolean tcpNoDelay;
+    private final DirectBufferPool buffers;
+    private final List<Context> contexts = new CopyOnWriteArrayList<>();
+    private ServerSocketChannel channel;
+    private EventLoop[] loops;
+    private Thread acceptor;
+    private volatile Executor executor;
+    private volatile boolean stopped;
+
+    private NioHttpServer(int loopCount, boolean tcpNoDelay) {
+        this.loopCount = loopCount;
+        this.tcpNoDelay = tcpNoDelay;
+        // на каждый цикл — буферы для нескольких ответов в полёте, остальное выделяется и собирается GC
+        this.buffers = new DirectBufferPool(BUFFER_SIZE, loopCount * 64);
+    }
+
+    static NioHttpServer create(InetSocketAddress address, int backlog, int loops, boolean tcpNoDelay)
+            throws IOException {
+        if (loops < 1) {
+            throw new IllegalArgumentException("Нужен хотя бы один цикл событий: " + loops);
+        }
+        NioHttpServer server = new NioHttpServer(loops, tcpNoDelay);
+        server.bind(address, backlog);
+        return server;
+    }
+
+    @Override
+    public void bind(InetSocketAddress address, int backlog) throws IOException {
+        channel = ServerSocketChannel.open();
+        channel.bind(address, backlog);
+    }
+
+    @Override
+    public void start() {
+        loops = new EventLoop[loopCount];
+        for (int i = 0; i < loopCount; i++) {
+            try {
+                loops[i] = new EventLoop(Selector.open());
+            } catch (IOException e) {
+                throw new IllegalStateException("Не удалось открыть селектор", e);
+            }
+            loops[i].thread = new Thread(loops[i], "nio-loop-" + i);
+            loops[i].thread.start();
+        }
+        acceptor = new Thread(this::accept, "nio-accept");
+        acceptor.start();
+    }
+
+    @Override
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    // delay не используется: выполняющиеся запросы дожидается MoviesServer до вызова stop.
+    @Override
+    public void stop(int delay) {
+        stopped = true;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // закрываем всё равно
+        }
+        if (loops == null) {
+            return;
+        }
+        for (EventLoop loop : loops) {
+            loop.selector.wakeup();
+        }
+        try {
+            acceptor.join(1000);
+            for (EventLoop loop : loops) {
+                loop.thread.join(1000);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public HttpContext createContext(String path, HttpHandler handler) {
+        if (path == null || !path.startsWith("/")) {
+            throw new IllegalArgumentException("Путь контекста должен начинаться с '/': " + path);
+        }
+        for (Context context : contexts) {
+            if (context.path.equals(path)) {
+                throw new IllegalArgumentException("Контекст " + path + " уже создан");
+            }
+        }
+        Context context = new Context(path, handler);
+        contexts.add(context);
+        return context;
+    }
+
+    @Override
+    public HttpContext createContext(String path) {
+        return createContext(path, null);
+    }
+
+    @Override
+    public void removeContext(String path) {
+        if (!contexts.removeIf(context -> context.path.equals(path))) {
+            throw new IllegalArgumentException("Нет контекста " + path);
+        }
+    }
+
+    @Override
+    public void removeContext(HttpContext context) {
+        contexts.remove(context);
+    }
+
+    @Override
+    public InetSocketAddress getAddress() {
+        try {
+            return (InetSocketAddress) channel.getLocalAddress();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    DirectBufferPool buffers() {
+        return buffers;
+    }
+
+    // Как у HttpServer: контекст с самым длинным путём, которым начинается путь запроса.
+    Context findContext(String path) {
+        Context best = null;
+        for (Context context : contexts) {
+            if (path.startsWith(context.path) && (best == null || context.path.length() > best.path.length())) {
+                best = context;
+            }
+        }
+        return best;
+    }
+
+    // Вызывается циклом событий, когда запрос прочитан целиком.
+    void dispatch(NioExchange exchange) {
+        Executor executor = this.executor;
+        if (executor == null) {
+            handle(exchange);
+        } else {
+            executor.execute(() -> handle(exchange));
+        }
+    }
+
+    private void handle(NioExchange exchange) {
+        try {
+            Context context = findContext(exchange.getRequestURI().getRawPath());
+            if (context == null || context.handler == null) {
+                exchange.sendResponseHeaders(404, -1);
+            } else {
+                exchange.setContext(context);
+                new Filter.Chain(context.filters, context.handler).doFilter(exchange);
+            }
+        } catch (Throwable e) {
+            exchange.fail(e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void accept() {
+        int next = 0;
+        long backoffMillis = 0;
+        while (!stopped) {
+            SocketChannel client;
+            try {
+                client = channel.accept();
+            } catch (IOException e) {
+                if (stopped) {
+                    break;
+                }
+                // обычно кончились дескрипторы (EMFILE): сразу повторять бесполезно, пауза растёт до секунды,
+                // а в лог попадает только первая ошибка серии
+                if (backoffMillis == 0) {
+                    System.err.println("NIO: ошибка приёма соединения: " + e);
+                }
+                backoffMillis = Math.min(ACCEPT_BACKOFF_MAX_MILLIS, Math.max(10, backoffMillis * 2));
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                continue;
+            }
+            backoffMillis = 0;
+            try {
+                client.configureBlocking(false);
+                client.setOption(StandardSocketOptions.TCP_NODELAY, tcpNoDelay);
+                loops[next].register(client);
+                next = (next + 1) % loops.length;
+            } catch (IOException e) {
+                closeQuietly(client);
+            }
+        }
+    }
+
+    static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // соединение уже не нужно
+        }
+    }
+
+    // Поток, обслуживающий свои соединения: чтение и разбор запросов, отправка ответов, закрытие простаивающих.
+    // Состояние соединений меняется только в этом потоке; другие потоки передают работу через execute.
+    final class EventLoop implements Runnable {
+        final Selector selector;
+        // общий на все соединения цикла: прочитанное сразу копируется в соединение
+        final ByteBuffer readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final Set<NioConnection> connections = new HashSet<>();
+        // false, когда цикл завершился: соединения ему больше не передаются
+        private volatile boolean alive = true;
+        Thread thread;
+
+        EventLoop(Selector selector) {
+            this.selector = selector;
+        }
+
+        void execute(Runnable task) {
+            tasks.add(task);
+            if (Thread.currentThread() != thread) {
+                selector.wakeup();
+            }
+        }
+
+        // Задача одного соединения: её ошибка закрывает это соединение, а не весь цикл.
+        void execute(NioConnection connection, Runnable task) {
+            execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    failed(connection, e);
+                }
+            });
+        }
+
+        boolean inLoop() {
+            return Thread.currentThread() == thread;
+        }
+
+        NioHttpServer server() {
+            return NioHttpServer.this;
+        }
+
+        void register(SocketChannel client) {
+            if (!alive) {
+                closeQuietly(client);
+                return;
+            }
+            execute(() -> {
+                if (!alive) {
+                    closeQuietly(client);
+                    return;
+                }
+                try {
+                    SelectionKey key = client.register(selector, SelectionKey.OP_READ);
+                    NioConnection connection = new NioConnection(this, client, key);
+                    key.attach(connection);
+                    connections.add(connection);
+                } catch (IOException e) {
+                    closeQuietly(client);
+                }
+            });
+            if (!alive) {
+                // цикл остановился, пока задача вставала в очередь
+                runRemaining();
+            }
+        }
+
+        void closed(NioConnection connection) {
+            connections.remove(connection);
+        }
+
+        @Override
+        public void run() {
+            long nextIdleCheck = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+            try {
+                while (!stopped) {
+                    selector.select(1000);
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        try {
+                            task.run();
+                        } catch (RuntimeException e) {
+                            failed(null, e);
+                        }
+                    }
+                    for (SelectionKey key : selector.selectedKeys()) {
+                        NioConnection connection = (NioConnection) key.attachment();
+                        try {
+                            if (key.isValid() && key.isWritable()) {
+                                connection.onWritable();
+                            }
+                            if (key.isValid() && key.isReadable()) {
+                                connection.onReadable();
+                            }
+                        } catch (RuntimeException e) {
+                            failed(connection, e);
+                        }
+                    }
+                    selector.selectedKeys().clear();
+                    long now = System.nanoTime();
+                    if (now - nextIdleCheck >= 0) {
+                        closeIdle(now);
+                        nextIdleCheck = now + TimeUnit.SECONDS.toNanos(1);
+                    }
+                }
+            } catch (ClosedSelectorException e) {
+                if (!stopped) {
+                    System.err.println("NIO: цикл событий остановлен ошибкой: " + e);
+                }
+            } catch (IOException e) {
+                if (!stopped) {
+                    System.err.println("NIO: ошибка селектора: " + e);
+                }
+            } finally {
+                alive = false;
+                for (NioConnection connection : new ArrayList<>(connections)) {
+                    connection.close();
+                }
+                try {
+                    selector.close();
+                } catch (IOException ignored) {
+                    // сервер и так останавливается
+                }
+                runRemaining();
+            }
+        }
+
+        // Задачи, оставшиеся после остановки цикла: соединения уже закрыты, новые закрываются сразу.
+        private void runRemaining() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException ignored) {
+                    // цикл уже остановлен
+                }
+            }
+        }
+
+        // Непредвиденная ошибка при обслуживании соединения: закрывается только оно, цикл продолжает работу.
+        private void failed(NioConnection connection, RuntimeException e) {
+            System.err.println("NIO: ошибка обработки соединения: " + e);
+            if (connection != null) {
+                connection.close();
+            }
+        }
+
+        private void closeIdle(long now) {
+            List<NioConnection> idle = null;
+            for (NioConnection connection : connections) {
+                if (connection.isIdleSince(now - IDLE_TIMEOUT_NANOS)) {
+                    if (idle == null) {
+                        idle = new ArrayList<>();
+                    }
+                    idle.add(connection);
+                }
+            }
+            if (idle != null) {
+                idle.forEach(NioConnection::close);
+            }
+        }
+    }
+
+    final class Context extends HttpContext {
+        private final String path;
+        private volatile HttpHandler handler;
+        private final List<Filter> filters = new CopyOnWriteArrayList<>();
+        private final Map<String, Object> attributes = new HashMap<>();
+        private Authenticator authenticator;
+
+        Context(String path, HttpHandler handler) {
+            this.path = path;
+            this.handler = handler;
+        }
+
+        @Override
+        public HttpHandler getHandler() {
+            return handler;
+        }
+
+        @Override
+        public void setHandler(HttpHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public String getPath() {
+            return path;
+        }
+
+        @Override
+        public HttpServer getServer() {
+            return NioHttpServer.this;
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return attributes;
+        }
+
+        @Override
+        public List<Filter> getFilters() {
+            return filters;
+        }
+
+        // Проверка подлинности контекстам MoviesServer не нужна, и здесь она не выполняется.
+        @Override
+        public Authenticator setAuthenticator(Authenticator authenticator) {
+            Authenticator previous = this.authenticator;
+            this.authenticator = authenticator;
+            return previous;
+        }
+
+        @Override
+        public Authenticator getAuthenticator() {
+            return authenticator;
+        }
+    }
+}
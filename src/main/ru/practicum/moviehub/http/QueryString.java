@@ -0,0 +1,186 @@
+package ru.practicum.moviehub.http;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+// Строгий разбор строки запроса для всех обработчиков: неизвестный или повторённый параметр — ошибка,
+// а не молча выбранное значение. Ошибки — IllegalArgumentException
+// с сообщением для клиента, обработчик отвечает на них 400.
+// Строка не режется на подстроки: хранятся границы имён и значений в сырой строке, имена сравниваются
+// regionMatches, числа разбираются прямо по символам. Строка создаётся только в get, когда значение
+// и нужно как строка, и для параметров с %-кодированием.
+final class QueryString {
+    private static final QueryString EMPTY = new QueryString("", new int[0], 0);
+
+    private final String raw;
+    // на параметр четыре числа: начало и конец имени, начало и конец значения в raw
+    private final int[] bounds;
+    private final int count;
+
+    private QueryString(String raw, int[] bounds, int count) {
+        this.raw = raw;
+        this.bounds = bounds;
+        this.count = count;
+    }
+
+    static QueryString parse(String rawQuery, String... allowed) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return EMPTY;
+        }
+        int[] bounds = new int[4 * Math.min(allowed.length, rawQuery.length())];
+        int count = 0;
+        int start = 0;
+        while (start <= rawQuery.length()) {
+            int end = rawQuery.indexOf('&', start);
+            if (end < 0) {
+                end = rawQuery.length();
+            }
+            if (end > start) {
+                int eq = rawQuery.indexOf('=', start);
+                int nameEnd = eq < 0 || eq > end ? end : eq;
+                int valueStart = nameEnd == end ? end : nameEnd + 1;
+                int known = indexOf(rawQuery, start, nameEnd, allowed);
+                if (known < 0) {
+                    throw new IllegalArgumentException("Неизвестный параметр запроса — '"
+                            + decode(rawQuery.substring(start, nameEnd)) + "'");
+                }
+                for (int i = 0; i < count; i++) {
+                    if (sameName(rawQuery, bounds[4 * i], bounds[4 * i + 1], allowed[known])) {
+                        throw new IllegalArgumentException("Параметр запроса '" + allowed[known]
+                                + "' указан больше одного раза");
+                    }
+                }
+                // известных имён не больше allowed.length, и повтор уже отсеян выше
+                bounds[4 * count] = start;
+                bounds[4 * count + 1] = nameEnd;
+                bounds[4 * count + 2] = valueStart;
+                bounds[4 * count + 3] = end;
+                count++;
+            }
+            start = end + 1;
+        }
+        return new QueryString(rawQuery, bounds, count);
+    }
+
+    // true — кроме перечисленных, других параметров нет.
+    boolean hasOnly(String... names) {
+        for (int i = 0; i < count; i++) {
+            if (indexOf(raw, bounds[4 * i], bounds[4 * i + 1], names) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean has(String name) {
+        return find(name) >= 0;
+    }
+
+    String get(String name) {
+        int i = find(name);
+        return i < 0 ? null : decode(raw.substring(bounds[4 * i + 2], bounds[4 * i + 3]));
+    }
+
+    // Значение обязательно, даже если параметр указан без него (?year=).
+    int requireInt(String name) {
+        int i = find(name);
+        if (i < 0 || bounds[4 * i + 2] == bounds[4 * i + 3]) {
+            throw invalid(name);
+        }
+        return getInt(name, 0);
+    }
+
+    // Пустое значение (?cursor=) — как отсутствие параметра.
+    int getInt(String name, int defaultValue) {
+        long value = getLong(name, defaultValue);
+        if (value != (int) value) {
+            throw invalid(name);
+        }
+        return (int) value;
+    }
+
+    long getLong(String name, long defaultValue) {
+        int i = find(name);
+        if (i < 0 || bounds[4 * i + 2] == bounds[4 * i + 3]) {
+            return defaultValue;
+        }
+        int from = bounds[4 * i + 2];
+        int to = bounds[4 * i + 3];
+        boolean negative = raw.charAt(from) == '-';
+        if (negative) {
+            from++;
+        }
+        if (from == to) {
+            throw invalid(name);
+        }
+        long value = 0;
+        for (int pos = from; pos < to; pos++) {
+            int digit = raw.charAt(pos) - '0';
+            if (digit < 0 || digit > 9) {
+                // %-кодированное число — редкость, разбираем по-старому
+                return parseDecoded(name);
+            }
+            // накапливаем отрицательное значение, как Long.parseLong: Long.MIN_VALUE тоже влезает
+            if (value < Long.MIN_VALUE / 10 || value * 10 < Long.MIN_VALUE + digit) {
+                throw invalid(name);
+            }
+            value = value * 10 - digit;
+        }
+        if (!negative && value == Long.MIN_VALUE) {
+            throw invalid(name);
+        }
+        return negative ? value : -value;
+    }
+
+    private long parseDecoded(String name) {
+        try {
+            return Long.parseLong(get(name));
+        } catch (NumberFormatException e) {
+            throw invalid(name);
+        }
+    }
+
+    private int find(String name) {
+        for (int i = 0; i < count; i++) {
+            if (sameName(raw, bounds[4 * i], bounds[4 * i + 1], name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(String raw, int from, int to, String[] names) {
+        for (int i = 0; i < names.length; i++) {
+            if (sameName(raw, from, to, names[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean sameName(String raw, int from, int to, String name) {
+        if (to - from == name.length() && raw.regionMatches(from, name, 0, name.length())) {
+            return true;
+        }
+        // имя с %-кодированием или '+' сравниваем после декодирования
+        for (int i = from; i < to; i++) {
+            char c = raw.charAt(i);
+            if (c == '%' || c == '+') {
+                return decode(raw.substring(from, to)).equals(name);
+            }
+        }
+        return false;
+    }
+
+    private static IllegalArgumentException invalid(String name) {
+        return new IllegalArgumentException("Некорректный параметр запроса — '" + name + "'");
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Некорректная строка запроса — '" + value + "'");
+        }
+    }
+}
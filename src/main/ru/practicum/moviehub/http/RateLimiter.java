@@ -0,0 +1,92 @@
+package ru.practicum.moviehub.http;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Корзины токенов по клиентам без блокировок. Корзина — один AtomicLong по схеме GCRA: в нём «теоретическое
+// время» следующего запроса, и запрос проходит, если это время опережает текущее не больше чем на burst
+// интервалов; проверка и списание — один CAS. Полностью наполнившаяся корзина ничем не отличается
+// от отсутствующей, поэтому такие удаляются обходом раз в SWEEP_EVERY вызовов (в среднем). Если клиентов
+// всё равно больше maxClients, новые делят одну общую корзину: память ограничена при любом числе адресов.
+// Обход при заполненной таблице — не чаще раза в FULL_SWEEP_PAUSE_NANOS: иначе поток новых клиентов,
+// от которого ограничитель и защищает, платил бы обходом всей таблицы за каждый запрос.
+final class RateLimiter {
+    private static final String OVERFLOW_CLIENT = "";
+    private static final int SWEEP_EVERY = 4096;
+    private static final long FULL_SWEEP_PAUSE_NANOS = 100_000_000L;
+    private static final long NEVER = Long.MIN_VALUE;
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final int maxClients;
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    // когда таблица заполнена, следующий обход — не раньше этого времени
+    private final AtomicLong nextFullSweep = new AtomicLong(NEVER);
+
+    RateLimiter(int perSecond, int burst, int maxClients) {
+        if (perSecond < 1 || burst < 1 || maxClients < 1) {
+            throw new IllegalArgumentException("Частота, запас и число клиентов ограничителя должны быть положительными");
+        }
+        this.intervalNanos = 1_000_000_000L / perSecond;
+        this.burstNanos = intervalNanos * burst;
+        this.maxClients = maxClients;
+    }
+
+    // 0 — запрос пропущен; иначе через сколько наносекунд клиенту стоит повторить.
+    long tryAcquire(String client, long now) {
+        if (ThreadLocalRandom.current().nextInt(SWEEP_EVERY) == 0) {
+            sweep(now);
+        }
+        AtomicLong bucket = bucket(client, now);
+        while (true) {
+            long tat = bucket.get();
+            long next = Math.max(tat, now) + intervalNanos;
+            long ahead = next - now;
+            if (ahead > burstNanos) {
+                return ahead - burstNanos;
+            }
+            if (bucket.compareAndSet(tat, next)) {
+                return 0;
+            }
+        }
+    }
+
+    int clients() {
+        return buckets.size();
+    }
+
+    private AtomicLong bucket(String client, long now) {
+        AtomicLong bucket = buckets.get(client);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= maxClients) {
+            long next = nextFullSweep.get();
+            if ((next == NEVER || now - next >= 0)
+                    && nextFullSweep.compareAndSet(next, now + FULL_SWEEP_PAUSE_NANOS)) {
+                sweep(now);
+            }
+            if (buckets.size() >= maxClients) {
+                client = OVERFLOW_CLIENT;
+            }
+        }
+        return buckets.computeIfAbsent(client, c -> new AtomicLong(now));
+    }
+
+    // Удаляется только корзина, которую никто не успел заменить (remove по ключу и значению). Запрос, который
+    // в этот момент списывает токен из удаляемой корзины, пройдёт, а следующий начнёт с полной — не больше
+    // одного лишнего запуска burst на клиента.
+    private void sweep(long now) {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            buckets.entrySet().removeIf(entry -> entry.getValue().get() <= now);
+        } finally {
+            sweeping.set(false);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package ru.practicum.moviehub.http;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.function.BooleanSupplier;
+
+// GET /ready для балансировщика: 200, пока узел принимает запросы, и 503 с начала остановки — раньше,
+// чем новые запросы начнут получать отказ (см. DrainGate). Ведомый узел готов, только когда загрузил снимок
+// каталога с ведущего: до этого он отвечал бы пустым каталогом.
+class ReadinessHandler extends BaseHttpHandler {
+
+    private final DrainGate gate;
+    private final BooleanSupplier synced;
+
+    ReadinessHandler(DrainGate gate, BooleanSupplier synced) {
+        this.gate = gate;
+        this.synced = synced;
+    }
+
+    public void handle(HttpExchange ex) throws IOException {
+        if (!gate.probeReady()) {
+            sendJson(ex, 503, "{\"status\":\"draining\"}");
+        } else if (synced.getAsBoolean()) {
+            sendJson(ex, 200, "{\"status\":\"ready\"}");
+        } else {
+            sendJson(ex, 503, "{\"status\":\"syncing\"}");
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package ru.practicum.moviehub.http;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// LRU готовых JSON-ответов в UTF-8. Запись действительна, пока не изменилась версия данных,
+// по которой она построена: устаревшая запись считается промахом и вытесняется новой.
+public class ResponseCache {
+    private final int maxEntries;
+    private final long maxBytes;
+    // accessOrder = true: get переносит запись в конец, вытесняется самая давно читанная
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ResponseCache(int maxEntries, long maxBytes) {
+        if (maxEntries < 1 || maxBytes < 1) {
+            throw new IllegalArgumentException("Размер кэша ответов должен быть положительным");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    Entry get(String key, long version) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry != null && entry.version == version) {
+            hits.increment();
+            return entry;
+        }
+        misses.increment();
+        return null;
+    }
+
+    void put(String key, Entry entry) {
+        if (entry.body.length > maxBytes) {
+            return;
+        }
+        synchronized (this) {
+            Entry old = entries.put(key, entry);
+            if (old != null) {
+                totalBytes -= old.size();
+            }
+            totalBytes += entry.size();
+            evictOverflow();
+        }
+    }
+
+    // Сжатый вариант записи: считается при первом запросе с этой кодировкой и дальше отдаётся готовым.
+    byte[] compressed(String key, Entry entry, String encoding) {
+        byte[] variant = entry.variant(encoding);
+        if (variant != null) {
+            return variant;
+        }
+        variant = Compression.compress(entry.body, encoding);
+        synchronized (this) {
+            // вытесненную или заменённую запись не пополняем, иначе totalBytes разойдётся с содержимым
+            if (entries.get(key) == entry && entry.variant(encoding) == null) {
+                entry.setVariant(encoding, variant);
+                totalBytes += variant.length;
+                evictOverflow();
+            }
+        }
+        return variant;
+    }
+
+    private void evictOverflow() {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries || totalBytes > maxBytes) {
+            totalBytes -= eldest.next().size();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "ResponseCache{size=" + size() + ", hits=" + getHits() + ", misses=" + getMisses()
+                + ", evictions=" + getEvictions() + "}";
+    }
+
+    static final class Entry {
+        final long version;
+        final byte[] body;
+        // сильный ETag: хеш самих байт ответа, поэтому не меняется, пока не меняется содержимое
+        final String etag;
+        // сжатые варианты body; меняются только под блокировкой кэша
+        private volatile byte[] gzip;
+        private volatile byte[] deflate;
+
+        Entry(long version, byte[] body) {
+            this.version = version;
+            this.body = body;
+            this.etag = "\"" + Long.toHexString(fnv1a(body)) + "-" + Integer.toHexString(body.length) + "\"";
+        }
+
+        // У сжатого представления свой сильный ETag: байты ответа другие.
+        String etag(String encoding) {
+            return encoding == null ? etag : etag.substring(0, etag.length() - 1) + "-" + encoding + "\"";
+        }
+
+        private byte[] variant(String encoding) {
+            return Compression.GZIP.equals(encoding) ? gzip : deflate;
+        }
+
+        private void setVariant(String encoding, byte[] variant) {
+            if (Compression.GZIP.equals(encoding)) {
+                gzip = variant;
+            } else {
+                deflate = variant;
+            }
+        }
+
+        private long size() {
+            byte[] gzip = this.gzip;
+            byte[] deflate = this.deflate;
+            return body.length + (gzip == null ? 0 : gzip.length) + (deflate == null ? 0 : deflate.length);
+        }
+
+        private static long fnv1a(byte[] bytes) {
+            long hash = 0xcbf29ce484222325L;
+            for (byte b : bytes) {
+                hash ^= b & 0xff;
+                hash *= 0x100000001b3L;
+            }
+            return hash;
+        }
+    }
+}
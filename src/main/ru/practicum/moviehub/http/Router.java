@@ -0,0 +1,233 @@
+package ru.practicum.moviehub.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import ru.practicum.moviehub.JsonUtil;
+import ru.practicum.moviehub.api.ErrorResponse;
+import ru.practicum.moviehub.metrics.Metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+// Таблица маршрутов контекста: шаблоны путей разбираются на сегменты один раз при сборке сервера, а запрос
+// сопоставляется по символам сырого пути — regionMatches для литеральных сегментов и разбор {id} в long
+// на месте, без substring и split. Литеральные шаблоны проверяются раньше шаблонов с параметром, поэтому
+// /movies/search не достаётся /movies/{id}. Путь не подошёл — 404, метод — 405, {id} не число — 400.
+// Время запроса пишется в метрики по шаблону маршрута, а не по каждому отдельному пути.
+final class Router implements HttpHandler {
+    private static final long NO_MATCH = -1;
+    private static final long BAD_PARAM = -2;
+
+    private final Metrics metrics;
+    // сначала шаблоны без параметра, затем с ним
+    private final List<Route> routes = new ArrayList<>();
+
+    Router(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @FunctionalInterface
+    interface Endpoint {
+        void handle(HttpExchange ex) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface IdEndpoint {
+        void handle(HttpExchange ex, long id) throws IOException;
+    }
+
+    Router add(HttpMethod method, String pattern, Endpoint endpoint) {
+        return add(method, pattern, endpoint, ex -> false);
+    }
+
+    // expensive — запрос тяжёлый для AdmissionControl, см. isExpensive
+    Router add(HttpMethod method, String pattern, Endpoint endpoint, Predicate<HttpExchange> expensive) {
+        Route route = route(pattern);
+        if (route.hasParam) {
+            throw new IllegalArgumentException("Маршруту с параметром нужен IdEndpoint: " + pattern);
+        }
+        route.bind(method, (ex, id) -> endpoint.handle(ex), expensive);
+        return this;
+    }
+
+    Router add(HttpMethod method, String pattern, IdEndpoint endpoint) {
+        Route route = route(pattern);
+        if (!route.hasParam) {
+            throw new IllegalArgumentException("В маршруте нет параметра {id}: " + pattern);
+        }
+        route.bind(method, endpoint, ex -> false);
+        return this;
+    }
+
+    @Override
+    public void handle(HttpExchange ex) throws IOException {
+        String path = ex.getRequestURI().getRawPath();
+        for (int i = 0; i < routes.size(); i++) {
+            Route route = routes.get(i);
+            long id = route.match(path);
+            if (id != NO_MATCH) {
+                dispatch(ex, route, id);
+                return;
+            }
+        }
+        reject(ex, 404, "Ресурс не найден");
+    }
+
+    // Для фильтра AdmissionControl: сопоставление повторяется, но оно не выделяет память и дешевле,
+    // чем хранить результат в атрибутах обмена.
+    boolean isExpensive(HttpExchange ex) {
+        String path = ex.getRequestURI().getRawPath();
+        for (int i = 0; i < routes.size(); i++) {
+            Route route = routes.get(i);
+            if (route.match(path) != NO_MATCH) {
+                Binding binding = route.binding(ex);
+                return binding != null && binding.expensive.test(ex);
+            }
+        }
+        return false;
+    }
+
+    // Исключение до отправки заголовков считается в метриках статусом 500.
+    private void dispatch(HttpExchange ex, Route route, long id) throws IOException {
+        long start = System.nanoTime();
+        try {
+            Binding binding = route.binding(ex);
+            if (binding == null) {
+                ex.sendResponseHeaders(405, -1);
+                ex.close();
+            } else if (id == BAD_PARAM) {
+                reject(ex, 400, "Некорректный ID");
+            } else {
+                binding.endpoint.handle(ex, id);
+            }
+        } finally {
+            int status = ex.getResponseCode();
+            route.metrics.record(ex.getRequestMethod(), status < 0 ? 500 : status, System.nanoTime() - start);
+        }
+    }
+
+    private Route route(String pattern) {
+        for (Route route : routes) {
+            if (route.pattern.equals(pattern)) {
+                return route;
+            }
+        }
+        Route route = new Route(pattern, metrics.route(pattern));
+        if (route.hasParam) {
+            routes.add(route);
+        } else {
+            int i = 0;
+            while (i < routes.size() && !routes.get(i).hasParam) {
+                i++;
+            }
+            routes.add(i, route);
+        }
+        return route;
+    }
+
+    private static void reject(HttpExchange ex, int status, String message) throws IOException {
+        byte[] body = JsonUtil.toJson(new ErrorResponse(message)).getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", BaseHttpHandler.CT_JSON);
+        ex.sendResponseHeaders(status, body.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    // Десятичное число без знака в path[from, to); BAD_PARAM — пусто, не цифра или больше Long.MAX_VALUE.
+    static long parseId(String path, int from, int to) {
+        if (from == to) {
+            return BAD_PARAM;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = path.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10) {
+                return BAD_PARAM;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static final class Binding {
+        final IdEndpoint endpoint;
+        final Predicate<HttpExchange> expensive;
+
+        Binding(IdEndpoint endpoint, Predicate<HttpExchange> expensive) {
+            this.endpoint = endpoint;
+            this.expensive = expensive;
+        }
+    }
+
+    private static final class Route {
+        final String pattern;
+        // литеральные сегменты без '/'; null — место параметра {id}
+        final String[] segments;
+        final boolean hasParam;
+        final Metrics.Route metrics;
+        final Map<HttpMethod, Binding> bindings = new EnumMap<>(HttpMethod.class);
+
+        Route(String pattern, Metrics.Route metrics) {
+            if (!pattern.startsWith("/") || pattern.endsWith("/")) {
+                throw new IllegalArgumentException("Шаблон маршрута должен начинаться с '/' и не кончаться им: "
+                        + pattern);
+            }
+            String[] parts = pattern.substring(1).split("/");
+            boolean param = false;
+            for (int i = 0; i < parts.length; i++) {
+                if (parts[i].equals("{id}")) {
+                    if (param) {
+                        throw new IllegalArgumentException("В маршруте больше одного параметра: " + pattern);
+                    }
+                    parts[i] = null;
+                    param = true;
+                }
+            }
+            this.pattern = pattern;
+            this.segments = parts;
+            this.hasParam = param;
+            this.metrics = metrics;
+        }
+
+        void bind(HttpMethod method, IdEndpoint endpoint, Predicate<HttpExchange> expensive) {
+            if (bindings.putIfAbsent(method, new Binding(endpoint, expensive)) != null) {
+                throw new IllegalArgumentException("Маршрут " + method + " " + pattern + " уже зарегистрирован");
+            }
+        }
+
+        Binding binding(HttpExchange ex) {
+            HttpMethod method = HttpMethod.of(ex.getRequestMethod());
+            return method == null ? null : bindings.get(method);
+        }
+
+        // NO_MATCH — путь не подходит; BAD_PARAM — подходит, но {id} не число; иначе значение {id} (0 без него).
+        long match(String path) {
+            int pos = 0;
+            long id = 0;
+            for (String segment : segments) {
+                if (pos >= path.length() || path.charAt(pos) != '/') {
+                    return NO_MATCH;
+                }
+                pos++;
+                int end = path.indexOf('/', pos);
+                if (end < 0) {
+                    end = path.length();
+                }
+                if (segment == null) {
+                    id = parseId(path, pos, end);
+                } else if (end - pos != segment.length() || !path.regionMatches(pos, segment, 0, segment.length())) {
+                    return NO_MATCH;
+                }
+                pos = end;
+            }
+            return pos == path.length() ? id : NO_MATCH;
+        }
+    }
+}
@@ -0,0 +1,540 @@
+package ru.practicum.moviehub.http;
+
+import ru.practicum.moviehub.AppConfig;
+import ru.practicum.moviehub.json.JsonCodec;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ServerConfig {
+    // В JDK до 24 HttpServer читает запрос внутри synchronized, и виртуальный поток медленного клиента
+    // намертво занимает поток-носитель (pinning). Там по умолчанию пул, начиная с 24 — виртуальные потоки.
+    public static final ExecutorMode DEFAULT_EXECUTOR_MODE =
+            Runtime.version().feature() >= 24 ? ExecutorMode.VIRTUAL : ExecutorMode.POOL;
+    // 0 — размер очереди подключений по умолчанию для ОС
+    public static final int DEFAULT_BACKLOG = 0;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    // 0 записей — кэш ответов выключен
+    public static final int DEFAULT_CACHE_ENTRIES = 1024;
+    public static final long DEFAULT_CACHE_BYTES = 64L * 1024 * 1024;
+    // ответы GET /movies/{id}: с запасом на несколько тысяч самых запрашиваемых фильмов; 0 — кэш выключен
+    public static final int DEFAULT_MOVIE_CACHE_ENTRIES = 10_000;
+    // 0 записей — Idempotency-Key не поддерживается, заголовок игнорируется
+    public static final int DEFAULT_IDEMPOTENCY_ENTRIES = 100_000;
+    public static final long DEFAULT_IDEMPOTENCY_BYTES = 32L * 1024 * 1024;
+    public static final Duration DEFAULT_IDEMPOTENCY_TTL = Duration.ofHours(24);
+    // 0 запросов в секунду — частота запросов клиентов не ограничивается
+    public static final int DEFAULT_RATE_LIMIT_PER_SECOND = 0;
+    public static final int DEFAULT_RATE_LIMIT_BURST = 50;
+    public static final int DEFAULT_RATE_LIMIT_CLIENTS = 100_000;
+    // 0 событий — лента изменений не ведётся и GET /movies/changes не регистрируется
+    public static final int DEFAULT_CHANGE_FEED_CAPACITY = 64 * 1024;
+    // при остановке: сколько /ready отвечает 503 до отказа новым запросам (балансировщику нужно несколько
+    // проверок, чтобы вывести узел) и сколько затем ждать выполняющиеся запросы
+    public static final Duration DEFAULT_READINESS_DELAY = Duration.ofSeconds(5);
+    public static final Duration DEFAULT_DRAIN_TIMEOUT = Duration.ofSeconds(30);
+    public static final Transport DEFAULT_TRANSPORT = Transport.JDK;
+
+    private final int port;
+    private final int backlog;
+    private final ExecutorMode executorMode;
+    private final int poolSize;
+    private final int queueCapacity;
+    private final boolean tcpNoDelay;
+    private final int cacheEntries;
+    private final long cacheBytes;
+    private final int movieCacheEntries;
+    private final int compressionMinBytes;
+    private final JsonCodec jsonCodec;
+    private final int idempotencyEntries;
+    private final long idempotencyBytes;
+    private final Duration idempotencyTtl;
+    private final int rateLimitPerSecond;
+    private final int rateLimitBurst;
+    private final int rateLimitClients;
+    private final Set<String> apiKeys;
+    private final int maxExpensiveInFlight;
+    private final int changeFeedCapacity;
+    private final int maxChangeWaiters;
+    private final Duration readinessDelay;
+    private final Duration drainTimeout;
+    // null — узел ведущий (или единственный)
+    private final URI leader;
+    private final Transport transport;
+
+    private ServerConfig(Builder builder) {
+        int maxChangeWaiters = builder.maxChangeWaiters != null
+                ? builder.maxChangeWaiters : defaultMaxChangeWaiters(builder.poolSize);
+        if (builder.poolSize < 1 || builder.queueCapacity < 1) {
+            throw new IllegalArgumentException("Размер пула и очереди должны быть положительными");
+        }
+        if (builder.cacheEntries < 0 || builder.cacheBytes < 1) {
+            throw new IllegalArgumentException("Число записей кэша ответов не может быть отрицательным, а объём должен быть положительным");
+        }
+        if (builder.movieCacheEntries < 0) {
+            throw new IllegalArgumentException("Число записей кэша фильмов не может быть отрицательным: " + builder.movieCacheEntries);
+        }
+        if (builder.idempotencyEntries < 0 || builder.idempotencyBytes < 1
+                || builder.idempotencyTtl.isNegative() || builder.idempotencyTtl.isZero()) {
+            throw new IllegalArgumentException("Число записей кэша Idempotency-Key не может быть отрицательным, "
+                    + "а объём и время жизни должны быть положительными");
+        }
+        if (builder.rateLimitPerSecond < 0 || builder.rateLimitBurst < 1 || builder.rateLimitClients < 1
+                || builder.maxExpensiveInFlight < 0) {
+            throw new IllegalArgumentException("Частота запросов и предел тяжёлых запросов не могут быть отрицательными, "
+                    + "а запас и число клиентов ограничителя должны быть положительными");
+        }
+        if (builder.changeFeedCapacity < 0 || maxChangeWaiters < 0) {
+            throw new IllegalArgumentException("Размер ленты изменений и число ждущих её запросов не могут быть отрицательными");
+        }
+        if (builder.readinessDelay.isNegative() || builder.drainTimeout.isNegative()) {
+            throw new IllegalArgumentException("Задержки остановки сервера не могут быть отрицательными");
+        }
+        URI leader = builder.leader;
+        if (leader != null && (!"http".equals(leader.getScheme()) || leader.getHost() == null)) {
+            throw new IllegalArgumentException("Адрес ведущего узла должен быть вида http://хост:порт: " + leader);
+        }
+        this.port = builder.port;
+        this.backlog = builder.backlog;
+        this.executorMode = builder.executorMode;
+        this.poolSize = builder.poolSize;
+        this.queueCapacity = builder.queueCapacity;
+        this.tcpNoDelay = builder.tcpNoDelay;
+        this.cacheEntries = builder.cacheEntries;
+        this.cacheBytes = builder.cacheBytes;
+        this.movieCacheEntries = builder.movieCacheEntries;
+        this.compressionMinBytes = builder.compressionMinBytes;
+        this.jsonCodec = builder.jsonCodec;
+        this.idempotencyEntries = builder.idempotencyEntries;
+        this.idempotencyBytes = builder.idempotencyBytes;
+        this.idempotencyTtl = builder.idempotencyTtl;
+        this.rateLimitPerSecond = builder.rateLimitPerSecond;
+        this.rateLimitBurst = builder.rateLimitBurst;
+        this.rateLimitClients = builder.rateLimitClients;
+        this.apiKeys = Set.copyOf(builder.apiKeys);
+        this.maxExpensiveInFlight = builder.maxExpensiveInFlight;
+        this.changeFeedCapacity = builder.changeFeedCapacity;
+        this.maxChangeWaiters = maxChangeWaiters;
+        this.readinessDelay = builder.readinessDelay;
+        this.drainTimeout = builder.drainTimeout;
+        this.leader = leader;
+        this.transport = builder.transport;
+    }
+
+    // Все параметры уже со значениями по умолчанию, задаются только отличающиеся.
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static ServerConfig defaults(int port) {
+        return builder().port(port).build();
+    }
+
+    public static ServerConfig fromAppConfig(AppConfig config) {
+        int poolSize = config.getInt("moviehub.http.poolSize", defaultPoolSize());
+        String leader = config.getString("moviehub.replication.leader", null);
+        return builder()
+                .port(config.getInt("moviehub.port", 8080))
+                .backlog(config.getInt("moviehub.http.backlog", DEFAULT_BACKLOG))
+                .executorMode(ExecutorMode.parse(config.getString("moviehub.http.executor", DEFAULT_EXECUTOR_MODE.name())))
+                .poolSize(poolSize)
+                .queueCapacity(config.getInt("moviehub.http.queueCapacity", DEFAULT_QUEUE_CAPACITY))
+                .tcpNoDelay(config.getBoolean("moviehub.http.tcpNoDelay", true))
+                .cacheEntries(config.getInt("moviehub.http.cache.entries", DEFAULT_CACHE_ENTRIES))
+                .cacheBytes(config.getLong("moviehub.http.cache.bytes", DEFAULT_CACHE_BYTES))
+                .movieCacheEntries(config.getInt("moviehub.http.movieCache.entries", DEFAULT_MOVIE_CACHE_ENTRIES))
+                .compressionMinBytes(config.getInt("moviehub.http.compression.minBytes",
+                        BaseHttpHandler.DEFAULT_COMPRESSION_MIN_BYTES))
+                .jsonCodec(JsonCodec.parse(config.getString("moviehub.json.codec",
+                        BaseHttpHandler.DEFAULT_JSON_CODEC.name())))
+                .idempotencyEntries(config.getInt("moviehub.http.idempotency.entries", DEFAULT_IDEMPOTENCY_ENTRIES))
+                .idempotencyBytes(config.getLong("moviehub.http.idempotency.bytes", DEFAULT_IDEMPOTENCY_BYTES))
+                .idempotencyTtl(config.getMillis("moviehub.http.idempotency.ttlMs", DEFAULT_IDEMPOTENCY_TTL))
+                .rateLimitPerSecond(config.getInt("moviehub.http.rateLimit.perSecond", DEFAULT_RATE_LIMIT_PER_SECOND))
+                .rateLimitBurst(config.getInt("moviehub.http.rateLimit.burst", DEFAULT_RATE_LIMIT_BURST))
+                .rateLimitClients(config.getInt("moviehub.http.rateLimit.clients", DEFAULT_RATE_LIMIT_CLIENTS))
+                .apiKeys(parseList(config.getString("moviehub.http.rateLimit.apiKeys", "")))
+                .maxExpensiveInFlight(config.getInt("moviehub.http.maxExpensiveInFlight", defaultMaxExpensiveInFlight()))
+                .changeFeedCapacity(config.getInt("moviehub.changes.capacity", DEFAULT_CHANGE_FEED_CAPACITY))
+                .maxChangeWaiters(config.getInt("moviehub.changes.maxWaiters", defaultMaxChangeWaiters(poolSize)))
+                .readinessDelay(config.getMillis("moviehub.http.shutdown.readinessDelayMs", DEFAULT_READINESS_DELAY))
+                .drainTimeout(config.getMillis("moviehub.http.shutdown.drainTimeoutMs", DEFAULT_DRAIN_TIMEOUT))
+                .leader(leader == null ? null : URI.create(leader))
+                .transport(Transport.parse(config.getString("moviehub.http.transport", DEFAULT_TRANSPORT.name())))
+                .build();
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public int getBacklog() {
+        return backlog;
+    }
+
+    public ExecutorMode getExecutorMode() {
+        return executorMode;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public boolean isTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    public int getCacheEntries() {
+        return cacheEntries;
+    }
+
+    public long getCacheBytes() {
+        return cacheBytes;
+    }
+
+    public int getMovieCacheEntries() {
+        return movieCacheEntries;
+    }
+
+    public int getCompressionMinBytes() {
+        return compressionMinBytes;
+    }
+
+    public JsonCodec getJsonCodec() {
+        return jsonCodec;
+    }
+
+    public int getIdempotencyEntries() {
+        return idempotencyEntries;
+    }
+
+    public long getIdempotencyBytes() {
+        return idempotencyBytes;
+    }
+
+    public Duration getIdempotencyTtl() {
+        return idempotencyTtl;
+    }
+
+    public int getRateLimitPerSecond() {
+        return rateLimitPerSecond;
+    }
+
+    public int getRateLimitBurst() {
+        return rateLimitBurst;
+    }
+
+    public int getRateLimitClients() {
+        return rateLimitClients;
+    }
+
+    public Set<String> getApiKeys() {
+        return apiKeys;
+    }
+
+    public int getMaxExpensiveInFlight() {
+        return maxExpensiveInFlight;
+    }
+
+    public int getChangeFeedCapacity() {
+        return changeFeedCapacity;
+    }
+
+    public int getMaxChangeWaiters() {
+        return maxChangeWaiters;
+    }
+
+    public Duration getReadinessDelay() {
+        return readinessDelay;
+    }
+
+    public Duration getDrainTimeout() {
+        return drainTimeout;
+    }
+
+    public URI getLeader() {
+        return leader;
+    }
+
+    public Transport getTransport() {
+        return transport;
+    }
+
+    // Значения через запятую, пустые пропускаются.
+    private static Set<String> parseList(String value) {
+        Set<String> values = new LinkedHashSet<>();
+        for (String item : value.split(",")) {
+            if (!item.isBlank()) {
+                values.add(item.trim());
+            }
+        }
+        return values;
+    }
+
+    // Ждущие ленту держат потоки пула, поэтому им отдаётся не больше четверти: остальным запросам нужны потоки.
+    private static int defaultMaxChangeWaiters(int poolSize) {
+        return Math.max(1, poolSize / 4);
+    }
+
+    // Полная выдача каталога занята сериализацией, а не ожиданием: больше пары таких запросов на ядро
+    // только вытесняют из процессора все остальные.
+    private static int defaultMaxExpensiveInFlight() {
+        return Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    private static int defaultPoolSize() {
+        // обработчики блокируются на сокете медленных клиентов, поэтому потоков заметно больше, чем ядер
+        return Math.max(16, Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    public static final class Builder {
+        private int port = 8080;
+        private int backlog = DEFAULT_BACKLOG;
+        private ExecutorMode executorMode = DEFAULT_EXECUTOR_MODE;
+        private int poolSize = defaultPoolSize();
+        private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+        private boolean tcpNoDelay = true;
+        private int cacheEntries = DEFAULT_CACHE_ENTRIES;
+        private long cacheBytes = DEFAULT_CACHE_BYTES;
+        private int movieCacheEntries = DEFAULT_MOVIE_CACHE_ENTRIES;
+        private int compressionMinBytes = BaseHttpHandler.DEFAULT_COMPRESSION_MIN_BYTES;
+        private JsonCodec jsonCodec = BaseHttpHandler.DEFAULT_JSON_CODEC;
+        private int idempotencyEntries = DEFAULT_IDEMPOTENCY_ENTRIES;
+        private long idempotencyBytes = DEFAULT_IDEMPOTENCY_BYTES;
+        private Duration idempotencyTtl = DEFAULT_IDEMPOTENCY_TTL;
+        private int rateLimitPerSecond = DEFAULT_RATE_LIMIT_PER_SECOND;
+        private int rateLimitBurst = DEFAULT_RATE_LIMIT_BURST;
+        private int rateLimitClients = DEFAULT_RATE_LIMIT_CLIENTS;
+        private Set<String> apiKeys = Set.of();
+        private int maxExpensiveInFlight = defaultMaxExpensiveInFlight();
+        private int changeFeedCapacity = DEFAULT_CHANGE_FEED_CAPACITY;
+        // null — по размеру пула, см. defaultMaxChangeWaiters
+        private Integer maxChangeWaiters;
+        private Duration readinessDelay = DEFAULT_READINESS_DELAY;
+        private Duration drainTimeout = DEFAULT_DRAIN_TIMEOUT;
+        private URI leader;
+        private Transport transport = DEFAULT_TRANSPORT;
+
+        private Builder() {
+        }
+
+        // 0 — свободный порт, его выберет ОС
+        public Builder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        public Builder backlog(int backlog) {
+            this.backlog = backlog;
+            return this;
+        }
+
+        public Builder executorMode(ExecutorMode executorMode) {
+            this.executorMode = executorMode;
+            return this;
+        }
+
+        public Builder poolSize(int poolSize) {
+            this.poolSize = poolSize;
+            return this;
+        }
+
+        public Builder queueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        public Builder tcpNoDelay(boolean tcpNoDelay) {
+            this.tcpNoDelay = tcpNoDelay;
+            return this;
+        }
+
+        // 0 записей — кэш готовых ответов выключен
+        public Builder cacheEntries(int cacheEntries) {
+            this.cacheEntries = cacheEntries;
+            return this;
+        }
+
+        public Builder cacheBytes(long cacheBytes) {
+            this.cacheBytes = cacheBytes;
+            return this;
+        }
+
+        // сколько ответов GET /movies/{id} держит MovieResponseCache, 0 — кэш выключен
+        public Builder movieCacheEntries(int movieCacheEntries) {
+            this.movieCacheEntries = movieCacheEntries;
+            return this;
+        }
+
+        // < 0 выключает сжатие ответов
+        public Builder compressionMinBytes(int compressionMinBytes) {
+            this.compressionMinBytes = compressionMinBytes;
+            return this;
+        }
+
+        public Builder jsonCodec(JsonCodec jsonCodec) {
+            this.jsonCodec = jsonCodec;
+            return this;
+        }
+
+        public Builder idempotencyEntries(int idempotencyEntries) {
+            this.idempotencyEntries = idempotencyEntries;
+            return this;
+        }
+
+        public Builder idempotencyBytes(long idempotencyBytes) {
+            this.idempotencyBytes = idempotencyBytes;
+            return this;
+        }
+
+        public Builder idempotencyTtl(Duration idempotencyTtl) {
+            this.idempotencyTtl = idempotencyTtl;
+            return this;
+        }
+
+        // 0 выключает ограничение частоты
+        public Builder rateLimitPerSecond(int rateLimitPerSecond) {
+            this.rateLimitPerSecond = rateLimitPerSecond;
+            return this;
+        }
+
+        public Builder rateLimitBurst(int rateLimitBurst) {
+            this.rateLimitBurst = rateLimitBurst;
+            return this;
+        }
+
+        public Builder rateLimitClients(int rateLimitClients) {
+            this.rateLimitClients = rateLimitClients;
+            return this;
+        }
+
+        // ключи X-Api-Key, у каждого из которых своя корзина ограничителя; запрос без ключа или с неизвестным
+        // ключом ограничивается по адресу подключения
+        public Builder apiKeys(Set<String> apiKeys) {
+            this.apiKeys = apiKeys;
+            return this;
+        }
+
+        // 0 — число одновременных тяжёлых запросов не ограничено
+        public Builder maxExpensiveInFlight(int maxExpensiveInFlight) {
+            this.maxExpensiveInFlight = maxExpensiveInFlight;
+            return this;
+        }
+
+        // 0 событий — лента изменений не ведётся
+        public Builder changeFeedCapacity(int changeFeedCapacity) {
+            this.changeFeedCapacity = changeFeedCapacity;
+            return this;
+        }
+
+        // сколько запросов к ленте изменений могут одновременно ждать событий (long-poll и SSE): каждый держит
+        // поток обработчика. 0 — только немедленные ответы.
+        public Builder maxChangeWaiters(int maxChangeWaiters) {
+            this.maxChangeWaiters = maxChangeWaiters;
+            return this;
+        }
+
+        public Builder readinessDelay(Duration readinessDelay) {
+            this.readinessDelay = readinessDelay;
+            return this;
+        }
+
+        public Builder drainTimeout(Duration drainTimeout) {
+            this.drainTimeout = drainTimeout;
+            return this;
+        }
+
+        // адрес ведущего узла (http://хост:порт): узел становится ведомым, копирует каталог с ведущего
+        // и перенаправляет на него запись, см. MovieReplica; null — узел ведущий (или единственный)
+        public Builder leader(URI leader) {
+            this.leader = leader;
+            return this;
+        }
+
+        // чем сервер принимает соединения и разбирает HTTP, см. Transport
+        public Builder transport(Transport transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        public ServerConfig build() {
+            return new ServerConfig(this);
+        }
+    }
+
+    public enum ExecutorMode {
+        // обработка в единственном потоке-диспетчере HttpServer, как было изначально
+        INLINE,
+        VIRTUAL,
+        // фиксированный пул потоков платформы с ограниченной очередью; не поместившиеся запросы получают 503,
+        // см. LoadShedder
+        POOL;
+
+        public static ExecutorMode parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Неизвестный режим исполнителя: " + value
+                        + " (ожидается inline, virtual или pool)", e);
+            }
+        }
+
+        // null для INLINE: HttpServer без исполнителя работает в своём потоке. overflow получает задачи,
+        // не поместившиеся в очередь пула POOL.
+        ExecutorService createExecutor(ServerConfig config, RejectedExecutionHandler overflow) {
+            switch (this) {
+                case VIRTUAL:
+                    return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-", 0).factory());
+                case POOL:
+                    return new ThreadPoolExecutor(config.getPoolSize(), config.getPoolSize(),
+                            0L, TimeUnit.MILLISECONDS,
+                            new LinkedBlockingQueue<>(config.getQueueCapacity()),
+                            namedThreads("http-pool-"),
+                            overflow);
+                default:
+                    return null;
+            }
+        }
+
+        private static ThreadFactory namedThreads(String prefix) {
+            AtomicInteger counter = new AtomicInteger();
+            return r -> {
+                Thread thread = new Thread(r, prefix + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+
+    public enum Transport {
+        // com.sun.net.httpserver: поток-диспетчер на все соединения, обмен читает и пишет сокет блокирующе
+        JDK,
+        // NioHttpServer: циклы событий по числу ядер читают и пишут сокеты сами, обработчик получает
+        // прочитанный запрос и отдаёт ответ в буферы, не касаясь сокета
+        NIO;
+
+        public static Transport parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Неизвестный транспорт HTTP: " + value
+                        + " (ожидается jdk или nio)", e);
+            }
+        }
+    }
+}
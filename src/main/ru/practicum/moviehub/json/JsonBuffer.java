@@ -0,0 +1,170 @@
+package ru.practicum.moviehub.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Растущий байтовый буфер для JSON в UTF-8. Один экземпляр на поток (acquire), поэтому запись ответа
+// не выделяет ни String, ни промежуточный byte[]. Строки экранируются ровно как у Gson по умолчанию
+// (HTML-safe): совпадение байт в байт проверяет MovieJsonTest.
+public final class JsonBuffer {
+    private static final int INITIAL_CAPACITY = 8 * 1024;
+    // буфер, разросшийся на большом ответе, не держим в потоке навсегда
+    private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+    private static final ThreadLocal<JsonBuffer> LOCAL = ThreadLocal.withInitial(JsonBuffer::new);
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    // ASCII-символы, которые Gson пишет в виде escape-последовательности; null — как есть
+    private static final byte[][] ESCAPES = new byte[128][];
+
+    static {
+        for (int c = 0; c < 0x20; c++) {
+            ESCAPES[c] = unicodeEscape(c);
+        }
+        ESCAPES['"'] = "\\\"".getBytes(StandardCharsets.US_ASCII);
+        ESCAPES['\\'] = "\\\\".getBytes(StandardCharsets.US_ASCII);
+        ESCAPES['\t'] = "\\t".getBytes(StandardCharsets.US_ASCII);
+        ESCAPES['\b'] = "\\b".getBytes(StandardCharsets.US_ASCII);
+        ESCAPES['\n'] = "\\n".getBytes(StandardCharsets.US_ASCII);
+        ESCAPES['\r'] = "\\r".getBytes(StandardCharsets.US_ASCII);
+        ESCAPES['\f'] = "\\f".getBytes(StandardCharsets.US_ASCII);
+        for (char c : new char[]{'<', '>', '&', '=', '\''}) {
+            ESCAPES[c] = unicodeEscape(c);
+        }
+    }
+
+    private byte[] bytes = new byte[INITIAL_CAPACITY];
+    private int length;
+
+    private JsonBuffer() {
+    }
+
+    public static JsonBuffer acquire() {
+        JsonBuffer buffer = LOCAL.get();
+        if (buffer.bytes.length > MAX_RETAINED_CAPACITY) {
+            buffer.bytes = new byte[INITIAL_CAPACITY];
+        }
+        buffer.length = 0;
+        return buffer;
+    }
+
+    public byte[] array() {
+        return bytes;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, length);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(bytes, 0, length);
+    }
+
+    // Для потоковой выдачи: отдать накопленное и начать заново.
+    void drainTo(OutputStream out) throws IOException {
+        out.write(bytes, 0, length);
+        length = 0;
+    }
+
+    // Готовый JSON, например от Gson.
+    void writeUtf8(String json) {
+        byte[] utf8 = json.getBytes(StandardCharsets.UTF_8);
+        ensure(utf8.length);
+        System.arraycopy(utf8, 0, bytes, length, utf8.length);
+        length += utf8.length;
+    }
+
+    void writeByte(int b) {
+        ensure(1);
+        bytes[length++] = (byte) b;
+    }
+
+    void writeAscii(String ascii) {
+        int n = ascii.length();
+        ensure(n);
+        for (int i = 0; i < n; i++) {
+            bytes[length++] = (byte) ascii.charAt(i);
+        }
+    }
+
+    void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            writeAscii(Long.toString(value));
+            return;
+        }
+        ensure(20);
+        if (value < 0) {
+            bytes[length++] = '-';
+            value = -value;
+        }
+        int start = length;
+        do {
+            bytes[length++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        for (int i = start, j = length - 1; i < j; i++, j--) {
+            byte tmp = bytes[i];
+            bytes[i] = bytes[j];
+            bytes[j] = tmp;
+        }
+    }
+
+    // Строка в кавычках. Как у Gson: U+2028/U+2029 экранируются, одиночный суррогат при
+    // кодировании в UTF-8 превращается в '?'.
+    void writeString(String value) {
+        int n = value.length();
+        // худший случай — \\uXXXX на каждый символ
+        ensure(n * 6 + 2);
+        byte[] b = bytes;
+        int pos = length;
+        b[pos++] = '"';
+        for (int i = 0; i < n; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                byte[] escape = ESCAPES[c];
+                if (escape == null) {
+                    b[pos++] = (byte) c;
+                } else {
+                    System.arraycopy(escape, 0, b, pos, escape.length);
+                    pos += escape.length;
+                }
+            } else if (c < 0x800) {
+                b[pos++] = (byte) (0xc0 | (c >> 6));
+                b[pos++] = (byte) (0x80 | (c & 0x3f));
+            } else if (c == 0x2028 || c == 0x2029) {
+                byte[] escape = unicodeEscape(c);
+                System.arraycopy(escape, 0, b, pos, escape.length);
+                pos += escape.length;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                b[pos++] = (byte) (0xf0 | (cp >> 18));
+                b[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                b[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                b[pos++] = (byte) (0x80 | (cp & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                b[pos++] = '?';
+            } else {
+                b[pos++] = (byte) (0xe0 | (c >> 12));
+                b[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                b[pos++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        b[pos++] = '"';
+        length = pos;
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+        }
+    }
+
+    private static byte[] unicodeEscape(int c) {
+        return new byte[]{'\\', 'u', HEX[(c >> 12) & 0xf], HEX[(c >> 8) & 0xf], HEX[(c >> 4) & 0xf], HEX[c & 0xf]};
+    }
+}
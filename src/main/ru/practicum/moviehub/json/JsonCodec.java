@@ -0,0 +1,243 @@
+package ru.practicum.moviehub.json;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import ru.practicum.moviehub.JsonUtil;
+import ru.practicum.moviehub.api.ErrorResponse;
+import ru.practicum.moviehub.model.Movie;
+import ru.practicum.moviehub.store.ChangeFeed;
+import ru.practicum.moviehub.store.MovieStats;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+// Кодек JSON для горячих путей API: фильм, список фильмов, ошибка и разбор тела POST /movies.
+// FAST — ручной MovieJson без отражения, GSON — прежний путь через Gson (на случай расхождений).
+public enum JsonCodec {
+    GSON {
+        @Override
+        public void writeMovie(JsonBuffer out, Movie movie) {
+            out.writeUtf8(JsonUtil.toJson(movie));
+        }
+
+        @Override
+        public void writeMovies(JsonBuffer out, List<Movie> movies) {
+            out.writeUtf8(JsonUtil.toJson(movies));
+        }
+
+        @Override
+        public void writeMovies(JsonBuffer out, List<Movie> movies, Set<MovieField> fields) {
+            List<JsonObject> projected = new ArrayList<>(movies.size());
+            for (Movie movie : movies) {
+                projected.add(project(movie, fields));
+            }
+            out.writeUtf8(JsonUtil.toJson(projected));
+        }
+
+        @Override
+        public void writeLookup(JsonBuffer out, List<Movie> movies, long[] missing, Set<MovieField> fields) {
+            JsonArray found = new JsonArray(movies.size());
+            for (Movie movie : movies) {
+                found.add(project(movie, fields));
+            }
+            JsonArray absent = new JsonArray(missing.length);
+            for (long id : missing) {
+                absent.add(id);
+            }
+            JsonObject json = new JsonObject();
+            json.add("movies", found);
+            json.add("missing", absent);
+            out.writeUtf8(JsonUtil.toJson(json));
+        }
+
+        @Override
+        public void writeError(JsonBuffer out, ErrorResponse error) {
+            out.writeUtf8(JsonUtil.toJson(error));
+        }
+
+        @Override
+        public void writeStats(JsonBuffer out, MovieStats stats) {
+            out.writeUtf8(JsonUtil.toJson(stats));
+        }
+
+        @Override
+        public void writeChange(JsonBuffer out, ChangeFeed.Change change) {
+            out.writeUtf8(JsonUtil.toJson(toJson(change)));
+        }
+
+        @Override
+        public void writeChanges(JsonBuffer out, List<ChangeFeed.Change> changes, long next) {
+            JsonArray array = new JsonArray(changes.size());
+            for (ChangeFeed.Change change : changes) {
+                array.add(toJson(change));
+            }
+            JsonObject json = new JsonObject();
+            json.add("changes", array);
+            json.addProperty("next", next);
+            out.writeUtf8(JsonUtil.toJson(json));
+        }
+
+        @Override
+        public void streamMovies(Iterable<Movie> movies, OutputStream body) throws IOException {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8), STREAM_BUFFER_SIZE);
+            JsonUtil.writeArray(movies, Movie.class, writer);
+        }
+
+        @Override
+        public void streamMovies(Iterable<Movie> movies, OutputStream body, Set<MovieField> fields)
+                throws IOException {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8), STREAM_BUFFER_SIZE);
+            Iterable<JsonObject> projected = () -> new Iterator<>() {
+                private final Iterator<Movie> it = movies.iterator();
+
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public JsonObject next() {
+                    return project(it.next(), fields);
+                }
+            };
+            JsonUtil.writeArray(projected, JsonObject.class, writer);
+        }
+
+        @Override
+        public Movie parseMovie(byte[] body) {
+            return JsonUtil.fromJson(new String(body, StandardCharsets.UTF_8), Movie.class);
+        }
+    },
+    FAST {
+        @Override
+        public void writeMovie(JsonBuffer out, Movie movie) {
+            MovieJson.writeMovie(out, movie);
+        }
+
+        @Override
+        public void writeMovies(JsonBuffer out, List<Movie> movies) {
+            MovieJson.writeMovies(out, movies);
+        }
+
+        @Override
+        public void writeMovies(JsonBuffer out, List<Movie> movies, Set<MovieField> fields) {
+            MovieJson.writeMovies(out, movies, fields);
+        }
+
+        @Override
+        public void writeLookup(JsonBuffer out, List<Movie> movies, long[] missing, Set<MovieField> fields) {
+            MovieJson.writeLookup(out, movies, missing, fields);
+        }
+
+        @Override
+        public void writeError(JsonBuffer out, ErrorResponse error) {
+            MovieJson.writeError(out, error);
+        }
+
+        @Override
+        public void writeStats(JsonBuffer out, MovieStats stats) {
+            MovieJson.writeStats(out, stats);
+        }
+
+        @Override
+        public void writeChange(JsonBuffer out, ChangeFeed.Change change) {
+            MovieJson.writeChange(out, change);
+        }
+
+        @Override
+        public void writeChanges(JsonBuffer out, List<ChangeFeed.Change> changes, long next) {
+            MovieJson.writeChanges(out, changes, next);
+        }
+
+        @Override
+        public void streamMovies(Iterable<Movie> movies, OutputStream body) throws IOException {
+            MovieJson.streamMovies(movies, body);
+        }
+
+        @Override
+        public void streamMovies(Iterable<Movie> movies, OutputStream body, Set<MovieField> fields)
+                throws IOException {
+            MovieJson.streamMovies(movies, body, fields);
+        }
+
+        @Override
+        public Movie parseMovie(byte[] body) {
+            return MovieJson.parseMovie(body);
+        }
+    };
+
+    private static final int STREAM_BUFFER_SIZE = 16 * 1024;
+
+    public abstract void writeMovie(JsonBuffer out, Movie movie);
+
+    public abstract void writeMovies(JsonBuffer out, List<Movie> movies);
+
+    // Только поля из fields (?fields=...).
+    public abstract void writeMovies(JsonBuffer out, List<Movie> movies, Set<MovieField> fields);
+
+    // Найденные по ?ids= фильмы и id, которых в каталоге нет.
+    public abstract void writeLookup(JsonBuffer out, List<Movie> movies, long[] missing, Set<MovieField> fields);
+
+    public abstract void writeError(JsonBuffer out, ErrorResponse error);
+
+    public abstract void writeStats(JsonBuffer out, MovieStats stats);
+
+    // Событие ленты изменений (GET /movies/changes) и страница событий с номером для следующего запроса.
+    public abstract void writeChange(JsonBuffer out, ChangeFeed.Change change);
+
+    public abstract void writeChanges(JsonBuffer out, List<ChangeFeed.Change> changes, long next);
+
+    // Пишет массив в body по мере обхода; body не закрывается, но всё записанное в него сброшено.
+    public abstract void streamMovies(Iterable<Movie> movies, OutputStream body) throws IOException;
+
+    public abstract void streamMovies(Iterable<Movie> movies, OutputStream body, Set<MovieField> fields)
+            throws IOException;
+
+    // null для пустого тела или "null"; синтаксические ошибки — com.google.gson.JsonSyntaxException.
+    public abstract Movie parseMovie(byte[] body);
+
+    private static JsonObject project(Movie movie, Set<MovieField> fields) {
+        JsonObject json = new JsonObject();
+        if (fields.contains(MovieField.ID)) {
+            json.addProperty("id", movie.getId());
+        }
+        if (fields.contains(MovieField.TITLE) && movie.getTitle() != null) {
+            json.addProperty("title", movie.getTitle());
+        }
+        if (fields.contains(MovieField.YEAR)) {
+            json.addProperty("year", movie.getYear());
+        }
+        return json;
+    }
+
+    private static JsonObject toJson(ChangeFeed.Change change) {
+        JsonObject json = new JsonObject();
+        json.addProperty("seq", change.getSeq());
+        json.addProperty("type", MovieJson.changeType(change.getType()));
+        switch (change.getType()) {
+            case ADD -> json.add("movie", project(change.getMovie(), MovieField.ALL));
+            case DELETE -> json.addProperty("id", change.getId());
+            case CLEAR -> {
+            }
+        }
+        return json;
+    }
+
+    public static JsonCodec parse(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Неизвестный кодек JSON: " + value
+                    + " (ожидается fast или gson)", e);
+        }
+    }
+}
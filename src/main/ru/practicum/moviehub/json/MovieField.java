@@ -0,0 +1,38 @@
+package ru.practicum.moviehub.json;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
+// Поля фильма для выборочной выдачи (?fields=id,title). В ответе поля всегда идут в порядке id, title, year.
+public enum MovieField {
+    ID,
+    TITLE,
+    YEAR;
+
+    public static final Set<MovieField> ALL = Collections.unmodifiableSet(EnumSet.allOf(MovieField.class));
+
+    public static MovieField parse(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Неизвестное поле фильма: " + value
+                    + " (ожидается id, title или year)", e);
+        }
+    }
+
+    // Список через запятую, повторы допустимы; пустой список — ошибка.
+    public static Set<MovieField> parseList(String value) {
+        EnumSet<MovieField> fields = EnumSet.noneOf(MovieField.class);
+        for (String name : value.split(",")) {
+            if (!name.isBlank()) {
+                fields.add(parse(name));
+            }
+        }
+        if (fields.isEmpty()) {
+            throw new IllegalArgumentException("Не указано ни одного поля фильма");
+        }
+        return fields;
+    }
+}
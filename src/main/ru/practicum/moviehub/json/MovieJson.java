@@ -0,0 +1,553 @@
+package ru.practicum.moviehub.json;
+
+import com.google.gson.JsonSyntaxException;
+import ru.practicum.moviehub.api.ErrorResponse;
+import ru.practicum.moviehub.model.Movie;
+import ru.practicum.moviehub.store.ChangeFeed;
+import ru.practicum.moviehub.store.MovieStats;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Ручная (без отражения) запись Movie, списков Movie и ErrorResponse в UTF-8 и разбор тела POST /movies
+// без построения дерева. Вывод совпадает с Gson по умолчанию: тот же порядок полей, null-поля пропускаются.
+public final class MovieJson {
+    // при потоковой выдаче буфер сбрасывается в ответ по достижении этого размера
+    private static final int STREAM_CHUNK = 16 * 1024;
+
+    private MovieJson() {
+    }
+
+    public static void writeMovie(JsonBuffer out, Movie movie) {
+        if (movie == null) {
+            out.writeAscii("null");
+            return;
+        }
+        out.writeAscii("{\"id\":");
+        out.writeLong(movie.getId());
+        if (movie.getTitle() != null) {
+            out.writeAscii(",\"title\":");
+            out.writeString(movie.getTitle());
+        }
+        out.writeAscii(",\"year\":");
+        out.writeLong(movie.getYear());
+        out.writeByte('}');
+    }
+
+    // Только поля из fields, в том же порядке; null-название пропускается, как и в полной записи.
+    public static void writeMovie(JsonBuffer out, Movie movie, Set<MovieField> fields) {
+        if (movie == null) {
+            out.writeAscii("null");
+            return;
+        }
+        out.writeByte('{');
+        boolean first = true;
+        if (fields.contains(MovieField.ID)) {
+            out.writeAscii("\"id\":");
+            out.writeLong(movie.getId());
+            first = false;
+        }
+        if (fields.contains(MovieField.TITLE) && movie.getTitle() != null) {
+            out.writeAscii(first ? "\"title\":" : ",\"title\":");
+            out.writeString(movie.getTitle());
+            first = false;
+        }
+        if (fields.contains(MovieField.YEAR)) {
+            out.writeAscii(first ? "\"year\":" : ",\"year\":");
+            out.writeLong(movie.getYear());
+        }
+        out.writeByte('}');
+    }
+
+    public static void writeMovies(JsonBuffer out, Iterable<Movie> movies, Set<MovieField> fields) {
+        out.writeByte('[');
+        boolean first = true;
+        for (Movie movie : movies) {
+            if (!first) {
+                out.writeByte(',');
+            }
+            writeMovie(out, movie, fields);
+            first = false;
+        }
+        out.writeByte(']');
+    }
+
+    public static void streamMovies(Iterable<Movie> movies, OutputStream body, Set<MovieField> fields)
+            throws IOException {
+        JsonBuffer out = JsonBuffer.acquire();
+        out.writeByte('[');
+        boolean first = true;
+        for (Movie movie : movies) {
+            if (!first) {
+                out.writeByte(',');
+            }
+            writeMovie(out, movie, fields);
+            first = false;
+            if (out.length() >= STREAM_CHUNK) {
+                out.drainTo(body);
+            }
+        }
+        out.writeByte(']');
+        out.drainTo(body);
+    }
+
+    public static void writeMovies(JsonBuffer out, Iterable<Movie> movies) {
+        out.writeByte('[');
+        boolean first = true;
+        for (Movie movie : movies) {
+            if (!first) {
+                out.writeByte(',');
+            }
+            writeMovie(out, movie);
+            first = false;
+        }
+        out.writeByte(']');
+    }
+
+    // Весь каталог: в памяти одновременно не больше STREAM_CHUNK байт ответа.
+    public static void streamMovies(Iterable<Movie> movies, OutputStream body) throws IOException {
+        JsonBuffer out = JsonBuffer.acquire();
+        out.writeByte('[');
+        boolean first = true;
+        for (Movie movie : movies) {
+            if (!first) {
+                out.writeByte(',');
+            }
+            writeMovie(out, movie);
+            first = false;
+            if (out.length() >= STREAM_CHUNK) {
+                out.drainTo(body);
+            }
+        }
+        out.writeByte(']');
+        out.drainTo(body);
+    }
+
+    public static void writeError(JsonBuffer out, ErrorResponse error) {
+        out.writeByte('{');
+        boolean first = true;
+        if (error.getError() != null) {
+            out.writeAscii("\"error\":");
+            out.writeString(error.getError());
+            first = false;
+        }
+        List<String> details = error.getDetails();
+        if (details != null) {
+            if (!first) {
+                out.writeByte(',');
+            }
+            out.writeAscii("\"details\":[");
+            for (int i = 0; i < details.size(); i++) {
+                if (i > 0) {
+                    out.writeByte(',');
+                }
+                String detail = details.get(i);
+                if (detail == null) {
+                    out.writeAscii("null");
+                } else {
+                    out.writeString(detail);
+                }
+            }
+            out.writeByte(']');
+        }
+        out.writeByte('}');
+    }
+
+    // Ключи гистограмм — строки, как у Gson для Map<Integer, Long>; null-годы пустого каталога пропускаются.
+    public static void writeStats(JsonBuffer out, MovieStats stats) {
+        out.writeAscii("{\"total\":");
+        out.writeLong(stats.getTotal());
+        if (stats.getMinYear() != null) {
+            out.writeAscii(",\"minYear\":");
+            out.writeLong(stats.getMinYear());
+        }
+        if (stats.getMaxYear() != null) {
+            out.writeAscii(",\"maxYear\":");
+            out.writeLong(stats.getMaxYear());
+        }
+        out.writeAscii(",\"byYear\":");
+        writeHistogram(out, stats.getByYear());
+        out.writeAscii(",\"byDecade\":");
+        writeHistogram(out, stats.getByDecade());
+        out.writeByte('}');
+    }
+
+    private static void writeHistogram(JsonBuffer out, Map<Integer, Long> counts) {
+        out.writeByte('{');
+        boolean first = true;
+        for (Map.Entry<Integer, Long> entry : counts.entrySet()) {
+            if (!first) {
+                out.writeByte(',');
+            }
+            out.writeByte('"');
+            out.writeLong(entry.getKey());
+            out.writeAscii("\":");
+            out.writeLong(entry.getValue());
+            first = false;
+        }
+        out.writeByte('}');
+    }
+
+    // Ответ GET /movies?ids=: {"movies":[...],"missing":[id,...]}.
+    public static void writeLookup(JsonBuffer out, List<Movie> movies, long[] missing, Set<MovieField> fields) {
+        out.writeAscii("{\"movies\":");
+        writeMovies(out, movies, fields);
+        out.writeAscii(",\"missing\":[");
+        for (int i = 0; i < missing.length; i++) {
+            if (i > 0) {
+                out.writeByte(',');
+            }
+            out.writeLong(missing[i]);
+        }
+        out.writeAscii("]}");
+    }
+
+    // {"seq":1,"type":"add","movie":{...}}, у delete вместо movie — id, у clear — ни того ни другого.
+    public static void writeChange(JsonBuffer out, ChangeFeed.Change change) {
+        out.writeAscii("{\"seq\":");
+        out.writeLong(change.getSeq());
+        out.writeAscii(",\"type\":\"");
+        out.writeAscii(changeType(change.getType()));
+        out.writeByte('"');
+        switch (change.getType()) {
+            case ADD -> {
+                out.writeAscii(",\"movie\":");
+                writeMovie(out, change.getMovie());
+            }
+            case DELETE -> {
+                out.writeAscii(",\"id\":");
+                out.writeLong(change.getId());
+            }
+            case CLEAR -> {
+            }
+        }
+        out.writeByte('}');
+    }
+
+    public static void writeChanges(JsonBuffer out, List<ChangeFeed.Change> changes, long next) {
+        out.writeAscii("{\"changes\":[");
+        for (int i = 0; i < changes.size(); i++) {
+            if (i > 0) {
+                out.writeByte(',');
+            }
+            writeChange(out, changes.get(i));
+        }
+        out.writeAscii("],\"next\":");
+        out.writeLong(next);
+        out.writeByte('}');
+    }
+
+    static String changeType(ChangeFeed.Type type) {
+        return switch (type) {
+            case ADD -> "add";
+            case DELETE -> "delete";
+            case CLEAR -> "clear";
+        };
+    }
+
+    // Как gson.fromJson(body, Movie.class): пустое тело или null -> null, неизвестные поля пропускаются,
+    // число в кавычках принимается, лишнее после объекта — ошибка. Ошибки — JsonSyntaxException, как у Gson.
+    public static Movie parseMovie(byte[] body) {
+        return new Parser(body).readDocument();
+    }
+
+    private static final class Parser {
+        private final byte[] b;
+        private int pos;
+
+        Parser(byte[] body) {
+            this.b = body;
+        }
+
+        Movie readDocument() {
+            skipWhitespace();
+            if (pos == b.length) {
+                return null;
+            }
+            Movie movie;
+            if (b[pos] == 'n') {
+                expectLiteral("null");
+                movie = null;
+            } else {
+                movie = readMovie();
+            }
+            skipWhitespace();
+            if (pos != b.length) {
+                throw error("JSON document was not fully consumed.");
+            }
+            return movie;
+        }
+
+        private Movie readMovie() {
+            expect('{');
+            Movie movie = new Movie();
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return movie;
+            }
+            while (true) {
+                skipWhitespace();
+                String name = readString();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                switch (name) {
+                    case "id":
+                        if (!skipNull()) {
+                            movie.setId(readIntegral(Long.MIN_VALUE, Long.MAX_VALUE));
+                        }
+                        break;
+                    case "title":
+                        if (!skipNull()) {
+                            movie.setTitle(readScalarAsString());
+                        }
+                        break;
+                    case "year":
+                        if (!skipNull()) {
+                            movie.setYear((int) readIntegral(Integer.MIN_VALUE, Integer.MAX_VALUE));
+                        }
+                        break;
+                    default:
+                        skipValue();
+                }
+                skipWhitespace();
+                byte next = next();
+                if (next == '}') {
+                    return movie;
+                }
+                if (next != ',') {
+                    throw error("Expected ',' or '}' at position " + (pos - 1));
+                }
+            }
+        }
+
+        // Gson приводит к строке и числа, и true/false
+        private String readScalarAsString() {
+            byte c = peek();
+            if (c == '"') {
+                return readString();
+            }
+            int start = pos;
+            if (c == 't' || c == 'f') {
+                expectLiteral(c == 't' ? "true" : "false");
+            } else {
+                skipNumber();
+            }
+            return new String(b, start, pos - start, StandardCharsets.US_ASCII);
+        }
+
+        // Целое число или строка с ним; 1999.0 допустимо, 1999.5 и выход за границы — нет.
+        private long readIntegral(long min, long max) {
+            String text;
+            if (peek() == '"') {
+                text = readString();
+            } else {
+                int start = pos;
+                skipNumber();
+                text = new String(b, start, pos - start, StandardCharsets.US_ASCII);
+            }
+            try {
+                long value = Long.parseLong(text);
+                if (value >= min && value <= max) {
+                    return value;
+                }
+            } catch (NumberFormatException e) {
+                try {
+                    double value = Double.parseDouble(text);
+                    if (value == Math.rint(value) && value >= min && value <= max) {
+                        return (long) value;
+                    }
+                } catch (NumberFormatException ignored) {
+                    // ниже общая ошибка
+                }
+            }
+            throw error("Expected an integer but was " + text);
+        }
+
+        private String readString() {
+            expect('"');
+            int start = pos;
+            while (true) {
+                if (pos >= b.length) {
+                    throw error("Unterminated string");
+                }
+                byte c = b[pos];
+                if (c == '"') {
+                    String value = new String(b, start, pos - start, StandardCharsets.UTF_8);
+                    pos++;
+                    return value;
+                }
+                if (c == '\\') {
+                    return readEscapedString(start);
+                }
+                pos++;
+            }
+        }
+
+        // Медленный путь: строка с escape-последовательностями.
+        private String readEscapedString(int start) {
+            StringBuilder value = new StringBuilder(new String(b, start, pos - start, StandardCharsets.UTF_8));
+            while (true) {
+                if (pos >= b.length) {
+                    throw error("Unterminated string");
+                }
+                byte c = b[pos];
+                if (c == '"') {
+                    pos++;
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    int runStart = pos;
+                    while (pos < b.length && b[pos] != '"' && b[pos] != '\\') {
+                        pos++;
+                    }
+                    value.append(new String(b, runStart, pos - runStart, StandardCharsets.UTF_8));
+                    continue;
+                }
+                pos++;
+                byte escaped = next();
+                switch (escaped) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                    case '\'':
+                        value.append((char) escaped);
+                        break;
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'u':
+                        if (pos + 4 > b.length) {
+                            throw error("Unterminated escape sequence");
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(
+                                    new String(b, pos, 4, StandardCharsets.US_ASCII), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Malformed Unicode escape");
+                        }
+                        pos += 4;
+                        break;
+                    default:
+                        throw error("Invalid escape sequence");
+                }
+            }
+        }
+
+        private void skipValue() {
+            byte c = peek();
+            switch (c) {
+                case '"':
+                    readString();
+                    break;
+                case '{':
+                case '[':
+                    skipContainer();
+                    break;
+                case 't':
+                    expectLiteral("true");
+                    break;
+                case 'f':
+                    expectLiteral("false");
+                    break;
+                case 'n':
+                    expectLiteral("null");
+                    break;
+                default:
+                    skipNumber();
+            }
+        }
+
+        private void skipContainer() {
+            int depth = 0;
+            do {
+                byte c = next();
+                if (c == '"') {
+                    pos--;
+                    readString();
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                }
+            } while (depth > 0);
+        }
+
+        private void skipNumber() {
+            int start = pos;
+            while (pos < b.length) {
+                byte c = b[pos];
+                if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+                    pos++;
+                } else {
+                    break;
+                }
+            }
+            if (pos == start) {
+                throw error("Unexpected character at position " + pos);
+            }
+        }
+
+        private boolean skipNull() {
+            if (peek() == 'n') {
+                expectLiteral("null");
+                return true;
+            }
+            return false;
+        }
+
+        private void expectLiteral(String literal) {
+            for (int i = 0; i < literal.length(); i++) {
+                if (next() != literal.charAt(i)) {
+                    throw error("Expected " + literal + " at position " + (pos - 1));
+                }
+            }
+        }
+
+        private void expect(char c) {
+            if (next() != c) {
+                throw error("Expected '" + c + "' at position " + (pos - 1));
+            }
+        }
+
+        private byte peek() {
+            if (pos >= b.length) {
+                throw error("End of input at position " + pos);
+            }
+            return b[pos];
+        }
+
+        private byte next() {
+            byte c = peek();
+            pos++;
+            return c;
+        }
+
+        private void skipWhitespace() {
+            while (pos < b.length && (b[pos] == ' ' || b[pos] == '\n' || b[pos] == '\r' || b[pos] == '\t')) {
+                pos++;
+            }
+        }
+
+        private static JsonSyntaxException error(String message) {
+            return new JsonSyntaxException(message);
+        }
+    }
+}
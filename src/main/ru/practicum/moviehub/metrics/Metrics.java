@@ -0,0 +1,160 @@
+package ru.practicum.moviehub.metrics;
+
+import ru.practicum.moviehub.store.StoreObserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+// Метрики сервера: задержки по маршрутам, методам и статусам, длительность операций хранилища
+// и произвольные счётчики/датчики. Выдаются в текстовом формате Prometheus. Квантили считаются
+// за всё время работы процесса.
+public class Metrics implements StoreObserver {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Map<String, Route> routes = new ConcurrentHashMap<>();
+    private final LatencyHistogram[] storeOperations = new LatencyHistogram[Operation.values().length];
+    private final List<Sampled> sampled = new CopyOnWriteArrayList<>();
+
+    public Metrics() {
+        for (int i = 0; i < storeOperations.length; i++) {
+            storeOperations[i] = new LatencyHistogram();
+        }
+    }
+
+    public Route route(String name) {
+        return routes.computeIfAbsent(name, Route::new);
+    }
+
+    @Override
+    public void onOperation(Operation operation, long nanos) {
+        storeOperations[operation.ordinal()].record(nanos);
+    }
+
+    public void gauge(String name, String help, LongSupplier value) {
+        sampled.add(new Sampled(name, help, "gauge", value));
+    }
+
+    public void counter(String name, String help, LongSupplier value) {
+        sampled.add(new Sampled(name, help, "counter", value));
+    }
+
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder(4096);
+
+        header(out, "moviehub_http_request_duration_seconds",
+                "Время обработки HTTP-запроса по маршруту, методу и статусу", "summary");
+        List<String> names = new ArrayList<>(routes.keySet());
+        names.sort(null);
+        for (String name : names) {
+            Route route = routes.get(name);
+            for (int m = 0; m < Route.METHODS.length; m++) {
+                for (int s = 0; s < Route.STATUSES; s++) {
+                    LatencyHistogram histogram = route.histograms.get(m * Route.STATUSES + s);
+                    if (histogram != null) {
+                        summary(out, "moviehub_http_request_duration_seconds", "route=\"" + escape(name)
+                                + "\",method=\"" + Route.METHODS[m] + "\",status=\"" + (s + Route.MIN_STATUS) + "\"",
+                                histogram);
+                    }
+                }
+            }
+        }
+
+        header(out, "moviehub_store_operation_duration_seconds",
+                "Время операций каталога фильмов, включая ожидание записи журнала", "summary");
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = storeOperations[operation.ordinal()];
+            if (histogram.count() > 0) {
+                summary(out, "moviehub_store_operation_duration_seconds",
+                        "operation=\"" + operation.name().toLowerCase(Locale.ROOT) + "\"", histogram);
+            }
+        }
+
+        for (Sampled metric : sampled) {
+            header(out, metric.name, metric.help, metric.type);
+            out.append(metric.name).append(' ').append(metric.value.getAsLong()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void summary(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        for (double q : QUANTILES) {
+            out.append(name).append('{').append(labels).append(",quantile=\"").append(q).append("\"} ")
+                    .append(seconds(histogram.quantileNanos(q))).append('\n');
+        }
+        out.append(name).append("_sum{").append(labels).append("} ")
+                .append(seconds(histogram.sumNanos())).append('\n');
+        out.append(name).append("_count{").append(labels).append("} ").append(histogram.count()).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    // Гистограммы маршрута в плоском массиве [метод][статус], создаются при первом запросе с этой парой.
+    public static final class Route {
+        static final String[] METHODS = {"GET", "POST", "PUT", "DELETE", "HEAD", "OTHER"};
+        static final int MIN_STATUS = 100;
+        static final int STATUSES = 500;
+
+        private final String name;
+        private final AtomicReferenceArray<LatencyHistogram> histograms =
+                new AtomicReferenceArray<>(METHODS.length * STATUSES);
+
+        private Route(String name) {
+            this.name = name;
+        }
+
+        public void record(String method, int status, long nanos) {
+            int s = status < MIN_STATUS || status >= MIN_STATUS + STATUSES ? 500 - MIN_STATUS : status - MIN_STATUS;
+            int index = methodIndex(method) * STATUSES + s;
+            LatencyHistogram histogram = histograms.get(index);
+            if (histogram == null) {
+                histograms.compareAndSet(index, null, new LatencyHistogram());
+                histogram = histograms.get(index);
+            }
+            histogram.record(nanos);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        private static int methodIndex(String method) {
+            for (int i = 0; i < METHODS.length - 1; i++) {
+                if (METHODS[i].equalsIgnoreCase(method)) {
+                    return i;
+                }
+            }
+            return METHODS.length - 1;
+        }
+    }
+
+    private static final class Sampled {
+        final String name;
+        final String help;
+        final String type;
+        final LongSupplier value;
+
+        Sampled(String name, String help, String type, LongSupplier value) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.value = value;
+        }
+    }
+}
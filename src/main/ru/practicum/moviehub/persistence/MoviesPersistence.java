@@ -0,0 +1,126 @@
+package ru.practicum.moviehub.persistence;
+
+import ru.practicum.moviehub.model.Movie;
+import ru.practicum.moviehub.store.MovieRepository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Связывает каталог со снимком и журналом: восстановление при старте, периодические снимки,
+// после которых старые сегменты журнала удаляются.
+public class MoviesPersistence implements Closeable {
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+
+    private final MovieRepository store;
+    private final WriteAheadLog wal;
+    private final Path snapshotPath;
+    private final ScheduledExecutorService scheduler;
+    private final Object snapshotLock = new Object();
+
+    private MoviesPersistence(MovieRepository store, WriteAheadLog wal, Path snapshotPath, PersistenceConfig config) {
+        this.store = store;
+        this.wal = wal;
+        this.snapshotPath = snapshotPath;
+
+        long intervalMs = config.getSnapshotInterval().toMillis();
+        if (intervalMs > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "snapshot-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::scheduledSnapshot, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        } else {
+            scheduler = null;
+        }
+    }
+
+    public static MoviesPersistence open(MovieRepository store, PersistenceConfig config) throws IOException {
+        Path dir = config.getDataDir();
+        Files.createDirectories(dir);
+        Path snapshotPath = dir.resolve(SNAPSHOT_FILE);
+
+        long start = System.nanoTime();
+        long firstSegment = 0;
+        if (Files.exists(snapshotPath)) {
+            firstSegment = SnapshotFile.load(snapshotPath, store);
+        }
+        long replayed = WriteAheadLog.replay(dir, firstSegment, new StoreReplay(store));
+        // restore счётчики не ведёт: сводка по годам пересчитывается один раз, параллельно, до первых запросов
+        store.recomputeStats();
+        System.out.printf("Каталог восстановлен из %s за %d мс (записей журнала: %d)%n",
+                dir, (System.nanoTime() - start) / 1_000_000, replayed);
+
+        WriteAheadLog wal = WriteAheadLog.open(dir, config.getFlushInterval());
+        store.attachJournal(wal);
+        return new MoviesPersistence(store, wal, snapshotPath, config);
+    }
+
+    public void snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            long[] firstSegment = new long[1];
+            store.runExclusive(() -> {
+                try {
+                    firstSegment[0] = wal.rotate();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            SnapshotFile.write(snapshotPath, firstSegment[0], store);
+            wal.deleteSegmentsBefore(firstSegment[0]);
+        }
+    }
+
+    public void flush() throws IOException {
+        wal.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        try {
+            snapshot();
+        } finally {
+            wal.close();
+        }
+    }
+
+    private void scheduledSnapshot() {
+        try {
+            snapshot();
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Не удалось записать снимок каталога: " + e.getMessage());
+        }
+    }
+
+    private static final class StoreReplay implements WriteAheadLog.ReplayHandler {
+        private final MovieRepository store;
+
+        StoreReplay(MovieRepository store) {
+            this.store = store;
+        }
+
+        @Override
+        public void add(long id, String title, int year) {
+            store.restore(new Movie(id, title, year));
+        }
+
+        @Override
+        public void delete(long id) {
+            store.delete(id);
+        }
+
+        @Override
+        public void clear() {
+            store.clear();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package ru.practicum.moviehub.persistence;
+
+import ru.practicum.moviehub.AppConfig;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+public class PersistenceConfig {
+    public static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofMillis(2);
+    public static final Duration DEFAULT_SNAPSHOT_INTERVAL = Duration.ofMinutes(5);
+
+    private final Path dataDir;
+    private final Duration flushInterval;
+    private final Duration snapshotInterval;
+
+    public PersistenceConfig(Path dataDir, Duration flushInterval, Duration snapshotInterval) {
+        if (flushInterval.isNegative() || flushInterval.isZero()) {
+            throw new IllegalArgumentException("Интервал сброса журнала должен быть положительным");
+        }
+        this.dataDir = dataDir;
+        this.flushInterval = flushInterval;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    // null, если каталог данных не задан: тогда хранилище остаётся только в памяти
+    public static PersistenceConfig fromAppConfig(AppConfig config) {
+        String dataDir = config.getString("moviehub.data.dir", null);
+        if (dataDir == null) {
+            return null;
+        }
+        return new PersistenceConfig(Path.of(dataDir),
+                config.getMillis("moviehub.wal.flushIntervalMs", DEFAULT_FLUSH_INTERVAL),
+                config.getMillis("moviehub.snapshot.intervalMs", DEFAULT_SNAPSHOT_INTERVAL));
+    }
+
+    public Path getDataDir() {
+        return dataDir;
+    }
+
+    public Duration getFlushInterval() {
+        return flushInterval;
+    }
+
+    // ноль — снимки только при остановке
+    public Duration getSnapshotInterval() {
+        return snapshotInterval;
+    }
+}
@@ -0,0 +1,147 @@
+package ru.practicum.moviehub.persistence;
+
+import ru.practicum.moviehub.model.Movie;
+import ru.practicum.moviehub.store.MovieRepository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32C;
+
+// Снимок каталога: заголовок [magic][версия][первый сегмент журнала][nextId][число фильмов],
+// затем блоки [длина][crc32c][число записей][записи id, год, длина названия, UTF-8].
+// Фильмы лежат по возрастанию id, блоки разбираются параллельно, а в индексы попадают по порядку.
+final class SnapshotFile {
+    private static final int MAGIC = 0x4D48534E;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8;
+    private static final int CHUNK_HEADER_SIZE = 4 + 4 + 4;
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    private SnapshotFile() {
+    }
+
+    static void write(Path file, long firstSegment, MovieRepository store) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        long nextId = store.nextId();
+        long count = 0;
+
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ch.position(HEADER_SIZE);
+            ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+            chunk.position(CHUNK_HEADER_SIZE);
+            int chunkRecords = 0;
+
+            for (long id = 1; id < nextId; id++) {
+                Movie movie = store.findById(id);
+                if (movie == null) {
+                    continue;
+                }
+                byte[] title = movie.getTitle().getBytes(StandardCharsets.UTF_8);
+                if (chunk.remaining() < 8 + 4 + 4 + title.length) {
+                    writeChunk(ch, chunk, chunkRecords);
+                    chunkRecords = 0;
+                }
+                chunk.putLong(id).putInt(movie.getYear()).putInt(title.length).put(title);
+                chunkRecords++;
+                count++;
+            }
+            if (chunkRecords > 0) {
+                writeChunk(ch, chunk, chunkRecords);
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(firstSegment).putLong(nextId).putLong(count).flip();
+            ch.write(header, 0);
+            ch.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Загружает снимок в store и возвращает номер первого сегмента журнала, который надо проиграть поверх.
+    static long load(Path file, MovieRepository store) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE) {
+                throw new IOException("Снимок больше 2 ГБ не поддерживается: " + file);
+            }
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (buf.remaining() < HEADER_SIZE || buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+                throw new IOException("Повреждённый заголовок снимка: " + file);
+            }
+            long firstSegment = buf.getLong();
+            long nextId = buf.getLong();
+            buf.getLong();
+
+            List<ByteBuffer> chunks = new ArrayList<>();
+            List<Integer> counts = new ArrayList<>();
+            CRC32C crc = new CRC32C();
+            while (buf.remaining() >= CHUNK_HEADER_SIZE) {
+                int length = buf.getInt();
+                int expectedCrc = buf.getInt();
+                int records = buf.getInt();
+                if (length < 0 || length > buf.remaining()) {
+                    throw new IOException("Повреждённый блок снимка: " + file);
+                }
+                ByteBuffer chunk = buf.slice(buf.position(), length);
+                crc.reset();
+                crc.update(chunk.duplicate());
+                if ((int) crc.getValue() != expectedCrc) {
+                    throw new IOException("Неверная контрольная сумма блока снимка: " + file);
+                }
+                chunks.add(chunk);
+                counts.add(records);
+                buf.position(buf.position() + length);
+            }
+
+            Movie[][] decoded = new Movie[chunks.size()][];
+            IntStream.range(0, chunks.size()).parallel()
+                    .forEach(i -> decoded[i] = decodeChunk(chunks.get(i), counts.get(i)));
+            for (Movie[] movies : decoded) {
+                for (Movie movie : movies) {
+                    store.restore(movie);
+                }
+            }
+            store.restoreNextId(nextId);
+            return firstSegment;
+        }
+    }
+
+    private static Movie[] decodeChunk(ByteBuffer chunk, int records) {
+        Movie[] movies = new Movie[records];
+        byte[] title = new byte[256];
+        for (int i = 0; i < records; i++) {
+            long id = chunk.getLong();
+            int year = chunk.getInt();
+            int length = chunk.getInt();
+            if (length > title.length) {
+                title = new byte[length];
+            }
+            chunk.get(title, 0, length);
+            movies[i] = new Movie(id, new String(title, 0, length, StandardCharsets.UTF_8), year);
+        }
+        return movies;
+    }
+
+    private static void writeChunk(FileChannel ch, ByteBuffer chunk, int records) throws IOException {
+        int length = chunk.position() - CHUNK_HEADER_SIZE;
+        CRC32C crc = new CRC32C();
+        crc.update(chunk.slice(CHUNK_HEADER_SIZE, length));
+        chunk.putInt(0, length).putInt(4, (int) crc.getValue()).putInt(8, records);
+        chunk.flip();
+        while (chunk.hasRemaining()) {
+            ch.write(chunk);
+        }
+        chunk.clear();
+        chunk.position(CHUNK_HEADER_SIZE);
+    }
+}
@@ -0,0 +1,349 @@
+package ru.practicum.moviehub.persistence;
+
+import ru.practicum.moviehub.model.Movie;
+import ru.practicum.moviehub.store.MovieJournal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+// Журнал add/delete/clear по сегментам wal-<номер>.log. Запись кадра: [длина][crc32c][тип][данные].
+// Групповая фиксация: записи копятся в буфере, фоновый поток раз в flushInterval пишет их одним
+// write + force и будит всех, кто ждёт в awaitDurable.
+public class WriteAheadLog implements MovieJournal, Closeable {
+    static final byte ADD = 1;
+    static final byte DELETE = 2;
+    static final byte CLEAR = 3;
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int FRAME_HEADER = 8;
+    private static final int INITIAL_BUFFER = 64 * 1024;
+
+    private final Path dir;
+    private final long flushIntervalNanos;
+    private final Thread flusher;
+
+    private final Object appendLock = new Object();
+    private final CRC32C crc = new CRC32C();
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER);
+    private long appendedSeq;
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private ByteBuffer spare = ByteBuffer.allocate(INITIAL_BUFFER);
+    private FileChannel channel;
+    private long segment;
+
+    // Lock + Condition, а не wait/notify: ожидающий виртуальный поток не занимает поток-носитель.
+    private final ReentrantLock durableLock = new ReentrantLock();
+    private final Condition durableCondition = durableLock.newCondition();
+    private volatile long durableSeq;
+    private volatile IOException failure;
+    private volatile boolean closed;
+
+    private WriteAheadLog(Path dir, long segment, Duration flushInterval) throws IOException {
+        this.dir = dir;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        openSegment(segment);
+        this.flusher = new Thread(this::runFlusher, "wal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    // Всегда начинает новый сегмент: старые только читаются при восстановлении и удаляются после снимка.
+    public static WriteAheadLog open(Path dir, Duration flushInterval) throws IOException {
+        List<Long> segments = listSegments(dir);
+        long next = segments.isEmpty() ? 1 : segments.get(segments.size() - 1) + 1;
+        return new WriteAheadLog(dir, next, flushInterval);
+    }
+
+    @Override
+    public long logAdd(Movie movie) {
+        byte[] title = movie.getTitle() == null ? new byte[0] : movie.getTitle().getBytes(StandardCharsets.UTF_8);
+        synchronized (appendLock) {
+            int start = beginFrame(1 + 8 + 4 + 4 + title.length);
+            pending.put(ADD).putLong(movie.getId()).putInt(movie.getYear()).putInt(title.length).put(title);
+            return endFrame(start);
+        }
+    }
+
+    @Override
+    public long logDelete(long id) {
+        synchronized (appendLock) {
+            int start = beginFrame(1 + 8);
+            pending.put(DELETE).putLong(id);
+            return endFrame(start);
+        }
+    }
+
+    @Override
+    public long logClear() {
+        synchronized (appendLock) {
+            int start = beginFrame(1);
+            pending.put(CLEAR);
+            return endFrame(start);
+        }
+    }
+
+    @Override
+    public void awaitDurable(long seq) {
+        if (durableSeq >= seq) {
+            return;
+        }
+        durableLock.lock();
+        try {
+            while (durableSeq < seq) {
+                if (failure != null) {
+                    throw new UncheckedIOException("Не удалось записать журнал", failure);
+                }
+                durableCondition.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ожидание записи журнала прервано", e);
+        } finally {
+            durableLock.unlock();
+        }
+    }
+
+    public void flush() throws IOException {
+        flushLock.lock();
+        try {
+            flushLocked();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // Закрывает текущий сегмент и открывает следующий; возвращает номер нового сегмента.
+    public long rotate() throws IOException {
+        flushLock.lock();
+        try {
+            flushLocked();
+            channel.close();
+            openSegment(segment + 1);
+            return segment;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public void deleteSegmentsBefore(long firstKept) throws IOException {
+        for (long number : listSegments(dir)) {
+            if (number < firstKept) {
+                Files.deleteIfExists(segmentPath(dir, number));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushLock.lock();
+        try {
+            flushLocked();
+            channel.close();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // Проигрывает сегменты начиная с firstSegment. Оборванный хвост сегмента (падение во время записи)
+    // просто отбрасывается: следующий запуск всё равно пишет в новый сегмент.
+    public static long replay(Path dir, long firstSegment, ReplayHandler handler) throws IOException {
+        long records = 0;
+        for (long number : listSegments(dir)) {
+            if (number < firstSegment) {
+                continue;
+            }
+            try (FileChannel ch = FileChannel.open(segmentPath(dir, number), StandardOpenOption.READ)) {
+                if (ch.size() == 0) {
+                    continue;
+                }
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                records += replaySegment(buf, handler);
+            }
+        }
+        return records;
+    }
+
+    private static long replaySegment(ByteBuffer buf, ReplayHandler handler) {
+        CRC32C check = new CRC32C();
+        long records = 0;
+        while (buf.remaining() >= FRAME_HEADER) {
+            int length = buf.getInt();
+            int expectedCrc = buf.getInt();
+            if (length <= 0 || length > buf.remaining()) {
+                break;
+            }
+            ByteBuffer payload = buf.slice(buf.position(), length);
+            check.reset();
+            check.update(payload.duplicate());
+            if ((int) check.getValue() != expectedCrc) {
+                break;
+            }
+            buf.position(buf.position() + length);
+            try {
+                apply(payload, handler);
+            } catch (BufferUnderflowException e) {
+                break;
+            }
+            records++;
+        }
+        return records;
+    }
+
+    private static void apply(ByteBuffer payload, ReplayHandler handler) {
+        byte type = payload.get();
+        switch (type) {
+            case ADD: {
+                long id = payload.getLong();
+                int year = payload.getInt();
+                byte[] title = new byte[payload.getInt()];
+                payload.get(title);
+                handler.add(id, new String(title, StandardCharsets.UTF_8), year);
+                break;
+            }
+            case DELETE:
+                handler.delete(payload.getLong());
+                break;
+            case CLEAR:
+                handler.clear();
+                break;
+            default:
+                throw new IllegalStateException("Неизвестный тип записи журнала: " + type);
+        }
+    }
+
+    private int beginFrame(int payloadLength) {
+        ensureCapacity(FRAME_HEADER + payloadLength);
+        int start = pending.position();
+        pending.putInt(payloadLength).putInt(0);
+        return start;
+    }
+
+    private long endFrame(int start) {
+        int payloadStart = start + FRAME_HEADER;
+        crc.reset();
+        crc.update(pending.slice(payloadStart, pending.position() - payloadStart));
+        pending.putInt(start + 4, (int) crc.getValue());
+        return ++appendedSeq;
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (pending.remaining() >= bytes) {
+            return;
+        }
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+        pending.flip();
+        bigger.put(pending);
+        pending = bigger;
+    }
+
+    private void flushLocked() throws IOException {
+        ByteBuffer toWrite;
+        long upTo;
+        synchronized (appendLock) {
+            upTo = appendedSeq;
+            if (pending.position() == 0) {
+                return;
+            }
+            toWrite = pending;
+            pending = spare;
+        }
+
+        try {
+            toWrite.flip();
+            while (toWrite.hasRemaining()) {
+                channel.write(toWrite);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            failure = e;
+            signalDurable();
+            throw e;
+        } finally {
+            toWrite.clear();
+            spare = toWrite;
+        }
+
+        durableSeq = upTo;
+        signalDurable();
+    }
+
+    private void signalDurable() {
+        durableLock.lock();
+        try {
+            durableCondition.signalAll();
+        } finally {
+            durableLock.unlock();
+        }
+    }
+
+    private void runFlusher() {
+        while (!closed) {
+            LockSupport.parkNanos(this, flushIntervalNanos);
+            try {
+                flush();
+            } catch (IOException e) {
+                System.err.println("Ошибка записи журнала: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private void openSegment(long number) throws IOException {
+        channel = FileChannel.open(segmentPath(dir, number),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segment = number;
+    }
+
+    private static Path segmentPath(Path dir, long number) {
+        return dir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    private static List<Long> listSegments(Path dir) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .forEach(name -> numbers.add(Long.parseLong(
+                            name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()))));
+        }
+        numbers.sort(null);
+        return numbers;
+    }
+
+    public interface ReplayHandler {
+        void add(long id, String title, int year);
+
+        void delete(long id);
+
+        void clear();
+    }
+}
@@ -0,0 +1,323 @@
+package ru.practicum.moviehub.replication;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import ru.practicum.moviehub.model.Movie;
+import ru.practicum.moviehub.store.MovieRepository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+// Ведомый узел: копия каталога ведущего для чтения. При старте (и когда ведущий ответил 410) загружается
+// снимок GET /movies/snapshot — номер последнего вошедшего в него события приходит в X-Changes-Head, — затем
+// лента GET /movies/changes?since=N забирается пакетами до BATCH событий и применяется по порядку.
+// Следующий пакет запрашивается только после применения предыдущего: ведущий ничего не копит для отстающего
+// узла, а отставший дальше ёмкости ленты получает 410 и загружает снимок заново.
+// Снимок снимается без остановки записей, поэтому в нём могут быть и события после X-Changes-Head. Применение
+// идемпотентно — add заменяет фильм по id (replicate), delete отсутствующего ничего не делает, — и события
+// после номера снимка, применённые поверх него, приводят к тому же каталогу, что у ведущего.
+public class MovieReplica {
+    static final String HEAD_HEADER = "X-Changes-Head";
+    static final int BATCH = 1000;
+    // столько ведущий держит запрос ленты без событий; держать его можно только при свободном месте ожидания
+    static final long WAIT_MS = 10_000;
+    static final Duration RETRY_DELAY = Duration.ofSeconds(1);
+    // пустой ответ быстрее WAIT_MS значит, что ведущий не смог подождать: повторять сразу — крутиться вхолостую
+    static final Duration IDLE_DELAY = Duration.ofMillis(200);
+
+    private final MovieRepository store;
+    private final URI leader;
+    private final HttpClient client;
+    private final LongAdder resyncs = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private volatile Thread worker;
+    private volatile boolean stopped;
+    // снимок загружен хотя бы раз: до этого узел не готов отвечать
+    private volatile boolean synced;
+    private volatile long applied;
+    private volatile long leaderHead;
+    // System.nanoTime последнего успешного ответа ведущего
+    private volatile long lastContact;
+
+    public MovieReplica(MovieRepository store, URI leader) {
+        this.store = store;
+        this.leader = leader;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    public void start() {
+        Thread thread = new Thread(this::run, "replica-sync");
+        thread.setDaemon(true);
+        worker = thread;
+        thread.start();
+    }
+
+    public void stop() {
+        stopped = true;
+        Thread thread = worker;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(RETRY_DELAY.toMillis() * 5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public URI getLeader() {
+        return leader;
+    }
+
+    public boolean isSynced() {
+        return synced;
+    }
+
+    // Номер последнего применённого события ленты ведущего.
+    public long getApplied() {
+        return applied;
+    }
+
+    // Сколько событий ведущего ещё не применено — по номеру ленты из его последнего ответа.
+    public long getLagEvents() {
+        return Math.max(0, leaderHead - applied);
+    }
+
+    // Сколько мс назад ведущий отвечал; при исправной связи не больше WAIT_MS. -1 — ещё не отвечал.
+    public long getLeaderContactAgeMillis() {
+        long contact = lastContact;
+        return contact == 0 ? -1 : (System.nanoTime() - contact) / 1_000_000;
+    }
+
+    public long getResyncs() {
+        return resyncs.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    private void run() {
+        boolean needSnapshot = true;
+        while (!stopped) {
+            try {
+                if (needSnapshot) {
+                    loadSnapshot();
+                    needSnapshot = false;
+                }
+                if (!pollChanges()) {
+                    needSnapshot = true;
+                    resyncs.increment();
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException | RuntimeException e) {
+                if (stopped) {
+                    return;
+                }
+                errors.increment();
+                System.err.println("Репликация с " + leader + " прервана, повтор через "
+                        + RETRY_DELAY.toMillis() + " мс: " + e);
+                try {
+                    Thread.sleep(RETRY_DELAY.toMillis());
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // Фильмы снимка заменяют фильмы с тем же id, а тех, которых в снимке нет, узел удаляет: при повторной
+    // синхронизации узел отвечает старыми данными, пока грузится снимок, а не пустым каталогом.
+    private void loadSnapshot() throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        HttpResponse<InputStream> response = send("/movies/snapshot", Duration.ofMinutes(10));
+        long head = readHead(response);
+        long[] ids = new long[1024];
+        int count = 0;
+        try (JsonReader reader = reader(response, 200)) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                Movie movie = readMovie(reader);
+                store.restore(movie);
+                if (count == ids.length) {
+                    ids = Arrays.copyOf(ids, count * 2);
+                }
+                ids[count++] = movie.getId();
+            }
+            reader.endArray();
+        }
+        Arrays.sort(ids, 0, count);
+        long[] stale = new long[store.size()];
+        int staleCount = 0;
+        for (Movie movie : store.values()) {
+            if (Arrays.binarySearch(ids, 0, count, movie.getId()) < 0 && staleCount < stale.length) {
+                stale[staleCount++] = movie.getId();
+            }
+        }
+        if (staleCount > 0) {
+            store.deleteAll(Arrays.copyOf(stale, staleCount));
+        }
+        // restore сводку по годам не ведёт; события ленты дальше идут через replicate и держат её точной
+        store.recomputeStats();
+        applied = head;
+        leaderHead = head;
+        lastContact = System.nanoTime();
+        synced = true;
+        System.out.printf("Снимок каталога с %s загружен за %d мс: %d фильмов, событие %d%n",
+                leader, (System.nanoTime() - start) / 1_000_000, count, head);
+    }
+
+    // false — нужных событий в ленте ведущего уже нет, нужен снимок.
+    private boolean pollChanges() throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        HttpResponse<InputStream> response = send("/movies/changes?since=" + applied + "&limit=" + BATCH
+                + "&wait=" + WAIT_MS, Duration.ofMillis(WAIT_MS).plusSeconds(30));
+        if (response.statusCode() == 410) {
+            response.body().close();
+            leaderHead = readHead(response);
+            return false;
+        }
+        leaderHead = Math.max(leaderHead, readHead(response));
+        int count = 0;
+        long next = applied;
+        try (JsonReader reader = reader(response, 200)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "changes":
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            applyChange(reader);
+                            count++;
+                        }
+                        reader.endArray();
+                        break;
+                    case "next":
+                        next = reader.nextLong();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        applied = Math.max(applied, next);
+        lastContact = System.nanoTime();
+        if (count == 0 && System.nanoTime() - start < Duration.ofMillis(WAIT_MS).toNanos() / 2) {
+            Thread.sleep(IDLE_DELAY.toMillis());
+        }
+        return true;
+    }
+
+    // {"seq":N,"type":"add","movie":{...}} | {"seq":N,"type":"delete","id":M} | {"seq":N,"type":"clear"}
+    private void applyChange(JsonReader reader) throws IOException {
+        long seq = 0;
+        String type = null;
+        Movie movie = null;
+        long id = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "seq":
+                    seq = reader.nextLong();
+                    break;
+                case "type":
+                    type = reader.nextString();
+                    break;
+                case "movie":
+                    movie = readMovie(reader);
+                    break;
+                case "id":
+                    id = reader.nextLong();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (seq != applied + 1) {
+            throw new IOException("Пропуск в ленте ведущего: после " + applied + " пришло событие " + seq);
+        }
+        if ("add".equals(type) && movie != null) {
+            store.replicate(movie);
+        } else if ("delete".equals(type)) {
+            store.delete(id);
+        } else if ("clear".equals(type)) {
+            store.clear();
+        } else {
+            throw new IOException("Неизвестное событие ленты ведущего: " + type);
+        }
+        applied = seq;
+    }
+
+    private static Movie readMovie(JsonReader reader) throws IOException {
+        Movie movie = new Movie();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "id":
+                    movie.setId(reader.nextLong());
+                    break;
+                case "title":
+                    movie.setTitle(reader.nextString());
+                    break;
+                case "year":
+                    movie.setYear(reader.nextInt());
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return movie;
+    }
+
+    private HttpResponse<InputStream> send(String pathAndQuery, Duration timeout)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(leader.resolve(pathAndQuery))
+                .timeout(timeout)
+                .GET()
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+    }
+
+    private static JsonReader reader(HttpResponse<InputStream> response, int expectedStatus) throws IOException {
+        if (response.statusCode() != expectedStatus) {
+            response.body().close();
+            throw new IOException("Ведущий ответил " + response.statusCode() + " на " + response.uri());
+        }
+        return new JsonReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8));
+    }
+
+    private static long readHead(HttpResponse<InputStream> response) throws IOException {
+        String head = response.headers().firstValue(HEAD_HEADER).orElse(null);
+        if (head == null) {
+            response.body().close();
+            throw new IOException("Ведущий " + response.uri() + " ответил " + response.statusCode()
+                    + " без заголовка " + HEAD_HEADER);
+        }
+        try {
+            return Long.parseLong(head);
+        } catch (NumberFormatException e) {
+            throw new IOException("Некорректный заголовок " + HEAD_HEADER + ": " + head, e);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package ru.practicum.moviehub.store;
+
+import ru.practicum.moviehub.model.Movie;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Лента изменений каталога для зеркал (GET /movies/changes): последние capacity событий в кольцевом буфере,
+// у каждого номер seq, растущий с 1 без пропусков. Хранилище записывает событие там же, где пишет журнал,
+// поэтому события одного id идут в порядке применения. Запись без блокировок: номер — incrementAndGet,
+// событие — в свою ячейку, затем каждый писатель продвигает published по подряд заполненным ячейкам,
+// так что читатель до published не видит дыр от ещё не дописавших соседей. Ждущих читателей будят,
+// только если они есть. Лента живёт в памяти: после перезапуска номера начинаются заново.
+public final class ChangeFeed {
+    private final AtomicReferenceArray<Change> ring;
+    private final int mask;
+    private final AtomicLong lastSeq = new AtomicLong();
+    // все события с seq <= published записаны в ring
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final Object signal = new Object();
+
+    // capacity округляется вверх до степени двойки
+    public ChangeFeed(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Размер ленты изменений должен быть от 1 до 2^30: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        size = size < capacity ? size << 1 : size;
+        this.ring = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    // Номер последнего события, видимого читателям; 0 — событий не было.
+    public long head() {
+        return published.get();
+    }
+
+    void recordAdd(Movie movie) {
+        record(Type.ADD, movie.getId(), movie);
+    }
+
+    void recordDelete(long id) {
+        record(Type.DELETE, id, null);
+    }
+
+    void recordClear() {
+        record(Type.CLEAR, 0, null);
+    }
+
+    // Не больше limit событий после since по порядку. Если часть нужных событий уже вытеснена или since
+    // из будущего (например, от прошлого запуска), — Batch.resync: клиенту нужна полная синхронизация.
+    public Batch read(long since, int limit) {
+        long head = published.get();
+        if (since < 0 || since > head || head - since > capacity()) {
+            return new Batch(Collections.emptyList(), head, true);
+        }
+        int count = (int) Math.min(limit, head - since);
+        List<Change> changes = new ArrayList<>(count);
+        for (long seq = since + 1; seq <= since + count; seq++) {
+            Change change = ring.get((int) seq & mask);
+            if (change.seq != seq) {
+                // ячейку успели перезаписать, пока мы читали
+                return new Batch(Collections.emptyList(), published.get(), true);
+            }
+            changes.add(change);
+        }
+        return new Batch(changes, head, false);
+    }
+
+    // Ждёт события после since не дольше timeout; true — оно уже есть.
+    public boolean await(long since, long timeout, TimeUnit unit) throws InterruptedException {
+        if (published.get() > since) {
+            return true;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        waiters.incrementAndGet();
+        try {
+            synchronized (signal) {
+                while (published.get() <= since) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(signal, remaining);
+                }
+                return true;
+            }
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+
+    private void record(Type type, long id, Movie movie) {
+        long seq = lastSeq.incrementAndGet();
+        ring.set((int) seq & mask, new Change(seq, type, id, movie));
+        advance();
+        if (waiters.get() > 0) {
+            synchronized (signal) {
+                signal.notifyAll();
+            }
+        }
+    }
+
+    // Продвигает published, пока следующая ячейка заполнена. Ячейка с большим seq значит, что нужное событие
+    // было записано и уже вытеснено: такой писатель обогнал нас на круг, и ждать нечего.
+    private void advance() {
+        long current;
+        while ((current = published.get()) < lastSeq.get()) {
+            Change next = ring.get((int) (current + 1) & mask);
+            if (next == null || next.seq < current + 1) {
+                return;
+            }
+            published.compareAndSet(current, current + 1);
+        }
+    }
+
+    public enum Type {
+        ADD,
+        DELETE,
+        CLEAR
+    }
+
+    // movie — только у ADD; у CLEAR id = 0.
+    public static final class Change {
+        private final long seq;
+        private final Type type;
+        private final long id;
+        private final Movie movie;
+
+        Change(long seq, Type type, long id, Movie movie) {
+            this.seq = seq;
+            this.type = type;
+            this.id = id;
+            this.movie = movie;
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public Movie getMovie() {
+            return movie;
+        }
+    }
+
+    // head — последний опубликованный seq на момент чтения: с него продолжает клиент после полной синхронизации.
+    public static final class Batch {
+        private final List<Change> changes;
+        private final long head;
+        private final boolean resync;
+
+        Batch(List<Change> changes, long head, boolean resync) {
+            this.changes = changes;
+            this.head = head;
+            this.resync = resync;
+        }
+
+        public List<Change> getChanges() {
+            return changes;
+        }
+
+        public long getHead() {
+            return head;
+        }
+
+        public boolean isResync() {
+            return resync;
+        }
+    }
+}
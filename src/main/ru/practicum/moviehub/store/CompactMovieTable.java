@@ -0,0 +1,426 @@
+package ru.practicum.moviehub.store;
+
+import ru.practicum.moviehub.model.Movie;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+// Колоночное хранение без объекта на фильм: id -> номер строки в примитивной хеш-таблице с открытой
+// адресацией, год и ссылка на название — в параллельных массивах по номеру строки, названия — байтами UTF-8
+// подряд в страницах (в куче или вне её). Movie собирается заново при каждом чтении.
+//
+// Запись под StampedLock на запись; чтение оптимистичное, без записи в общую память, и повторяется
+// под блокировкой на чтение, если за это время что-то изменилось. Поэтому всё, что читается оптимистично,
+// при изменении либо правится на месте, либо заменяется новым массивом, но никогда не освобождается вручную.
+final class CompactMovieTable implements MovieTable {
+    private static final long EMPTY = 0;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int INITIAL_ROWS = 512;
+
+    // ссылка на название: страница (24 бита) | позиция в странице (20 бит) | длина (20 бит)
+    private static final int PAGE_SIZE = 1 << 20;
+    private static final int LENGTH_BITS = 20;
+    private static final int POSITION_BITS = 20;
+    private static final int FIELD_MASK = (1 << 20) - 1;
+    // длинное название лежит в отдельной странице целиком, его длина — ёмкость страницы
+    private static final int WHOLE_PAGE = FIELD_MASK;
+    private static final long NO_TITLE = -1;
+
+    // мёртвые строки и байты названий копятся после delete и замены; сжатие, когда их больше живых
+    private static final int MIN_COMPACT_ROWS = 4096;
+    private static final int ITERATION_BATCH = 1024;
+
+    private final boolean offHeap;
+    private final StampedLock lock = new StampedLock();
+
+    private long[] keys;
+    private int[] rows;
+    private volatile int size;
+
+    private int[] years;
+    private long[] titles;
+    private int rowCount;
+
+    private ByteBuffer[] pages;
+    private int pageCount;
+    private int pagePosition;
+    private long titleBytes;
+    private long deadTitleBytes;
+
+    private long maxId;
+
+    CompactMovieTable(boolean offHeap) {
+        this.offHeap = offHeap;
+        reset();
+    }
+
+    @Override
+    public Movie get(long id) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                Movie movie = read(id);
+                if (lock.validate(stamp)) {
+                    return movie;
+                }
+            } catch (RuntimeException e) {
+                // прочитали наполовину изменённые массивы; validate бы не прошёл, читаем под блокировкой
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return read(id);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Movie replace(long id, Movie movie, Consumer<Movie> beforePublish) {
+        checkId(id);
+        long stamp = lock.writeLock();
+        try {
+            int index = indexOf(id);
+            Movie old = index < 0 ? null : materialize(id, rows[index]);
+            beforePublish.accept(old);
+            if (movie == null) {
+                if (index >= 0) {
+                    deadTitleBytes += titleLength(titles[rows[index]]);
+                    removeAt(index);
+                    compactIfSparse();
+                }
+            } else if (index >= 0) {
+                int row = rows[index];
+                deadTitleBytes += titleLength(titles[row]);
+                years[row] = movie.getYear();
+                titles[row] = storeTitle(movie.getTitle());
+                compactIfSparse();
+            } else {
+                insert(id, appendRow(movie));
+            }
+            return old;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void put(Movie movie) {
+        replace(movie.getId(), movie, old -> { });
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            reset();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Обход по возрастанию id пачками под одной блокировкой: сжатие переставляет строки, но не id.
+    // Как и findPage в MoviesStore, стоит O(наибольший id), а не O(size).
+    @Override
+    public Iterable<Movie> values() {
+        return ValuesIterator::new;
+    }
+
+    private Movie read(long id) {
+        long[] keys = this.keys;
+        int mask = keys.length - 1;
+        for (int i = slot(id, keys.length), probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+            long key = keys[i];
+            if (key == id) {
+                return materialize(id, rows[i]);
+            }
+            if (key == EMPTY) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private Movie materialize(long id, int row) {
+        return new Movie(id, loadTitle(titles[row]), years[row]);
+    }
+
+    private int indexOf(long id) {
+        int mask = keys.length - 1;
+        for (int i = slot(id, keys.length); ; i = (i + 1) & mask) {
+            long key = keys[i];
+            if (key == id) {
+                return i;
+            }
+            if (key == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    private void insert(long id, int row) {
+        if ((size + 1) * 4L > keys.length * 3L) {
+            rehash(keys.length * 2);
+        }
+        int mask = keys.length - 1;
+        int i = slot(id, keys.length);
+        while (keys[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = id;
+        rows[i] = row;
+        size++;
+        maxId = Math.max(maxId, id);
+    }
+
+    // Удаление со сдвигом назад, без надгробий в самой хеш-таблице: цепочки пробирования остаются
+    // непрерывными, а мёртвой остаётся только строка в столбцах.
+    private void removeAt(int index) {
+        int mask = keys.length - 1;
+        int hole = index;
+        for (int i = (hole + 1) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+            int home = slot(keys[i], keys.length);
+            // элемент может занять дыру, только если его домашняя ячейка не лежит между дырой и им самим
+            boolean between = hole <= i ? hole < home && home <= i : hole < home || home <= i;
+            if (!between) {
+                keys[hole] = keys[i];
+                rows[hole] = rows[i];
+                hole = i;
+            }
+        }
+        keys[hole] = EMPTY;
+        size--;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldRows = rows;
+        long[] newKeys = new long[capacity];
+        int[] newRows = new int[capacity];
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            long key = oldKeys[j];
+            if (key != EMPTY) {
+                int i = slot(key, capacity);
+                while (newKeys[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                newKeys[i] = key;
+                newRows[i] = oldRows[j];
+            }
+        }
+        keys = newKeys;
+        rows = newRows;
+    }
+
+    private int appendRow(Movie movie) {
+        if (rowCount == years.length) {
+            int capacity = years.length + (years.length >> 1);
+            years = Arrays.copyOf(years, capacity);
+            titles = Arrays.copyOf(titles, capacity);
+        }
+        years[rowCount] = movie.getYear();
+        titles[rowCount] = storeTitle(movie.getTitle());
+        return rowCount++;
+    }
+
+    private void compactIfSparse() {
+        int deadRows = rowCount - size;
+        if (deadRows > Math.max(MIN_COMPACT_ROWS, size)
+                || deadTitleBytes > Math.max(PAGE_SIZE, titleBytes - deadTitleBytes)) {
+            compact();
+        }
+    }
+
+    // Переписывает живые строки и их названия в новые массивы и страницы; старые остаются читателям,
+    // которые успели их увидеть, и уходят со сборкой мусора.
+    private void compact() {
+        int[] oldYears = years;
+        long[] oldTitles = titles;
+        ByteBuffer[] oldPages = pages;
+
+        int capacity = Math.max(INITIAL_ROWS, size + (size >> 2));
+        years = new int[capacity];
+        titles = new long[capacity];
+        pages = new ByteBuffer[Math.max(4, pageCount)];
+        pageCount = 0;
+        pagePosition = 0;
+        titleBytes = 0;
+        deadTitleBytes = 0;
+        rowCount = 0;
+
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                int row = rows[i];
+                years[rowCount] = oldYears[row];
+                titles[rowCount] = copyTitle(oldPages, oldTitles[row]);
+                rows[i] = rowCount++;
+            }
+        }
+    }
+
+    private long storeTitle(String title) {
+        if (title == null) {
+            return NO_TITLE;
+        }
+        byte[] utf8 = title.getBytes(StandardCharsets.UTF_8);
+        long ref = reserve(utf8.length);
+        pages[page(ref)].put(position(ref), utf8);
+        return ref;
+    }
+
+    private long copyTitle(ByteBuffer[] from, long ref) {
+        if (ref == NO_TITLE) {
+            return NO_TITLE;
+        }
+        ByteBuffer source = from[page(ref)];
+        int length = length(ref, source);
+        long copy = reserve(length);
+        pages[page(copy)].put(position(copy), source, position(ref), length);
+        return copy;
+    }
+
+    // Место под length байт: в текущей странице, в новой или, для длинного названия, в собственной.
+    private long reserve(int length) {
+        titleBytes += length;
+        if (length >= WHOLE_PAGE) {
+            addPage(length);
+            pagePosition = length;
+            return (long) (pageCount - 1) << (POSITION_BITS + LENGTH_BITS) | WHOLE_PAGE;
+        }
+        if (pageCount == 0 || pagePosition + length > pages[pageCount - 1].capacity()) {
+            addPage(PAGE_SIZE);
+            pagePosition = 0;
+        }
+        long ref = (long) (pageCount - 1) << (POSITION_BITS + LENGTH_BITS)
+                | (long) pagePosition << LENGTH_BITS | length;
+        pagePosition += length;
+        return ref;
+    }
+
+    private void addPage(int capacity) {
+        if (pageCount == pages.length) {
+            pages = Arrays.copyOf(pages, pageCount * 2);
+        }
+        pages[pageCount++] = offHeap ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    private String loadTitle(long ref) {
+        if (ref == NO_TITLE) {
+            return null;
+        }
+        ByteBuffer page = pages[page(ref)];
+        int position = position(ref);
+        int length = length(ref, page);
+        if (page.hasArray()) {
+            return new String(page.array(), position, length, StandardCharsets.UTF_8);
+        }
+        byte[] utf8 = new byte[length];
+        page.get(position, utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private int titleLength(long ref) {
+        return ref == NO_TITLE ? 0 : length(ref, pages[page(ref)]);
+    }
+
+    private void reset() {
+        keys = new long[INITIAL_CAPACITY];
+        rows = new int[INITIAL_CAPACITY];
+        size = 0;
+        years = new int[INITIAL_ROWS];
+        titles = new long[INITIAL_ROWS];
+        rowCount = 0;
+        pages = new ByteBuffer[4];
+        pageCount = 0;
+        pagePosition = 0;
+        titleBytes = 0;
+        deadTitleBytes = 0;
+        maxId = 0;
+    }
+
+    // 0 — метка пустой ячейки, а MoviesStore выдаёт id начиная с 1
+    private static void checkId(long id) {
+        if (id <= 0) {
+            throw new IllegalArgumentException("id фильма должен быть положительным: " + id);
+        }
+    }
+
+    // id выдаются подряд, поэтому ячейка — сам id по модулю ёмкости: соседние id лежат рядом и не сталкиваются,
+    // а обход по возрастанию id идёт по памяти последовательно.
+    private static int slot(long id, int capacity) {
+        return (int) (id ^ (id >>> 32)) & (capacity - 1);
+    }
+
+    private static int page(long ref) {
+        return (int) (ref >>> (POSITION_BITS + LENGTH_BITS));
+    }
+
+    private static int position(long ref) {
+        return (int) (ref >>> LENGTH_BITS) & FIELD_MASK;
+    }
+
+    private static int length(long ref, ByteBuffer page) {
+        int length = (int) ref & FIELD_MASK;
+        return length == WHOLE_PAGE ? page.capacity() : length;
+    }
+
+    private final class ValuesIterator implements Iterator<Movie> {
+        private final Movie[] batch = new Movie[ITERATION_BATCH];
+        private int position;
+        private int count;
+        private long nextId = 1;
+
+        @Override
+        public boolean hasNext() {
+            while (position == count) {
+                if (!fill()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Movie next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Movie movie = batch[position];
+            batch[position++] = null;
+            return movie;
+        }
+
+        private boolean fill() {
+            position = 0;
+            count = 0;
+            long stamp = lock.readLock();
+            try {
+                if (nextId > maxId) {
+                    return false;
+                }
+                long end = Math.min(maxId, nextId + ITERATION_BATCH - 1);
+                for (long id = nextId; id <= end; id++) {
+                    Movie movie = read(id);
+                    if (movie != null) {
+                        batch[count++] = movie;
+                    }
+                }
+                nextId = end + 1;
+                return true;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package ru.practicum.moviehub.store;
+
+import ru.practicum.moviehub.model.Movie;
+
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// Фильмы как есть в ConcurrentHashMap: чтение без копий, но около сотни байт служебных объектов на фильм.
+final class HeapMovieTable implements MovieTable {
+    private final ConcurrentHashMap<Long, Movie> movies = new ConcurrentHashMap<>();
+
+    @Override
+    public Movie get(long id) {
+        return movies.get(id);
+    }
+
+    @Override
+    public Movie replace(long id, Movie movie, Consumer<Movie> beforePublish) {
+        Movie[] previous = new Movie[1];
+        // compute держит блокировку бакета, поэтому изменение того же id не вклинится между индексом и картой
+        movies.compute(id, (key, old) -> {
+            previous[0] = old;
+            beforePublish.accept(old);
+            return movie;
+        });
+        return previous[0];
+    }
+
+    @Override
+    public void put(Movie movie) {
+        movies.put(movie.getId(), movie);
+    }
+
+    @Override
+    public int size() {
+        return movies.size();
+    }
+
+    @Override
+    public void clear() {
+        movies.clear();
+    }
+
+    @Override
+    public Iterable<Movie> values() {
+        return Collections.unmodifiableCollection(movies.values());
+    }
+}
@@ -0,0 +1,22 @@
+package ru.practicum.moviehub.store;
+
+// Узнаёт, какие фильмы удалены или заменены, — для кэшей поверх каталога, которые держат фильм по id.
+// Вызывается в потоке записи, когда изменение уже видно читателям: прочитавший фильм после вызова получит
+// новое состояние. add не сообщается: новый id ещё никто не мог прочитать.
+public interface MovieInvalidation {
+
+    MovieInvalidation NONE = new MovieInvalidation() {
+        @Override
+        public void invalidate(long id) {
+        }
+
+        @Override
+        public void invalidateAll() {
+        }
+    };
+
+    void invalidate(long id);
+
+    // clear: каталог пуст, и id начнут выдаваться заново.
+    void invalidateAll();
+}
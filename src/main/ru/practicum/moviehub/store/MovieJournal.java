@@ -0,0 +1,16 @@
+package ru.practicum.moviehub.store;
+
+import ru.practicum.moviehub.model.Movie;
+
+// Журнал изменений хранилища. log* вызываются под блокировкой записи по id и должны быть быстрыми,
+// ожидание сброса на диск — отдельно, через awaitDurable.
+public interface MovieJournal {
+
+    long logAdd(Movie movie);
+
+    long logDelete(long id);
+
+    long logClear();
+
+    void awaitDurable(long seq);
+}
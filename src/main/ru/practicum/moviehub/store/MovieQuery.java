@@ -0,0 +1,92 @@
+package ru.practicum.moviehub.store;
+
+import ru.practicum.moviehub.model.Movie;
+
+import java.util.Comparator;
+
+// Запрос к каталогу, который хранилище выполняет целиком у себя: фильтр по годам (оба конца включительно)
+// и началу названия без учёта регистра, порядок и не больше limit фильмов. afterId — курсор страниц,
+// только для сортировки по id: следующие после него в порядке выдачи; 0 — с начала.
+public final class MovieQuery {
+    public static final int NO_LIMIT = Integer.MAX_VALUE;
+
+    private final int yearFrom;
+    private final int yearTo;
+    private final String titlePrefix;
+    private final MovieSort sort;
+    private final boolean descending;
+    private final int limit;
+    private final long afterId;
+    private final Comparator<Movie> order;
+
+    public MovieQuery(int yearFrom, int yearTo, String titlePrefix, MovieSort sort, boolean descending, int limit,
+                      long afterId) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit должен быть положительным: " + limit);
+        }
+        if (afterId < 0 || afterId > 0 && sort != MovieSort.ID) {
+            throw new IllegalArgumentException("Курсор возможен только с сортировкой по id");
+        }
+        this.yearFrom = yearFrom;
+        this.yearTo = yearTo;
+        this.titlePrefix = titlePrefix;
+        this.sort = sort;
+        this.descending = descending;
+        this.limit = limit;
+        this.afterId = afterId;
+        this.order = descending ? sort.order().reversed() : sort.order();
+    }
+
+    public int getYearFrom() {
+        return yearFrom;
+    }
+
+    public int getYearTo() {
+        return yearTo;
+    }
+
+    public String getTitlePrefix() {
+        return titlePrefix;
+    }
+
+    public MovieSort getSort() {
+        return sort;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public long getAfterId() {
+        return afterId;
+    }
+
+    // Хотя бы одна граница лет задана: кандидатов дешевле брать из индекса по году.
+    public boolean isYearBounded() {
+        return yearFrom != Integer.MIN_VALUE || yearTo != Integer.MAX_VALUE;
+    }
+
+    public boolean isFiltered() {
+        return isYearBounded() || titlePrefix != null;
+    }
+
+    boolean matches(Movie movie) {
+        if (movie.getYear() < yearFrom || movie.getYear() > yearTo) {
+            return false;
+        }
+        if (afterId > 0 && (descending ? movie.getId() >= afterId : movie.getId() <= afterId)) {
+            return false;
+        }
+        String title = movie.getTitle();
+        return titlePrefix == null
+                || title != null && title.regionMatches(true, 0, titlePrefix, 0, titlePrefix.length());
+    }
+
+    Comparator<Movie> order() {
+        return order;
+    }
+}
@@ -0,0 +1,43 @@
+package ru.practicum.moviehub.store;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// Реестр реализаций каталога по имени: из него MovieHubApp берёт moviehub.store.engine,
+// а общий набор тестов и EngineBenchmark проходят по всем зарегистрированным.
+public final class MovieRepositories {
+    public static final String DEFAULT_ENGINE = "heap";
+
+    private static final Map<String, Supplier<? extends MovieRepository>> ENGINES = new LinkedHashMap<>();
+
+    static {
+        register("heap", () -> new MoviesStore(StoreEngine.HEAP));
+        register("compact", () -> new MoviesStore(StoreEngine.COMPACT));
+        register("compact-offheap", () -> new MoviesStore(StoreEngine.COMPACT_OFFHEAP));
+        register("sharded", ShardedMoviesStore::new);
+    }
+
+    private MovieRepositories() {
+    }
+
+    public static synchronized void register(String name, Supplier<? extends MovieRepository> factory) {
+        ENGINES.put(name.toLowerCase(Locale.ROOT), factory);
+    }
+
+    public static synchronized MovieRepository create(String name) {
+        Supplier<? extends MovieRepository> factory = ENGINES.get(name.trim().toLowerCase(Locale.ROOT));
+        if (factory == null) {
+            throw new IllegalArgumentException("Неизвестное хранилище фильмов: " + name
+                    + " (ожидается одно из " + ENGINES.keySet() + ")");
+        }
+        return factory.get();
+    }
+
+    public static synchronized List<String> engines() {
+        return new ArrayList<>(ENGINES.keySet());
+    }
+}
@@ -0,0 +1,91 @@
+package ru.practicum.moviehub.store;
+
+import ru.practicum.moviehub.model.Movie;
+
+import java.util.List;
+
+// Каталог фильмов, от которого зависят HTTP-обработчики и хранение на диске. Реализации потокобезопасны
+// и проходят общий набор тестов MovieRepositoryConformanceTest; зарегистрированные — в MovieRepositories.
+public interface MovieRepository {
+
+    List<Movie> getAll();
+
+    // Живое представление без копирования: для потоковой выдачи всего каталога.
+    Iterable<Movie> values();
+
+    // Не больше limit фильмов с id больше afterId, по возрастанию id.
+    List<Movie> findPage(long afterId, int limit);
+
+    // Назначает фильму новый id и сохраняет его; возвращает тот же объект.
+    Movie add(Movie movie);
+
+    List<Movie> addAll(List<Movie> batch);
+
+    Movie findById(long id);
+
+    // Найденные фильмы в порядке ids, отсутствующие пропускаются.
+    List<Movie> findByIds(long[] ids);
+
+    boolean delete(long id);
+
+    // Пакетное удаление: deleted[i] — фильм ids[i] был и удалён. Одна блокировка журнала (или шарда)
+    // и одно ожидание журнала на весь пакет вместо ids.length отдельных delete.
+    boolean[] deleteAll(long[] ids);
+
+    List<Movie> findByYear(int year);
+
+    // Оба конца включительно, по возрастанию года.
+    List<Movie> findByYearRange(int yearFrom, int yearTo);
+
+    List<Movie> search(String query, int limit);
+
+    // Фильтр, порядок и limit выполняются внутри хранилища по его индексам (см. MovieQuery).
+    List<Movie> query(MovieQuery query);
+
+    void clear();
+
+    // Сводка по годам и десятилетиям за O(лет): счётчики ведут add, addAll и delete.
+    MovieStats stats();
+
+    // Пересчитывает сводку заново по всему каталогу, параллельно. restore счётчики не ведёт, поэтому после
+    // восстановления сводка пересчитывается — явно или при первом stats(). Записи на время пересчёта ждут.
+    void recomputeStats();
+
+    int size();
+
+    // Растёт после каждого изменения, уже видимого читателям.
+    long version();
+
+    // Меняется только при изменении фильмов этого года (или при clear).
+    long yearVersion(int year);
+
+    // Дальше — для восстановления с диска и журнала изменений.
+
+    long nextId();
+
+    // Фильм уже со своим id, в журнал не пишется. Сводку по годам не ведёт: после массовой загрузки
+    // нужен recomputeStats.
+    void restore(Movie movie);
+
+    // Как restore, но сводка по годам остаётся точной: для событий ленты ведущего, которые идут по одному
+    // и пересчёт после каждого обошёлся бы в O(фильмов).
+    void replicate(Movie movie);
+
+    // Следующий выданный id будет не меньше nextId (реализация с блоками id может начать со следующего блока).
+    void restoreNextId(long nextId);
+
+    void attachJournal(MovieJournal journal);
+
+    // Лента для зеркал: add, delete и clear попадают в неё в порядке применения к каждому id,
+    // restore — нет. null — без ленты.
+    void attachChangeFeed(ChangeFeed changes);
+
+    void attachObserver(StoreObserver observer);
+
+    // Сообщает об удалённых и заменённых фильмах (delete, deleteAll, restore поверх, clear). null — никому.
+    void attachInvalidation(MovieInvalidation invalidation);
+
+    // Выполняет action, когда ни одна запись не находится между журналом или лентой изменений и памятью:
+    // все записанные события уже видны читателям.
+    void runExclusive(Runnable action);
+}
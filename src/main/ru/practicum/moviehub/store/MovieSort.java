@@ -0,0 +1,34 @@
+package ru.practicum.moviehub.store;
+
+import ru.practicum.moviehub.model.Movie;
+
+import java.util.Comparator;
+import java.util.Locale;
+
+// Порядок выдачи MovieQuery; при равенстве ключа — по id, чтобы порядок был однозначным и страницы не плавали.
+public enum MovieSort {
+    ID(Comparator.comparingLong(Movie::getId)),
+    // без учёта регистра, по кодам символов: Collator на каждом сравнении дорог для top-K по всему каталогу
+    TITLE(Comparator.comparing(Movie::getTitle, Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER))
+            .thenComparingLong(Movie::getId)),
+    YEAR(Comparator.comparingInt(Movie::getYear).thenComparingLong(Movie::getId));
+
+    private final Comparator<Movie> order;
+
+    MovieSort(Comparator<Movie> order) {
+        this.order = order;
+    }
+
+    Comparator<Movie> order() {
+        return order;
+    }
+
+    public static MovieSort parse(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Неизвестная сортировка: " + value
+                    + " (ожидается id, title или year)", e);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package ru.practicum.moviehub.store;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+// Сводка по каталогу для GET /movies/stats: всего фильмов, гистограммы по годам и десятилетиям
+// (ключ десятилетия — его первый год, 1990 для 1990–1999), самый ранний и поздний год; для пустого каталога
+// minYear и maxYear — null.
+public final class MovieStats {
+    private final long total;
+    private final Integer minYear;
+    private final Integer maxYear;
+    private final SortedMap<Integer, Long> byYear;
+    private final SortedMap<Integer, Long> byDecade;
+
+    public MovieStats(SortedMap<Integer, Long> byYear) {
+        long total = 0;
+        SortedMap<Integer, Long> byDecade = new TreeMap<>();
+        for (Map.Entry<Integer, Long> entry : byYear.entrySet()) {
+            total += entry.getValue();
+            byDecade.merge(Math.floorDiv(entry.getKey(), 10) * 10, entry.getValue(), Long::sum);
+        }
+        this.total = total;
+        this.minYear = byYear.isEmpty() ? null : byYear.firstKey();
+        this.maxYear = byYear.isEmpty() ? null : byYear.lastKey();
+        this.byYear = Collections.unmodifiableSortedMap(new TreeMap<>(byYear));
+        this.byDecade = Collections.unmodifiableSortedMap(byDecade);
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public Integer getMinYear() {
+        return minYear;
+    }
+
+    public Integer getMaxYear() {
+        return maxYear;
+    }
+
+    public SortedMap<Integer, Long> getByYear() {
+        return byYear;
+    }
+
+    public SortedMap<Integer, Long> getByDecade() {
+        return byDecade;
+    }
+}
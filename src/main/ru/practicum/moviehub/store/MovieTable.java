@@ -0,0 +1,27 @@
+package ru.practicum.moviehub.store;
+
+import ru.practicum.moviehub.model.Movie;
+
+import java.util.function.Consumer;
+
+// Основное хранилище фильмов по id, под индексами MoviesStore. Реализации потокобезопасны.
+interface MovieTable {
+
+    Movie get(long id);
+
+    // Ставит movie под этим id (null — удаляет) и возвращает прежний фильм. beforePublish получает прежний
+    // фильм или null и выполняется под той же блокировкой, что и замена, до того как её увидят читатели:
+    // так индексы и журнал не расходятся с таблицей при гонке изменений одного id.
+    // Саму таблицу из beforePublish трогать нельзя: блокировка может быть нереентерабельной.
+    Movie replace(long id, Movie movie, Consumer<Movie> beforePublish);
+
+    // Вставка без перехвата, для уже проиндексированных фильмов из addAll.
+    void put(Movie movie);
+
+    int size();
+
+    void clear();
+
+    // Живое представление со слабой согласованностью, как у ConcurrentHashMap.values().
+    Iterable<Movie> values();
+}
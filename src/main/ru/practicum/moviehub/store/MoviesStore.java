@@ -4,45 +4,603 @@ import ru.practicum.moviehub.model.Movie;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.NavigableMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-public class MoviesStore {
-    private final Map<Long, Movie> movies = new ConcurrentHashMap<>();
+// Каталог в памяти: фильмы в MovieTable выбранного StoreEngine, индексы по году и словам названия.
+public class MoviesStore implements MovieRepository {
+    private final StoreEngine engine;
+    private final MovieTable movies;
+    // год -> отсортированные id фильмов этого года, примитивами по блокам, а не Long в skip list
+    private final ConcurrentSkipListMap<Integer, PostingList> yearIndex = new ConcurrentSkipListMap<>();
+    private final TitleIndex titleIndex = new TitleIndex();
     private final AtomicLong currentId = new AtomicLong(1);
+    // Версия растёт после каждого изменения, уже видимого читателям; по ней кэш ответов понимает, что устарел.
+    private final AtomicLong version = new AtomicLong();
+    // год -> версия последнего изменения фильмов этого года
+    private final ConcurrentHashMap<Integer, Long> yearVersions = new ConcurrentHashMap<>();
+    private volatile long clearVersion;
+    // заменяются целиком при clear и пересчёте; statsStale — после restore счётчики неполны
+    private volatile YearCounts yearCounts = new YearCounts();
+    private volatile boolean statsStale;
+    // Без журнала и ленты не используется. С ними мутации берут её на чтение, а переключение сегмента журнала
+    // и runExclusive — на запись: событие ленты записывается до публикации фильма, и только так срез
+    // видит оба или ни одного.
+    private final ReentrantReadWriteLock journalLock = new ReentrantReadWriteLock();
+    private volatile MovieJournal journal;
+    private volatile ChangeFeed changes;
+    private volatile StoreObserver observer = StoreObserver.NONE;
+    private volatile MovieInvalidation invalidation = MovieInvalidation.NONE;
 
+    public MoviesStore() {
+        this(StoreEngine.HEAP);
+    }
+
+    public MoviesStore(StoreEngine engine) {
+        this.engine = engine;
+        this.movies = engine.createTable();
+    }
+
+    @Override
     public List<Movie> getAll() {
-        return new ArrayList<>(movies.values());
+        long start = System.nanoTime();
+        try {
+            List<Movie> all = new ArrayList<>(movies.size());
+            for (Movie movie : movies.values()) {
+                all.add(movie);
+            }
+            return all;
+        } finally {
+            observer.onOperation(StoreObserver.Operation.GET_ALL, System.nanoTime() - start);
+        }
+    }
+
+    // Живое представление без копирования: для потоковой выдачи всего каталога.
+    @Override
+    public Iterable<Movie> values() {
+        return movies.values();
     }
 
+    // id выдаются подряд, поэтому страница — это обход id после курсора с пропуском удалённых.
+    @Override
+    public List<Movie> findPage(long afterId, int limit) {
+        long start = System.nanoTime();
+        try {
+            List<Movie> page = new ArrayList<>(limit);
+            long nextId = currentId.get();
+            for (long id = Math.max(afterId, 0) + 1; id < nextId && page.size() < limit; id++) {
+                Movie movie = movies.get(id);
+                if (movie != null) {
+                    page.add(movie);
+                }
+            }
+            return page;
+        } finally {
+            observer.onOperation(StoreObserver.Operation.FIND_PAGE, System.nanoTime() - start);
+        }
+    }
+
+    @Override
     public Movie add(Movie movie) {
-        long id = currentId.getAndIncrement();
-        movie.setId(id);
-        movies.put(id, movie);
-        return movie;
+        long start = System.nanoTime();
+        try {
+            MovieJournal journal = this.journal;
+            ChangeFeed changes = this.changes;
+            long[] seq = new long[1];
+
+            lockForWrite(journal, changes);
+            try {
+                long id = currentId.getAndIncrement();
+                movie.setId(id);
+                // delete того же id не вклинится между записью и индексом: см. MovieTable.replace
+                movies.replace(id, movie, old -> {
+                    index(id, movie);
+                    yearCounts.increment(movie.getYear());
+                    if (journal != null) {
+                        seq[0] = journal.logAdd(movie);
+                    }
+                    if (changes != null) {
+                        changes.recordAdd(movie);
+                    }
+                });
+            } finally {
+                unlockForWrite(journal, changes);
+            }
+            bumpVersion(movie.getYear());
+
+            awaitDurable(journal, seq[0]);
+            return movie;
+        } finally {
+            observer.onOperation(StoreObserver.Operation.ADD, System.nanoTime() - start);
+        }
     }
 
+    // Пакетная вставка: один блок id на весь пакет, индексы пополняются группами, одно ожидание журнала.
+    // Индексы заполняются до публикации в movies: поиск пропускает ещё не видимые id, а delete
+    // до публикации просто не найдёт фильм и не оставит в индексе висящих id.
+    @Override
+    public List<Movie> addAll(List<Movie> batch) {
+        long start = System.nanoTime();
+        try {
+            if (batch.isEmpty()) {
+                return batch;
+            }
+            MovieJournal journal = this.journal;
+            ChangeFeed changes = this.changes;
+            long seq = 0;
+
+            lockForWrite(journal, changes);
+            try {
+                int count = batch.size();
+                long firstId = currentId.getAndAdd(count);
+                long[] ids = new long[count];
+                String[] titles = new String[count];
+                YearCounts counts = yearCounts;
+                for (int i = 0; i < count; i++) {
+                    Movie movie = batch.get(i);
+                    ids[i] = firstId + i;
+                    titles[i] = movie.getTitle();
+                    movie.setId(ids[i]);
+                    yearIds(movie.getYear()).add(ids[i]);
+                    counts.increment(movie.getYear());
+                }
+                titleIndex.addAll(ids, titles, count);
+
+                for (Movie movie : batch) {
+                    if (journal != null) {
+                        seq = journal.logAdd(movie);
+                    }
+                    if (changes != null) {
+                        changes.recordAdd(movie);
+                    }
+                    movies.put(movie);
+                }
+            } finally {
+                unlockForWrite(journal, changes);
+            }
+            long changed = version.incrementAndGet();
+            for (Movie movie : batch) {
+                yearVersions.merge(movie.getYear(), changed, Math::max);
+            }
+
+            awaitDurable(journal, seq);
+            return batch;
+        } finally {
+            observer.onOperation(StoreObserver.Operation.ADD_ALL, System.nanoTime() - start);
+        }
+    }
+
+    @Override
     public Movie findById(long id) {
-        return movies.get(id);
+        long start = System.nanoTime();
+        try {
+            return movies.get(id);
+        } finally {
+            observer.onOperation(StoreObserver.Operation.FIND_BY_ID, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Movie> findByIds(long[] ids) {
+        long start = System.nanoTime();
+        try {
+            List<Movie> result = new ArrayList<>(ids.length);
+            for (long id : ids) {
+                Movie movie = movies.get(id);
+                if (movie != null) {
+                    result.add(movie);
+                }
+            }
+            return result;
+        } finally {
+            observer.onOperation(StoreObserver.Operation.FIND_BY_IDS, System.nanoTime() - start);
+        }
     }
 
+    @Override
     public boolean delete(long id) {
-        return movies.remove(id) != null;
+        long start = System.nanoTime();
+        try {
+            MovieJournal journal = this.journal;
+            ChangeFeed changes = this.changes;
+            long[] seq = new long[1];
+            int[] year = new int[1];
+            boolean[] deleted = new boolean[1];
+
+            lockForWrite(journal, changes);
+            try {
+                movies.replace(id, null, movie -> {
+                    if (movie == null) {
+                        return;
+                    }
+                    unindex(id, movie);
+                    yearCounts.decrement(movie.getYear());
+                    if (journal != null) {
+                        seq[0] = journal.logDelete(id);
+                    }
+                    if (changes != null) {
+                        changes.recordDelete(id);
+                    }
+                    year[0] = movie.getYear();
+                    deleted[0] = true;
+                });
+            } finally {
+                unlockForWrite(journal, changes);
+            }
+
+            if (deleted[0]) {
+                bumpVersion(year[0]);
+                invalidation.invalidate(id);
+                awaitDurable(journal, seq[0]);
+            }
+            return deleted[0];
+        } finally {
+            observer.onOperation(StoreObserver.Operation.DELETE, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean[] deleteAll(long[] ids) {
+        long start = System.nanoTime();
+        try {
+            MovieJournal journal = this.journal;
+            ChangeFeed changes = this.changes;
+            long[] seq = new long[1];
+            boolean[] deleted = new boolean[ids.length];
+            int[] years = new int[ids.length];
+
+            lockForWrite(journal, changes);
+            try {
+                for (int i = 0; i < ids.length; i++) {
+                    long id = ids[i];
+                    int at = i;
+                    movies.replace(id, null, movie -> {
+                        if (movie == null) {
+                            return;
+                        }
+                        unindex(id, movie);
+                        yearCounts.decrement(movie.getYear());
+                        if (journal != null) {
+                            seq[0] = journal.logDelete(id);
+                        }
+                        if (changes != null) {
+                            changes.recordDelete(id);
+                        }
+                        years[at] = movie.getYear();
+                        deleted[at] = true;
+                    });
+                }
+            } finally {
+                unlockForWrite(journal, changes);
+            }
+
+            long changed = 0;
+            for (int i = 0; i < ids.length; i++) {
+                if (deleted[i]) {
+                    if (changed == 0) {
+                        changed = version.incrementAndGet();
+                    }
+                    yearVersions.merge(years[i], changed, Math::max);
+                }
+            }
+            MovieInvalidation invalidation = this.invalidation;
+            for (int i = 0; i < ids.length; i++) {
+                if (deleted[i]) {
+                    invalidation.invalidate(ids[i]);
+                }
+            }
+            if (changed != 0) {
+                awaitDurable(journal, seq[0]);
+            }
+            return deleted;
+        } finally {
+            observer.onOperation(StoreObserver.Operation.DELETE_ALL, System.nanoTime() - start);
+        }
     }
 
+    @Override
     public List<Movie> findByYear(int year) {
-        List<Movie> result = new ArrayList<>();
-        for (Movie movie : movies.values()) {
-            if (movie.getYear() == year) {
-                result.add(movie);
+        long start = System.nanoTime();
+        try {
+            PostingList ids = yearIndex.get(year);
+            if (ids == null) {
+                return new ArrayList<>();
+            }
+            PostingList.Snapshot snapshot = ids.snapshot();
+            List<Movie> result = new ArrayList<>(snapshot.size);
+            collect(snapshot, result);
+            return result;
+        } finally {
+            observer.onOperation(StoreObserver.Operation.FIND_BY_YEAR, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Movie> findByYearRange(int yearFrom, int yearTo) {
+        long start = System.nanoTime();
+        try {
+            List<Movie> result = new ArrayList<>();
+            if (yearFrom > yearTo) {
+                return result;
+            }
+            NavigableMap<Integer, PostingList> range = yearIndex.subMap(yearFrom, true, yearTo, true);
+            for (PostingList ids : range.values()) {
+                collect(ids.snapshot(), result);
+            }
+            return result;
+        } finally {
+            observer.onOperation(StoreObserver.Operation.FIND_BY_YEAR_RANGE, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Movie> search(String query, int limit) {
+        long start = System.nanoTime();
+        try {
+            long[] ids = titleIndex.search(query, limit);
+            List<Movie> result = new ArrayList<>(ids.length);
+            for (long id : ids) {
+                Movie movie = movies.get(id);
+                if (movie != null) {
+                    result.add(movie);
+                }
+            }
+            return result;
+        } finally {
+            observer.onOperation(StoreObserver.Operation.SEARCH, System.nanoTime() - start);
+        }
+    }
+
+    // Кандидаты — из индекса по году, если годы ограничены; при сортировке по id — обход id от курсора,
+    // как в findPage, с остановкой на limit совпавших; иначе весь каталог. Префикс названия проверяется
+    // на кандидатах: TitleIndex раскрывает префикс лишь в несколько слов и не годится для точного фильтра.
+    @Override
+    public List<Movie> query(MovieQuery query) {
+        long start = System.nanoTime();
+        try {
+            if (query.isYearBounded()) {
+                QuerySelection selection = new QuerySelection(query, false);
+                if (query.getYearFrom() <= query.getYearTo()) {
+                    for (PostingList ids : yearIndex.subMap(query.getYearFrom(), true, query.getYearTo(), true).values()) {
+                        for (PostingList.Cursor cursor = ids.snapshot().cursor(); cursor.current() != -1; cursor.advance()) {
+                            selection.offer(movies.get(cursor.current()));
+                        }
+                    }
+                }
+                return selection.result();
+            }
+            if (query.getSort() == MovieSort.ID) {
+                QuerySelection selection = new QuerySelection(query, true);
+                long nextId = currentId.get();
+                if (query.isDescending()) {
+                    long from = query.getAfterId() > 0 ? Math.min(query.getAfterId(), nextId) : nextId;
+                    for (long id = from - 1; id > 0 && selection.offer(movies.get(id)); id--) {
+                    }
+                } else {
+                    for (long id = query.getAfterId() + 1; id < nextId && selection.offer(movies.get(id)); id++) {
+                    }
+                }
+                return selection.result();
+            }
+            QuerySelection selection = new QuerySelection(query, false);
+            for (Movie movie : movies.values()) {
+                selection.offer(movie);
             }
+            return selection.result();
+        } finally {
+            observer.onOperation(StoreObserver.Operation.QUERY, System.nanoTime() - start);
         }
-        return result;
     }
 
+    @Override
     public void clear() {
-        movies.clear();
-        currentId.set(1);
+        long start = System.nanoTime();
+        try {
+            MovieJournal journal = this.journal;
+            long seq = 0;
+
+            journalLock.writeLock().lock();
+            try {
+                movies.clear();
+                yearIndex.clear();
+                titleIndex.clear();
+                yearCounts = new YearCounts();
+                statsStale = false;
+                currentId.set(1);
+                clearVersion = version.incrementAndGet();
+                if (journal != null) {
+                    seq = journal.logClear();
+                }
+                ChangeFeed changes = this.changes;
+                if (changes != null) {
+                    changes.recordClear();
+                }
+            } finally {
+                journalLock.writeLock().unlock();
+            }
+            invalidation.invalidateAll();
+
+            awaitDurable(journal, seq);
+        } finally {
+            observer.onOperation(StoreObserver.Operation.CLEAR, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public MovieStats stats() {
+        if (statsStale) {
+            recomputeStats();
+        }
+        return yearCounts.snapshot();
+    }
+
+    // Под блокировкой журнала: записи с журналом на время пересчёта ждут. Без журнала (восстановление при
+    // старте, тесты) параллельных записей быть не должно — их инкременты могли бы пропасть при замене.
+    @Override
+    public void recomputeStats() {
+        runExclusive(() -> {
+            statsStale = false;
+            yearCounts = YearCounts.recount(currentId.get(), movies::get);
+        });
+    }
+
+    @Override
+    public int size() {
+        return movies.size();
+    }
+
+    public StoreEngine engine() {
+        return engine;
+    }
+
+    @Override
+    public long version() {
+        return version.get();
+    }
+
+    // Меняется только при изменении фильмов этого года (или при clear), в отличие от общей version().
+    @Override
+    public long yearVersion(int year) {
+        return Math.max(yearVersions.getOrDefault(year, 0L), clearVersion);
+    }
+
+    @Override
+    public long nextId() {
+        return currentId.get();
+    }
+
+    // Восстановление из снимка или журнала: фильм уже со своим id, в журнал не пишется.
+    @Override
+    public void restore(Movie movie) {
+        restore(movie, false);
+    }
+
+    // Блокировка на чтение, как у прочих записей, чтобы пересчёт сводки не потерял инкремент.
+    @Override
+    public void replicate(Movie movie) {
+        journalLock.readLock().lock();
+        try {
+            restore(movie, true);
+        } finally {
+            journalLock.readLock().unlock();
+        }
+    }
+
+    private void restore(Movie movie, boolean counted) {
+        int[] oldYear = {movie.getYear()};
+        boolean[] replaced = new boolean[1];
+        movies.replace(movie.getId(), movie, old -> {
+            if (old != null) {
+                unindex(movie.getId(), old);
+                oldYear[0] = old.getYear();
+                replaced[0] = true;
+            }
+            index(movie.getId(), movie);
+            if (counted) {
+                if (old != null) {
+                    yearCounts.decrement(old.getYear());
+                }
+                yearCounts.increment(movie.getYear());
+            }
+        });
+        restoreNextId(movie.getId() + 1);
+        if (!counted) {
+            statsStale = true;
+        }
+        bumpVersion(oldYear[0]);
+        if (oldYear[0] != movie.getYear()) {
+            bumpVersion(movie.getYear());
+        }
+        if (replaced[0]) {
+            invalidation.invalidate(movie.getId());
+        }
+    }
+
+    @Override
+    public void restoreNextId(long nextId) {
+        currentId.accumulateAndGet(nextId, Math::max);
+    }
+
+    @Override
+    public void attachJournal(MovieJournal journal) {
+        this.journal = journal;
+    }
+
+    @Override
+    public void attachChangeFeed(ChangeFeed changes) {
+        this.changes = changes;
+    }
+
+    @Override
+    public void attachObserver(StoreObserver observer) {
+        this.observer = observer == null ? StoreObserver.NONE : observer;
+    }
+
+    @Override
+    public void attachInvalidation(MovieInvalidation invalidation) {
+        this.invalidation = invalidation == null ? MovieInvalidation.NONE : invalidation;
+    }
+
+    // Выполняет action, когда ни одна запись не находится между журналом или лентой и памятью.
+    @Override
+    public void runExclusive(Runnable action) {
+        journalLock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            journalLock.writeLock().unlock();
+        }
+    }
+
+    private void index(long id, Movie movie) {
+        yearIds(movie.getYear()).add(id);
+        titleIndex.add(id, movie.getTitle());
+    }
+
+    private void unindex(long id, Movie movie) {
+        PostingList ids = yearIndex.get(movie.getYear());
+        if (ids != null) {
+            ids.remove(id);
+        }
+        titleIndex.remove(id, movie.getTitle());
+    }
+
+    private void bumpVersion(int year) {
+        yearVersions.merge(year, version.incrementAndGet(), Math::max);
+    }
+
+    private void lockForWrite(MovieJournal journal, ChangeFeed changes) {
+        if (journal != null || changes != null) {
+            journalLock.readLock().lock();
+        }
+    }
+
+    private void unlockForWrite(MovieJournal journal, ChangeFeed changes) {
+        if (journal != null || changes != null) {
+            journalLock.readLock().unlock();
+        }
+    }
+
+    private void awaitDurable(MovieJournal journal, long seq) {
+        if (journal != null) {
+            journal.awaitDurable(seq);
+        }
+    }
+
+    // Пустые списки не удаляются из индекса: лет немного, а удаление гонялось бы с параллельным add.
+    private PostingList yearIds(int year) {
+        return yearIndex.computeIfAbsent(year, y -> new PostingList());
+    }
+
+    private void collect(PostingList.Snapshot ids, List<Movie> result) {
+        for (PostingList.Cursor cursor = ids.cursor(); cursor.current() != -1; cursor.advance()) {
+            Movie movie = movies.get(cursor.current());
+            if (movie != null) {
+                result.add(movie);
+            }
+        }
     }
-}
\ No newline at end of file
+}
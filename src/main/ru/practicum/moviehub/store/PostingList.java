@@ -0,0 +1,230 @@
+package ru.practicum.moviehub.store;
+
+import java.util.Arrays;
+
+// Отсортированный список id блоками по BLOCK_SIZE. Запись под монитором, чтение без блокировок
+// через неизменяемый снимок. Дозапись в конец идёт на месте, вставка в середину и удаление
+// копируют только свой блок и массив ссылок на блоки, а не весь список.
+class PostingList {
+    static final int BLOCK_SIZE = 512;
+    private static final int INITIAL_BLOCK_SIZE = 2;
+
+    private static final long[][] NO_BLOCKS = new long[0][];
+
+    private volatile Snapshot snapshot = new Snapshot(NO_BLOCKS, 0, 0, 0);
+
+    synchronized void add(long id) {
+        Snapshot current = snapshot;
+        if (current.size == 0 || id > current.last()) {
+            append(current, id);
+            return;
+        }
+
+        int b = current.blockOf(id);
+        long[] block = current.blocks[b];
+        int blockSize = current.blockSize(b);
+        int pos = Arrays.binarySearch(block, 0, blockSize, id);
+        if (pos >= 0) {
+            return;
+        }
+        int insertAt = -pos - 1;
+        long[] copy = new long[blockSize + 1];
+        System.arraycopy(block, 0, copy, 0, insertAt);
+        copy[insertAt] = id;
+        System.arraycopy(block, insertAt, copy, insertAt + 1, blockSize - insertAt);
+
+        if (copy.length > 2 * BLOCK_SIZE) {
+            long[] left = Arrays.copyOfRange(copy, 0, BLOCK_SIZE);
+            long[] right = Arrays.copyOfRange(copy, BLOCK_SIZE, copy.length);
+            replaceBlock(current, b, left, right);
+        } else {
+            replaceBlock(current, b, copy);
+        }
+    }
+
+    // ids[0..count) по возрастанию. Если все больше последнего id, дописываются разом с одной публикацией снимка.
+    synchronized void addAll(long[] ids, int count) {
+        Snapshot current = snapshot;
+        if (current.size > 0 && ids[0] <= current.last()) {
+            for (int i = 0; i < count; i++) {
+                add(ids[i]);
+            }
+            return;
+        }
+
+        long[][] blocks = current.blocks;
+        int blockCount = current.blockCount;
+        int lastSize = current.lastSize;
+        for (int i = 0; i < count; ) {
+            if (blockCount == 0 || lastSize >= BLOCK_SIZE) {
+                if (blockCount == blocks.length) {
+                    blocks = Arrays.copyOf(blocks, Math.max(1, blockCount * 2));
+                }
+                blocks[blockCount++] = new long[Math.max(INITIAL_BLOCK_SIZE, Math.min(BLOCK_SIZE, count - i))];
+                lastSize = 0;
+            }
+            long[] last = blocks[blockCount - 1];
+            int take = Math.min(count - i, BLOCK_SIZE - lastSize);
+            if (lastSize + take > last.length) {
+                last = Arrays.copyOf(last, Math.min(BLOCK_SIZE, Math.max(last.length * 2, lastSize + take)));
+                blocks[blockCount - 1] = last;
+            }
+            System.arraycopy(ids, i, last, lastSize, take);
+            lastSize += take;
+            i += take;
+        }
+        snapshot = new Snapshot(blocks, blockCount, lastSize, current.size + count);
+    }
+
+    synchronized boolean remove(long id) {
+        Snapshot current = snapshot;
+        if (current.size == 0) {
+            return false;
+        }
+        int b = current.blockOf(id);
+        long[] block = current.blocks[b];
+        int blockSize = current.blockSize(b);
+        int pos = Arrays.binarySearch(block, 0, blockSize, id);
+        if (pos < 0) {
+            return false;
+        }
+        if (blockSize == 1) {
+            replaceBlock(current, b);
+            return true;
+        }
+        long[] copy = new long[blockSize - 1];
+        System.arraycopy(block, 0, copy, 0, pos);
+        System.arraycopy(block, pos + 1, copy, pos, blockSize - 1 - pos);
+        replaceBlock(current, b, copy);
+        return true;
+    }
+
+    Snapshot snapshot() {
+        return snapshot;
+    }
+
+    int size() {
+        return snapshot.size;
+    }
+
+    private void append(Snapshot current, long id) {
+        long[][] blocks = current.blocks;
+        int count = current.blockCount;
+
+        if (count > 0 && current.lastSize < BLOCK_SIZE) {
+            long[] last = blocks[count - 1];
+            if (current.lastSize == last.length) {
+                // блок растёт удвоением; старые снимки видят тот же префикс и в новом массиве
+                last = Arrays.copyOf(last, Math.min(BLOCK_SIZE, last.length * 2));
+                blocks[count - 1] = last;
+            }
+            // ячейка за пределами lastSize не видна ни одному опубликованному снимку
+            last[current.lastSize] = id;
+            snapshot = new Snapshot(blocks, count, current.lastSize + 1, current.size + 1);
+            return;
+        }
+        if (count == blocks.length) {
+            blocks = Arrays.copyOf(blocks, Math.max(1, count * 2));
+        }
+        long[] block = new long[INITIAL_BLOCK_SIZE];
+        block[0] = id;
+        blocks[count] = block;
+        snapshot = new Snapshot(blocks, count + 1, 1, current.size + 1);
+    }
+
+    // Публикует новый массив блоков, где блок b заменён на replacement (ноль, один или два блока).
+    private void replaceBlock(Snapshot current, int b, long[]... replacement) {
+        int count = current.blockCount - 1 + replacement.length;
+        long[][] blocks = count == 0 ? NO_BLOCKS : new long[count][];
+        System.arraycopy(current.blocks, 0, blocks, 0, b);
+        System.arraycopy(replacement, 0, blocks, b, replacement.length);
+        System.arraycopy(current.blocks, b + 1, blocks, b + replacement.length, current.blockCount - b - 1);
+
+        int sizeDelta = -current.blockSize(b);
+        for (long[] block : replacement) {
+            sizeDelta += block.length;
+        }
+
+        int lastSize;
+        if (count == 0) {
+            lastSize = 0;
+        } else if (b < current.blockCount - 1) {
+            lastSize = current.lastSize;
+        } else {
+            // новый последний блок заполнен целиком, следующий add в конец начнёт свежий блок
+            lastSize = blocks[count - 1].length;
+        }
+        snapshot = new Snapshot(blocks, count, lastSize, current.size + sizeDelta);
+    }
+
+    static final class Snapshot {
+        private final long[][] blocks;
+        private final int blockCount;
+        private final int lastSize;
+        final int size;
+
+        private Snapshot(long[][] blocks, int blockCount, int lastSize, int size) {
+            this.blocks = blocks;
+            this.blockCount = blockCount;
+            this.lastSize = lastSize;
+            this.size = size;
+        }
+
+        boolean contains(long id) {
+            if (size == 0) {
+                return false;
+            }
+            int b = blockOf(id);
+            return Arrays.binarySearch(blocks[b], 0, blockSize(b), id) >= 0;
+        }
+
+        Cursor cursor() {
+            return new Cursor(this);
+        }
+
+        private long last() {
+            return blocks[blockCount - 1][lastSize - 1];
+        }
+
+        private int blockSize(int b) {
+            return b == blockCount - 1 ? lastSize : blocks[b].length;
+        }
+
+        // последний блок, первый id которого не больше искомого
+        private int blockOf(long id) {
+            int low = 0;
+            int high = blockCount - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (blocks[mid][0] <= id) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+    }
+
+    // Обход снимка по возрастанию id; current() == -1, когда список исчерпан.
+    static final class Cursor {
+        private final Snapshot snapshot;
+        private int block;
+        private int pos;
+
+        private Cursor(Snapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        long current() {
+            return block < snapshot.blockCount ? snapshot.blocks[block][pos] : -1;
+        }
+
+        void advance() {
+            if (++pos >= snapshot.blockSize(block)) {
+                block++;
+                pos = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package ru.practicum.moviehub.store;
+
+import ru.practicum.moviehub.model.Movie;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Отбор результата MovieQuery: хранилище подаёт кандидатов в offer, а отбор фильтрует их и держит limit лучших
+// в ограниченной куче (худший из отобранных в вершине) — без сортировки всех совпадений. Если кандидаты уже
+// идут в порядке запроса (ordered), хватает первых limit совпавших, и offer сообщает, когда можно остановиться.
+final class QuerySelection {
+    private final MovieQuery query;
+    private final Comparator<Movie> order;
+    private final boolean ordered;
+    private final PriorityQueue<Movie> top;
+    private final List<Movie> all;
+
+    QuerySelection(MovieQuery query, boolean ordered) {
+        this.query = query;
+        this.order = query.order();
+        this.ordered = ordered;
+        boolean bounded = query.getLimit() != MovieQuery.NO_LIMIT;
+        this.top = bounded && !ordered ? new PriorityQueue<>(Math.min(query.getLimit(), 1024), order.reversed()) : null;
+        this.all = top == null ? new ArrayList<>() : null;
+    }
+
+    // false — результат набран, дальше кандидатов можно не подавать.
+    boolean offer(Movie movie) {
+        if (movie == null || !query.matches(movie)) {
+            return true;
+        }
+        if (top == null) {
+            all.add(movie);
+            return !ordered || all.size() < query.getLimit();
+        }
+        if (top.size() < query.getLimit()) {
+            top.add(movie);
+        } else if (order.compare(movie, top.peek()) < 0) {
+            top.poll();
+            top.add(movie);
+        }
+        return true;
+    }
+
+    List<Movie> result() {
+        List<Movie> result = top == null ? all : new ArrayList<>(top);
+        if (!ordered) {
+            result.sort(order);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,1145 @@
+package ru.practicum.moviehub.store;
+
+import ru.practicum.moviehub.model.Movie;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Каталог из нескольких шардов, у каждого своя блокировка, свои блоки id и свои индексы: поток пишет
+// всегда в один шард, и писатели разных шардов не делят ни блокировку, ни счётчик.
+// Шард публикует неизменяемое состояние — страницы фильмов по блокам id и снимки списков по годам, —
+// поэтому getAll, values, findPage и выборки по году читают срез всего каталога на один момент
+// и не задерживают писателей, сколько бы ни длилось чтение. Поиск, как и в MoviesStore, идёт по живым индексам.
+public class ShardedMoviesStore implements MovieRepository {
+    // id выдаются шардам блоками по BLOCK_SIZE; блок целиком принадлежит одному шарду и лежит в нём одной страницей
+    static final int BLOCK_BITS = 7;
+    static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    private static final int FANOUT_BITS = 5;
+    private static final int FANOUT = 1 << FANOUT_BITS;
+    static final int MAX_SHARDS = 64;
+    // столько раз срез пробуется без блокировок, прежде чем на мгновение остановить писателей
+    private static final int CUT_ATTEMPTS = 4;
+    private static final Comparator<Movie> BY_ID = Comparator.comparingLong(Movie::getId);
+
+    private final Shard[] shards;
+    private final Object claimLock = new Object();
+    // под claimLock: первый ещё не выданный блок
+    private long nextBlock;
+    // блок -> номер шарда + 1. Ссылка переприсваивается при каждом захвате блока, чтобы её чтение видело запись.
+    // 0 — блок не выдавался (фильм восстановлен с диска), тогда шард — номер блока по модулю.
+    private volatile byte[] owners = new byte[1024];
+    private volatile long restoredNextId = 1;
+    private volatile MovieJournal journal;
+    private volatile ChangeFeed changes;
+    private volatile StoreObserver observer = StoreObserver.NONE;
+    private volatile MovieInvalidation invalidation = MovieInvalidation.NONE;
+    // общие для всех шардов: LongAdder и так раскладывает инкременты по ячейкам потоков
+    private volatile YearCounts yearCounts = new YearCounts();
+    private volatile boolean statsStale;
+
+    public ShardedMoviesStore() {
+        this(Math.max(4, Math.min(MAX_SHARDS, 2 * Runtime.getRuntime().availableProcessors())));
+    }
+
+    public ShardedMoviesStore(int shardCount) {
+        if (shardCount < 1 || shardCount > MAX_SHARDS) {
+            throw new IllegalArgumentException("Число шардов должно быть от 1 до " + MAX_SHARDS + ": " + shardCount);
+        }
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i);
+        }
+    }
+
+    public int shardCount() {
+        return shards.length;
+    }
+
+    @Override
+    public List<Movie> getAll() {
+        long start = System.nanoTime();
+        try {
+            ShardState[] cut = cut();
+            int size = 0;
+            for (ShardState state : cut) {
+                size += state.size;
+            }
+            List<Movie> all = new ArrayList<>(size);
+            new CutIterator(cut, 0).forEachRemaining(all::add);
+            return all;
+        } finally {
+            observer.onOperation(StoreObserver.Operation.GET_ALL, System.nanoTime() - start);
+        }
+    }
+
+    // Без копирования, но не живое: каждый обход идёт по срезу, снятому в iterator().
+    @Override
+    public Iterable<Movie> values() {
+        return () -> new CutIterator(cut(), 0);
+    }
+
+    @Override
+    public List<Movie> findPage(long afterId, int limit) {
+        long start = System.nanoTime();
+        try {
+            List<Movie> page = new ArrayList<>(limit);
+            CutIterator movies = new CutIterator(cut(), Math.max(afterId, 0));
+            while (page.size() < limit && movies.hasNext()) {
+                page.add(movies.next());
+            }
+            return page;
+        } finally {
+            observer.onOperation(StoreObserver.Operation.FIND_PAGE, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Movie add(Movie movie) {
+        long start = System.nanoTime();
+        try {
+            MovieJournal journal = this.journal;
+            ChangeFeed changes = this.changes;
+            long seq = 0;
+            Shard shard = home();
+
+            shard.lock.lock();
+            try {
+                Edit edit = new Edit(shard);
+                movie.setId(assignId(shard, 1));
+                edit.put(movie);
+                index(edit, movie);
+                yearCounts.increment(movie.getYear());
+                if (journal != null) {
+                    seq = journal.logAdd(movie);
+                }
+                if (changes != null) {
+                    changes.recordAdd(movie);
+                }
+                edit.publish();
+            } finally {
+                shard.lock.unlock();
+            }
+
+            awaitDurable(journal, seq);
+            return movie;
+        } finally {
+            observer.onOperation(StoreObserver.Operation.ADD, System.nanoTime() - start);
+        }
+    }
+
+    // Весь пакет уходит в шард потока и публикуется одним состоянием: срез видит его целиком или не видит вовсе.
+    @Override
+    public List<Movie> addAll(List<Movie> batch) {
+        long start = System.nanoTime();
+        try {
+            if (batch.isEmpty()) {
+                return batch;
+            }
+            MovieJournal journal = this.journal;
+            ChangeFeed changes = this.changes;
+            long seq = 0;
+            Shard shard = home();
+
+            shard.lock.lock();
+            try {
+                Edit edit = new Edit(shard);
+                YearCounts counts = yearCounts;
+                int count = batch.size();
+                long[] ids = new long[count];
+                String[] titles = new String[count];
+                for (int i = 0; i < count; i++) {
+                    Movie movie = batch.get(i);
+                    ids[i] = assignId(shard, count - i);
+                    titles[i] = movie.getTitle();
+                    movie.setId(ids[i]);
+                    edit.put(movie);
+                    shard.yearIds(movie.getYear()).add(ids[i]);
+                    edit.touchYear(movie.getYear());
+                    counts.increment(movie.getYear());
+                }
+                shard.titles.addAll(ids, titles, count);
+                if (journal != null) {
+                    for (Movie movie : batch) {
+                        seq = journal.logAdd(movie);
+                    }
+                }
+                if (changes != null) {
+                    for (Movie movie : batch) {
+                        changes.recordAdd(movie);
+                    }
+                }
+                edit.publish();
+            } finally {
+                shard.lock.unlock();
+            }
+
+            awaitDurable(journal, seq);
+            return batch;
+        } finally {
+            observer.onOperation(StoreObserver.Operation.ADD_ALL, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Movie findById(long id) {
+        long start = System.nanoTime();
+        try {
+            return shardOf(id).state.get(id);
+        } finally {
+            observer.onOperation(StoreObserver.Operation.FIND_BY_ID, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Movie> findByIds(long[] ids) {
+        long start = System.nanoTime();
+        try {
+            List<Movie> result = new ArrayList<>(ids.length);
+            for (long id : ids) {
+                Movie movie = shardOf(id).state.get(id);
+                if (movie != null) {
+                    result.add(movie);
+                }
+            }
+            return result;
+        } finally {
+            observer.onOperation(StoreObserver.Operation.FIND_BY_IDS, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean delete(long id) {
+        long start = System.nanoTime();
+        try {
+            MovieJournal journal = this.journal;
+            ChangeFeed changes = this.changes;
+            long seq = 0;
+            Shard shard = shardOf(id);
+
+            shard.lock.lock();
+            try {
+                Edit edit = new Edit(shard);
+                Movie old = edit.remove(id);
+                if (old == null) {
+                    return false;
+                }
+                unindex(edit, old);
+                yearCounts.decrement(old.getYear());
+                if (journal != null) {
+                    seq = journal.logDelete(id);
+                }
+                if (changes != null) {
+                    changes.recordDelete(id);
+                }
+                edit.publish();
+            } finally {
+                shard.lock.unlock();
+            }
+            invalidation.invalidate(id);
+
+            awaitDurable(journal, seq);
+            return true;
+        } finally {
+            observer.onOperation(StoreObserver.Operation.DELETE, System.nanoTime() - start);
+        }
+    }
+
+    // id раскладываются по шардам: блокировка и публикация нового состояния — одна на шард, а не на id.
+    @Override
+    public boolean[] deleteAll(long[] ids) {
+        long start = System.nanoTime();
+        try {
+            MovieJournal journal = this.journal;
+            ChangeFeed changes = this.changes;
+            long seq = 0;
+            boolean[] deleted = new boolean[ids.length];
+            Integer[] order = new Integer[ids.length];
+            Shard[] owners = new Shard[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                order[i] = i;
+                owners[i] = shardOf(ids[i]);
+            }
+            Arrays.sort(order, Comparator.comparingInt(i -> owners[i].index));
+
+            for (int from = 0; from < order.length; ) {
+                Shard shard = owners[order[from]];
+                int to = from;
+                while (to < order.length && owners[order[to]] == shard) {
+                    to++;
+                }
+                shard.lock.lock();
+                try {
+                    Edit edit = new Edit(shard);
+                    boolean changed = false;
+                    for (int k = from; k < to; k++) {
+                        int at = order[k];
+                        long id = ids[at];
+                        Movie old = edit.remove(id);
+                        if (old == null) {
+                            continue;
+                        }
+                        unindex(edit, old);
+                        yearCounts.decrement(old.getYear());
+                        if (journal != null) {
+                            seq = journal.logDelete(id);
+                        }
+                        if (changes != null) {
+                            changes.recordDelete(id);
+                        }
+                        deleted[at] = true;
+                        changed = true;
+                    }
+                    if (changed) {
+                        edit.publish();
+                    }
+                } finally {
+                    shard.lock.unlock();
+                }
+                from = to;
+            }
+            MovieInvalidation invalidation = this.invalidation;
+            for (int i = 0; i < ids.length; i++) {
+                if (deleted[i]) {
+                    invalidation.invalidate(ids[i]);
+                }
+            }
+
+            awaitDurable(journal, seq);
+            return deleted;
+        } finally {
+            observer.onOperation(StoreObserver.Operation.DELETE_ALL, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Movie> findByYear(int year) {
+        long start = System.nanoTime();
+        try {
+            List<Movie> result = new ArrayList<>();
+            collectYear(cut(), year, result);
+            return result;
+        } finally {
+            observer.onOperation(StoreObserver.Operation.FIND_BY_YEAR, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<Movie> findByYearRange(int yearFrom, int yearTo) {
+        long start = System.nanoTime();
+        try {
+            List<Movie> result = new ArrayList<>();
+            if (yearFrom > yearTo) {
+                return result;
+            }
+            ShardState[] cut = cut();
+            TreeSet<Integer> years = new TreeSet<>();
+            for (ShardState state : cut) {
+                int i = Arrays.binarySearch(state.years, yearFrom);
+                for (i = i < 0 ? -i - 1 : i; i < state.years.length && state.years[i] <= yearTo; i++) {
+                    years.add(state.years[i]);
+                }
+            }
+            for (int year : years) {
+                collectYear(cut, year, result);
+            }
+            return result;
+        } finally {
+            observer.onOperation(StoreObserver.Operation.FIND_BY_YEAR_RANGE, System.nanoTime() - start);
+        }
+    }
+
+    // Каждый шард ранжирует свои id, лучшие limit ключей из всех шардов отбираются одной сортировкой.
+    @Override
+    public List<Movie> search(String query, int limit) {
+        long start = System.nanoTime();
+        try {
+            List<String> terms = TitleIndex.tokenize(query);
+            long[] keys = new long[0];
+            for (Shard shard : shards) {
+                long[] ranked = shard.titles.rank(terms, limit);
+                if (ranked.length > 0) {
+                    int from = keys.length;
+                    keys = Arrays.copyOf(keys, from + ranked.length);
+                    System.arraycopy(ranked, 0, keys, from, ranked.length);
+                }
+            }
+            Arrays.sort(keys);
+
+            List<Movie> result = new ArrayList<>(Math.min(limit, keys.length));
+            for (int i = keys.length - 1; i >= 0 && result.size() < limit; i--) {
+                long id = TitleIndex.idOf(keys[i]);
+                Movie movie = shardOf(id).state.get(id);
+                if (movie != null) {
+                    result.add(movie);
+                }
+            }
+            return result;
+        } finally {
+            observer.onOperation(StoreObserver.Operation.SEARCH, System.nanoTime() - start);
+        }
+    }
+
+    // Всё на одном срезе шардов. Годы ограничены — кандидаты из годовых списков каждого шарда; сортировка
+    // по id по возрастанию — срез обходится по порядку id с остановкой на limit совпавших; иначе обход
+    // всего среза с отбором limit лучших.
+    @Override
+    public List<Movie> query(MovieQuery query) {
+        long start = System.nanoTime();
+        try {
+            ShardState[] cut = cut();
+            if (query.isYearBounded()) {
+                QuerySelection selection = new QuerySelection(query, false);
+                for (ShardState state : cut) {
+                    int i = Arrays.binarySearch(state.years, query.getYearFrom());
+                    for (i = i < 0 ? -i - 1 : i; i < state.years.length && state.years[i] <= query.getYearTo(); i++) {
+                        for (PostingList.Cursor cursor = state.yearIds[i].cursor(); cursor.current() != -1;
+                             cursor.advance()) {
+                            selection.offer(state.get(cursor.current()));
+                        }
+                    }
+                }
+                return selection.result();
+            }
+            boolean ordered = query.getSort() == MovieSort.ID && !query.isDescending();
+            QuerySelection selection = new QuerySelection(query, ordered);
+            CutIterator movies = new CutIterator(cut, ordered ? query.getAfterId() : 0);
+            while (movies.hasNext() && selection.offer(movies.next())) {
+            }
+            return selection.result();
+        } finally {
+            observer.onOperation(StoreObserver.Operation.QUERY, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void clear() {
+        long start = System.nanoTime();
+        try {
+            MovieJournal journal = this.journal;
+            ChangeFeed changes = this.changes;
+            long seq = 0;
+
+            lockAll();
+            try {
+                for (Shard shard : shards) {
+                    shard.years.clear();
+                    shard.titles.clear();
+                    shard.nextId = 0;
+                    shard.blockEnd = 0;
+                    shard.lastId = 0;
+                    long version = shard.state.version + 1;
+                    shard.state = ShardState.empty(version);
+                }
+                synchronized (claimLock) {
+                    nextBlock = 0;
+                    owners = new byte[1024];
+                    restoredNextId = 1;
+                }
+                yearCounts = new YearCounts();
+                statsStale = false;
+                if (journal != null) {
+                    seq = journal.logClear();
+                }
+                if (changes != null) {
+                    changes.recordClear();
+                }
+            } finally {
+                unlockAll();
+            }
+            invalidation.invalidateAll();
+
+            awaitDurable(journal, seq);
+        } finally {
+            observer.onOperation(StoreObserver.Operation.CLEAR, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public MovieStats stats() {
+        if (statsStale) {
+            recomputeStats();
+        }
+        return yearCounts.snapshot();
+    }
+
+    // Под блокировками всех шардов: состояния шардов неподвижны, задачи пересчёта читают их без блокировок.
+    @Override
+    public void recomputeStats() {
+        runExclusive(() -> {
+            statsStale = false;
+            yearCounts = YearCounts.recount(nextId(), id -> shardOf(id).state.get(id));
+        });
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            size += shard.state.size;
+        }
+        return size;
+    }
+
+    // Сумма версий шардов: у каждого она только растёт, значит, растёт и сумма.
+    @Override
+    public long version() {
+        long version = 0;
+        for (Shard shard : shards) {
+            version += shard.state.version;
+        }
+        return version;
+    }
+
+    @Override
+    public long yearVersion(int year) {
+        long version = 0;
+        for (Shard shard : shards) {
+            version += shard.state.yearVersion(year);
+        }
+        return version;
+    }
+
+    // Больше любого выданного id; блоки, захваченные шардами, но ещё не начатые, после перезапуска просто пропадут.
+    @Override
+    public long nextId() {
+        long next = restoredNextId;
+        for (Shard shard : shards) {
+            next = Math.max(next, shard.lastId + 1);
+        }
+        return next;
+    }
+
+    @Override
+    public void restore(Movie movie) {
+        restore(movie, false);
+    }
+
+    @Override
+    public void replicate(Movie movie) {
+        restore(movie, true);
+    }
+
+    // counted — вести сводку по годам; пересчёт берёт все блокировки шардов, так что инкремент не потеряется.
+    private void restore(Movie movie, boolean counted) {
+        long id = movie.getId();
+        Shard shard = shardOf(id);
+        Movie old;
+
+        shard.lock.lock();
+        try {
+            synchronized (claimLock) {
+                nextBlock = Math.max(nextBlock, blockOf(id) + 1);
+                restoredNextId = Math.max(restoredNextId, id + 1);
+            }
+            if (id >= shard.nextId && id < shard.blockEnd) {
+                shard.nextId = id + 1;
+            }
+            Edit edit = new Edit(shard);
+            old = edit.put(movie);
+            if (old != null) {
+                unindex(edit, old);
+            }
+            index(edit, movie);
+            if (counted) {
+                if (old != null) {
+                    yearCounts.decrement(old.getYear());
+                }
+                yearCounts.increment(movie.getYear());
+            } else {
+                statsStale = true;
+            }
+            edit.publish();
+        } finally {
+            shard.lock.unlock();
+        }
+        if (old != null) {
+            invalidation.invalidate(id);
+        }
+    }
+
+    // Следующий выданный id будет не меньше nextId, но не обязательно равен ему: новые блоки начинаются с границы блока.
+    @Override
+    public void restoreNextId(long nextId) {
+        synchronized (claimLock) {
+            restoredNextId = Math.max(restoredNextId, nextId);
+            if (nextId > 1) {
+                nextBlock = Math.max(nextBlock, blockOf(nextId - 1) + 1);
+            }
+        }
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                if (shard.nextId < nextId) {
+                    shard.nextId = Math.min(nextId, shard.blockEnd);
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void attachJournal(MovieJournal journal) {
+        this.journal = journal;
+    }
+
+    @Override
+    public void attachChangeFeed(ChangeFeed changes) {
+        this.changes = changes;
+    }
+
+    @Override
+    public void attachObserver(StoreObserver observer) {
+        this.observer = observer == null ? StoreObserver.NONE : observer;
+    }
+
+    @Override
+    public void attachInvalidation(MovieInvalidation invalidation) {
+        this.invalidation = invalidation == null ? MovieInvalidation.NONE : invalidation;
+    }
+
+    // Записи в журнал идут под блокировкой шарда, поэтому достаточно взять блокировки всех шардов.
+    @Override
+    public void runExclusive(Runnable action) {
+        lockAll();
+        try {
+            action.run();
+        } finally {
+            unlockAll();
+        }
+    }
+
+    // Поток пишет всегда в один шард, поэтому его id идут подряд, а индексы шарда пополняются дозаписью в конец.
+    private Shard home() {
+        long hash = Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L;
+        return shards[(int) ((hash >>> 33) % shards.length)];
+    }
+
+    private Shard shardOf(long id) {
+        long block = blockOf(id);
+        byte[] owners = this.owners;
+        int owner = block < owners.length ? owners[(int) block] : 0;
+        return shards[owner != 0 ? owner - 1 : (int) (block % shards.length)];
+    }
+
+    // Вызывается под блокировкой шарда; pending — сколько id ещё нужно этой операции, чтобы пакет захватил блоки разом.
+    private long assignId(Shard shard, int pending) {
+        if (shard.nextId == shard.blockEnd) {
+            claim(shard, (pending + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        }
+        long id = shard.nextId++;
+        shard.lastId = id;
+        return id;
+    }
+
+    private void claim(Shard shard, int blocks) {
+        long first;
+        synchronized (claimLock) {
+            first = nextBlock;
+            if (first + blocks > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Исчерпаны блоки id каталога");
+            }
+            nextBlock = first + blocks;
+            byte[] owners = this.owners;
+            if (first + blocks > owners.length) {
+                owners = Arrays.copyOf(owners, (int) Math.min(Integer.MAX_VALUE - 8,
+                        Math.max(owners.length * 2L, first + blocks)));
+            }
+            Arrays.fill(owners, (int) first, (int) (first + blocks), (byte) (shard.index + 1));
+            this.owners = owners;
+        }
+        shard.nextId = (first << BLOCK_BITS) + 1;
+        shard.blockEnd = ((first + blocks) << BLOCK_BITS) + 1;
+    }
+
+    // Двойное чтение ссылок: если ни одна не сменилась между проходами, все состояния были текущими
+    // одновременно — в момент конца первого прохода. Под непрерывной записью срез берётся под блокировками.
+    private ShardState[] cut() {
+        ShardState[] states = new ShardState[shards.length];
+        for (int attempt = 0; attempt < CUT_ATTEMPTS; attempt++) {
+            for (int i = 0; i < shards.length; i++) {
+                states[i] = shards[i].state;
+            }
+            boolean stable = true;
+            for (int i = 0; i < shards.length && stable; i++) {
+                stable = shards[i].state == states[i];
+            }
+            if (stable) {
+                return states;
+            }
+        }
+        lockAll();
+        try {
+            for (int i = 0; i < shards.length; i++) {
+                states[i] = shards[i].state;
+            }
+        } finally {
+            unlockAll();
+        }
+        return states;
+    }
+
+    private void lockAll() {
+        for (Shard shard : shards) {
+            shard.lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = shards.length - 1; i >= 0; i--) {
+            shards[i].lock.unlock();
+        }
+    }
+
+    private void awaitDurable(MovieJournal journal, long seq) {
+        if (journal != null) {
+            journal.awaitDurable(seq);
+        }
+    }
+
+    private static void index(Edit edit, Movie movie) {
+        Shard shard = edit.shard;
+        shard.yearIds(movie.getYear()).add(movie.getId());
+        shard.titles.add(movie.getId(), movie.getTitle());
+        edit.touchYear(movie.getYear());
+    }
+
+    private static void unindex(Edit edit, Movie movie) {
+        Shard shard = edit.shard;
+        PostingList ids = shard.years.get(movie.getYear());
+        if (ids != null) {
+            ids.remove(movie.getId());
+            edit.touchYear(movie.getYear());
+        }
+        shard.titles.remove(movie.getId(), movie.getTitle());
+    }
+
+    // Списки года в разных шардах отсортированы каждый сам по себе, общий порядок по id восстанавливается сортировкой.
+    private static void collectYear(ShardState[] cut, int year, List<Movie> result) {
+        int from = result.size();
+        int sources = 0;
+        for (ShardState state : cut) {
+            PostingList.Snapshot ids = state.yearIds(year);
+            if (ids == null || ids.size == 0) {
+                continue;
+            }
+            sources++;
+            for (PostingList.Cursor cursor = ids.cursor(); cursor.current() != -1; cursor.advance()) {
+                Movie movie = state.get(cursor.current());
+                if (movie != null) {
+                    result.add(movie);
+                }
+            }
+        }
+        if (sources > 1) {
+            result.subList(from, result.size()).sort(BY_ID);
+        }
+    }
+
+    private static long blockOf(long id) {
+        return (id - 1) >>> BLOCK_BITS;
+    }
+
+    private static int slotOf(long id) {
+        return (int) ((id - 1) & (BLOCK_SIZE - 1));
+    }
+
+    private static int digit(long block, int level) {
+        return (int) (block >>> (FANOUT_BITS * level)) & (FANOUT - 1);
+    }
+
+    private static final class Shard {
+        final int index;
+        final ReentrantLock lock = new ReentrantLock();
+        volatile ShardState state = ShardState.empty(0);
+        // Дальше — только под lock. Списки по годам изменяемые, в state попадают их снимки.
+        final Map<Integer, PostingList> years = new HashMap<>();
+        final TitleIndex titles = new TitleIndex();
+        // открытый блок id: [nextId, blockEnd)
+        long nextId;
+        long blockEnd;
+        volatile long lastId;
+
+        Shard(int index) {
+            this.index = index;
+        }
+
+        PostingList yearIds(int year) {
+            return years.computeIfAbsent(year, y -> new PostingList());
+        }
+    }
+
+    // Неизменяемое состояние шарда. Фильмы лежат в префиксном дереве по номеру блока: узлы по FANOUT ссылок,
+    // листья — страницы блока по смещению id, поэтому запись копирует только свой путь и свою страницу.
+    // years — годы по возрастанию со снимками id и версией последнего изменения.
+    private static final class ShardState {
+        private static final Object[] EMPTY_ROOT = new Object[FANOUT];
+        private static final int[] NO_YEARS = new int[0];
+        private static final PostingList.Snapshot[] NO_YEAR_IDS = new PostingList.Snapshot[0];
+        private static final long[] NO_VERSIONS = new long[0];
+
+        final Object[] root;
+        // уровней узлов над страницами: корень покрывает FANOUT^depth блоков
+        final int depth;
+        final int[] years;
+        final PostingList.Snapshot[] yearIds;
+        final long[] yearVersions;
+        final int size;
+        final long version;
+        final long clearVersion;
+
+        ShardState(Object[] root, int depth, int[] years, PostingList.Snapshot[] yearIds, long[] yearVersions,
+                   int size, long version, long clearVersion) {
+            this.root = root;
+            this.depth = depth;
+            this.years = years;
+            this.yearIds = yearIds;
+            this.yearVersions = yearVersions;
+            this.size = size;
+            this.version = version;
+            this.clearVersion = clearVersion;
+        }
+
+        static ShardState empty(long version) {
+            return new ShardState(EMPTY_ROOT, 1, NO_YEARS, NO_YEAR_IDS, NO_VERSIONS, 0, version, version);
+        }
+
+        Movie get(long id) {
+            return find(root, depth, id);
+        }
+
+        static Movie find(Object[] root, int depth, long id) {
+            long block = blockOf(id);
+            if (block >>> (FANOUT_BITS * depth) != 0) {
+                return null;
+            }
+            Object node = root;
+            for (int level = depth - 1; level >= 0 && node != null; level--) {
+                node = ((Object[]) node)[digit(block, level)];
+            }
+            return node == null ? null : ((Movie[]) node)[slotOf(id)];
+        }
+
+        PostingList.Snapshot yearIds(int year) {
+            int i = Arrays.binarySearch(years, year);
+            return i < 0 ? null : yearIds[i];
+        }
+
+        long yearVersion(int year) {
+            int i = Arrays.binarySearch(years, year);
+            return Math.max(i < 0 ? 0 : yearVersions[i], clearVersion);
+        }
+    }
+
+    // Изменение состояния шарда под его блокировкой: узел или страница копируются при первой записи в них
+    // этой правкой, дальше меняются на месте, и всё публикуется одной записью state.
+    private static final class Edit {
+        final Shard shard;
+        private final ShardState base;
+        private Object[] root;
+        private int depth;
+        private int size;
+        private final Set<Object> fresh = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Set<Integer> touchedYears = new HashSet<>();
+
+        Edit(Shard shard) {
+            this.shard = shard;
+            this.base = shard.state;
+            this.root = base.root;
+            this.depth = base.depth;
+            this.size = base.size;
+        }
+
+        Movie put(Movie movie) {
+            long id = movie.getId();
+            long block = blockOf(id);
+            while (block >>> (FANOUT_BITS * depth) != 0) {
+                Object[] grown = new Object[FANOUT];
+                grown[0] = root;
+                fresh.add(grown);
+                root = grown;
+                depth++;
+            }
+            Movie[] page = writablePath(block);
+            int slot = slotOf(id);
+            Movie old = page[slot];
+            page[slot] = movie;
+            if (old == null) {
+                size++;
+            }
+            return old;
+        }
+
+        Movie remove(long id) {
+            if (ShardState.find(root, depth, id) == null) {
+                return null;
+            }
+            long block = blockOf(id);
+            Movie[] page = writablePath(block);
+            int slot = slotOf(id);
+            Movie old = page[slot];
+            page[slot] = null;
+            size--;
+            if (isEmpty(page)) {
+                prune(block);
+            }
+            return old;
+        }
+
+        void touchYear(int year) {
+            touchedYears.add(year);
+        }
+
+        void publish() {
+            long version = base.version + 1;
+            int[] years = base.years;
+            PostingList.Snapshot[] yearIds = base.yearIds;
+            long[] yearVersions = base.yearVersions;
+            if (!touchedYears.isEmpty()) {
+                yearIds = yearIds.clone();
+                yearVersions = yearVersions.clone();
+                for (int year : touchedYears) {
+                    int i = Arrays.binarySearch(years, year);
+                    if (i < 0) {
+                        i = -i - 1;
+                        years = insert(years, i, year);
+                        yearIds = insert(yearIds, i, null);
+                        yearVersions = insert(yearVersions, i, 0L);
+                    }
+                    yearIds[i] = shard.years.get(year).snapshot();
+                    yearVersions[i] = version;
+                }
+            }
+            shard.state = new ShardState(root, depth, years, yearIds, yearVersions, size, version, base.clearVersion);
+        }
+
+        // Путь от корня до страницы блока из копий, принадлежащих этой правке; недостающие узлы создаются.
+        private Movie[] writablePath(long block) {
+            root = writableNode(root);
+            Object[] node = root;
+            for (int level = depth - 1; level > 0; level--) {
+                int digit = digit(block, level);
+                Object[] child = writableNode((Object[]) node[digit]);
+                node[digit] = child;
+                node = child;
+            }
+            int digit = digit(block, 0);
+            Movie[] page = (Movie[]) node[digit];
+            if (page == null || !fresh.contains(page)) {
+                page = page == null ? new Movie[BLOCK_SIZE] : page.clone();
+                fresh.add(page);
+                node[digit] = page;
+            }
+            return page;
+        }
+
+        private Object[] writableNode(Object[] node) {
+            if (node != null && fresh.contains(node)) {
+                return node;
+            }
+            Object[] copy = node == null ? new Object[FANOUT] : node.clone();
+            fresh.add(copy);
+            return copy;
+        }
+
+        // Пустая страница и опустевшие над ней узлы убираются; путь к ней уже скопирован этой правкой.
+        private void prune(long block) {
+            Object[][] path = new Object[depth][];
+            Object[] node = root;
+            for (int level = depth - 1; level >= 0; level--) {
+                path[level] = node;
+                if (level > 0) {
+                    node = (Object[]) node[digit(block, level)];
+                }
+            }
+            for (int level = 0; level < depth; level++) {
+                path[level][digit(block, level)] = null;
+                if (level == depth - 1 || !isEmpty(path[level])) {
+                    return;
+                }
+            }
+        }
+
+        private static boolean isEmpty(Object[] array) {
+            for (Object item : array) {
+                if (item != null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int[] insert(int[] array, int i, int value) {
+            int[] copy = new int[array.length + 1];
+            System.arraycopy(array, 0, copy, 0, i);
+            copy[i] = value;
+            System.arraycopy(array, i, copy, i + 1, array.length - i);
+            return copy;
+        }
+
+        private static long[] insert(long[] array, int i, long value) {
+            long[] copy = new long[array.length + 1];
+            System.arraycopy(array, 0, copy, 0, i);
+            copy[i] = value;
+            System.arraycopy(array, i, copy, i + 1, array.length - i);
+            return copy;
+        }
+
+        private static <T> T[] insert(T[] array, int i, T value) {
+            T[] copy = Arrays.copyOf(array, array.length + 1);
+            System.arraycopy(array, i, copy, i + 1, array.length - i);
+            copy[i] = value;
+            return copy;
+        }
+    }
+
+    // Страницы одного шарда по возрастанию номера блока, начиная с заданного; page == null — страницы кончились.
+    private static final class PageCursor {
+        private final Object[][] nodes;
+        private final int[] digits;
+        private final int depth;
+        Movie[] page;
+
+        PageCursor(ShardState state, long fromBlock) {
+            this.depth = state.depth;
+            this.nodes = new Object[depth][];
+            this.digits = new int[depth];
+            if (fromBlock >>> (FANOUT_BITS * depth) != 0) {
+                return;
+            }
+            nodes[depth - 1] = state.root;
+            for (int level = 0; level < depth; level++) {
+                digits[level] = digit(fromBlock, level);
+            }
+            descend(depth - 1, true);
+        }
+
+        long block() {
+            long block = 0;
+            for (int level = 0; level < depth; level++) {
+                block |= (long) digits[level] << (FANOUT_BITS * level);
+            }
+            return block;
+        }
+
+        void advance() {
+            for (int level = 0; level < depth; level++) {
+                digits[level]++;
+                if (descend(level, false)) {
+                    return;
+                }
+            }
+            page = null;
+        }
+
+        // Первая страница в nodes[level] начиная с digits[level]; на левой границе (boundary)
+        // нижние уровни начинают с цифр исходного блока, правее — с нуля.
+        private boolean descend(int level, boolean boundary) {
+            Object[] node = nodes[level];
+            for (int d = digits[level]; d < FANOUT; d++, boundary = false) {
+                Object child = node[d];
+                if (child == null) {
+                    continue;
+                }
+                digits[level] = d;
+                if (level == 0) {
+                    page = (Movie[]) child;
+                    return true;
+                }
+                nodes[level - 1] = (Object[]) child;
+                if (!boundary) {
+                    digits[level - 1] = 0;
+                }
+                if (descend(level - 1, boundary)) {
+                    return true;
+                }
+            }
+            digits[level] = FANOUT;
+            return false;
+        }
+    }
+
+    // Обход среза по возрастанию id: страницы всех шардов сливаются по номеру блока.
+    private static final class CutIterator implements Iterator<Movie> {
+        private final PageCursor[] cursors;
+        private final long afterId;
+        private Movie[] page;
+        private int slot;
+        private Movie next;
+
+        CutIterator(ShardState[] states, long afterId) {
+            this.afterId = afterId;
+            this.cursors = new PageCursor[states.length];
+            long firstBlock = afterId >>> BLOCK_BITS;
+            for (int i = 0; i < states.length; i++) {
+                cursors[i] = new PageCursor(states[i], firstBlock);
+            }
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Movie next() {
+            Movie movie = next;
+            if (movie == null) {
+                throw new NoSuchElementException();
+            }
+            advance();
+            return movie;
+        }
+
+        private void advance() {
+            while (true) {
+                while (page != null && slot < page.length) {
+                    Movie movie = page[slot++];
+                    if (movie != null && movie.getId() > afterId) {
+                        next = movie;
+                        return;
+                    }
+                }
+                page = nextPage();
+                slot = 0;
+                if (page == null) {
+                    next = null;
+                    return;
+                }
+            }
+        }
+
+        private Movie[] nextPage() {
+            PageCursor best = null;
+            long bestBlock = Long.MAX_VALUE;
+            for (PageCursor cursor : cursors) {
+                if (cursor.page != null) {
+                    long block = cursor.block();
+                    if (block < bestBlock) {
+                        best = cursor;
+                        bestBlock = block;
+                    }
+                }
+            }
+            if (best == null) {
+                return null;
+            }
+            Movie[] page = best.page;
+            best.advance();
+            return page;
+        }
+    }
+}
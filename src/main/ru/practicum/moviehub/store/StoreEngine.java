@@ -0,0 +1,33 @@
+package ru.practicum.moviehub.store;
+
+import java.util.Locale;
+
+// Как MoviesStore хранит сами фильмы; индексы по году и названию у всех одинаковые.
+public enum StoreEngine {
+    // ConcurrentHashMap<Long, Movie>: чтение отдаёт сохранённый объект, но каждый фильм — несколько объектов в куче
+    HEAP,
+    // столбцы примитивов и названия в UTF-8 (CompactMovieTable); чтение собирает новый Movie
+    COMPACT,
+    // то же, но страницы названий вне кучи, в direct ByteBuffer
+    COMPACT_OFFHEAP;
+
+    public static StoreEngine parse(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Неизвестное хранилище фильмов: " + value
+                    + " (ожидается heap, compact или compact-offheap)", e);
+        }
+    }
+
+    MovieTable createTable() {
+        switch (this) {
+            case COMPACT:
+                return new CompactMovieTable(false);
+            case COMPACT_OFFHEAP:
+                return new CompactMovieTable(true);
+            default:
+                return new HeapMovieTable();
+        }
+    }
+}
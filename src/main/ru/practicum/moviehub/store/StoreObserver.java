@@ -0,0 +1,27 @@
+package ru.practicum.moviehub.store;
+
+// Получает длительность каждой операции каталога. Вызывается в потоке операции на каждом
+// запросе, поэтому реализация должна быть неблокирующей и не выделять память.
+public interface StoreObserver {
+
+    StoreObserver NONE = (operation, nanos) -> {
+    };
+
+    void onOperation(Operation operation, long nanos);
+
+    enum Operation {
+        GET_ALL,
+        FIND_PAGE,
+        ADD,
+        ADD_ALL,
+        FIND_BY_ID,
+        FIND_BY_IDS,
+        DELETE,
+        DELETE_ALL,
+        FIND_BY_YEAR,
+        FIND_BY_YEAR_RANGE,
+        SEARCH,
+        QUERY,
+        CLEAR
+    }
+}
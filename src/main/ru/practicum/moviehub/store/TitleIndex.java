@@ -0,0 +1,361 @@
+package ru.practicum.moviehub.store;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Инвертированный индекс по словам названий: терм -> отсортированные id фильмов.
+class TitleIndex {
+    static final int MAX_QUERY_TERMS = 8;
+    // сколько термов разворачивает один префикс, чтобы запрос "а" не обходил весь словарь
+    static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    private static final int EXACT_WEIGHT = 2;
+    private static final int PREFIX_WEIGHT = 1;
+    // ключ ранжирования: score в старших битах, инвертированный id в младших, больше ключ — выше в выдаче
+    private static final int ID_BITS = 56;
+    private static final long ID_MASK = (1L << ID_BITS) - 1;
+
+    private final ConcurrentHashMap<String, PostingList> terms = new ConcurrentHashMap<>();
+    // тот же словарь, отсортированный для разворачивания префиксов; пополняется только новыми термами
+    private final ConcurrentSkipListMap<String, PostingList> dictionary = new ConcurrentSkipListMap<>();
+
+    void add(long id, String title) {
+        for (String term : tokenize(title)) {
+            postings(term).add(id);
+        }
+    }
+
+    // Пакет с возрастающими id: id группируются по термам, и каждый список пополняется один раз.
+    void addAll(long[] ids, String[] titles, int count) {
+        Map<String, IdBuffer> grouped = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            for (String term : tokenize(titles[i])) {
+                grouped.computeIfAbsent(term, t -> new IdBuffer()).add(ids[i]);
+            }
+        }
+        for (Map.Entry<String, IdBuffer> entry : grouped.entrySet()) {
+            IdBuffer buffer = entry.getValue();
+            postings(entry.getKey()).addAll(buffer.ids, buffer.size);
+        }
+    }
+
+    private PostingList postings(String term) {
+        PostingList postings = terms.get(term);
+        if (postings == null) {
+            postings = terms.computeIfAbsent(term, t -> {
+                PostingList created = new PostingList();
+                dictionary.put(t, created);
+                return created;
+            });
+        }
+        return postings;
+    }
+
+    void remove(long id, String title) {
+        for (String term : tokenize(title)) {
+            PostingList postings = terms.get(term);
+            if (postings != null) {
+                postings.remove(id);
+            }
+        }
+    }
+
+    void clear() {
+        terms.clear();
+        dictionary.clear();
+    }
+
+    // Все слова запроса должны совпасть (точно или по префиксу); выше идут точные совпадения, затем меньший id.
+    long[] search(String query, int limit) {
+        long[] ranked = rank(tokenize(query), limit);
+        for (int i = 0; i < ranked.length; i++) {
+            ranked[i] = idOf(ranked[i]);
+        }
+        return ranked;
+    }
+
+    // Как search, но по уже разобранному запросу и с ключами ранжирования по убыванию: выдачи нескольких
+    // индексов с непересекающимися id сливаются сортировкой ключей.
+    long[] rank(List<String> queryTerms, int limit) {
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return new long[0];
+        }
+        if (queryTerms.size() > MAX_QUERY_TERMS) {
+            queryTerms = queryTerms.subList(0, MAX_QUERY_TERMS);
+        }
+
+        List<TermMatch> matches = new ArrayList<>(queryTerms.size());
+        for (String term : queryTerms) {
+            TermMatch match = match(term);
+            if (match.estimatedSize == 0) {
+                return new long[0];
+            }
+            matches.add(match);
+        }
+        matches.sort(Comparator.comparingLong(m -> m.estimatedSize));
+
+        int maxScore = 0;
+        boolean allExact = true;
+        for (TermMatch match : matches) {
+            maxScore += match.hasExact ? EXACT_WEIGHT : PREFIX_WEIGHT;
+            allExact &= match.hasExact;
+        }
+
+        if (allExact) {
+            long[] exactOnly = intersectExact(matches, limit);
+            if (exactOnly.length == limit) {
+                for (int i = 0; i < limit; i++) {
+                    exactOnly[i] = key(exactOnly[i], maxScore);
+                }
+                return exactOnly;
+            }
+        }
+
+        // Кандидаты идут по возрастанию id, поэтому как только набрано limit фильмов
+        // с максимально возможным score, остальные уже не могут их вытеснить.
+        TopK top = new TopK(limit);
+        TermMatch driver = matches.get(0);
+        PostingList.Cursor[] cursors = driver.cursors();
+        long id;
+        while ((id = nextId(cursors)) >= 0) {
+            int score = driver.weightOf(id);
+            for (int m = 1; m < matches.size() && score > 0; m++) {
+                int weight = matches.get(m).weightOf(id);
+                score = weight == 0 ? 0 : score + weight;
+            }
+            if (score > 0) {
+                top.offer(id, score);
+                if (top.isFullWith(maxScore)) {
+                    break;
+                }
+            }
+        }
+        return top.toSortedKeys();
+    }
+
+    static long idOf(long key) {
+        return ID_MASK - (key & ID_MASK);
+    }
+
+    private static long key(long id, int score) {
+        return ((long) score << ID_BITS) | (ID_MASK - (id & ID_MASK));
+    }
+
+    // Первые limit id, в которых все слова запроса совпали точно: у них максимальный score.
+    private long[] intersectExact(List<TermMatch> matches, int limit) {
+        PostingList.Snapshot driver = matches.get(0).postings.get(0);
+        for (TermMatch match : matches) {
+            if (match.postings.get(0).size < driver.size) {
+                driver = match.postings.get(0);
+            }
+        }
+
+        long[] result = new long[limit];
+        int found = 0;
+        PostingList.Cursor cursor = driver.cursor();
+        for (long id = cursor.current(); id >= 0 && found < limit; cursor.advance(), id = cursor.current()) {
+            boolean all = true;
+            for (int m = 0; m < matches.size() && all; m++) {
+                all = matches.get(m).postings.get(0).contains(id);
+            }
+            if (all) {
+                result[found++] = id;
+            }
+        }
+        return found == limit ? result : Arrays.copyOf(result, found);
+    }
+
+    // Слияние списков по возрастанию id без повторов; -1, когда списки исчерпаны.
+    private static long nextId(PostingList.Cursor[] cursors) {
+        long min = Long.MAX_VALUE;
+        for (PostingList.Cursor cursor : cursors) {
+            long current = cursor.current();
+            if (current >= 0 && current < min) {
+                min = current;
+            }
+        }
+        if (min == Long.MAX_VALUE) {
+            return -1;
+        }
+        for (PostingList.Cursor cursor : cursors) {
+            if (cursor.current() == min) {
+                cursor.advance();
+            }
+        }
+        return min;
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return List.of();
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC)
+                .toLowerCase(Locale.ROOT)
+                .replace('ё', 'е');
+
+        Set<String> tokens = new LinkedHashSet<>();
+        int start = -1;
+        for (int i = 0; i < normalized.length(); ) {
+            int cp = normalized.codePointAt(i);
+            boolean wordChar = Character.isLetterOrDigit(cp);
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(normalized.substring(start, i));
+                start = -1;
+            }
+            i += Character.charCount(cp);
+        }
+        if (start >= 0) {
+            tokens.add(normalized.substring(start));
+        }
+        return new ArrayList<>(tokens);
+    }
+
+    private TermMatch match(String term) {
+        List<PostingList.Snapshot> postings = new ArrayList<>();
+        long estimatedSize = 0;
+
+        PostingList exact = terms.get(term);
+        boolean hasExact = exact != null && exact.size() > 0;
+        if (hasExact) {
+            PostingList.Snapshot snapshot = exact.snapshot();
+            postings.add(snapshot);
+            estimatedSize += snapshot.size;
+        }
+
+        int expansions = 0;
+        Map<String, PostingList> prefixed = dictionary.subMap(term, false, term + Character.MAX_VALUE, false);
+        for (PostingList list : prefixed.values()) {
+            if (expansions == MAX_PREFIX_EXPANSIONS) {
+                break;
+            }
+            PostingList.Snapshot snapshot = list.snapshot();
+            if (snapshot.size == 0) {
+                continue;
+            }
+            postings.add(snapshot);
+            estimatedSize += snapshot.size;
+            expansions++;
+        }
+        return new TermMatch(postings, hasExact, estimatedSize);
+    }
+
+    private static final class TermMatch {
+        final List<PostingList.Snapshot> postings;
+        final boolean hasExact;
+        final long estimatedSize;
+
+        TermMatch(List<PostingList.Snapshot> postings, boolean hasExact, long estimatedSize) {
+            this.postings = postings;
+            this.hasExact = hasExact;
+            this.estimatedSize = estimatedSize;
+        }
+
+        int weightOf(long id) {
+            for (int i = 0; i < postings.size(); i++) {
+                if (postings.get(i).contains(id)) {
+                    return hasExact && i == 0 ? EXACT_WEIGHT : PREFIX_WEIGHT;
+                }
+            }
+            return 0;
+        }
+
+        PostingList.Cursor[] cursors() {
+            PostingList.Cursor[] cursors = new PostingList.Cursor[postings.size()];
+            for (int i = 0; i < cursors.length; i++) {
+                cursors[i] = postings.get(i).cursor();
+            }
+            return cursors;
+        }
+    }
+
+    // Min-куча из limit лучших ключей ранжирования.
+    private static final class TopK {
+        private final long[] heap;
+        private int size;
+
+        TopK(int limit) {
+            this.heap = new long[limit];
+        }
+
+        void offer(long id, int score) {
+            long key = key(id, score);
+            if (size < heap.length) {
+                heap[size] = key;
+                siftUp(size++);
+            } else if (key > heap[0]) {
+                heap[0] = key;
+                siftDown(0);
+            }
+        }
+
+        boolean isFullWith(int score) {
+            return size == heap.length && (heap[0] >>> ID_BITS) == score;
+        }
+
+        long[] toSortedKeys() {
+            long[] keys = Arrays.copyOf(heap, size);
+            Arrays.sort(keys);
+            long[] sorted = new long[size];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = keys[size - 1 - i];
+            }
+            return sorted;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heap[parent] <= heap[i]) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int left = 2 * i + 1;
+                if (left >= size) {
+                    return;
+                }
+                int smallest = left + 1 < size && heap[left + 1] < heap[left] ? left + 1 : left;
+                if (heap[i] <= heap[smallest]) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            long tmp = heap[a];
+            heap[a] = heap[b];
+            heap[b] = tmp;
+        }
+    }
+
+    private static final class IdBuffer {
+        long[] ids = new long[4];
+        int size;
+
+        void add(long id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+}
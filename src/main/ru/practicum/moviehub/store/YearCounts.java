@@ -0,0 +1,92 @@
+package ru.practicum.moviehub.store;
+
+import ru.practicum.moviehub.model.Movie;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+
+// Число фильмов по годам для MovieStats: на каждый год свой LongAdder, так что запись — инкремент без общей
+// блокировки и без спора потоков за одну ячейку, а снимок — O(лет), а не O(фильмов). Счётчики не входят
+// в срез каталога: при параллельных записях снимок может не учесть ещё не закончившиеся операции.
+final class YearCounts {
+    // отрезок id короче этого пересчитывает одна задача, длиннее — делится пополам
+    private static final long RECOUNT_LEAF_IDS = 16 * 1024;
+
+    private final ConcurrentHashMap<Integer, LongAdder> years = new ConcurrentHashMap<>();
+
+    void increment(int year) {
+        adder(year).increment();
+    }
+
+    void decrement(int year) {
+        adder(year).decrement();
+    }
+
+    MovieStats snapshot() {
+        SortedMap<Integer, Long> byYear = new TreeMap<>();
+        years.forEach((year, adder) -> {
+            long count = adder.sum();
+            if (count > 0) {
+                byYear.put(year, count);
+            }
+        });
+        return new MovieStats(byYear);
+    }
+
+    // Пересчёт с нуля после массовой загрузки или восстановления: id [1, nextId) делятся между задачами
+    // общего ForkJoinPool, каждая считает свой отрезок в обычную карту, карты сливаются при join.
+    // lookup должен быть потокобезопасным; записи во время пересчёта вызывающий код должен исключить сам.
+    static YearCounts recount(long nextId, LongFunction<Movie> lookup) {
+        Map<Integer, long[]> counted = ForkJoinPool.commonPool().invoke(new Recount(1, nextId, lookup));
+        YearCounts counts = new YearCounts();
+        counted.forEach((year, count) -> counts.adder(year).add(count[0]));
+        return counts;
+    }
+
+    private LongAdder adder(int year) {
+        LongAdder adder = years.get(year);
+        return adder != null ? adder : years.computeIfAbsent(year, y -> new LongAdder());
+    }
+
+    private static final class Recount extends RecursiveTask<Map<Integer, long[]>> {
+        private static final long serialVersionUID = 1L;
+
+        private final long from;
+        private final long to;
+        // задача живёт только внутри recount и не сериализуется
+        private final transient LongFunction<Movie> lookup;
+
+        Recount(long from, long to, LongFunction<Movie> lookup) {
+            this.from = from;
+            this.to = to;
+            this.lookup = lookup;
+        }
+
+        @Override
+        protected Map<Integer, long[]> compute() {
+            if (to - from <= RECOUNT_LEAF_IDS) {
+                Map<Integer, long[]> counted = new HashMap<>();
+                for (long id = from; id < to; id++) {
+                    Movie movie = lookup.apply(id);
+                    if (movie != null) {
+                        counted.computeIfAbsent(movie.getYear(), year -> new long[1])[0]++;
+                    }
+                }
+                return counted;
+            }
+            long middle = from + (to - from) / 2;
+            Recount left = new Recount(from, middle, lookup);
+            left.fork();
+            Map<Integer, long[]> counted = new Recount(middle, to, lookup).compute();
+            left.join().forEach((year, count) -> counted.computeIfAbsent(year, y -> new long[1])[0] += count[0]);
+            return counted;
+        }
+    }
+}
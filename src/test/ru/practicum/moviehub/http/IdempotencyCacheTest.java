@@ -0,0 +1,82 @@
+package ru.practicum.moviehub.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdempotencyCacheTest {
+
+    // Восемь одновременных запросов с одним ключом: действие выполняется один раз, остальные ждут его ответ.
+    @Test
+    void concurrentDuplicates_runActionOnce() throws Exception {
+        IdempotencyCache cache = new IdempotencyCache(100, 1 << 20, Duration.ofMinutes(1));
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<IdempotencyCache.Response>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(pool.submit(() -> cache.execute("ключ", 1, () -> {
+                    runs.incrementAndGet();
+                    awaitUninterruptibly(release);
+                    return new IdempotencyCache.Response(201, "{\"id\":1}".getBytes(StandardCharsets.UTF_8));
+                })));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            int replayed = 0;
+            for (Future<IdempotencyCache.Response> result : results) {
+                IdempotencyCache.Response response = result.get(10, TimeUnit.SECONDS);
+                assertEquals(201, response.status);
+                replayed += response.replayed ? 1 : 0;
+            }
+            assertEquals(1, runs.get());
+            assertEquals(7, replayed);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThrows(IdempotencyCache.KeyReusedException.class,
+                () -> cache.execute("ключ", 2, () -> new IdempotencyCache.Response(201, new byte[0])));
+    }
+
+    @Test
+    void failedAction_isNotStored_andLimitsEvictOldest() throws Exception {
+        IdempotencyCache cache = new IdempotencyCache(100, 1_000, Duration.ofMillis(50));
+        assertThrows(IllegalStateException.class, () -> cache.execute("сбой", 1, () -> {
+            throw new IllegalStateException("сбой хранилища");
+        }));
+        assertFalse(cache.execute("сбой", 1, () -> new IdempotencyCache.Response(201, new byte[10])).replayed);
+
+        // по 300 байт тела: в 1000 байт помещаются не все, старые вытесняются
+        for (int i = 0; i < 10; i++) {
+            cache.execute("ключ" + i, 1, () -> new IdempotencyCache.Response(201, new byte[300]));
+        }
+        assertTrue(cache.size() < 10, "размер " + cache.size());
+        assertTrue(cache.getEvictions() > 0);
+        assertTrue(cache.execute("ключ9", 1, () -> new IdempotencyCache.Response(500, new byte[0])).replayed);
+
+        Thread.sleep(100);
+        assertEquals(500, cache.execute("ключ9", 1, () -> new IdempotencyCache.Response(500, new byte[0])).status,
+                "после ttl запрос выполняется заново");
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package ru.practicum.moviehub.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MovieResponseCacheTest {
+
+    // Горячие фильмы читаются многократно, затем обход каталога запрашивает каждый id по разу вперемешку
+    // с горячими: обход не набирает частоту, и фильтр допуска не пускает его на место горячих.
+    @Test
+    void scan_doesNotEvictFrequentlyReadEntries() {
+        MovieResponseCache cache = new MovieResponseCache(100);
+        for (int round = 0; round < 5; round++) {
+            for (long id = 1; id <= 50; id++) {
+                read(cache, id);
+            }
+        }
+        for (long id = 1_000; id < 11_000; id++) {
+            read(cache, id);
+            read(cache, 1 + id % 50);
+        }
+
+        int hot = 0;
+        for (long id = 1; id <= 50; id++) {
+            hot += cache.get(id) != null ? 1 : 0;
+        }
+        assertEquals(50, hot, cache.toString());
+        assertTrue(cache.size() <= 100, cache.toString());
+        assertTrue(cache.getRejections() > 9_000, "Почти весь обход отклонён при допуске: " + cache);
+    }
+
+    // Ответ, собранный до invalidate, в кэш не попадает: его штамп устарел.
+    @Test
+    void invalidate_removesEntryAndRejectsPutWithStaleStamp() {
+        MovieResponseCache cache = new MovieResponseCache(10);
+        long before = cache.stamp();
+        cache.put(7, entry("старый"), before);
+        assertNotNull(cache.get(7));
+
+        long stale = cache.stamp();
+        cache.invalidate(7);
+        assertNull(cache.get(7));
+        cache.put(7, entry("старый"), stale);
+        assertNull(cache.get(7), "put со штампом до invalidate отброшен");
+
+        cache.put(7, entry("новый"), cache.stamp());
+        assertEquals("новый", new String(cache.get(7).body, StandardCharsets.UTF_8));
+        cache.put(8, entry("другой"), cache.stamp());
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        assertEquals(3, cache.getInvalidations());
+    }
+
+    @Test
+    void sketch_countsUpToFifteenAndAgesByHalving() {
+        FrequencySketch sketch = new FrequencySketch(16);
+        for (int i = 0; i < 20; i++) {
+            sketch.increment(42);
+        }
+        assertEquals(15, sketch.frequency(42));
+        assertEquals(0, sketch.frequency(43));
+
+        // 10 × capacity увеличений — и все счётчики делятся пополам
+        for (long id = 1_000; id < 1_160; id++) {
+            sketch.increment(id);
+        }
+        assertTrue(sketch.frequency(42) <= 8, "После старения: " + sketch.frequency(42));
+    }
+
+    private static void read(MovieResponseCache cache, long id) {
+        if (cache.get(id) == null) {
+            cache.put(id, entry("фильм " + id), cache.stamp());
+        }
+    }
+
+    private static ResponseCache.Entry entry(String body) {
+        return new ResponseCache.Entry(0, body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,16 +1,38 @@
 package ru.practicum.moviehub.http;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import ru.practicum.moviehub.api.BatchResult;
+import ru.practicum.moviehub.api.ErrorResponse;
+import ru.practicum.moviehub.model.Movie;
 import ru.practicum.moviehub.store.MoviesStore;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
 import java.net.URI;
+import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -18,6 +40,7 @@ public class MoviesApiTest {
     private static final String BASE = "http://localhost:8080";
     private static MoviesServer server;
     private static HttpClient client;
+    private static final Gson gson = new Gson();
 
     @BeforeAll
     static void beforeAll() {
@@ -170,6 +193,32 @@ public class MoviesApiTest {
         assertEquals(404, resp.statusCode(), "При попытке удалить несуществующий фильм должен возвращаться 404");
     }
 
+    // Второй GET отдаётся из кэша фильмов без обращения к каталогу, DELETE убирает фильм и из кэша.
+    @Test
+    void getMovieById_isServedFromMovieCacheUntilDeleted() throws Exception {
+        HttpResponse<String> created = client.send(HttpRequest.newBuilder()
+                .uri(URI.create(BASE + "/movies"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"title\":\"Кэшируемый\",\"year\":1893}"))
+                .build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        long id = gson.fromJson(created.body(), Movie.class).getId();
+        MovieResponseCache cache = server.getMovieCache();
+
+        HttpResponse<String> first = send(BASE + "/movies/" + id);
+        long hits = cache.getHits();
+        HttpResponse<String> second = send(BASE + "/movies/" + id);
+        assertEquals(first.body(), second.body());
+        assertEquals(first.headers().firstValue("ETag"), second.headers().firstValue("ETag"));
+        assertTrue(cache.getHits() > hits, cache.toString());
+
+        HttpResponse<String> deleted = client.send(HttpRequest.newBuilder()
+                .uri(URI.create(BASE + "/movies/" + id))
+                .DELETE()
+                .build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(204, deleted.statusCode());
+        assertEquals(404, send(BASE + "/movies/" + id).statusCode(), "Удалённый фильм не отдаётся из кэша");
+    }
+
     @Test
     void getMoviesByYear_whenMoviesFound_returnsMovies() throws Exception {
         addMovie("Интерстеллар", 2014);
@@ -202,6 +251,726 @@ public class MoviesApiTest {
         assertEquals("[]", body, "Ожидается пустой массив при отсутствии фильмов");
     }
 
+    @Test
+    void getMoviesByYearRange_returnsMoviesWithinRange() throws Exception {
+        addMovie("Сталкер", 1979);
+        addMovie("Зеркало", 1974);
+        addMovie("Солярис", 1972);
+
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(URI.create(BASE + "/movies?yearFrom=1973&yearTo=1979"))
+                .GET()
+                .build();
+
+        HttpResponse<String> resp = client.send(req, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+
+        assertEquals(200, resp.statusCode(), "GET /movies?yearFrom=&yearTo= должен вернуть 200");
+        List<Movie> movies = gson.fromJson(resp.body(), ListOfMoviesTypeToken.TYPE);
+        assertFalse(movies.isEmpty(), "Ожидается список фильмов");
+        assertTrue(movies.stream().allMatch(m -> m.getYear() >= 1973 && m.getYear() <= 1979),
+                "Все фильмы должны попадать в диапазон лет");
+        assertTrue(movies.stream().anyMatch(m -> m.getTitle().equals("Сталкер")));
+        assertTrue(movies.stream().noneMatch(m -> m.getTitle().equals("Солярис")));
+    }
+
+    @Test
+    void getMoviesByYearRange_whenRangeInverted_returnsBadRequest() throws Exception {
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(URI.create(BASE + "/movies?yearFrom=2010&yearTo=2000"))
+                .GET()
+                .build();
+
+        HttpResponse<String> resp = client.send(req, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+
+        assertEquals(400, resp.statusCode(), "При yearFrom > yearTo должен возвращаться 400");
+    }
+
+    @Test
+    void searchMovies_matchesCaseInsensitivePrefixAndRanksExactFirst() throws Exception {
+        addMovie("Ёжик в тумане", 1975);
+        addMovie("Ежики и туманность", 1976);
+
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(URI.create(BASE + "/movies/search?q=" + URLEncoder.encode("ЕЖИК туман", StandardCharsets.UTF_8)))
+                .GET()
+                .build();
+
+        HttpResponse<String> resp = client.send(req, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+
+        assertEquals(200, resp.statusCode(), "GET /movies/search должен вернуть 200");
+        List<Movie> movies = gson.fromJson(resp.body(), ListOfMoviesTypeToken.TYPE);
+        assertEquals(2, movies.size(), "Ожидается совпадение по префиксу без учёта регистра и 'ё'");
+        assertEquals("Ёжик в тумане", movies.get(0).getTitle(), "Точное совпадение слова должно идти первым");
+    }
+
+    @Test
+    void searchMovies_withoutQuery_returnsBadRequest() throws Exception {
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(URI.create(BASE + "/movies/search"))
+                .GET()
+                .build();
+
+        HttpResponse<String> resp = client.send(req, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+
+        assertEquals(400, resp.statusCode(), "Без параметра q должен возвращаться 400");
+    }
+
+    @Test
+    void searchMovies_rejectsUnknownRepeatedAndOutOfRangeParams() throws Exception {
+        addMovie("Сталкер", 1979);
+
+        assertEquals(200, send(BASE + "/movies/search?q=%D1%81%D1%82%D0%B0%D0%BB%D0%BA%D0%B5%D1%80&limit=1")
+                .statusCode(), "q с %-кодированием");
+        assertEquals(400, send(BASE + "/movies/search?q=a&sort=year").statusCode(), "неизвестный параметр");
+        assertEquals(400, send(BASE + "/movies/search?q=a&q=b").statusCode(), "повторённый параметр");
+        assertEquals(400, send(BASE + "/movies/search?q=a&limit=").statusCode(), "limit без значения");
+        assertEquals(400, send(BASE + "/movies/search?q=a&limit=abc").statusCode(), "limit не число");
+        assertEquals(400, send(BASE + "/movies/search?q=a&limit=101").statusCode(), "limit больше максимума");
+    }
+
+    @Test
+    void getMovies_withLimitAndCursor_returnsPagesInIdOrder() throws Exception {
+        addMovie("Брат", 1997);
+        addMovie("Брат 2", 2000);
+        addMovie("Война", 2002);
+
+        List<Long> ids = new ArrayList<>();
+        String cursor = "";
+        do {
+            HttpRequest req = HttpRequest.newBuilder()
+                    .uri(URI.create(BASE + "/movies?limit=2&cursor=" + cursor))
+                    .GET()
+                    .build();
+
+            HttpResponse<String> resp = client.send(req, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            assertEquals(200, resp.statusCode(), "GET /movies?limit=&cursor= должен вернуть 200");
+
+            List<Movie> page = gson.fromJson(resp.body(), ListOfMoviesTypeToken.TYPE);
+            assertTrue(page.size() <= 2, "Страница не должна превышать limit");
+            page.forEach(m -> ids.add(m.getId()));
+            cursor = resp.headers().firstValue("X-Next-Cursor").orElse(null);
+        } while (cursor != null);
+
+        List<Long> sorted = new ArrayList<>(ids);
+        sorted.sort(null);
+        assertEquals(sorted, ids, "Страницы должны идти по возрастанию id");
+        assertEquals(ids.size(), ids.stream().distinct().count(), "Страницы не должны пересекаться");
+
+        HttpRequest all = HttpRequest.newBuilder().uri(URI.create(BASE + "/movies")).GET().build();
+        List<Movie> movies = gson.fromJson(client.send(all, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8)).body(),
+                ListOfMoviesTypeToken.TYPE);
+        assertEquals(movies.size(), ids.size(), "Постранично должны прийти все фильмы");
+    }
+
+    @Test
+    void getMovies_withInvalidLimit_returnsBadRequest() throws Exception {
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(URI.create(BASE + "/movies?limit=0"))
+                .GET()
+                .build();
+
+        HttpResponse<String> resp = client.send(req, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+
+        assertEquals(400, resp.statusCode(), "При limit=0 должен возвращаться 400");
+    }
+
+    @Test
+    void getMovies_withFiltersSortAndLimit_returnsTopMoviesFromStore() throws Exception {
+        addMovie("Проверка сортировки В", 1891);
+        addMovie("Проверка сортировки А", 1893);
+        addMovie("Проверка сортировки Б", 1892);
+        addMovie("Другое название", 1892);
+
+        String prefix = URLEncoder.encode("проверка сорт", StandardCharsets.UTF_8);
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(URI.create(BASE + "/movies?yearFrom=1890&yearTo=1895&titlePrefix=" + prefix
+                        + "&sort=year&order=desc&limit=2"))
+                .GET()
+                .build();
+
+        HttpResponse<String> resp = client.send(req, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+
+        assertEquals(200, resp.statusCode(), "GET /movies с фильтрами и сортировкой должен вернуть 200");
+        List<Movie> movies = gson.fromJson(resp.body(), ListOfMoviesTypeToken.TYPE);
+        assertEquals(List.of("Проверка сортировки А", "Проверка сортировки Б"),
+                movies.stream().map(Movie::getTitle).toList(), "Два самых поздних фильма с нужным началом названия");
+    }
+
+    @Test
+    void getMovies_withFields_returnsOnlyRequestedFields() throws Exception {
+        addMovie("Проекция полей", 1894);
+
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(URI.create(BASE + "/movies?year=1894&fields=title,year"))
+                .GET()
+                .build();
+
+        HttpResponse<String> resp = client.send(req, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+
+        assertEquals(200, resp.statusCode(), "GET /movies?fields= должен вернуть 200");
+        assertEquals("[{\"title\":\"Проекция полей\",\"year\":1894}]", resp.body(),
+                "В ответе только запрошенные поля");
+    }
+
+    @Test
+    void getMovies_withUnknownOrRepeatedParameter_returnsBadRequest() throws Exception {
+        for (String query : List.of("yaer=2000", "year=2000&year=2001", "sort=rating", "fields=id,rating",
+                "sort=title&cursor=5", "year=2000&yearFrom=1990")) {
+            HttpRequest req = HttpRequest.newBuilder()
+                    .uri(URI.create(BASE + "/movies?" + query))
+                    .GET()
+                    .build();
+
+            HttpResponse<String> resp = client.send(req, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+
+            assertEquals(400, resp.statusCode(), "Для ?" + query + " должен возвращаться 400");
+        }
+    }
+
+    @Test
+    void getMoviesStats_countsPerYearAndDecade() throws Exception {
+        addMovie("Прибытие поезда", 1896);
+        addMovie("Политый поливальщик", 1896);
+
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(URI.create(BASE + "/movies/stats"))
+                .GET()
+                .build();
+
+        HttpResponse<String> resp = client.send(req, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+
+        assertEquals(200, resp.statusCode(), "GET /movies/stats должен вернуть 200");
+        JsonObject stats = gson.fromJson(resp.body(), JsonObject.class);
+        assertEquals(2, stats.getAsJsonObject("byYear").get("1896").getAsLong(), "Два фильма 1896 года");
+        assertTrue(stats.getAsJsonObject("byDecade").get("1890").getAsLong() >= 2, "Десятилетие 1890-х");
+        assertTrue(stats.get("total").getAsLong() >= 2, "Всего не меньше добавленных");
+        assertTrue(resp.headers().firstValue("ETag").isPresent(), "Сводка отдаётся с ETag");
+    }
+
+    @Test
+    void getMoviesChanges_longPollsForNewEventsAndAsksToResyncWhenBehind() throws Exception {
+        HttpResponse<String> first = getChanges("");
+        assertEquals(200, first.statusCode(), "GET /movies/changes должен вернуть 200");
+        long head = Long.parseLong(first.headers().firstValue("X-Changes-Head").orElseThrow());
+
+        CompletableFuture<HttpResponse<String>> pending = client.sendAsync(HttpRequest.newBuilder()
+                        .uri(URI.create(BASE + "/movies/changes?since=" + head + "&wait=10000"))
+                        .GET()
+                        .build(),
+                HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        addMovie("Лента изменений", 1897);
+
+        HttpResponse<String> polled = pending.get(10, TimeUnit.SECONDS);
+        assertEquals(200, polled.statusCode());
+        JsonObject page = gson.fromJson(polled.body(), JsonObject.class);
+        JsonObject added = page.getAsJsonArray("changes").get(0).getAsJsonObject();
+        assertEquals(head + 1, added.get("seq").getAsLong(), "Ожидание вернулось с новым событием");
+        assertEquals("add", added.get("type").getAsString());
+        assertEquals("Лента изменений", added.getAsJsonObject("movie").get("title").getAsString());
+        long id = added.getAsJsonObject("movie").get("id").getAsLong();
+
+        client.send(HttpRequest.newBuilder().uri(URI.create(BASE + "/movies/" + id)).DELETE().build(),
+                HttpResponse.BodyHandlers.discarding());
+        JsonObject next = gson.fromJson(getChanges("?since=" + page.get("next").getAsLong()).body(), JsonObject.class);
+        JsonObject deleted = next.getAsJsonArray("changes").get(0).getAsJsonObject();
+        assertEquals("delete", deleted.get("type").getAsString());
+        assertEquals(id, deleted.get("id").getAsLong());
+
+        HttpResponse<String> behind = getChanges("?since=" + (head + 1_000_000));
+        assertEquals(410, behind.statusCode(), "Номер вне ленты — нужна полная синхронизация");
+        assertTrue(behind.headers().firstValue("X-Changes-Head").isPresent());
+    }
+
+    private HttpResponse<String> getChanges(String query) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(BASE + "/movies/changes" + query))
+                .GET()
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void getMoviesByIds_andDeleteBatch_reportMissingIds() throws Exception {
+        addMovie("Список просмотра 1", 1899);
+        addMovie("Список просмотра 2", 1899);
+        JsonObject[] listed = gson.fromJson(send(BASE + "/movies?year=1899&fields=id").body(), JsonObject[].class);
+        assertEquals(2, listed.length, "Два фильма 1899 года");
+        long[] ids = {listed[0].get("id").getAsLong(), listed[1].get("id").getAsLong()};
+
+        HttpResponse<String> found = send(BASE + "/movies?ids=" + ids[1] + ",999999," + ids[0] + "," + ids[1]);
+        assertEquals(200, found.statusCode());
+        JsonObject lookup = gson.fromJson(found.body(), JsonObject.class);
+        assertEquals(2, lookup.getAsJsonArray("movies").size(), "Повтор id возвращается один раз");
+        assertEquals("Список просмотра 2",
+                lookup.getAsJsonArray("movies").get(0).getAsJsonObject().get("title").getAsString(), "Порядок как в ids");
+        assertEquals(999999, lookup.getAsJsonArray("missing").get(0).getAsLong());
+        assertEquals(400, send(BASE + "/movies?ids=1,abc").statusCode());
+        assertEquals(400, send(BASE + "/movies?ids=1&year=1899").statusCode());
+
+        HttpRequest delete = HttpRequest.newBuilder()
+                .uri(URI.create(BASE + "/movies/delete-batch"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"ids\":[" + ids[0] + ",999999]}"))
+                .build();
+        HttpResponse<String> deleted = client.send(delete, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        assertEquals(200, deleted.statusCode());
+        JsonObject result = gson.fromJson(deleted.body(), JsonObject.class);
+        assertEquals(ids[0], result.getAsJsonArray("deleted").get(0).getAsLong());
+        assertEquals(999999, result.getAsJsonArray("missing").get(0).getAsLong());
+        assertEquals(404, send(BASE + "/movies/" + ids[0]).statusCode());
+    }
+
+    @Test
+    void postMovies_retriedWithIdempotencyKey_createsOneMovie() throws Exception {
+        String body = "{\"title\":\"Повторённый запрос\",\"year\":1999}";
+        List<HttpResponse<String>> responses = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(BASE + "/movies"))
+                    .header("Content-Type", "application/json")
+                    .header("Idempotency-Key", "retry-test-1")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+            responses.add(client.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8)));
+        }
+
+        assertEquals(201, responses.get(0).statusCode(), "Первый POST создаёт фильм");
+        assertTrue(responses.get(0).headers().firstValue("Idempotent-Replayed").isEmpty());
+        for (HttpResponse<String> retry : responses.subList(1, 3)) {
+            assertEquals(201, retry.statusCode(), "Повтор получает тот же ответ");
+            assertEquals(responses.get(0).body(), retry.body(), "Повтор не создаёт новый фильм");
+            assertEquals("true", retry.headers().firstValue("Idempotent-Replayed").orElse(null));
+        }
+
+        HttpRequest other = HttpRequest.newBuilder()
+                .uri(URI.create(BASE + "/movies"))
+                .header("Content-Type", "application/json")
+                .header("Idempotency-Key", "retry-test-1")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"title\":\"Другой\",\"year\":2000}"))
+                .build();
+        assertEquals(422, client.send(other, HttpResponse.BodyHandlers.ofString()).statusCode(),
+                "Тот же ключ с другим телом — 422");
+    }
+
+    @Test
+    void requestsOverClientRate_getTooManyRequestsWithRetryAfter() throws Exception {
+        ServerConfig config = smallConfig()
+                .rateLimitPerSecond(1)
+                .rateLimitBurst(2)
+                .apiKeys(Set.of("limit-test"))
+                .build();
+        MoviesServer limited = new MoviesServer(new MoviesStore(), config);
+        limited.start();
+        try {
+            List<Integer> statuses = new ArrayList<>();
+            HttpResponse<String> last = null;
+            for (int i = 0; i < 3; i++) {
+                last = sendWithApiKey(limited, "limit-test");
+                statuses.add(last.statusCode());
+            }
+
+            assertEquals(List.of(200, 200, 429), statuses, "Третий запрос сверх запаса в 2 отклоняется");
+            assertEquals("1", last.headers().firstValue("Retry-After").orElse(null));
+            assertTrue(gson.fromJson(last.body(), JsonObject.class).has("error"), "Тело 429 — ошибка в JSON");
+
+            // неизвестный ключ не даёт своей корзины: новый ключ на каждый запрос — всё та же корзина адреса
+            statuses.clear();
+            for (int i = 0; i < 3; i++) {
+                statuses.add(sendWithApiKey(limited, "random-" + i).statusCode());
+            }
+            assertEquals(List.of(200, 200, 429), statuses, "Ключи не из настроек ограничиваются по адресу");
+            assertTrue(limited.getMetrics().toPrometheus().contains("moviehub_http_rate_limited_total 2"));
+        } finally {
+            limited.stop();
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @EnumSource(ServerConfig.ExecutorMode.class)
+    void everyExecutorMode_servesReadsAndWrites(ServerConfig.ExecutorMode mode) throws Exception {
+        MoviesServer server = new MoviesServer(new MoviesStore(), smallConfig().executorMode(mode).backlog(8).build());
+        server.start();
+        try {
+            String base = "http://localhost:" + server.getPort();
+            HttpRequest post = HttpRequest.newBuilder()
+                    .uri(URI.create(base + "/movies"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"title\":\"Прибытие поезда\",\"year\":1896}"))
+                    .build();
+            assertEquals(201, client.send(post, HttpResponse.BodyHandlers.ofString()).statusCode());
+            assertEquals(200, send(base + "/movies/1").statusCode());
+            assertEquals(200, send(base + "/ready").statusCode());
+        } finally {
+            server.stop();
+        }
+    }
+
+    // Пул из одного потока занят медленным POST, единственное место в очереди — другим соединением:
+    // следующий запрос сразу получает 503, а не выполняется в потоке-диспетчере HttpServer.
+    @Test
+    void pool_whenPoolAndQueueAreFull_respondsServiceUnavailable() throws Exception {
+        MoviesServer server = new MoviesServer(new MoviesStore(), smallConfig().poolSize(1).queueCapacity(1).build());
+        server.start();
+        String base = "http://localhost:" + server.getPort();
+        try (Socket busy = new Socket("localhost", server.getPort());
+             Socket queued = new Socket("localhost", server.getPort())) {
+            busy.getOutputStream().write(("POST /movies HTTP/1.1\r\nHost: localhost\r\n"
+                    + "Content-Type: application/json\r\nContent-Length: 100\r\n\r\n{").getBytes(StandardCharsets.US_ASCII));
+            awaitTrue(() -> server.getMetrics().toPrometheus().contains("moviehub_http_in_flight 1"));
+            queued.getOutputStream().write("GET /movies/1 HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    .getBytes(StandardCharsets.US_ASCII));
+            awaitTrue(() -> server.getMetrics().toPrometheus().contains("moviehub_http_queued 1"));
+
+            HttpResponse<String> shed = send(base + "/movies/1");
+            assertEquals(503, shed.statusCode());
+            assertEquals("1", shed.headers().firstValue("Retry-After").orElse(null));
+            assertTrue(server.getMetrics().toPrometheus().contains("moviehub_http_shed_total 1"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    // Клиент присылает тело POST по частям: запрос остаётся выполняющимся, пока идёт остановка сервера.
+    @Test
+    void stop_flipsReadinessThenRefusesNewRequestsAndFinishesInFlightPost() throws Exception {
+        ServerConfig config = smallConfig()
+                .readinessDelay(Duration.ofMillis(200))
+                .drainTimeout(Duration.ofSeconds(10))
+                .build();
+        MoviesStore store = new MoviesStore();
+        MoviesServer draining = new MoviesServer(store, config);
+        draining.start();
+        String base = "http://localhost:" + draining.getPort();
+        Thread stopper = new Thread(draining::stop);
+        try (Socket slow = new Socket("localhost", draining.getPort())) {
+            assertEquals(200, send(base + "/ready").statusCode(), "До остановки узел готов");
+            byte[] body = "{\"title\":\"Медленный клиент\",\"year\":1898}".getBytes(StandardCharsets.UTF_8);
+            OutputStream out = slow.getOutputStream();
+            out.write(("POST /movies HTTP/1.1\r\nHost: localhost\r\nContent-Type: application/json\r\n"
+                    + "Content-Length: " + body.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(body, 0, 10);
+            out.flush();
+            awaitTrue(() -> draining.getMetrics().toPrometheus().contains("moviehub_http_in_flight 1"));
+
+            stopper.start();
+            awaitTrue(() -> send(base + "/ready").statusCode() == 503);
+            awaitTrue(() -> send(base + "/movies").statusCode() == 503);
+            assertTrue(stopper.isAlive(), "Остановка ждёт выполняющийся запрос");
+
+            out.write(body, 10, body.length - 10);
+            out.flush();
+            BufferedReader in = new BufferedReader(new InputStreamReader(slow.getInputStream(), StandardCharsets.UTF_8));
+            assertEquals("HTTP/1.1 201 Created", in.readLine(), "Начатый POST завершается");
+            stopper.join(10_000);
+            assertFalse(stopper.isAlive());
+            assertEquals(1, store.size());
+        } finally {
+            if (stopper.getState() == Thread.State.NEW) {
+                draining.stop();
+            }
+        }
+    }
+
+    // Ведущий и ведомый на localhost: фильмы до старта ведомого приходят снимком, после — лентой изменений.
+    @Test
+    void replica_catchesUpFromSnapshotThenFollowsLeaderAndRedirectsWrites() throws Exception {
+        MoviesStore leaderStore = new MoviesStore();
+        MoviesServer leader = new MoviesServer(leaderStore, ServerConfig.defaults(0));
+        leader.start();
+        String leaderBase = "http://localhost:" + leader.getPort();
+        MoviesServer replica = null;
+        try {
+            Movie first = leaderStore.add(new Movie(0, "До ведомого", 1890));
+            leaderStore.add(new Movie(0, "Тоже до ведомого", 1890));
+
+            replica = new MoviesServer(new MoviesStore(), smallConfig().leader(URI.create(leaderBase)).build());
+            replica.start();
+            String replicaBase = "http://localhost:" + replica.getPort();
+            awaitTrue(() -> send(replicaBase + "/ready").statusCode() == 200);
+            assertEquals(2, gson.fromJson(send(replicaBase + "/movies?year=1890").body(), Movie[].class).length,
+                    "Фильмы из снимка");
+
+            HttpResponse<String> created = client.send(HttpRequest.newBuilder()
+                    .uri(URI.create(leaderBase + "/movies"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"title\":\"После ведомого\",\"year\":1890}"))
+                    .build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            long createdId = gson.fromJson(created.body(), Movie.class).getId();
+            leaderStore.delete(first.getId());
+            awaitTrue(() -> send(replicaBase + "/movies/" + createdId).statusCode() == 200
+                    && send(replicaBase + "/movies/" + first.getId()).statusCode() == 404);
+
+            HttpResponse<String> write = client.send(HttpRequest.newBuilder()
+                    .uri(URI.create(replicaBase + "/movies"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"title\":\"На ведомый\",\"year\":1890}"))
+                    .build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            assertEquals(307, write.statusCode(), "Запись на ведомом узле перенаправляется");
+            assertEquals(leaderBase + "/movies", write.headers().firstValue("Location").orElse(null));
+            assertEquals(2, leaderStore.size(), "Сам ведомый узел ничего не записал");
+
+            String metrics = replica.getMetrics().toPrometheus();
+            assertTrue(metrics.contains("moviehub_replication_lag_events 0"), metrics);
+            assertTrue(metrics.contains("moviehub_replication_applied_seq 4"), "Два add до снимка, add и delete после");
+        } finally {
+            if (replica != null) {
+                replica.stop();
+            }
+            leader.stop();
+        }
+    }
+
+    // Запросы одной записью, без ожидания ответов: NIO-транспорт выполняет их по очереди в одном соединении.
+    @Test
+    void nioTransport_answersPipelinedRequestsInOrderAndStreamsLargeResponses() throws Exception {
+        MoviesStore store = new MoviesStore();
+        for (int i = 0; i < 3000; i++) {
+            store.add(new Movie(0, "Фильм для NIO " + i, 1892));
+        }
+        MoviesServer nio = new MoviesServer(store, smallConfig().transport(ServerConfig.Transport.NIO).build());
+        nio.start();
+        try (Socket socket = new Socket("localhost", nio.getPort())) {
+            String body = "{\"title\":\"По частям\",\"year\":1891}";
+            int split = 7;
+            byte[] head = body.substring(0, split).getBytes(StandardCharsets.UTF_8);
+            byte[] tail = body.substring(split).getBytes(StandardCharsets.UTF_8);
+            OutputStream out = socket.getOutputStream();
+            out.write(("POST /movies HTTP/1.1\r\nHost: localhost\r\nContent-Type: application/json\r\n"
+                    + "Transfer-Encoding: chunked\r\n\r\n"
+                    + Integer.toHexString(head.length) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(head);
+            out.write(("\r\n" + Integer.toHexString(tail.length) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(tail);
+            out.write(("\r\n0\r\n\r\n"
+                    + "GET /movies?year=1891 HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /nowhere HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "PUT /movies HTTP/1.1\r\nHost: localhost\r\nContent-Length: 0\r\n\r\n"
+                    + "GET /ready HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            socket.setSoTimeout(5000);
+            String responses = new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            List<String> statuses = new ArrayList<>();
+            Matcher matcher = Pattern.compile("HTTP/1\\.1 (\\d{3})").matcher(responses);
+            while (matcher.find()) {
+                statuses.add(matcher.group(1));
+            }
+            assertEquals(List.of("201", "200", "404", "405", "200"), statuses, responses);
+            assertTrue(responses.contains("[{\"id\":3001,\"title\":\"По частям\",\"year\":1891}]"),
+                    "GET после POST в той же пачке видит созданный фильм: " + responses);
+
+            HttpResponse<byte[]> all = client.send(HttpRequest.newBuilder()
+                    .uri(URI.create("http://localhost:" + nio.getPort() + "/movies?year=1892"))
+                    .header("Accept-Encoding", "gzip")
+                    .GET()
+                    .build(), HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals(200, all.statusCode());
+            assertEquals("gzip", all.headers().firstValue("Content-Encoding").orElse(null));
+            byte[] json = new GZIPInputStream(new ByteArrayInputStream(all.body())).readAllBytes();
+            assertTrue(json.length > NioHttpServer.BUFFER_SIZE, "Ответ длиннее одного буфера пула");
+            assertEquals(3000, gson.fromJson(new String(json, StandardCharsets.UTF_8), Movie[].class).length);
+        } finally {
+            nio.stop();
+        }
+    }
+
+    // Значение заголовка не попадает в ответ: ни подставить JSON, ни раздуть ответ длинным заголовком нельзя.
+    @Test
+    void nioTransport_rejectsUnsupportedTransferEncodingWithoutEchoingIt() throws Exception {
+        MoviesServer nio = new MoviesServer(new MoviesStore(), smallConfig().transport(ServerConfig.Transport.NIO).build());
+        nio.start();
+        try (Socket socket = new Socket("localhost", nio.getPort())) {
+            String encoding = "gzip\",\"injected\":\"" + "x".repeat(NioConnection.MAX_HEAD_BYTES - 200);
+            socket.getOutputStream().write(("POST /movies HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: "
+                    + encoding + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            socket.getOutputStream().flush();
+
+            socket.setSoTimeout(5000);
+            String response = new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            assertTrue(response.startsWith("HTTP/1.1 501 "), response);
+            String body = response.substring(response.indexOf("\r\n\r\n") + 4);
+            ErrorResponse error = gson.fromJson(body, ErrorResponse.class);
+            assertEquals("Поддерживается только Transfer-Encoding: chunked", error.getError());
+            assertFalse(body.contains("injected"), body);
+        } finally {
+            nio.stop();
+        }
+    }
+
+    // Отдельный сервер на свободном порту: маленькие пул, очередь и кэши, остановка без задержек.
+    private static ServerConfig.Builder smallConfig() {
+        return ServerConfig.builder()
+                .port(0)
+                .executorMode(ServerConfig.ExecutorMode.POOL)
+                .poolSize(4)
+                .queueCapacity(16)
+                .cacheEntries(16)
+                .cacheBytes(1 << 20)
+                .idempotencyEntries(16)
+                .idempotencyBytes(1 << 20)
+                .maxExpensiveInFlight(4)
+                .changeFeedCapacity(16)
+                .maxChangeWaiters(1)
+                .readinessDelay(Duration.ZERO)
+                .drainTimeout(Duration.ofSeconds(1));
+    }
+
+    private static HttpResponse<String> sendWithApiKey(MoviesServer server, String apiKey) throws Exception {
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + server.getPort() + "/movies?year=2000"))
+                .header("X-Api-Key", apiKey)
+                .GET()
+                .build();
+        return client.send(req, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+    }
+
+    private static HttpResponse<String> send(String uri) throws Exception {
+        return client.send(HttpRequest.newBuilder().uri(URI.create(uri)).GET().build(),
+                HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+    }
+
+    private static void awaitTrue(Callable<Boolean> condition) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.call()) {
+            assertTrue(System.nanoTime() < deadline, "Условие не выполнилось за 5 с");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void postMoviesBatch_withNdjson_savesValidAndReportsInvalidItems() throws Exception {
+        String ndjson = "{\"title\":\"Сталкер\",\"year\":1979}\n"
+                + "{\"title\":\"\",\"year\":1979}\n"
+                + "{\"title\":\"Ностальгия\",\"year\":1983}\n";
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(BASE + "/movies/batch"))
+                .header("Content-Type", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofString(ndjson))
+                .build();
+
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        assertEquals(200, response.statusCode(), "POST /movies/batch должен вернуть 200");
+
+        BatchResult result = gson.fromJson(response.body(), BatchResult.class);
+        assertEquals(2, result.getCreated(), "Должны сохраниться два корректных фильма");
+        assertEquals(1, result.getFailed(), "Один фильм должен не пройти валидацию");
+        assertEquals(1, result.getErrors().get(0).getIndex(), "Ошибка должна указывать на второй элемент");
+
+        HttpRequest search = HttpRequest.newBuilder()
+                .uri(URI.create(BASE + "/movies/search?q=" + URLEncoder.encode("ностальгия", StandardCharsets.UTF_8)))
+                .GET()
+                .build();
+        List<Movie> found = gson.fromJson(client.send(search, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8)).body(),
+                ListOfMoviesTypeToken.TYPE);
+        assertEquals(1, found.size(), "Фильм из пакета должен находиться поиском");
+    }
+
+    @Test
+    void postMoviesBatch_withBrokenJsonArray_returnsUnprocessableEntity() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(BASE + "/movies/batch"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("[{\"title\":\"Зеркало\",\"year\":1975}, {\"title\":"))
+                .build();
+
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        assertEquals(422, response.statusCode(), "Оборванный JSON должен возвращать 422");
+
+        BatchResult result = gson.fromJson(response.body(), BatchResult.class);
+        assertEquals(1, result.getCreated(), "Элементы до обрыва должны сохраниться");
+        assertEquals(1, result.getFailed());
+    }
+
+    @Test
+    void getMoviesByYear_withMatchingEtag_returnsNotModifiedUntilYearChanges() throws Exception {
+        addMovie("Андрей Рублёв", 1966);
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(URI.create(BASE + "/movies?year=1966"))
+                .GET()
+                .build();
+
+        HttpResponse<String> first = client.send(req, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        assertEquals(200, first.statusCode());
+        String etag = first.headers().firstValue("ETag").orElse(null);
+        assertNotNull(etag, "Ответ должен содержать ETag");
+
+        HttpRequest conditional = HttpRequest.newBuilder()
+                .uri(URI.create(BASE + "/movies?year=1966"))
+                .header("If-None-Match", etag)
+                .GET()
+                .build();
+        HttpResponse<String> notModified = client.send(conditional, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        assertEquals(304, notModified.statusCode(), "При совпадении ETag должен возвращаться 304");
+
+        addMovie("Иваново детство", 1962);
+        assertEquals(304, client.send(conditional, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8)).statusCode(),
+                "Фильм другого года не должен менять ответ");
+
+        addMovie("Сказка о царе Салтане", 1966);
+        HttpResponse<String> changed = client.send(conditional, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        assertEquals(200, changed.statusCode(), "После изменения года ответ должен прийти заново");
+        assertNotEquals(etag, changed.headers().firstValue("ETag").orElse(null));
+        assertTrue(changed.body().contains("Салтане"));
+    }
+
+    @Test
+    void getMovies_withAcceptEncodingGzip_returnsCompressedBody() throws Exception {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            ndjson.append("{\"title\":\"Сериал, серия ").append(i).append("\",\"year\":2003}\n");
+        }
+        client.send(HttpRequest.newBuilder()
+                .uri(URI.create(BASE + "/movies/batch"))
+                .header("Content-Type", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofString(ndjson.toString()))
+                .build(), HttpResponse.BodyHandlers.discarding());
+
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(URI.create(BASE + "/movies?year=2003"))
+                .header("Accept-Encoding", "gzip")
+                .GET()
+                .build();
+        HttpResponse<byte[]> resp = client.send(req, HttpResponse.BodyHandlers.ofByteArray());
+
+        assertEquals(200, resp.statusCode());
+        assertEquals("gzip", resp.headers().firstValue("Content-Encoding").orElse(""),
+                "Большой ответ должен сжиматься gzip");
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(resp.body()))) {
+            List<Movie> movies = gson.fromJson(new String(in.readAllBytes(), StandardCharsets.UTF_8),
+                    ListOfMoviesTypeToken.TYPE);
+            assertTrue(movies.size() >= 50, "После распаковки должен получиться список фильмов");
+        }
+
+        HttpRequest notFound = HttpRequest.newBuilder()
+                .uri(URI.create(BASE + "/movies/9999"))
+                .header("Accept-Encoding", "gzip")
+                .GET()
+                .build();
+        HttpResponse<String> small = client.send(notFound, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        assertTrue(small.headers().firstValue("Content-Encoding").isEmpty(), "Короткие ответы не сжимаются");
+    }
+
+    @Test
+    void getMetrics_returnsPrometheusTextWithRouteLatencies() throws Exception {
+        client.send(HttpRequest.newBuilder().uri(URI.create(BASE + "/movies/9999")).GET().build(),
+                HttpResponse.BodyHandlers.discarding());
+
+        HttpRequest req = HttpRequest.newBuilder()
+                .uri(URI.create(BASE + "/metrics"))
+                .GET()
+                .build();
+        HttpResponse<String> resp = client.send(req, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+
+        assertEquals(200, resp.statusCode(), "GET /metrics должен вернуть 200");
+        assertTrue(resp.headers().firstValue("Content-Type").orElse("").startsWith("text/plain"));
+        assertTrue(resp.body().contains(
+                        "moviehub_http_request_duration_seconds_count{route=\"/movies/{id}\",method=\"GET\",status=\"404\"}"),
+                "Должна быть задержка маршрута /movies/{id} со статусом 404");
+        assertTrue(resp.body().contains("moviehub_store_operation_duration_seconds_count{operation=\"find_by_id\"}"));
+        assertTrue(resp.body().contains("moviehub_store_movies "));
+    }
+
     @Test
     void getMovies_successResponse_containsContentTypeHeader() throws Exception {
         HttpRequest req = HttpRequest.newBuilder()
@@ -244,4 +1013,20 @@ public class MoviesApiTest {
         assertEquals(405, resp.statusCode(), "TRACE метод должен возвращать 405 Method Not Allowed");
     }
 
+    @Test
+    void router_matchesLiteralRoutesBeforeIdAndRejectsUnknownPathsAndMethods() throws Exception {
+        assertEquals(400, send(BASE + "/movies/search").statusCode(), "/movies/search без q, а не фильм с id");
+        assertEquals(400, send(BASE + "/movies/abc").statusCode());
+        assertEquals(400, send(BASE + "/movies/99999999999999999999").statusCode(), "id больше long");
+        assertEquals(404, send(BASE + "/movies/1/extra").statusCode());
+        assertEquals(404, send(BASE + "/moviesx").statusCode());
+        assertEquals(404, send(BASE + "/unknown").statusCode());
+
+        HttpResponse<String> resp = client.send(HttpRequest.newBuilder()
+                .uri(URI.create(BASE + "/movies/stats"))
+                .DELETE()
+                .build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        assertEquals(405, resp.statusCode(), "путь есть, а DELETE на нём нет");
+    }
+
 }
\ No newline at end of file
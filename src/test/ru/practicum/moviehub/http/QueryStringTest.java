@@ -0,0 +1,55 @@
+package ru.practicum.moviehub.http;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QueryStringTest {
+    private static final String[] ALLOWED = {"year", "limit", "cursor", "titlePrefix"};
+
+    @Test
+    void numbersAreParsedInPlace_andEncodedValuesDecodedOnDemand() {
+        QueryString params = QueryString.parse("year=1999&cursor=-9223372036854775808&titlePrefix=%D0%90+%D0%91&limit=",
+                ALLOWED);
+
+        assertEquals(1999, params.requireInt("year"));
+        assertEquals(Long.MIN_VALUE, params.getLong("cursor", 0));
+        assertEquals("А Б", params.get("titlePrefix"));
+        assertEquals(100, params.getInt("limit", 100), "пустое значение — как отсутствие параметра");
+        assertThrows(IllegalArgumentException.class, () -> params.requireInt("limit"));
+        assertFalse(params.hasOnly("year", "cursor", "titlePrefix"));
+        assertTrue(params.hasOnly("year", "cursor", "titlePrefix", "limit"));
+
+        assertEquals(7, QueryString.parse("%79ear=%37", ALLOWED).requireInt("year"), "%-кодированные имя и число");
+        assertNull(QueryString.parse(null, ALLOWED).get("year"));
+    }
+
+    @Test
+    void unknownRepeatedOrMalformedParameters_areRejected() {
+        assertThrows(IllegalArgumentException.class, () -> QueryString.parse("yaer=2000", ALLOWED));
+        assertThrows(IllegalArgumentException.class, () -> QueryString.parse("year=1&year=2", ALLOWED));
+        assertThrows(IllegalArgumentException.class, () -> QueryString.parse("year=1&%79ear=2", ALLOWED));
+        for (String value : new String[]{"12a", "-", "+5", "2147483648", "9223372036854775808"}) {
+            QueryString params = QueryString.parse("year=" + value + "&cursor=" + value, ALLOWED);
+            assertThrows(IllegalArgumentException.class, () -> params.getInt("year", 0), value);
+            if (!value.equals("2147483648")) {
+                assertThrows(IllegalArgumentException.class, () -> params.getLong("cursor", 0), value);
+            }
+        }
+    }
+
+    // Допуск тяжёлых GET /movies смотрит на имена параметров: подстрока в значении его не обманет.
+    @Test
+    void unboundedList_isDecidedByParameterNames() {
+        assertTrue(MoviesHandler.isUnboundedList((String) null));
+        assertTrue(MoviesHandler.isUnboundedList("year=2000"));
+        assertTrue(MoviesHandler.isUnboundedList("titlePrefix=limit="));
+        assertTrue(MoviesHandler.isUnboundedList("sort=title&titlePrefix=xids="));
+        assertTrue(MoviesHandler.isUnboundedList("titlePrefix=cursor%3D5"));
+
+        assertFalse(MoviesHandler.isUnboundedList("limit=10"));
+        assertFalse(MoviesHandler.isUnboundedList("year=2000&cursor=5"));
+        assertFalse(MoviesHandler.isUnboundedList("ids=1,2"));
+        assertFalse(MoviesHandler.isUnboundedList("year=1&year=2"), "на неразборчивый запрос ответит 400");
+    }
+}
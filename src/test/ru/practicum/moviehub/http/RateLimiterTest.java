@@ -0,0 +1,60 @@
+package ru.practicum.moviehub.http;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RateLimiterTest {
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void burstThenSteadyRate_perClient() {
+        RateLimiter limiter = new RateLimiter(10, 5, 100);
+        long now = 1_000 * SECOND;
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.tryAcquire("а", now), "запрос " + i + " в пределах запаса");
+        }
+        long wait = limiter.tryAcquire("а", now);
+        assertTrue(wait > 0 && wait <= SECOND / 10, "ждать не больше одного интервала: " + wait);
+        assertEquals(0, limiter.tryAcquire("б", now), "у другого клиента своя корзина");
+
+        assertEquals(0, limiter.tryAcquire("а", now + wait));
+        assertTrue(limiter.tryAcquire("а", now + wait) > 0);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.tryAcquire("а", now + 10 * SECOND), "через секунду запас снова полный");
+        }
+    }
+
+    @Test
+    void clientsOverLimit_shareOneBucket_untilIdleOnesExpire() {
+        RateLimiter limiter = new RateLimiter(1, 1, 2);
+        long now = 1_000 * SECOND;
+        assertEquals(0, limiter.tryAcquire("а", now));
+        assertEquals(0, limiter.tryAcquire("б", now));
+        assertEquals(0, limiter.tryAcquire("в", now));
+        assertTrue(limiter.tryAcquire("г", now) > 0, "новые клиенты сверх предела делят одну корзину");
+        assertTrue(limiter.clients() <= 3);
+
+        assertEquals(0, limiter.tryAcquire("д", now + 10 * SECOND));
+        assertEquals(1, limiter.clients(), "наполнившиеся корзины удалены");
+    }
+
+    // При заполненной таблице новые клиенты не обходят её на каждом запросе, а сразу идут в общую корзину.
+    @Test
+    void fullTable_sweepsAtMostOncePerPause() {
+        RateLimiter limiter = new RateLimiter(1, 1, 2);
+        long now = 1_000 * SECOND;
+        assertEquals(0, limiter.tryAcquire("а", now));
+        assertEquals(0, limiter.tryAcquire("б", now));
+        assertEquals(0, limiter.tryAcquire("в", now + 950 * SECOND / 1000));
+        assertEquals(3, limiter.clients(), "обход при заполнении ничего не удалил: корзины ещё не полны");
+
+        // корзины «а» и «б» уже полны, но обход был только что — новый клиент попадает в общую корзину
+        assertTrue(limiter.tryAcquire("г", now + SECOND + SECOND / 1000) > 0);
+        assertEquals(3, limiter.clients());
+
+        assertEquals(0, limiter.tryAcquire("д", now + 2 * SECOND));
+        assertEquals(1, limiter.clients(), "после паузы обход снова удаляет наполнившиеся корзины");
+    }
+}
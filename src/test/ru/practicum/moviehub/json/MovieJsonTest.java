@@ -0,0 +1,175 @@
+package ru.practicum.moviehub.json;
+
+import com.google.gson.JsonSyntaxException;
+import org.junit.jupiter.api.Test;
+import ru.practicum.moviehub.JsonUtil;
+import ru.practicum.moviehub.api.ErrorResponse;
+import ru.practicum.moviehub.model.Movie;
+import ru.practicum.moviehub.store.MovieStats;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MovieJsonTest {
+
+    private static final String[] TITLES = {
+            "Солярис",
+            "\"Кавычки\" и \\обратный слэш/",
+            "Tab\tNew\nLine\rFeed\fBack\bspace",
+            "\u0000\u0001\u001f\u007f",
+            "<script>alert('x&y=z')</script>",
+            "Разделители \u2028 и \u2029",
+            "Эмодзи \uD83C\uDFAC и 中文",
+            "Одиночный \uD83C суррогат \uDC00",
+            "",
+    };
+
+    @Test
+    void writeMovie_matchesGsonByteForByte() {
+        for (String title : TITLES) {
+            assertSameAsGson(new Movie(42, title, 1972));
+        }
+        assertSameAsGson(new Movie(Long.MAX_VALUE, null, Integer.MIN_VALUE));
+        assertSameAsGson(new Movie(Long.MIN_VALUE, "x", -1));
+    }
+
+    @Test
+    void writeMovies_matchesGson() {
+        List<Movie> movies = new ArrayList<>();
+        for (int i = 0; i < TITLES.length; i++) {
+            movies.add(new Movie(i, TITLES[i], 1900 + i));
+        }
+        movies.add(null);
+
+        JsonBuffer out = JsonBuffer.acquire();
+        MovieJson.writeMovies(out, movies);
+        assertArrayEquals(gsonBytes(movies), out.toByteArray());
+
+        out = JsonBuffer.acquire();
+        MovieJson.writeMovies(out, List.of());
+        assertEquals("[]", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void streamMovies_matchesGsonAcrossChunks() throws Exception {
+        List<Movie> movies = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            movies.add(new Movie(i, TITLES[i % TITLES.length], 2000));
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        MovieJson.streamMovies(movies, body);
+        assertArrayEquals(gsonBytes(movies), body.toByteArray());
+    }
+
+    @Test
+    void writeError_matchesGson() {
+        for (ErrorResponse error : new ErrorResponse[]{
+                new ErrorResponse("Фильм не найден"),
+                new ErrorResponse("Ошибка валидации", List.of("название <пустое>", "год = 0")),
+                new ErrorResponse("Ошибка", Arrays.asList("a", null)),
+                new ErrorResponse(null, null),
+                new ErrorResponse("Без деталей", null)}) {
+            JsonBuffer out = JsonBuffer.acquire();
+            MovieJson.writeError(out, error);
+            assertArrayEquals(gsonBytes(error), out.toByteArray());
+        }
+    }
+
+    @Test
+    void writeStats_matchesGson() {
+        TreeMap<Integer, Long> byYear = new TreeMap<>(Map.of(1979, 3L, 1972, 1L, 2001, 12L, -5, 2L));
+        for (MovieStats stats : List.of(new MovieStats(byYear), new MovieStats(new TreeMap<>()))) {
+            JsonBuffer out = JsonBuffer.acquire();
+            MovieJson.writeStats(out, stats);
+            assertArrayEquals(gsonBytes(stats), out.toByteArray());
+        }
+    }
+
+    @Test
+    void writeLookup_matchesGsonCodec() {
+        List<Movie> movies = List.of(new Movie(1, "Сталкер", 1979), new Movie(2, null, 1972));
+        for (Set<MovieField> fields : List.of(MovieField.ALL, EnumSet.of(MovieField.TITLE))) {
+            for (long[] missing : new long[][]{{}, {5, 3}}) {
+                JsonBuffer gson = JsonBuffer.acquire();
+                JsonCodec.GSON.writeLookup(gson, movies, missing, fields);
+                byte[] expected = gson.toByteArray();
+                JsonBuffer fast = JsonBuffer.acquire();
+                JsonCodec.FAST.writeLookup(fast, movies, missing, fields);
+                assertArrayEquals(expected, fast.toByteArray());
+            }
+        }
+    }
+
+    @Test
+    void parseMovie_roundTripsWrittenJson() {
+        for (String title : TITLES) {
+            if (title.contains("\uD83C суррогат")) {
+                continue; // одиночный суррогат не переживает UTF-8 ни у Gson, ни у нас
+            }
+            Movie movie = new Movie(7, title, 1999);
+            JsonBuffer out = JsonBuffer.acquire();
+            MovieJson.writeMovie(out, movie);
+            assertEquals(movie, MovieJson.parseMovie(out.toByteArray()));
+        }
+    }
+
+    @Test
+    void parseMovie_agreesWithGson() {
+        String[] bodies = {
+                "{\"title\":\"Сталкер\",\"year\":1979}",
+                "  {\n\t\"year\" : \"1979\" , \"title\" : \"Сталкер\" }  ",
+                "{\"title\":\"X\",\"year\":1999.0,\"extra\":{\"a\":[1,\"}\",{\"b\":null}]},\"flag\":true}",
+                "{\"title\":123,\"year\":2000}",
+                "{\"title\":null,\"year\":null}",
+                "{\"title\":\"\\u0041\\n\\\"\\/\"}",
+                "{}",
+                "null",
+                "",
+                "   ",
+        };
+        for (String body : bodies) {
+            assertEquals(JsonUtil.fromJson(body, Movie.class), parse(body), body);
+        }
+    }
+
+    @Test
+    void parseMovie_rejectsMalformedInput() {
+        String[] bodies = {
+                "{\"title\":\"X\"",
+                "{\"title\":\"X\",\"year\":1999.5}",
+                "{\"title\":\"X\",\"year\":\"abc\"}",
+                "{\"title\":\"X\",\"year\":99999999999}",
+                "{\"title\":\"X\"} {}",
+                "{\"title\":\"X\",}",
+                "{\"title\" \"X\"}",
+                "[]",
+                "{\"title\":\"\\x\"}",
+        };
+        for (String body : bodies) {
+            assertThrows(JsonSyntaxException.class, () -> parse(body), body);
+        }
+    }
+
+    private static void assertSameAsGson(Movie movie) {
+        JsonBuffer out = JsonBuffer.acquire();
+        MovieJson.writeMovie(out, movie);
+        assertArrayEquals(gsonBytes(movie), out.toByteArray(), movie.toString());
+    }
+
+    private static byte[] gsonBytes(Object value) {
+        return JsonUtil.toJson(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Movie parse(String body) {
+        return MovieJson.parseMovie(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,39 @@
+package ru.practicum.moviehub.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    void quantiles_stayWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros * 1_000);
+        }
+
+        assertEquals(10_000, histogram.count());
+        assertWithinPrecision(5_000_000, histogram.quantileNanos(0.5));
+        assertWithinPrecision(9_900_000, histogram.quantileNanos(0.99));
+        assertWithinPrecision(10_000_000, histogram.quantileNanos(1.0));
+    }
+
+    @Test
+    void bucketBounds_coverEveryValue() {
+        for (long value : new long[]{0, 1, 7, 8, 15, 16, 17, 1_000, 123_456_789, 1L << 40, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(bucket >= 0 && bucket < LatencyHistogram.BUCKETS, "Корзина вне диапазона для " + value);
+            if (value < 1L << 41) {
+                assertTrue(LatencyHistogram.upperBound(bucket) >= value, "Верхняя граница меньше значения " + value);
+                assertTrue(bucket == 0 || LatencyHistogram.upperBound(bucket - 1) < value,
+                        "Значение " + value + " должно попадать в первую подходящую корзину");
+            }
+        }
+    }
+
+    private static void assertWithinPrecision(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected * 1.125,
+                "Ожидалось около " + expected + ", получено " + actual);
+    }
+}
@@ -0,0 +1,77 @@
+package ru.practicum.moviehub.persistence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.moviehub.model.Movie;
+import ru.practicum.moviehub.store.MoviesStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MoviesPersistenceTest {
+    private Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("moviehub-test");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Test
+    void reopen_afterClose_restoresMoviesAndIdSequence() throws Exception {
+        MoviesStore store = new MoviesStore();
+        MoviesPersistence persistence = MoviesPersistence.open(store, config());
+        store.add(new Movie(0, "Сталкер", 1979));
+        Movie deleted = store.add(new Movie(0, "Солярис", 1972));
+        store.add(new Movie(0, "Зеркало", 1974));
+        store.delete(deleted.getId());
+        persistence.close();
+
+        MoviesStore restored = new MoviesStore();
+        MoviesPersistence reopened = MoviesPersistence.open(restored, config());
+
+        assertEquals(2, restored.getAll().size(), "Должны восстановиться только неудалённые фильмы");
+        assertNull(restored.findById(deleted.getId()), "Удалённый фильм не должен вернуться");
+        assertEquals("Сталкер", restored.findById(1).getTitle());
+        assertEquals(1, restored.findByYear(1974).size(), "Индексы должны восстановиться вместе с фильмами");
+        assertEquals(4, restored.add(new Movie(0, "Андрей Рублёв", 1966)).getId(),
+                "Последовательность id не должна начинаться заново");
+        reopened.close();
+    }
+
+    @Test
+    void reopen_withoutSnapshot_replaysWriteAheadLog() throws Exception {
+        MoviesStore store = new MoviesStore();
+        MoviesPersistence persistence = MoviesPersistence.open(store, config());
+        persistence.snapshot();
+        store.add(new Movie(0, "Брат", 1997));
+        store.add(new Movie(0, "Брат 2", 2000));
+        store.delete(1);
+
+        // Без close: после снимка изменения есть только в журнале, как при аварийной остановке.
+        MoviesStore restored = new MoviesStore();
+        MoviesPersistence reopened = MoviesPersistence.open(restored, config());
+
+        assertNull(restored.findById(1));
+        assertEquals(new Movie(2, "Брат 2", 2000), restored.findById(2));
+        assertEquals(3, restored.nextId());
+        reopened.close();
+    }
+
+    private PersistenceConfig config() {
+        return new PersistenceConfig(dir, Duration.ofMillis(1), Duration.ZERO);
+    }
+}
@@ -0,0 +1,88 @@
+package ru.practicum.moviehub.store;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.moviehub.model.Movie;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompactMovieTableTest {
+
+    @Test
+    void randomOperations_matchHashMap() {
+        for (boolean offHeap : new boolean[]{false, true}) {
+            CompactMovieTable table = new CompactMovieTable(offHeap);
+            Map<Long, Movie> expected = new HashMap<>();
+            SplittableRandom random = new SplittableRandom(42);
+
+            for (int i = 0; i < 200_000; i++) {
+                long id = 1 + random.nextInt(20_000);
+                if (random.nextInt(3) == 0) {
+                    Movie removed = table.replace(id, null, old -> { });
+                    assertEquals(expected.remove(id), removed);
+                } else {
+                    Movie movie = new Movie(id, random.nextBoolean() ? "Фильм " + i : null, 1888 + random.nextInt(140));
+                    table.put(movie);
+                    expected.put(id, movie);
+                }
+            }
+
+            assertEquals(expected.size(), table.size());
+            for (long id = 1; id <= 20_000; id++) {
+                assertEquals(expected.get(id), table.get(id), "id " + id);
+            }
+            List<Movie> all = new ArrayList<>();
+            table.values().forEach(all::add);
+            assertEquals(expected.size(), all.size());
+            for (int i = 1; i < all.size(); i++) {
+                assertTrue(all.get(i - 1).getId() < all.get(i).getId(), "обход идёт по возрастанию id");
+            }
+        }
+    }
+
+    @Test
+    void replace_passesPreviousMovieToHook() {
+        CompactMovieTable table = new CompactMovieTable(false);
+        table.put(new Movie(1, "Старое", 1990));
+
+        Movie[] seen = new Movie[1];
+        Movie old = table.replace(1, new Movie(1, "Новое", 2000), previous -> seen[0] = previous);
+
+        assertEquals(new Movie(1, "Старое", 1990), seen[0]);
+        assertEquals(seen[0], old);
+        assertEquals(new Movie(1, "Новое", 2000), table.get(1));
+    }
+
+    @Test
+    void titles_keepUtf8AndLongValues() {
+        CompactMovieTable table = new CompactMovieTable(true);
+        String emoji = "Кино 🎬 中文";
+        String huge = "я".repeat(700_000);
+        table.put(new Movie(1, emoji, 2000));
+        table.put(new Movie(2, huge, 2001));
+        table.put(new Movie(3, "", 2002));
+
+        assertEquals(emoji, table.get(1).getTitle());
+        assertEquals(huge, table.get(2).getTitle());
+        assertEquals("", table.get(3).getTitle());
+    }
+
+    @Test
+    void clear_dropsEverything() {
+        CompactMovieTable table = new CompactMovieTable(false);
+        for (long id = 1; id <= 10_000; id++) {
+            table.put(new Movie(id, "Фильм", 2000));
+        }
+        table.clear();
+
+        assertEquals(0, table.size());
+        assertNull(table.get(5));
+        assertFalse(table.values().iterator().hasNext());
+        assertThrows(IllegalArgumentException.class, () -> table.put(new Movie(0, "Без id", 2000)));
+    }
+}
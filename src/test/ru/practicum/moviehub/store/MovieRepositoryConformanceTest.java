@@ -0,0 +1,553 @@
+package ru.practicum.moviehub.store;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import ru.practicum.moviehub.model.Movie;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Общий контракт MovieRepository: каждая реализация из MovieRepositories обязана его проходить.
+public class MovieRepositoryConformanceTest {
+
+    static List<String> engines() {
+        return MovieRepositories.engines();
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("engines")
+    void add_assignsSequentialIdsAndFindsById(String engine) {
+        MovieRepository store = MovieRepositories.create(engine);
+
+        Movie first = store.add(new Movie(0, "Сталкер", 1979));
+        Movie second = store.add(new Movie(0, "Зеркало", 1975));
+
+        assertEquals(1, first.getId());
+        assertEquals(2, second.getId());
+        assertEquals(new Movie(1, "Сталкер", 1979), store.findById(1));
+        assertNull(store.findById(3));
+        assertEquals(2, store.size());
+        assertEquals(3, store.nextId());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("engines")
+    void delete_removesFromEveryIndex(String engine) {
+        MovieRepository store = MovieRepositories.create(engine);
+        long id = store.add(new Movie(0, "Солярис", 1972)).getId();
+        store.add(new Movie(0, "Солярис ремейк", 2002));
+
+        assertTrue(store.delete(id));
+        assertFalse(store.delete(id));
+
+        assertNull(store.findById(id));
+        assertTrue(store.findByYear(1972).isEmpty());
+        assertTrue(store.findByYearRange(1900, 2000).isEmpty());
+        assertEquals(List.of("Солярис ремейк"), titles(store.search("солярис", 10)));
+        assertEquals(1, store.size());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("engines")
+    void readQueries_returnExpectedMovies(String engine) {
+        MovieRepository store = MovieRepositories.create(engine);
+        for (int i = 0; i < 50; i++) {
+            store.add(new Movie(0, "Фильм " + i, 1990 + i % 5));
+        }
+
+        assertEquals(10, store.findByYear(1992).size());
+        assertTrue(store.findByYear(1992).stream().allMatch(m -> m.getYear() == 1992));
+        List<Movie> range = store.findByYearRange(1991, 1993);
+        assertEquals(30, range.size());
+        for (int i = 1; i < range.size(); i++) {
+            assertTrue(range.get(i - 1).getYear() <= range.get(i).getYear(), "диапазон идёт по возрастанию года");
+        }
+        assertTrue(store.findByYearRange(1993, 1991).isEmpty());
+
+        List<Movie> page = store.findPage(10, 5);
+        assertEquals(List.of(11L, 12L, 13L, 14L, 15L), ids(page));
+        assertTrue(store.findPage(50, 5).isEmpty());
+
+        assertEquals(List.of(7L, 3L, 40L), ids(store.findByIds(new long[]{7, 3, 999, 40})));
+        assertEquals(50, store.getAll().size());
+        assertEquals(List.of("Фильм 42"), titles(store.search("фильм 42", 10)));
+        assertEquals(3, store.search("фильм", 3).size());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("engines")
+    void query_filtersSortsAndLimitsInsideStore(String engine) {
+        MovieRepository store = MovieRepositories.create(engine);
+        List<Movie> added = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            added.add(store.add(new Movie(0, (i % 3 == 0 ? "Альфа " : "Бета ") + (999 - i), 1990 + i % 7)));
+        }
+        store.delete(10);
+
+        for (MovieSort sort : MovieSort.values()) {
+            for (boolean descending : new boolean[]{false, true}) {
+                for (int limit : new int[]{1, 7, 1_000, MovieQuery.NO_LIMIT}) {
+                    MovieQuery query = new MovieQuery(1992, 1995, "альф", sort, descending, limit, 0);
+                    Comparator<Movie> order = switch (sort) {
+                        case ID -> Comparator.comparingLong(Movie::getId);
+                        case TITLE -> Comparator.comparing(Movie::getTitle, String.CASE_INSENSITIVE_ORDER)
+                                .thenComparingLong(Movie::getId);
+                        case YEAR -> Comparator.comparingInt(Movie::getYear).thenComparingLong(Movie::getId);
+                    };
+                    List<Movie> expected = added.stream()
+                            .filter(m -> m.getId() != 10 && m.getYear() >= 1992 && m.getYear() <= 1995)
+                            .filter(m -> m.getTitle().startsWith("Альфа"))
+                            .sorted(descending ? order.reversed() : order)
+                            .limit(limit)
+                            .collect(Collectors.toList());
+                    assertEquals(expected, store.query(query), sort + " " + descending + " " + limit);
+
+                    MovieQuery unbounded = new MovieQuery(Integer.MIN_VALUE, Integer.MAX_VALUE, null, sort,
+                            descending, limit, 0);
+                    assertEquals(added.stream().filter(m -> m.getId() != 10)
+                                    .sorted(descending ? order.reversed() : order).limit(limit)
+                                    .collect(Collectors.toList()),
+                            store.query(unbounded), "без фильтров: " + sort + " " + descending + " " + limit);
+                }
+            }
+        }
+
+        MovieQuery after = new MovieQuery(Integer.MIN_VALUE, Integer.MAX_VALUE, null, MovieSort.ID, false, 3, 8);
+        assertEquals(List.of(9L, 11L, 12L), ids(store.query(after)));
+        MovieQuery before = new MovieQuery(Integer.MIN_VALUE, Integer.MAX_VALUE, null, MovieSort.ID, true, 3, 12);
+        assertEquals(List.of(11L, 9L, 8L), ids(store.query(before)));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("engines")
+    void addAll_publishesWholeBatch(String engine) {
+        MovieRepository store = MovieRepositories.create(engine);
+        store.add(new Movie(0, "Первый", 2000));
+        List<Movie> batch = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            batch.add(new Movie(0, "Пакет " + i, 2001 + i % 3));
+        }
+
+        store.addAll(batch);
+
+        assertEquals(1_001, store.size());
+        assertEquals(2, batch.get(0).getId());
+        assertEquals(1_001, batch.get(999).getId());
+        assertEquals(new Movie(500, "Пакет 498", 2001 + 498 % 3), store.findById(500));
+        assertEquals(334, store.findByYear(2001).size());
+        assertEquals(1, store.search("пакет 998", 10).size());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("engines")
+    void versions_growOnlyForAffectedYear(String engine) {
+        MovieRepository store = MovieRepositories.create(engine);
+        long v0 = store.version();
+        long id = store.add(new Movie(0, "А", 2000)).getId();
+        long v1 = store.version();
+        long year2000 = store.yearVersion(2000);
+        long year2001 = store.yearVersion(2001);
+
+        store.add(new Movie(0, "Б", 2001));
+        assertTrue(store.version() > v1 && v1 > v0);
+        assertEquals(year2000, store.yearVersion(2000));
+        assertTrue(store.yearVersion(2001) > year2001);
+
+        store.delete(id);
+        assertTrue(store.yearVersion(2000) > year2000);
+
+        long beforeClear = store.yearVersion(1999);
+        store.clear();
+        assertTrue(store.yearVersion(1999) > beforeClear);
+        assertEquals(0, store.size());
+        assertTrue(store.getAll().isEmpty());
+        assertEquals(1, store.add(new Movie(0, "После очистки", 2020)).getId());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("engines")
+    void restore_replacesAndReindexes(String engine) {
+        MovieRepository store = MovieRepositories.create(engine);
+        store.restore(new Movie(10, "Старое название", 1980));
+        store.restore(new Movie(10, "Новое название", 1981));
+
+        assertEquals(new Movie(10, "Новое название", 1981), store.findById(10));
+        assertTrue(store.findByYear(1980).isEmpty());
+        assertEquals(1, store.findByYear(1981).size());
+        assertTrue(store.search("старое", 10).isEmpty());
+        assertEquals(11, store.nextId());
+
+        store.restoreNextId(100);
+        assertTrue(store.add(new Movie(0, "Следующий", 2000)).getId() >= 100);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("engines")
+    void stats_followWritesAndRecomputeAfterRestore(String engine) {
+        MovieRepository store = MovieRepositories.create(engine);
+        assertEquals(0, store.stats().getTotal());
+        assertNull(store.stats().getMinYear());
+
+        store.add(new Movie(0, "А", 1979));
+        long deleted = store.add(new Movie(0, "Б", 1972)).getId();
+        List<Movie> batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            batch.add(new Movie(0, "Пакет " + i, 2000 + i % 20));
+        }
+        store.addAll(batch);
+        store.delete(deleted);
+
+        MovieStats stats = store.stats();
+        assertEquals(101, stats.getTotal());
+        assertEquals(1979, stats.getMinYear());
+        assertEquals(2019, stats.getMaxYear());
+        assertEquals(1L, stats.getByYear().get(1979));
+        assertNull(stats.getByYear().get(1972));
+        assertEquals(5L, stats.getByYear().get(2005));
+        assertEquals(Map.of(1970, 1L, 2000, 50L, 2010, 50L), stats.getByDecade());
+
+        // restore счётчики не ведёт: сводка пересчитывается при первом чтении
+        store.restore(new Movie(5_000, "Восстановлен", 1950));
+        store.restore(new Movie(1, "А заново", 1980));
+        stats = store.stats();
+        assertEquals(102, stats.getTotal());
+        assertEquals(1950, stats.getMinYear());
+        assertNull(stats.getByYear().get(1979));
+        assertEquals(1L, stats.getByYear().get(1980));
+
+        store.recomputeStats();
+        assertEquals(stats.getByYear(), store.stats().getByYear());
+        store.clear();
+        assertEquals(0, store.stats().getTotal());
+    }
+
+    // replicate ведёт счётчики сам: замена фильма переносит его в новый год, и сводка совпадает с пересчётом.
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("engines")
+    void stats_followReplicatedMoviesWithoutRecompute(String engine) {
+        MovieRepository store = MovieRepositories.create(engine);
+        store.restore(new Movie(1, "Из снимка", 1979));
+        store.recomputeStats();
+
+        store.replicate(new Movie(2, "С ведущего", 1980));
+        store.replicate(new Movie(3, "С ведущего", 1980));
+        store.replicate(new Movie(1, "Из снимка, исправлен", 1981));
+        store.replicate(new Movie(3, "С ведущего", 1980));
+        store.delete(2);
+
+        MovieStats stats = store.stats();
+        assertEquals(2, stats.getTotal());
+        assertNull(stats.getByYear().get(1979));
+        assertEquals(1L, stats.getByYear().get(1980));
+        assertEquals(1L, stats.getByYear().get(1981));
+        assertEquals(new Movie(1, "Из снимка, исправлен", 1981), store.findById(1));
+        assertEquals(4, store.nextId());
+
+        store.recomputeStats();
+        assertEquals(stats.getByYear(), store.stats().getByYear());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("engines")
+    void observer_seesEveryOperation(String engine) {
+        MovieRepository store = MovieRepositories.create(engine);
+        Set<StoreObserver.Operation> seen = ConcurrentHashMap.newKeySet();
+        store.attachObserver((operation, nanos) -> seen.add(operation));
+
+        store.add(new Movie(0, "А", 2000));
+        store.findById(1);
+        store.findByIds(new long[]{1});
+        store.search("а", 1);
+
+        assertTrue(seen.containsAll(Set.of(StoreObserver.Operation.ADD, StoreObserver.Operation.FIND_BY_ID,
+                StoreObserver.Operation.FIND_BY_IDS, StoreObserver.Operation.SEARCH)), seen.toString());
+    }
+
+    // Кэш поверх каталога узнаёт о каждом удалённом и заменённом фильме; add, restore нового id и delete
+    // отсутствующего не сообщаются.
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("engines")
+    void invalidation_reportsDeletedAndReplacedMovies(String engine) {
+        MovieRepository store = MovieRepositories.create(engine);
+        List<String> events = new ArrayList<>();
+        store.attachInvalidation(new MovieInvalidation() {
+            @Override
+            public void invalidate(long id) {
+                // к моменту вызова изменение уже видно читателям
+                Movie now = store.findById(id);
+                events.add(id + (now == null ? "" : " " + now.getTitle()));
+            }
+
+            @Override
+            public void invalidateAll() {
+                events.add("all");
+            }
+        });
+
+        for (int i = 0; i < 4; i++) {
+            store.add(new Movie(0, "Фильм " + i, 2000 + i));
+        }
+        store.restore(new Movie(10, "Восстановлен", 1990));
+        store.delete(1);
+        store.delete(1);
+        store.deleteAll(new long[]{2, 99});
+        store.restore(new Movie(3, "Заменён", 1991));
+        store.clear();
+
+        assertEquals(List.of("1", "2", "3 Заменён", "all"), events);
+    }
+
+    // Параллельные add/delete и чтения: после них таблица и индексы согласованы, id не повторяются,
+    // а читатель ни разу не увидел фильм с чужим id или пустым названием.
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("engines")
+    void concurrentWritesAndReads_keepIndexesConsistent(String engine) throws Exception {
+        MovieRepository store = MovieRepositories.create(engine);
+        int writers = 4;
+        int perWriter = 5_000;
+        ExecutorService pool = Executors.newFixedThreadPool(writers + 2);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        Set<Long> kept = ConcurrentHashMap.newKeySet();
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                int writer = w;
+                tasks.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perWriter; i++) {
+                        Movie movie = store.add(new Movie(0, "поток" + writer + " фильм" + i, 1950 + i % 50));
+                        if (i % 3 == 0) {
+                            assertTrue(store.delete(movie.getId()));
+                        } else {
+                            kept.add(movie.getId());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            List<Future<?>> readers = new ArrayList<>();
+            for (int r = 0; r < 2; r++) {
+                readers.add(pool.submit(() -> {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (writing.get()) {
+                        long id = 1 + random.nextInt(writers * perWriter);
+                        Movie movie = store.findById(id);
+                        if (movie != null) {
+                            assertEquals(id, movie.getId());
+                            assertNotNull(movie.getTitle());
+                        }
+                        for (Movie byYear : store.findByYear(1950 + random.nextInt(50))) {
+                            assertNotNull(byYear.getTitle());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> task : tasks) {
+                task.get(60, TimeUnit.SECONDS);
+            }
+            writing.set(false);
+            for (Future<?> reader : readers) {
+                reader.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(kept.size(), store.size());
+        assertEquals(kept, new HashSet<>(ids(store.getAll())));
+        Set<Long> iterated = new HashSet<>();
+        store.values().forEach(movie -> assertTrue(iterated.add(movie.getId()), "повтор в values()"));
+        assertEquals(kept, iterated);
+        assertEquals(kept, new HashSet<>(ids(store.findByYearRange(Integer.MIN_VALUE, Integer.MAX_VALUE))));
+        int byYear = 0;
+        for (int year = 1950; year < 2000; year++) {
+            byYear += store.findByYear(year).size();
+        }
+        assertEquals(kept.size(), byYear);
+        assertEquals(perWriter - (perWriter + 2) / 3, store.search("поток2", perWriter).size());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("engines")
+    void deleteAll_removesPresentIdsAndReportsMissing(String engine) {
+        MovieRepository store = MovieRepositories.create(engine);
+        List<Movie> added = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            added.add(store.add(new Movie(0, "Фильм " + i, 1980 + i % 2)));
+        }
+        long versionBefore = store.version();
+        long[] ids = {added.get(3).getId(), 999_999, added.get(0).getId(), added.get(7).getId(), added.get(3).getId()};
+
+        boolean[] deleted = store.deleteAll(ids);
+
+        assertArrayEquals(new boolean[]{true, false, true, true, false}, deleted, "повтор id уже удалён");
+        assertEquals(7, store.size());
+        assertNull(store.findById(added.get(0).getId()));
+        assertEquals(4, store.findByYear(1980).size());
+        assertEquals(7L, store.stats().getTotal());
+        assertTrue(store.version() > versionBefore);
+        assertEquals(2, store.findByIds(new long[]{added.get(1).getId(), added.get(3).getId(),
+                added.get(9).getId()}).size());
+        long unchanged = store.version();
+        assertArrayEquals(new boolean[]{false}, store.deleteAll(new long[]{added.get(0).getId()}));
+        assertEquals(unchanged, store.version(), "без удалений версия не меняется");
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("engines")
+    void changeFeed_recordsWritesButNotRestore(String engine) {
+        MovieRepository store = MovieRepositories.create(engine);
+        ChangeFeed feed = new ChangeFeed(16);
+        store.attachChangeFeed(feed);
+        Movie first = store.add(new Movie(0, "Первый", 2001));
+        store.addAll(new ArrayList<>(List.of(new Movie(0, "Второй", 2002), new Movie(0, "Третий", 2003))));
+        assertTrue(store.delete(first.getId()));
+        assertFalse(store.delete(first.getId()));
+        store.restore(new Movie(store.nextId() + 100, "С диска", 2004));
+        store.clear();
+
+        ChangeFeed.Batch batch = feed.read(0, 100);
+        assertFalse(batch.isResync());
+        assertEquals(5, batch.getHead());
+        assertEquals(List.of(ChangeFeed.Type.ADD, ChangeFeed.Type.ADD, ChangeFeed.Type.ADD,
+                        ChangeFeed.Type.DELETE, ChangeFeed.Type.CLEAR),
+                batch.getChanges().stream().map(ChangeFeed.Change::getType).collect(Collectors.toList()));
+        assertEquals("Первый", batch.getChanges().get(0).getMovie().getTitle());
+        assertEquals(first.getId(), batch.getChanges().get(3).getId());
+        assertEquals(List.of(4L, 5L), batch.getChanges().subList(3, 5).stream()
+                .map(ChangeFeed.Change::getSeq).collect(Collectors.toList()));
+
+        for (int i = 0; i < 20; i++) {
+            store.add(new Movie(0, "Фильм " + i, 2005));
+        }
+        assertTrue(feed.read(0, 100).isResync(), "начало ленты вытеснено");
+        assertTrue(feed.read(feed.head() + 1, 100).isResync(), "номер из будущего");
+        assertEquals(16, feed.read(feed.head() - 16, 100).getChanges().size());
+        assertEquals(3, feed.read(feed.head() - 16, 3).getChanges().size());
+    }
+
+    // Зеркало, применяющее ленту по порядку, совпадает с хранилищем после параллельных add/delete:
+    // события одного id не переставлены.
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("engines")
+    void changeFeed_replayedConcurrentWritesMatchStore(String engine) throws Exception {
+        MovieRepository store = MovieRepositories.create(engine);
+        ChangeFeed feed = new ChangeFeed(1 << 16);
+        store.attachChangeFeed(feed);
+        int writers = 4;
+        int perWriter = 3_000;
+        ExecutorService pool = Executors.newFixedThreadPool(writers);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                int writer = w;
+                tasks.add(pool.submit(() -> {
+                    for (int i = 0; i < perWriter; i++) {
+                        Movie movie = store.add(new Movie(0, "поток" + writer + " фильм" + i, 1990 + i % 10));
+                        if (i % 4 == 0) {
+                            store.delete(movie.getId());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Map<Long, String> mirror = new ConcurrentHashMap<>();
+        long since = 0;
+        ChangeFeed.Batch batch;
+        while (!(batch = feed.read(since, 1000)).getChanges().isEmpty()) {
+            assertFalse(batch.isResync());
+            for (ChangeFeed.Change change : batch.getChanges()) {
+                assertEquals(since + 1, change.getSeq(), "номера идут без пропусков");
+                since = change.getSeq();
+                if (change.getType() == ChangeFeed.Type.ADD) {
+                    assertNull(mirror.put(change.getId(), change.getMovie().getTitle()));
+                } else {
+                    assertNotNull(mirror.remove(change.getId()));
+                }
+            }
+        }
+        assertEquals(writers * (perWriter + perWriter / 4), since);
+        Map<Long, String> expected = store.getAll().stream().collect(Collectors.toMap(Movie::getId, Movie::getTitle));
+        assertEquals(expected, mirror);
+    }
+
+    // Снимок, как в GET /movies/snapshot: номер ленты под runExclusive, затем обход. Каждое добавление
+    // с номером не больше прочитанного уже видно в обходе, хотя писатели работают параллельно.
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("engines")
+    void changeFeed_headReadUnderExclusiveIsCoveredBySnapshot(String engine) throws Exception {
+        MovieRepository store = MovieRepositories.create(engine);
+        ChangeFeed feed = new ChangeFeed(1 << 16);
+        store.attachChangeFeed(feed);
+        int writers = 4;
+        int perWriter = 5_000;
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService pool = Executors.newFixedThreadPool(writers);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                int writer = w;
+                tasks.add(pool.submit(() -> {
+                    for (int i = 0; i < perWriter && running.get(); i++) {
+                        store.add(new Movie(0, "поток" + writer + " фильм" + i, 1990 + i % 10));
+                    }
+                    return null;
+                }));
+            }
+            int snapshots = 0;
+            while (tasks.stream().anyMatch(task -> !task.isDone()) || snapshots == 0) {
+                long[] head = new long[1];
+                store.runExclusive(() -> head[0] = feed.head());
+                Set<Long> snapshot = new HashSet<>();
+                for (Movie movie : store.values()) {
+                    snapshot.add(movie.getId());
+                }
+                for (ChangeFeed.Change change : feed.read(0, (int) head[0]).getChanges()) {
+                    assertTrue(snapshot.contains(change.getId()),
+                            "событие " + change.getSeq() + " не больше head " + head[0] + ", но фильма нет в снимке");
+                }
+                snapshots++;
+            }
+            for (Future<?> task : tasks) {
+                task.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            running.set(false);
+            pool.shutdownNow();
+        }
+    }
+
+    private static List<Long> ids(List<Movie> movies) {
+        return movies.stream().map(Movie::getId).collect(Collectors.toList());
+    }
+
+    private static List<String> titles(List<Movie> movies) {
+        return movies.stream().map(Movie::getTitle).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,128 @@
+package ru.practicum.moviehub.store;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.moviehub.model.Movie;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedMoviesStoreTest {
+
+    // Писатели по очереди добавляют фильм и удаляют предыдущий, добавленный другим потоком (и обычно в другом
+    // шарде): в любой момент в каталоге один или два фильма. Чтение без общего среза могло бы увидеть ноль.
+    @Test
+    void snapshotReads_neverSeeTornCatalogue() throws Exception {
+        ShardedMoviesStore store = new ShardedMoviesStore(ShardedMoviesStore.MAX_SHARDS);
+        AtomicLong previous = new AtomicLong(store.add(new Movie(0, "Первый", 2000)).getId());
+        int writers = 4;
+        int turns = 4_000;
+        AtomicInteger turn = new AtomicInteger();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService pool = Executors.newFixedThreadPool(writers + 1);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                int writer = w;
+                tasks.add(pool.submit(() -> {
+                    for (int t = writer; t < turns; t += writers) {
+                        while (turn.get() != t) {
+                            Thread.yield();
+                        }
+                        long added = store.add(new Movie(0, "Фильм " + t, 2000 + t % 3)).getId();
+                        assertTrue(store.delete(previous.getAndSet(added)));
+                        turn.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            Future<?> reader = pool.submit(() -> {
+                while (writing.get()) {
+                    int all = store.getAll().size();
+                    assertTrue(all == 1 || all == 2, "getAll: " + all);
+                    int range = store.findByYearRange(2000, 2002).size();
+                    assertTrue(range == 1 || range == 2, "findByYearRange: " + range);
+                    int page = store.findPage(0, 10).size();
+                    assertTrue(page == 1 || page == 2, "findPage: " + page);
+                }
+                return null;
+            });
+            for (Future<?> task : tasks) {
+                task.get(60, TimeUnit.SECONDS);
+            }
+            writing.set(false);
+            reader.get(60, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void randomRestoresAndDeletes_matchTreeMap() {
+        ShardedMoviesStore store = new ShardedMoviesStore(3);
+        TreeMap<Long, Movie> expected = new TreeMap<>();
+        SplittableRandom random = new SplittableRandom(42);
+
+        for (int i = 0; i < 100_000; i++) {
+            long id = 1 + random.nextInt(200_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(id) != null, store.delete(id));
+            } else {
+                Movie movie = new Movie(id, "Фильм " + i, 1900 + random.nextInt(100));
+                store.restore(movie);
+                expected.put(id, movie);
+            }
+        }
+
+        assertEquals(expected.size(), store.size());
+        assertEquals(new ArrayList<>(expected.values()), store.getAll());
+        for (int i = 0; i < 1_000; i++) {
+            long id = 1 + random.nextInt(200_000);
+            assertEquals(expected.get(id), store.findById(id), "id " + id);
+        }
+        long afterId = 77_777;
+        assertEquals(new ArrayList<>(expected.tailMap(afterId, false).values()).subList(0, 50),
+                store.findPage(afterId, 50));
+        assertEquals(expected.values().stream().filter(m -> m.getYear() == 1950).count(),
+                store.findByYear(1950).size());
+    }
+
+    @Test
+    void restoredIds_areNeverHandedOutAgain() {
+        ShardedMoviesStore store = new ShardedMoviesStore(4);
+        store.add(new Movie(0, "Выдан", 1990));
+        long restored = 2 * ShardedMoviesStore.BLOCK_SIZE + 5;
+        store.restore(new Movie(restored, "Восстановлен", 1991));
+
+        List<Movie> batch = new ArrayList<>();
+        for (int i = 0; i < 3 * ShardedMoviesStore.BLOCK_SIZE; i++) {
+            batch.add(new Movie(0, "Пакет " + i, 1992));
+        }
+        store.addAll(batch);
+
+        Set<Long> ids = new HashSet<>();
+        for (Movie movie : store.getAll()) {
+            assertTrue(ids.add(movie.getId()), "повтор id " + movie.getId());
+        }
+        assertEquals(2 + batch.size(), ids.size());
+        assertEquals("Восстановлен", store.findById(restored).getTitle());
+        assertTrue(store.nextId() > batch.get(batch.size() - 1).getId());
+        List<Movie> all = store.getAll();
+        for (int i = 1; i < all.size(); i++) {
+            assertTrue(all.get(i - 1).getId() < all.get(i).getId(), "срез идёт по возрастанию id");
+        }
+    }
+}